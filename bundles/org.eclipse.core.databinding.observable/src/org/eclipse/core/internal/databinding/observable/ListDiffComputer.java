@@ -0,0 +1,445 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.core.internal.databinding.observable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.databinding.observable.Diffs;
+import org.eclipse.core.databinding.observable.list.ListDiffEntry;
+
+/**
+ * Computes the list diff entries which turn one list into another.
+ * <p>
+ * The elements kept in place are chosen as follows. Common leading and
+ * trailing elements are kept. For the remaining middle sections a longest
+ * common subsequence is computed with Myers' O(ND) algorithm, as long as the
+ * edit distance does not exceed {@link #MAX_EDIT_DISTANCE}. Otherwise every
+ * new element is matched with the next unused equal old element through a
+ * hash index, and the longest increasing run of matched old positions is kept.
+ * This bounds the running time by O(N log N) for lists which differ a lot, for
+ * example after sorting.
+ * </p>
+ * <p>
+ * The entries are then generated in order of the new list. A new element which
+ * is not kept but equals an old element further down the list is moved there
+ * with a removal immediately followed by an addition, which
+ * {@link org.eclipse.core.databinding.observable.list.ListDiff#accept} reports
+ * as a move. Positions of old elements are tracked in a Fenwick tree, so each
+ * entry is generated in O(log N).
+ * </p>
+ *
+ * @param <E>
+ *            the list element type
+ */
+public final class ListDiffComputer<E> {
+
+	/**
+	 * The largest edit distance for which a minimal diff is computed.
+	 */
+	static final int MAX_EDIT_DISTANCE = 1024;
+
+	/**
+	 * The number of element comparisons allowed for a minimal diff, in
+	 * addition to a multiple of the list sizes.
+	 */
+	private static final int COMPARISON_BUDGET = 1 << 20;
+
+	/**
+	 * The old elements with a given value which are not kept, and the number of
+	 * new elements with that value which are not kept and not yet processed.
+	 */
+	private static final class Occurrences {
+		int first = -1;
+		int last = -1;
+		int remainingNew;
+	}
+
+	private final Object[] oldElements;
+
+	private final Object[] newElements;
+
+	private final List<ListDiffEntry<E>> entries = new ArrayList<>();
+
+	/**
+	 * Start of the middle sections, which is also the number of common
+	 * leading elements.
+	 */
+	private int start;
+
+	/**
+	 * Exclusive ends of the middle sections in the old and new elements.
+	 */
+	private int oldEnd;
+
+	private int newEnd;
+
+	/**
+	 * For each element of the new middle section, the index of the kept old
+	 * element it corresponds to, or -1.
+	 */
+	private int[] newToOld;
+
+	/**
+	 * For each element of the old middle section, whether it is kept.
+	 */
+	private boolean[] oldKept;
+
+	private ListDiffComputer(List<? extends E> oldList, List<? extends E> newList) {
+		oldElements = oldList.toArray();
+		newElements = newList.toArray();
+	}
+
+	/**
+	 * Returns the entries which turn the old list into the new list when
+	 * applied in order.
+	 *
+	 * @param oldList
+	 *            the old list state
+	 * @param newList
+	 *            the new list state
+	 * @return the list diff entries
+	 */
+	public static <E> List<ListDiffEntry<E>> computeEntries(List<? extends E> oldList, List<? extends E> newList) {
+		ListDiffComputer<E> computer = new ListDiffComputer<>(oldList, newList);
+		computer.compute();
+		return computer.entries;
+	}
+
+	private void compute() {
+		oldEnd = oldElements.length;
+		newEnd = newElements.length;
+		int limit = Math.min(oldEnd, newEnd);
+		while (start < limit && Util.equals(oldElements[start], newElements[start])) {
+			start++;
+		}
+		while (oldEnd > start && newEnd > start && Util.equals(oldElements[oldEnd - 1], newElements[newEnd - 1])) {
+			oldEnd--;
+			newEnd--;
+		}
+		int oldCount = oldEnd - start;
+		int newCount = newEnd - start;
+		if (oldCount == 0 && newCount == 0) {
+			return;
+		}
+		newToOld = new int[newCount];
+		oldKept = new boolean[oldCount];
+		if (oldCount == 0 || newCount == 0) {
+			Arrays.fill(newToOld, -1);
+		} else if (!computeMinimalMatches(oldCount, newCount)) {
+			computeMatchesByIndex(oldCount, newCount);
+		}
+		createEntries(oldCount, newCount);
+	}
+
+	private boolean equalsAt(int oldIndex, int newIndex) {
+		return Util.equals(oldElements[start + oldIndex], newElements[start + newIndex]);
+	}
+
+	/**
+	 * Finds a longest common subsequence of the middle sections using Myers'
+	 * algorithm. The edit graph is walked along the new elements, so that of
+	 * several equally long subsequences the one keeping later new elements is
+	 * chosen.
+	 *
+	 * @return <code>false</code> if the edit distance exceeds
+	 *         {@link #MAX_EDIT_DISTANCE} or too many elements had to be
+	 *         compared
+	 */
+	private boolean computeMinimalMatches(int oldCount, int newCount) {
+		int maxD = Math.min(oldCount + newCount, MAX_EDIT_DISTANCE);
+		long budget = COMPARISON_BUDGET + 8L * (oldCount + newCount);
+		List<int[]> trace = new ArrayList<>();
+		for (int d = 0; d <= maxD; d++) {
+			int[] previous = d == 0 ? null : trace.get(d - 1);
+			// v[d + k] is the furthest new index reached on diagonal k with d
+			// edits, or -1 if the diagonal cannot be reached
+			int[] v = new int[2 * d + 1];
+			for (int k = -d; k <= d; k += 2) {
+				int x;
+				if (d == 0) {
+					x = 0;
+				} else {
+					int from = predecessor(previous, d, k, newCount, oldCount);
+					if (from == Integer.MIN_VALUE) {
+						v[d + k] = -1;
+						continue;
+					}
+					x = from == k + 1 ? previous[d - 1 + from] : previous[d - 1 + from] + 1;
+				}
+				int y = x - k;
+				int snakeStart = x;
+				while (x < newCount && y < oldCount && equalsAt(y, x)) {
+					x++;
+					y++;
+				}
+				budget -= x - snakeStart + 1;
+				v[d + k] = x;
+				if (x >= newCount && y >= oldCount) {
+					trace.add(v);
+					collectMatches(trace, oldCount, newCount);
+					return true;
+				}
+			}
+			trace.add(v);
+			if (budget < 0) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the diagonal of the furthest reaching path with
+	 * <code>d - 1</code> edits from which diagonal <code>k</code> is entered,
+	 * or {@link Integer#MIN_VALUE} if there is none.
+	 */
+	private static int predecessor(int[] previous, int d, int k, int width, int height) {
+		// a removal moves down from diagonal k + 1
+		boolean down = k + 1 <= d - 1 && previous[d - 1 + k + 1] >= 0
+				&& previous[d - 1 + k + 1] - k <= height;
+		// an addition moves right from diagonal k - 1
+		boolean right = k - 1 >= -(d - 1) && previous[d - 1 + k - 1] >= 0 && previous[d - 1 + k - 1] + 1 <= width;
+		if (down && (!right || previous[d - 1 + k - 1] < previous[d - 1 + k + 1])) {
+			return k + 1;
+		}
+		return right ? k - 1 : Integer.MIN_VALUE;
+	}
+
+	private void collectMatches(List<int[]> trace, int oldCount, int newCount) {
+		Arrays.fill(newToOld, -1);
+		int x = newCount;
+		int y = oldCount;
+		for (int d = trace.size() - 1; d >= 0; d--) {
+			int k = x - y;
+			int startX;
+			int previousX = 0;
+			int previousY = 0;
+			if (d == 0) {
+				startX = 0;
+			} else {
+				int[] previous = trace.get(d - 1);
+				int from = predecessor(previous, d, k, newCount, oldCount);
+				previousX = previous[d - 1 + from];
+				previousY = previousX - from;
+				startX = from == k + 1 ? previousX : previousX + 1;
+			}
+			// the path ends with a snake of kept elements
+			while (x > startX) {
+				x--;
+				y--;
+				newToOld[x] = y;
+				oldKept[y] = true;
+			}
+			x = previousX;
+			y = previousY;
+		}
+	}
+
+	/**
+	 * Matches every new element with the next unused equal old element and
+	 * keeps a longest increasing run of the matched old indexes.
+	 */
+	private void computeMatchesByIndex(int oldCount, int newCount) {
+		Map<Object, Occurrences> index = new HashMap<>();
+		int[] next = new int[oldCount];
+		for (int i = 0; i < oldCount; i++) {
+			next[i] = -1;
+			append(index, oldElements[start + i], i, next);
+		}
+		int[] candidates = new int[newCount];
+		for (int j = 0; j < newCount; j++) {
+			Occurrences occurrences = index.get(newElements[start + j]);
+			if (occurrences == null || occurrences.first < 0) {
+				candidates[j] = -1;
+			} else {
+				candidates[j] = occurrences.first;
+				occurrences.first = next[occurrences.first];
+			}
+		}
+
+		// longest strictly increasing subsequence of the candidates
+		int[] tails = new int[newCount];
+		int[] predecessor = new int[newCount];
+		int length = 0;
+		for (int j = 0; j < newCount; j++) {
+			int candidate = candidates[j];
+			if (candidate < 0) {
+				continue;
+			}
+			int low = 0;
+			int high = length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (candidates[tails[middle]] < candidate) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			predecessor[j] = low > 0 ? tails[low - 1] : -1;
+			tails[low] = j;
+			if (low == length) {
+				length++;
+			}
+		}
+		Arrays.fill(newToOld, -1);
+		for (int j = length > 0 ? tails[length - 1] : -1; j >= 0; j = predecessor[j]) {
+			newToOld[j] = candidates[j];
+			oldKept[candidates[j]] = true;
+		}
+	}
+
+	private static void append(Map<Object, Occurrences> index, Object element, int i, int[] next) {
+		Occurrences occurrences = index.get(element);
+		if (occurrences == null) {
+			occurrences = new Occurrences();
+			index.put(element, occurrences);
+		}
+		if (occurrences.last < 0) {
+			occurrences.first = i;
+		} else {
+			next[occurrences.last] = i;
+		}
+		occurrences.last = i;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void createEntries(int oldCount, int newCount) {
+		// index the old elements which are not kept, for moves
+		Map<Object, Occurrences> index = new HashMap<>();
+		int[] next = new int[oldCount];
+		for (int i = 0; i < oldCount; i++) {
+			next[i] = -1;
+			if (!oldKept[i]) {
+				append(index, oldElements[start + i], i, next);
+			}
+		}
+		for (int j = 0; j < newCount; j++) {
+			if (newToOld[j] < 0) {
+				Occurrences occurrences = index.get(newElements[start + j]);
+				if (occurrences != null) {
+					occurrences.remainingNew++;
+				}
+			}
+		}
+
+		// present[i] is true while old element i is still after the current
+		// position, counts holds the same information as a Fenwick tree
+		boolean[] present = new boolean[oldCount];
+		Arrays.fill(present, true);
+		int[] counts = new int[oldCount + 1];
+		for (int i = 1; i <= oldCount; i++) {
+			counts[i]++;
+			int parent = i + (i & -i);
+			if (parent <= oldCount) {
+				counts[parent] += counts[i];
+			}
+		}
+
+		int position = start;
+		int cursor = 0;
+		for (int j = 0; j < newCount; j++) {
+			int kept = newToOld[j];
+			if (kept >= 0) {
+				for (; cursor < kept; cursor++) {
+					if (present[cursor]) {
+						remove(position, cursor, present, counts);
+					}
+				}
+				cursor++;
+				position++;
+				continue;
+			}
+
+			Object element = newElements[start + j];
+			Occurrences occurrences = index.get(element);
+			int source = -1;
+			if (occurrences != null) {
+				occurrences.remainingNew--;
+				source = occurrences.first;
+				while (source >= 0 && !present[source]) {
+					source = next[source];
+				}
+				occurrences.first = source;
+			}
+			if (source < 0) {
+				add(position++, element);
+				continue;
+			}
+
+			// remove old elements which are not used anymore before moving
+			while (cursor < source) {
+				if (present[cursor]) {
+					if (oldKept[cursor] || index.get(oldElements[start + cursor]).remainingNew > 0) {
+						break;
+					}
+					remove(position, cursor, present, counts);
+				}
+				cursor++;
+			}
+			occurrences.first = next[source];
+			if (cursor == source) {
+				// already in place
+				markRemoved(source, present, counts);
+				cursor++;
+				position++;
+				continue;
+			}
+			int sourcePosition = position + count(counts, source) - count(counts, cursor);
+			entries.add(Diffs.createListDiffEntry(sourcePosition, false, (E) element));
+			markRemoved(source, present, counts);
+			add(position++, element);
+		}
+
+		// remove excess trailing elements, last first
+		int trailing = count(counts, oldCount) - count(counts, cursor);
+		for (int i = oldCount - 1; i >= cursor; i--) {
+			if (present[i]) {
+				trailing--;
+				entries.add(Diffs.createListDiffEntry(position + trailing, false, (E) oldElements[start + i]));
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void add(int position, Object element) {
+		entries.add(Diffs.createListDiffEntry(position, true, (E) element));
+	}
+
+	@SuppressWarnings("unchecked")
+	private void remove(int position, int oldIndex, boolean[] present, int[] counts) {
+		entries.add(Diffs.createListDiffEntry(position, false, (E) oldElements[start + oldIndex]));
+		markRemoved(oldIndex, present, counts);
+	}
+
+	private static void markRemoved(int oldIndex, boolean[] present, int[] counts) {
+		present[oldIndex] = false;
+		for (int i = oldIndex + 1; i < counts.length; i += i & -i) {
+			counts[i]--;
+		}
+	}
+
+	/**
+	 * Returns the number of present old elements before the given index.
+	 */
+	private static int count(int[] counts, int oldIndex) {
+		int result = 0;
+		for (int i = oldIndex; i > 0; i -= i & -i) {
+			result += counts[i];
+		}
+		return result;
+	}
+}
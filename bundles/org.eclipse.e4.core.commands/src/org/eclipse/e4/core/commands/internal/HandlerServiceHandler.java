@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2015 IBM Corporation and others.
+ * Copyright (c) 2013, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -49,7 +49,7 @@ public class HandlerServiceHandler extends AbstractHandler {
 		if (executionContext == null) {
 			return super.isEnabled();
 		}
-		Object handler = HandlerServiceImpl.lookUpHandler(executionContext, commandId);
+		Object handler = HandlerServiceImpl.lookUpCurrentHandler(executionContext, commandId);
 		if (handler == null) {
 			setBaseEnabled(false);
 			return super.isEnabled();
@@ -68,7 +68,7 @@ public class HandlerServiceHandler extends AbstractHandler {
 		if (executionContext == null) {
 			return;
 		}
-		Object handler = HandlerServiceImpl.lookUpHandler(executionContext, commandId);
+		Object handler = HandlerServiceImpl.lookUpCurrentHandler(executionContext, commandId);
 		if (handler == null) {
 			return;
 		}
@@ -119,7 +119,7 @@ public class HandlerServiceHandler extends AbstractHandler {
 	public boolean isHandled() {
 		ExecutionContexts contexts = HandlerServiceImpl.peek();
 		if (contexts != null) {
-			Object handler = HandlerServiceImpl.lookUpHandler(contexts.context, commandId);
+			Object handler = HandlerServiceImpl.lookUpCurrentHandler(contexts.context, commandId);
 			if (handler instanceof IHandler) {
 				return ((IHandler) handler).isHandled();
 			}
@@ -137,7 +137,7 @@ public class HandlerServiceHandler extends AbstractHandler {
 					new NotHandledException(FAILED_TO_FIND_HANDLER_DURING_EXECUTION));
 		}
 
-		Object handler = HandlerServiceImpl.lookUpHandler(executionContext, commandId);
+		Object handler = HandlerServiceImpl.lookUpCurrentHandler(executionContext, commandId);
 		if (handler == null) {
 			return null;
 		}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 IBM Corporation and others.
+ * Copyright (c) 2009, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -53,10 +53,22 @@ public class HandlerServiceImpl implements EHandlerService {
 	public final static String STATIC_CONTEXT = "HandlerServiceImpl.staticContext"; //$NON-NLS-1$
 	public final static String HANDLER_EXCEPTION = "HandlerServiceImpl.exception"; //$NON-NLS-1$
 
+	/**
+	 * The static context key under which
+	 * {@link #canExecute(ParameterizedCommand, IEclipseContext)} stores the
+	 * handler it looked up, or <code>null</code> if the command has no
+	 * handler.
+	 */
+	public final static String HANDLER = "HandlerServiceImpl.handler"; //$NON-NLS-1$
+
 	private static LinkedList<ExecutionContexts> contextStack = new LinkedList<ExecutionContexts>();
 
 	public static ContextFunction handlerGenerator = null;
 
+	private static long lookUpCount;
+
+	private static long canExecuteCount;
+
 	public static IHandler getHandler(String commandId) {
 		if (handlerGenerator != null) {
 			return (IHandler) handlerGenerator.compute(null, commandId);
@@ -68,6 +80,18 @@ public class HandlerServiceImpl implements EHandlerService {
 		public IEclipseContext context;
 		public IEclipseContext staticContext;
 
+		/**
+		 * The id of the command evaluated or executed in these contexts, or
+		 * <code>null</code>.
+		 */
+		String commandId;
+
+		/**
+		 * The handler of the command, looked up once for all the calls into
+		 * the {@link HandlerServiceHandler} of the command.
+		 */
+		Object handler;
+
 		public ExecutionContexts(IEclipseContext ctx, IEclipseContext staticCtx) {
 			context = ctx;
 			staticContext = staticCtx;
@@ -82,6 +106,13 @@ public class HandlerServiceImpl implements EHandlerService {
 		getContextStack().addFirst(new ExecutionContexts(ctx, staticCtx));
 	}
 
+	private static void push(IEclipseContext ctx, IEclipseContext staticCtx, String commandId, Object handler) {
+		ExecutionContexts contexts = new ExecutionContexts(ctx, staticCtx);
+		contexts.commandId = commandId;
+		contexts.handler = handler;
+		getContextStack().addFirst(contexts);
+	}
+
 	public static ExecutionContexts pop() {
 		return getContextStack().poll();
 	}
@@ -97,9 +128,52 @@ public class HandlerServiceImpl implements EHandlerService {
 	 * @return a handler, or <code>null</code>
 	 */
 	public static Object lookUpHandler(IEclipseContext context, String commandId) {
+		lookUpCount++;
 		return context.getActiveLeaf().get(H_ID + commandId);
 	}
 
+	/**
+	 * Returns the handler of the given command in the given context, reusing
+	 * the handler looked up for the command being evaluated or executed in
+	 * this context, if any.
+	 *
+	 * @param context
+	 *            the context to start the lookup process
+	 * @param commandId
+	 * @return a handler, or <code>null</code>
+	 */
+	static Object lookUpCurrentHandler(IEclipseContext context, String commandId) {
+		ExecutionContexts contexts = peek();
+		if (contexts != null && contexts.context == context && commandId.equals(contexts.commandId)) {
+			return contexts.handler;
+		}
+		return lookUpHandler(context, commandId);
+	}
+
+	/**
+	 * @return the number of handler lookups since the last
+	 *         {@link #resetCounts()}
+	 */
+	public static long getLookUpCount() {
+		return lookUpCount;
+	}
+
+	/**
+	 * @return the number of <code>canExecute</code> calls since the last
+	 *         {@link #resetCounts()}
+	 */
+	public static long getCanExecuteCount() {
+		return canExecuteCount;
+	}
+
+	/**
+	 * Resets the number of handler lookups and <code>canExecute</code> calls.
+	 */
+	public static void resetCounts() {
+		lookUpCount = 0;
+		canExecuteCount = 0;
+	}
+
 	/**
 	 * Fill in a temporary static context for execution.
 	 *
@@ -160,9 +234,15 @@ public class HandlerServiceImpl implements EHandlerService {
 
 	@Override
 	public boolean canExecute(ParameterizedCommand command) {
+		canExecuteCount++;
+		final IEclipseContext executionContext = getExecutionContext();
+		final Object handler = lookUpHandler(executionContext, command.getId());
+		if (isUnhandled(command.getCommand(), handler)) {
+			return false;
+		}
 		final IEclipseContext staticContext = EclipseContextFactory.create(TMP_STATIC_CONTEXT);
 		try {
-			return canExecute(command, staticContext);
+			return canExecute(command, executionContext, handler, staticContext);
 		} finally {
 			staticContext.dispose();
 		}
@@ -170,10 +250,21 @@ public class HandlerServiceImpl implements EHandlerService {
 
 	@Override
 	public boolean canExecute(ParameterizedCommand command, IEclipseContext staticContext) {
+		canExecuteCount++;
 		final IEclipseContext executionContext = getExecutionContext();
+		final Object handler = lookUpHandler(executionContext, command.getId());
+		staticContext.set(HANDLER, handler);
+		if (isUnhandled(command.getCommand(), handler)) {
+			return false;
+		}
+		return canExecute(command, executionContext, handler, staticContext);
+	}
+
+	private boolean canExecute(ParameterizedCommand command, IEclipseContext executionContext, Object handler,
+			IEclipseContext staticContext) {
 		addParms(command, staticContext);
 		// executionContext.set(STATIC_CONTEXT, staticContext);
-		push(executionContext, staticContext);
+		push(executionContext, staticContext, command.getId(), handler);
 		try {
 			Command cmd = command.getCommand();
 			cmd.setEnabled(new ExpressionContext(peek().context));
@@ -184,6 +275,28 @@ public class HandlerServiceImpl implements EHandlerService {
 		}
 	}
 
+	/**
+	 * Disables the given command right away if it has no active handler, as
+	 * its {@link HandlerServiceHandler} would, without setting up the contexts
+	 * to evaluate it in.
+	 *
+	 * @return <code>true</code> if the command is disabled
+	 */
+	private static boolean isUnhandled(Command command, Object handler) {
+		if (handler != null) {
+			return false;
+		}
+		IHandler commandHandler = command.getHandler();
+		if (commandHandler == null) {
+			return true;
+		}
+		if (commandHandler instanceof HandlerServiceHandler) {
+			((HandlerServiceHandler) commandHandler).overrideEnabled(false);
+			return true;
+		}
+		return false;
+	}
+
 	@Override
 	public void deactivateHandler(String commandId, Object handler) {
 		context.remove(H_ID + commandId);
@@ -204,7 +317,7 @@ public class HandlerServiceImpl implements EHandlerService {
 		final IEclipseContext executionContext = getExecutionContext();
 		addParms(command, staticContext);
 		// executionContext.set(STATIC_CONTEXT, staticContext);
-		push(executionContext, staticContext);
+		push(executionContext, staticContext, command.getId(), lookUpHandler(executionContext, command.getId()));
 		try {
 			// Command cmd = command.getCommand();
 			return command.executeWithChecks(staticContext.get(SWT_TRIGGER), new ExpressionContext(
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2015 IBM Corporation and others.
+ * Copyright (c) 2010, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,8 +14,13 @@ package org.eclipse.e4.ui.bindings.internal;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
 import javax.inject.Inject;
 import org.eclipse.core.commands.ParameterizedCommand;
 import org.eclipse.core.commands.contexts.Context;
@@ -36,6 +41,109 @@ public class BindingTableManager {
 
 	private String[] activeSchemeIds;
 
+	/**
+	 * The maximum number of context sets to keep merged lookups for.
+	 */
+	private static final int MAX_LOOKUPS = 32;
+
+	/**
+	 * The bindings of the tables of a context set, merged so that a key
+	 * stroke is a single probe however many contexts are active.
+	 */
+	private class MergedLookup {
+		private final ContextSet contextSet;
+
+		private final Map<TriggerSequence, Binding> perfectMatches = new HashMap<TriggerSequence, Binding>();
+
+		private final Map<TriggerSequence, ArrayList<Binding>> partialMatches = new HashMap<TriggerSequence, ArrayList<Binding>>();
+
+		private Map<ParameterizedCommand, ArrayList<Binding>> sequences;
+
+		MergedLookup(ContextSet contextSet) {
+			this.contextSet = contextSet;
+			// triggers bound in the most active scheme, which later contexts
+			// can not override
+			Set<TriggerSequence> settled = new HashSet<TriggerSequence>();
+			List<Context> contexts = contextSet.getContexts();
+			ListIterator<Context> it = contexts.listIterator(contexts.size());
+			while (it.hasPrevious()) {
+				Context c = it.previous();
+				BindingTable table = getTable(c.getId());
+				if (table == null) {
+					continue;
+				}
+				for (Binding binding : table.getBindings()) {
+					TriggerSequence trigger = binding.getTriggerSequence();
+					addPerfectMatch(trigger, binding, settled);
+					TriggerSequence[] prefixes = trigger.getPrefixes();
+					for (int i = 1; i < prefixes.length; i++) {
+						ArrayList<Binding> bindings = partialMatches.get(prefixes[i]);
+						if (bindings == null) {
+							bindings = new ArrayList<Binding>(2);
+							partialMatches.put(prefixes[i], bindings);
+						}
+						bindings.add(binding);
+					}
+				}
+			}
+		}
+
+		private void addPerfectMatch(TriggerSequence trigger, Binding binding, Set<TriggerSequence> settled) {
+			if (settled.contains(trigger)) {
+				return;
+			}
+			if (isMostActiveScheme(binding)) {
+				perfectMatches.put(trigger, binding);
+				settled.add(trigger);
+				return;
+			}
+			Binding result = perfectMatches.get(trigger);
+			if (result == null || compareSchemes(result.getSchemeId(), binding.getSchemeId()) < 0) {
+				perfectMatches.put(trigger, binding);
+			}
+		}
+
+		ArrayList<Binding> getSequencesFor(ParameterizedCommand parameterizedCommand) {
+			if (sequences == null) {
+				sequences = new HashMap<ParameterizedCommand, ArrayList<Binding>>();
+			}
+			ArrayList<Binding> bindings = sequences.get(parameterizedCommand);
+			if (bindings == null) {
+				bindings = new ArrayList<Binding>();
+				List<Context> contexts = contextSet.getContexts();
+				ListIterator<Context> it = contexts.listIterator(contexts.size());
+				while (it.hasPrevious()) {
+					Context c = it.previous();
+					BindingTable table = getTable(c.getId());
+					if (table != null) {
+						bindings.addAll(table.getSequencesFor(parameterizedCommand));
+					}
+				}
+				Collections.sort(bindings, BindingTable.BEST_SEQUENCE);
+				sequences.put(parameterizedCommand, bindings);
+			}
+			return bindings;
+		}
+	}
+
+	/**
+	 * Merged lookups by context set, least recently used first.
+	 */
+	private final Map<ContextSet, MergedLookup> lookups = new LinkedHashMap<ContextSet, MergedLookup>(16, 0.75f,
+			true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ContextSet, MergedLookup> eldest) {
+			return size() > MAX_LOOKUPS;
+		}
+	};
+
+	/**
+	 * The {@link BindingTable#getModCount()} the lookups were built for.
+	 */
+	private int lookupsModCount;
+
 	public void addTable(BindingTable table) {
 		String contextId = getTableId(table.getId());
 		if (eclipseContext.containsKey(contextId)) {
@@ -43,6 +151,7 @@ public class BindingTableManager {
 			//			throw new IllegalArgumentException("Already contains table " + contextId); //$NON-NLS-1$
 		}
 		eclipseContext.set(contextId, table);
+		BindingTable.changed();
 		final List<Context> contexts = definedTables.getContexts();
 		if (!contexts.contains(table.getTableId())) {
 			// this is only valid because I'm throwing away the old definedTables contextSet
@@ -61,6 +170,7 @@ public class BindingTableManager {
 			throw new IllegalArgumentException("Does not contains table " + contextId); //$NON-NLS-1$
 		}
 		eclipseContext.remove(contextId);
+		BindingTable.changed();
 		final List<Context> contexts = definedTables.getContexts();
 		if (contexts.contains(table.getTableId())) {
 			// this is only valid because I'm throwing away the old definedTables contextSet
@@ -90,6 +200,27 @@ public class BindingTableManager {
 		return new ContextSet(contexts);
 	}
 
+	/**
+	 * Returns the merged lookup of the given context set, building it if the
+	 * context set was not looked up since tables, bindings or the active
+	 * schemes changed.
+	 */
+	private MergedLookup getLookup(ContextSet contextSet) {
+		if (lookupsModCount != BindingTable.getModCount()) {
+			lookups.clear();
+			lookupsModCount = BindingTable.getModCount();
+		}
+		MergedLookup lookup = lookups.get(contextSet);
+		if (lookup == null) {
+			// copy the contexts, the list of a context set can be changed
+			// and it is the key of the lookup
+			ContextSet key = new ContextSet(contextSet.getContexts());
+			lookup = new MergedLookup(key);
+			lookups.put(key, lookup);
+		}
+		return lookup;
+	}
+
 	public Collection<Binding> getConflictsFor(ContextSet contextSet,
 			TriggerSequence triggerSequence) {
 		Collection<Binding> matches = new ArrayList<Binding>();
@@ -120,31 +251,7 @@ public class BindingTableManager {
 	}
 
 	public Binding getPerfectMatch(ContextSet contextSet, TriggerSequence triggerSequence) {
-		Binding result = null;
-		Binding currentResult = null;
-		List<Context> contexts = contextSet.getContexts();
-		ListIterator<Context> it = contexts.listIterator(contexts.size());
-		while (it.hasPrevious()) {
-			Context c = it.previous();
-			BindingTable table = getTable(c.getId());
-			if (table != null) {
-				currentResult = table.getPerfectMatch(triggerSequence);
-			}
-			if (currentResult != null) {
-				if (isMostActiveScheme(currentResult)) {
-					return currentResult;
-				}
-				if (result == null) {
-					result = currentResult;
-				} else {
-					int rc = compareSchemes(result.getSchemeId(), currentResult.getSchemeId());
-					if (rc < 0) {
-						result = currentResult;
-					}
-				}
-			}
-		}
-		return result;
+		return getLookup(contextSet).perfectMatches.get(triggerSequence);
 	}
 
 	/**
@@ -161,8 +268,7 @@ public class BindingTableManager {
 
 	public Binding getBestSequenceFor(ContextSet contextSet,
 			ParameterizedCommand parameterizedCommand) {
-		ArrayList<Binding> bindings = (ArrayList<Binding>) getSequencesFor(contextSet,
-				parameterizedCommand);
+		ArrayList<Binding> bindings = getLookup(contextSet).getSequencesFor(parameterizedCommand);
 		if (bindings.size() == 0) {
 			return null;
 		}
@@ -171,21 +277,7 @@ public class BindingTableManager {
 
 	public Collection<Binding> getSequencesFor(ContextSet contextSet,
 			ParameterizedCommand parameterizedCommand) {
-		ArrayList<Binding> bindings = new ArrayList<Binding>();
-		List<Context> contexts = contextSet.getContexts();
-		ListIterator<Context> it = contexts.listIterator(contexts.size());
-		while (it.hasPrevious()) {
-			Context c = it.previous();
-			BindingTable table = getTable(c.getId());
-			if (table != null) {
-				Collection<Binding> sequences = table.getSequencesFor(parameterizedCommand);
-				if (sequences != null) {
-					bindings.addAll(sequences);
-				}
-			}
-		}
-		Collections.sort(bindings, BindingTable.BEST_SEQUENCE);
-		return bindings;
+		return new ArrayList<Binding>(getLookup(contextSet).getSequencesFor(parameterizedCommand));
 	}
 
 	public Collection<Binding> getBindingsFor(ContextSet contextSet, ParameterizedCommand cmd) {
@@ -203,35 +295,12 @@ public class BindingTableManager {
 	}
 
 	public boolean isPartialMatch(ContextSet contextSet, TriggerSequence sequence) {
-		List<Context> contexts = contextSet.getContexts();
-		ListIterator<Context> it = contexts.listIterator(contexts.size());
-		while (it.hasPrevious()) {
-			Context c = it.previous();
-			BindingTable table = getTable(c.getId());
-			if (table != null) {
-				if (table.isPartialMatch(sequence)) {
-					return true;
-				}
-			}
-		}
-		return false;
+		return getLookup(contextSet).partialMatches.containsKey(sequence);
 	}
 
 	public Collection<Binding> getPartialMatches(ContextSet contextSet, TriggerSequence sequence) {
-		ArrayList<Binding> bindings = new ArrayList<Binding>();
-		List<Context> contexts = contextSet.getContexts();
-		ListIterator<Context> it = contexts.listIterator(contexts.size());
-		while (it.hasPrevious()) {
-			Context c = it.previous();
-			BindingTable table = getTable(c.getId());
-			if (table != null) {
-				Collection<Binding> partialMatches = table.getPartialMatches(sequence);
-				if (partialMatches != null) {
-					bindings.addAll(partialMatches);
-				}
-			}
-		}
-		return bindings;
+		ArrayList<Binding> bindings = getLookup(contextSet).partialMatches.get(sequence);
+		return bindings == null ? new ArrayList<Binding>() : new ArrayList<Binding>(bindings);
 	}
 
 	/**
@@ -240,6 +309,7 @@ public class BindingTableManager {
 	public void setActiveSchemes(String[] activeSchemeIds) {
 		this.activeSchemeIds = activeSchemeIds;
 		BindingTable.BEST_SEQUENCE.setActiveSchemes(activeSchemeIds);
+		BindingTable.changed();
 	}
 
 	/*
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2016 Angelo Zerr and others.
+ * Copyright (c) 2008, 2017 Angelo Zerr and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -63,4 +63,20 @@ public interface ICSSPropertyHandler {
 		return null;
 	}
 
+	/**
+	 * Return true if the engine may skip applying CSS Property
+	 * <code>property</code> to the <code>element</code> again while its CSS
+	 * value is the one this handler applied last. Handlers which apply the
+	 * value to objects that can be replaced, like the renderer of a widget,
+	 * return false. The default implementation returns true.
+	 *
+	 * @param element
+	 * @param property
+	 *            CSS Property
+	 * @return true if an unchanged value needs not be applied again
+	 */
+	default public boolean canSkipUnchangedValue(Object element, String property) {
+		return true;
+	}
+
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2013 Angelo Zerr and others.
+ * Copyright (c) 2008, 2017 Angelo Zerr and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -221,6 +221,40 @@ public interface CSSEngine {
 	public void applyStyles(Object node, boolean applyStylesToChildNodes,
 			boolean computeDefaultStyle);
 
+	/**
+	 * Marks the styles of the Object node as out of date, because its class,
+	 * id, pseudo state or parent changed. The node and the child nodes whose
+	 * styles depend on it are restyled by {@link #applyInvalidatedStyles()},
+	 * so that several changes are applied at once. The default implementation
+	 * applies styles to the node and its child nodes immediately.
+	 *
+	 * @param node
+	 */
+	public default void invalidateStyles(Object node) {
+		applyStyles(node, true);
+	}
+
+	/**
+	 * Apply styles to the nodes passed to {@link #invalidateStyles(Object)}
+	 * since the last call, and to their child nodes whose styles depend on
+	 * them.
+	 */
+	public default void applyInvalidatedStyles() {
+	}
+
+	/**
+	 * Apply styles to the Object node, whose class, id, pseudo state or
+	 * parent changed, and to its child nodes whose styles depend on it right
+	 * away. Unlike {@link #invalidateStyles(Object)}, the node is not
+	 * restyled together with the other invalidated nodes. The default
+	 * implementation applies styles to the node and its child nodes.
+	 *
+	 * @param node
+	 */
+	public default void reapplyStyles(Object node) {
+		applyStyles(node, true);
+	}
+
 	/*--------------- Apply style declaration -----------------*/
 
 	/**
@@ -0,0 +1,469 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.ui.css.core.impl.dom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.e4.ui.css.core.dom.CSSStylableElement;
+import org.eclipse.e4.ui.css.core.dom.ExtendedCSSRule;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSClassConditionImpl;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSIdConditionImpl;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSPseudoClassConditionImpl;
+import org.eclipse.e4.ui.css.core.impl.sac.ExtendedSelector;
+import org.w3c.css.sac.AttributeCondition;
+import org.w3c.css.sac.CombinatorCondition;
+import org.w3c.css.sac.Condition;
+import org.w3c.css.sac.ConditionalSelector;
+import org.w3c.css.sac.DescendantSelector;
+import org.w3c.css.sac.ElementSelector;
+import org.w3c.css.sac.Selector;
+import org.w3c.css.sac.SelectorList;
+import org.w3c.css.sac.SiblingSelector;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.css.CSSRule;
+import org.w3c.dom.css.CSSRuleList;
+import org.w3c.dom.css.CSSStyleDeclaration;
+import org.w3c.dom.css.CSSStyleRule;
+import org.w3c.dom.css.CSSStyleSheet;
+import org.w3c.dom.css.CSSValue;
+import org.w3c.dom.stylesheets.StyleSheet;
+import org.w3c.dom.stylesheets.StyleSheetList;
+
+/**
+ * Index of the selectors of the style rules of a {@link StyleSheetList}. Each
+ * selector is filed under the id, class or element name required by its
+ * rightmost simple selector, in that order of preference, so that only the
+ * selectors which can possibly match an element have to be tested.
+ */
+final class StyleRuleIndex {
+
+	/**
+	 * A selector of a style rule.
+	 */
+	static final class Entry {
+
+		final ExtendedSelector selector;
+
+		final CSSStyleRule rule;
+
+		/**
+		 * The position of the selector in the style sheets.
+		 */
+		final int order;
+
+		/**
+		 * Whether the selector only depends on the names, ids and classes of
+		 * the element and its ancestors, and on the pseudo classes in
+		 * {@link #pseudoClasses}.
+		 */
+		final boolean shareable;
+
+		/**
+		 * Whether the selector tests the ancestors of the element.
+		 */
+		boolean testsAncestors;
+
+		/**
+		 * The pseudo classes tested on the element itself.
+		 */
+		final List<String> pseudoClasses = new ArrayList<>(0);
+
+		/**
+		 * Whether the selector tests the siblings of the element or of one of
+		 * its ancestors.
+		 */
+		final boolean testsSiblings;
+
+		/**
+		 * Whether the style of the rule inherits a property value from the
+		 * parent of the element.
+		 */
+		final boolean inheritsValues;
+
+		Entry(ExtendedSelector selector, CSSStyleRule rule, int order) {
+			this.selector = selector;
+			this.rule = rule;
+			this.order = order;
+			this.shareable = isShareable(selector, true);
+			this.testsSiblings = testsSiblings(selector);
+			this.inheritsValues = inheritsValues(rule.getStyle());
+		}
+
+		/**
+		 * Returns whether the element matched by the selector has to be
+		 * restyled when one of its ancestors changes.
+		 */
+		boolean dependsOnAncestors() {
+			return testsAncestors || inheritsValues || !shareable;
+		}
+
+		private static boolean testsSiblings(Selector selector) {
+			if (selector instanceof SiblingSelector) {
+				return true;
+			}
+			if (selector instanceof DescendantSelector) {
+				DescendantSelector descendant = (DescendantSelector) selector;
+				return testsSiblings(descendant.getAncestorSelector())
+						|| testsSiblings(descendant.getSimpleSelector());
+			}
+			return false;
+		}
+
+		private static boolean inheritsValues(CSSStyleDeclaration style) {
+			for (int i = 0, length = style.getLength(); i < length; i++) {
+				CSSValue value = style.getPropertyCSSValue(style.item(i));
+				if (value != null && "inherit".equals(value.getCssText())) { //$NON-NLS-1$
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private boolean isShareable(Selector selector, boolean self) {
+			switch (selector.getSelectorType()) {
+			case Selector.SAC_ELEMENT_NODE_SELECTOR:
+				return ((ElementSelector) selector).getNamespaceURI() == null;
+			case Selector.SAC_PSEUDO_ELEMENT_SELECTOR:
+				// only depends on the requested pseudo element
+				return self;
+			case Selector.SAC_CONDITIONAL_SELECTOR:
+				ConditionalSelector conditional = (ConditionalSelector) selector;
+				return isShareable(conditional.getSimpleSelector(), self)
+						&& isShareable(conditional.getCondition(), self);
+			case Selector.SAC_DESCENDANT_SELECTOR:
+			case Selector.SAC_CHILD_SELECTOR:
+				testsAncestors = true;
+				DescendantSelector descendant = (DescendantSelector) selector;
+				return isShareable(descendant.getAncestorSelector(), false)
+						&& isShareable(descendant.getSimpleSelector(), self);
+			default:
+				return false;
+			}
+		}
+
+		private boolean isShareable(Condition condition, boolean self) {
+			if (condition instanceof CSSIdConditionImpl || condition instanceof CSSClassConditionImpl) {
+				return true;
+			}
+			if (condition instanceof CSSPseudoClassConditionImpl) {
+				// the state of the ancestors is not part of the signature
+				if (self) {
+					pseudoClasses.add(((CSSPseudoClassConditionImpl) condition).getValue());
+				}
+				return self;
+			}
+			if (condition.getConditionType() == Condition.SAC_AND_CONDITION) {
+				CombinatorCondition combinator = (CombinatorCondition) condition;
+				return isShareable(combinator.getFirstCondition(), self)
+						&& isShareable(combinator.getSecondCondition(), self);
+			}
+			return false;
+		}
+	}
+
+	private static final Comparator<Entry> ORDER = (entry1, entry2) -> Integer.compare(entry1.order, entry2.order);
+
+	private final Map<String, List<Entry>> ids = new HashMap<>();
+
+	private final Map<String, List<Entry>> classes = new HashMap<>();
+
+	private final Map<String, List<Entry>> localNames = new HashMap<>();
+
+	/**
+	 * Selectors which may match any element.
+	 */
+	private final List<Entry> universal = new ArrayList<>();
+
+	/**
+	 * The indexed style sheets and their number of rules, to detect changes.
+	 */
+	private final StyleSheet[] styleSheets;
+
+	private final int[] ruleCounts;
+
+	/**
+	 * Whether one of the selectors tests siblings.
+	 */
+	private boolean testsSiblings;
+
+	StyleRuleIndex(StyleSheetList styleSheetList) {
+		int length = styleSheetList.getLength();
+		styleSheets = new StyleSheet[length];
+		ruleCounts = new int[length];
+		int order = 0;
+		for (int i = 0; i < length; i++) {
+			CSSStyleSheet styleSheet = (CSSStyleSheet) styleSheetList.item(i);
+			styleSheets[i] = styleSheet;
+			CSSRuleList rules = styleSheet.getCssRules();
+			int rulesSize = rules.getLength();
+			ruleCounts[i] = rulesSize;
+			for (int j = 0; j < rulesSize; j++) {
+				CSSRule rule = rules.item(j);
+				if (rule.getType() != CSSRule.STYLE_RULE || !(rule instanceof ExtendedCSSRule)) {
+					continue;
+				}
+				SelectorList selectorList = ((ExtendedCSSRule) rule).getSelectorList();
+				for (int k = 0, l = selectorList.getLength(); k < l; k++) {
+					Selector selector = selectorList.item(k);
+					if (selector instanceof ExtendedSelector) {
+						add(new Entry((ExtendedSelector) selector, (CSSStyleRule) rule, order++));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns whether this index still reflects the given style sheets.
+	 */
+	boolean isUpToDate(StyleSheetList styleSheetList) {
+		int length = styleSheetList.getLength();
+		if (length != styleSheets.length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			StyleSheet styleSheet = styleSheetList.item(i);
+			if (styleSheet != styleSheets[i]
+					|| ((CSSStyleSheet) styleSheet).getCssRules().getLength() != ruleCounts[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether one of the indexed selectors tests the siblings of an
+	 * element, so that changing an element may change the style of its
+	 * following siblings.
+	 */
+	boolean testsSiblings() {
+		return testsSiblings;
+	}
+
+	/**
+	 * Returns whether the style of an element with the given candidate
+	 * selectors may change when one of its ancestors changes.
+	 */
+	static boolean dependsOnAncestors(List<Entry> candidates) {
+		for (Entry candidate : candidates) {
+			if (candidate.dependsOnAncestors()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void add(Entry entry) {
+		testsSiblings |= entry.testsSiblings;
+		Selector selector = entry.selector;
+		// only the rightmost simple selector applies to the element itself
+		while (true) {
+			if (selector instanceof DescendantSelector) {
+				selector = ((DescendantSelector) selector).getSimpleSelector();
+			} else if (selector instanceof SiblingSelector) {
+				selector = ((SiblingSelector) selector).getSiblingSelector();
+			} else {
+				break;
+			}
+		}
+		Condition condition = null;
+		if (selector instanceof ConditionalSelector) {
+			condition = ((ConditionalSelector) selector).getCondition();
+			selector = ((ConditionalSelector) selector).getSimpleSelector();
+		}
+		String id = findConditionValue(condition, CSSIdConditionImpl.class);
+		if (id != null) {
+			addTo(ids, id, entry);
+			return;
+		}
+		String className = findConditionValue(condition, CSSClassConditionImpl.class);
+		if (className != null && !containsSpace(className)) {
+			addTo(classes, className, entry);
+			return;
+		}
+		if (selector.getSelectorType() == Selector.SAC_ELEMENT_NODE_SELECTOR) {
+			String localName = ((ElementSelector) selector).getLocalName();
+			if (localName != null) {
+				addTo(localNames, localName, entry);
+				return;
+			}
+		}
+		universal.add(entry);
+	}
+
+	private static void addTo(Map<String, List<Entry>> map, String key, Entry entry) {
+		List<Entry> entries = map.get(key);
+		if (entries == null) {
+			entries = new ArrayList<>(2);
+			map.put(key, entries);
+		}
+		entries.add(entry);
+	}
+
+	/**
+	 * Returns the value of the first condition of the given type which must
+	 * hold for the given condition to hold.
+	 */
+	private static String findConditionValue(Condition condition, Class<?> type) {
+		if (type.isInstance(condition)) {
+			return ((AttributeCondition) condition).getValue();
+		}
+		if (condition != null && condition.getConditionType() == Condition.SAC_AND_CONDITION) {
+			CombinatorCondition combinator = (CombinatorCondition) condition;
+			String value = findConditionValue(combinator.getFirstCondition(), type);
+			return value != null ? value : findConditionValue(combinator.getSecondCondition(), type);
+		}
+		return null;
+	}
+
+	private static boolean containsSpace(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			if (Character.isSpaceChar(value.charAt(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the selectors which may match the given element, in style sheet
+	 * order.
+	 */
+	List<Entry> getCandidates(Element element) {
+		List<Entry> candidates = new ArrayList<>(universal);
+		int buckets = candidates.isEmpty() ? 0 : 1;
+
+		String localName = element.getPrefix() == null ? element.getNodeName() : element.getLocalName();
+		buckets += addAll(candidates, localNames.get(localName));
+
+		String id;
+		String classes;
+		if (element instanceof CSSStylableElement) {
+			id = ((CSSStylableElement) element).getCSSId();
+			classes = ((CSSStylableElement) element).getCSSClass();
+		} else {
+			id = element.getAttribute("id"); //$NON-NLS-1$
+			classes = element.getAttribute("class"); //$NON-NLS-1$
+		}
+		if (id != null) {
+			buckets += addAll(candidates, ids.get(id));
+		}
+		if (classes != null && !this.classes.isEmpty()) {
+			buckets += addClassCandidates(candidates, classes);
+		}
+
+		if (buckets > 1) {
+			Collections.sort(candidates, ORDER);
+		}
+		return candidates;
+	}
+
+	/**
+	 * Returns a key identifying the computed style of the given element, or
+	 * <code>null</code> if one of the candidate selectors depends on more
+	 * than the names, ids and classes of the element and its ancestors, and
+	 * on the pseudo classes of the element. Elements with the same key match
+	 * the same selectors.
+	 */
+	static String getStyleSignature(Element element, String pseudoElt, List<Entry> candidates) {
+		StringBuilder signature = new StringBuilder();
+		signature.append(pseudoElt == null ? "\u0001" : pseudoElt); //$NON-NLS-1$
+		appendElement(signature, element);
+		boolean testsAncestors = false;
+		for (Entry candidate : candidates) {
+			if (!candidate.shareable) {
+				return null;
+			}
+			testsAncestors |= candidate.testsAncestors;
+			if (!candidate.pseudoClasses.isEmpty() && element instanceof CSSStylableElement) {
+				CSSStylableElement stylableElement = (CSSStylableElement) element;
+				for (String pseudoClass : candidate.pseudoClasses) {
+					signature.append(stylableElement.isPseudoInstanceOf(pseudoClass) ? '+' : '-');
+					signature.append(stylableElement.isStaticPseudoInstance(pseudoClass) ? '+' : '-');
+				}
+			}
+		}
+		if (testsAncestors) {
+			for (Node node = element.getParentNode(); node != null; node = node.getParentNode()) {
+				if (node.getNodeType() == Node.ELEMENT_NODE) {
+					appendElement(signature, (Element) node);
+				}
+			}
+		}
+		return signature.toString();
+	}
+
+	private static void appendElement(StringBuilder signature, Element element) {
+		String id;
+		String classes;
+		if (element instanceof CSSStylableElement) {
+			id = ((CSSStylableElement) element).getCSSId();
+			classes = ((CSSStylableElement) element).getCSSClass();
+		} else {
+			id = element.getAttribute("id"); //$NON-NLS-1$
+			classes = element.getAttribute("class"); //$NON-NLS-1$
+		}
+		signature.append('\u0000').append(element.getPrefix() == null ? element.getNodeName() : element.getLocalName());
+		signature.append('\u0000').append(id == null ? "" : id); //$NON-NLS-1$
+		signature.append('\u0000').append(classes == null ? "" : classes); //$NON-NLS-1$
+	}
+
+	private int addClassCandidates(List<Entry> candidates, String classes) {
+		int buckets = 0;
+		int length = classes.length();
+		int start = 0;
+		while (start < length) {
+			while (start < length && Character.isSpaceChar(classes.charAt(start))) {
+				start++;
+			}
+			int end = start;
+			while (end < length && !Character.isSpaceChar(classes.charAt(end))) {
+				end++;
+			}
+			if (end > start) {
+				String className = classes.substring(start, end);
+				if (!isRepeated(classes, start, className)) {
+					buckets += addAll(candidates, this.classes.get(className));
+				}
+			}
+			start = end;
+		}
+		return buckets;
+	}
+
+	/**
+	 * Returns whether the class name starting at the given index already
+	 * occurred earlier in the class attribute.
+	 */
+	private static boolean isRepeated(String classes, int index, String className) {
+		int valueLength = className.length();
+		for (int i = classes.indexOf(className); i != -1 && i < index; i = classes.indexOf(className, i + 1)) {
+			if ((i == 0 || Character.isSpaceChar(classes.charAt(i - 1))) && (i + valueLength == classes.length()
+					|| Character.isSpaceChar(classes.charAt(i + valueLength)))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int addAll(List<Entry> candidates, List<Entry> entries) {
+		if (entries == null) {
+			return 0;
+		}
+		candidates.addAll(entries);
+		return 1;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2015 Angelo Zerr and others.
+ * Copyright (c) 2008, 2017 Angelo Zerr and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,17 +14,18 @@
 package org.eclipse.e4.ui.css.core.impl.dom;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import org.eclipse.e4.ui.css.core.dom.ExtendedCSSRule;
+import org.eclipse.e4.ui.css.core.impl.engine.CSSEngineProfile;
 import org.eclipse.e4.ui.css.core.impl.sac.ExtendedSelector;
 import org.w3c.css.sac.Selector;
 import org.w3c.css.sac.SelectorList;
 import org.w3c.dom.Element;
 import org.w3c.dom.css.CSSRule;
-import org.w3c.dom.css.CSSRuleList;
 import org.w3c.dom.css.CSSStyleDeclaration;
 import org.w3c.dom.css.CSSStyleRule;
-import org.w3c.dom.css.CSSStyleSheet;
 import org.w3c.dom.css.DocumentCSS;
 import org.w3c.dom.css.ViewCSS;
 import org.w3c.dom.stylesheets.StyleSheetList;
@@ -38,6 +39,47 @@ public class ViewCSSImpl implements ViewCSS {
 
 	protected DocumentCSS documentCSS;
 
+	/**
+	 * The selectors of the style sheets of {@link #documentCSS}, rebuilt when
+	 * the style sheets change.
+	 */
+	private StyleRuleIndex ruleIndex;
+
+	/**
+	 * The maximum number of style signatures to remember computed styles for.
+	 */
+	private static final int MAX_SHARED_STYLES = 2048;
+
+	/**
+	 * Marks signatures of elements without style.
+	 */
+	private static final CSSStyleDeclaration NO_STYLE = new CSSStyleDeclarationImpl(null);
+
+	/**
+	 * Computed styles by style signature, least recently used first. Cleared
+	 * when the style sheets change.
+	 */
+	private final Map<String, CSSStyleDeclaration> sharedStyles = new LinkedHashMap<String, CSSStyleDeclaration>(
+			64, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CSSStyleDeclaration> eldest) {
+			return size() > MAX_SHARED_STYLES;
+		}
+	};
+
+	private long sharedStyleHits;
+
+	private long sharedStyleMisses;
+
+	private long unsharedStyles;
+
+	/**
+	 * The profile recording selector matches, or <code>null</code>.
+	 */
+	private CSSEngineProfile profile;
+
 	/**
 	 * Creates a new ViewCSS.
 	 */
@@ -59,23 +101,123 @@ public class ViewCSSImpl implements ViewCSS {
 	 */
 	@Override
 	public CSSStyleDeclaration getComputedStyle(Element elt, String pseudoElt) {
-		// Loop over the CSS styleSheet list
-		StyleSheetList styleSheetList = documentCSS.getStyleSheets();
-		int l = styleSheetList.getLength();
-
-		List<CSSRule> combinedRuleList = new ArrayList<>();
-		for (int i = 0; i < l; i++) {
-			CSSStyleSheet styleSheet = (CSSStyleSheet) styleSheetList.item(i);
+		List<StyleRuleIndex.Entry> candidates = getRuleIndex().getCandidates(elt);
+		// elements with the same signature, like the items of a tool bar,
+		// share their computed style
+		String signature = StyleRuleIndex.getStyleSignature(elt, pseudoElt, candidates);
+		if (signature == null) {
+			unsharedStyles++;
+			return computeStyle(candidates, elt, pseudoElt, profile);
+		}
+		CSSStyleDeclaration style = sharedStyles.get(signature);
+		if (style != null) {
+			sharedStyleHits++;
+			return style == NO_STYLE ? null : style;
+		}
+		sharedStyleMisses++;
+		style = computeStyle(candidates, elt, pseudoElt, profile);
+		sharedStyles.put(signature, style == null ? NO_STYLE : style);
+		return style;
+	}
 
-			CSSRuleList styleSheetRules = styleSheet.getCssRules();
-			int rulesSize = styleSheetRules.getLength();
-			for (int j = 0; j < rulesSize; j++) {
-				combinedRuleList.add(styleSheetRules.item(j));
+	private static CSSStyleDeclaration computeStyle(List<StyleRuleIndex.Entry> candidates, Element elt,
+			String pseudoElt, CSSEngineProfile profile) {
+		List<StyleWrapper> styleDeclarations = new ArrayList<>(4);
+		int position = 0;
+		for (StyleRuleIndex.Entry entry : candidates) {
+			boolean matched;
+			if (profile != null) {
+				long start = System.nanoTime();
+				matched = entry.selector.match(elt, pseudoElt);
+				profile.selectorMatched(entry.selector, matched, System.nanoTime() - start);
+			} else {
+				matched = entry.selector.match(elt, pseudoElt);
+			}
+			if (matched) {
+				styleDeclarations.add(
+						new StyleWrapper(entry.rule.getStyle(), entry.selector.getSpecificity(), position++));
 			}
 		}
+		return getComputedStyle(styleDeclarations);
+	}
 
-		CSSStyleDeclaration styleDeclaration = getComputedStyle(combinedRuleList, elt, pseudoElt);
-		return styleDeclaration;
+	/**
+	 * Returns the index of the selectors of the style sheets, rebuilding it if
+	 * style sheets were added or removed since it was built.
+	 */
+	private StyleRuleIndex getRuleIndex() {
+		StyleSheetList styleSheetList = documentCSS.getStyleSheets();
+		if (ruleIndex == null || !ruleIndex.isUpToDate(styleSheetList)) {
+			ruleIndex = new StyleRuleIndex(styleSheetList);
+			sharedStyles.clear();
+		}
+		return ruleIndex;
+	}
+
+	/**
+	 * Returns whether the computed style of the given element may change when
+	 * the name, id, class or state of one of its ancestors changes, or when
+	 * the element is moved to another parent.
+	 *
+	 * @param elt
+	 *            the element
+	 * @return <code>true</code> if the element has to be restyled with its
+	 *         ancestors
+	 */
+	public boolean dependsOnAncestors(Element elt) {
+		return StyleRuleIndex.dependsOnAncestors(getRuleIndex().getCandidates(elt));
+	}
+
+	/**
+	 * Returns whether one of the style rules tests the siblings of an
+	 * element, so that the computed style of an element may change when one
+	 * of its preceding siblings changes.
+	 *
+	 * @return <code>true</code> if sibling selectors are used
+	 */
+	public boolean hasSiblingSelectors() {
+		return getRuleIndex().testsSiblings();
+	}
+
+	/**
+	 * Sets the profile recording the selector matches of this view.
+	 *
+	 * @param profile
+	 *            the profile, or <code>null</code> to stop recording
+	 */
+	public void setProfile(CSSEngineProfile profile) {
+		this.profile = profile;
+	}
+
+	/**
+	 * Returns the number of computed styles which were shared with an
+	 * element with the same style signature.
+	 *
+	 * @return the number of shared style hits
+	 */
+	public long getSharedStyleHits() {
+		return sharedStyleHits;
+	}
+
+	/**
+	 * Returns the number of computed styles which were computed and
+	 * remembered for elements with the same style signature.
+	 *
+	 * @return the number of shared style misses
+	 */
+	public long getSharedStyleMisses() {
+		return sharedStyleMisses;
+	}
+
+	/**
+	 * Returns the number of computed styles which could not be shared because
+	 * a matching selector depends on attributes, siblings or the state of
+	 * ancestors.
+	 *
+	 * @return the number of unshared computed styles
+	 */
+	public long getUnsharedStyles() {
+		return unsharedStyles;
 	}
 
 	public CSSStyleDeclaration getComputedStyle(List<CSSRule> ruleList, Element elt, String pseudoElt) {
@@ -136,4 +278,17 @@ public class ViewCSSImpl implements ViewCSS {
 		}
 		return null;
 	}
+
+	private static CSSStyleDeclaration getComputedStyle(List<StyleWrapper> styleDeclarations) {
+		switch (styleDeclarations.size()) {
+		case 0:
+			return null;
+		case 1:
+			return styleDeclarations.get(0).style;
+		default:
+			// There is several Style Declarations which match
+			// the element, merge the CSS Property value.
+			return new CSSComputedStyleImpl(styleDeclarations);
+		}
+	}
 }
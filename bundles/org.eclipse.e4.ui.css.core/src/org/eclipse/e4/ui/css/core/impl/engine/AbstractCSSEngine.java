@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2015 Angelo Zerr and others.
+ * Copyright (c) 2008, 2017 Angelo Zerr and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -27,6 +27,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -54,6 +55,7 @@ import org.eclipse.e4.ui.css.core.impl.dom.CSSStyleSheetImpl;
 import org.eclipse.e4.ui.css.core.impl.dom.DocumentCSSImpl;
 import org.eclipse.e4.ui.css.core.impl.dom.ViewCSSImpl;
 import org.eclipse.e4.ui.css.core.impl.sac.ExtendedSelector;
+import org.eclipse.e4.ui.css.core.resources.AbstractResourcesRegistry;
 import org.eclipse.e4.ui.css.core.resources.IResourcesRegistry;
 import org.eclipse.e4.ui.css.core.resources.ResourceRegistryKeyFactory;
 import org.eclipse.e4.ui.css.core.util.impl.resources.ResourcesLocatorManager;
@@ -123,6 +125,50 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 
 	protected boolean computeDefaultStyle = false;
 
+	/**
+	 * Whether styles are being applied from {@link #traceApplyStyles}.
+	 */
+	private boolean tracingStyles;
+
+	/**
+	 * The profile recording the timings of the engine, or <code>null</code>.
+	 */
+	private CSSEngineProfile profile;
+
+	/**
+	 * Whether styles are being applied from {@link #profileApplyStyles}.
+	 */
+	private boolean profilingStyles;
+
+	/**
+	 * Elements passed to {@link #invalidateStyles(Object)} since styles were
+	 * last applied to invalidated elements.
+	 */
+	private Set<Element> invalidElements = new LinkedHashSet<>();
+
+	/**
+	 * Whether {@link #scheduleInvalidatedStyles()} was called and
+	 * {@link #applyInvalidatedStyles()} has not run since.
+	 */
+	private boolean invalidatedStylesScheduled;
+
+	/**
+	 * Whether styles of elements which are not shown are applied when they
+	 * are shown.
+	 */
+	private boolean deferHiddenStyles;
+
+	/**
+	 * The element being styled from {@link #applyDeferredStyles(Object)}.
+	 */
+	private Element deferredElement;
+
+	/**
+	 * The number of nested {@link #applyStyles(Object, boolean, boolean)}
+	 * calls styling child nodes.
+	 */
+	private int childStylesDepth;
+
 	private Map<Object, CSSElementContext> elementsContext = null;
 
 	/**
@@ -141,6 +187,45 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 
 	private Map<String, String> currentCSSPropertiesApplyed;
 
+	/**
+	 * The CSS text of a property value applied to an element, and the handler
+	 * which applied it.
+	 */
+	private static final class AppliedValue {
+		final String cssText;
+
+		final ICSSPropertyHandler handler;
+
+		AppliedValue(String cssText, ICSSPropertyHandler handler) {
+			this.cssText = cssText;
+			this.handler = handler;
+		}
+	}
+
+	/**
+	 * Key of the {@link CSSElementContext} data holding the
+	 * {@link AppliedValue}s last applied to the element, by property and
+	 * pseudo instance.
+	 */
+	private static final String APPLIED_VALUES_KEY = "org.eclipse.e4.ui.css.core.engine.APPLIED_VALUES_KEY"; //$NON-NLS-1$
+
+	/**
+	 * Key of the {@link CSSElementContext} data holding the resources, like
+	 * colors and fonts, converted by the property handlers which applied the
+	 * values of {@link #APPLIED_VALUES_KEY}.
+	 */
+	private static final String APPLIED_RESOURCES_KEY = "org.eclipse.e4.ui.css.core.engine.APPLIED_RESOURCES_KEY"; //$NON-NLS-1$
+
+	/**
+	 * The resources converted by the running property handler, or
+	 * <code>null</code> if they cannot be attributed to an element.
+	 */
+	private List<Object> convertedResources;
+
+	private long appliedProperties;
+
+	private long skippedProperties;
+
 	private boolean throwError;
 
 	private Map<Object, ICSSValueConverter> valueConverters = null;
@@ -149,6 +234,12 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 
 	private ResourceRegistryKeyFactory keyFactory;
 
+	/**
+	 * Cache of compiled style sheets, or <code>null</code> to always parse
+	 * style sheets.
+	 */
+	private StyleSheetCache styleSheetCache;
+
 	public AbstractCSSEngine() {
 		this(new DocumentCSSImpl());
 	}
@@ -157,6 +248,9 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 		this.documentCSS = documentCSS;
 		this.viewCSS = new ViewCSSImpl(documentCSS);
 		keyFactory = new ResourceRegistryKeyFactory();
+		if (Policy.DEBUG_PROFILE) {
+			setProfile(new CSSEngineProfile());
+		}
 	}
 
 	/*--------------- Parse style sheet -----------------*/
@@ -180,7 +274,8 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 		// Check that CharacterStream or ByteStream is not null
 		checkInputSource(source);
 		CSSParser parser = makeCSSParser();
-		CSSStyleSheet styleSheet = parser.parseStyleSheet(source);
+		CSSStyleSheet styleSheet = styleSheetCache != null ? styleSheetCache.parseStyleSheet(parser, source)
+				: parser.parseStyleSheet(source);
 
 		CSSRuleList rules = styleSheet.getCssRules();
 		int length = rules.getLength();
@@ -247,6 +342,26 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 		return s;
 	}
 
+	/**
+	 * Sets the cache used to avoid parsing the same style sheets again.
+	 *
+	 * @param styleSheetCache
+	 *            the cache of compiled style sheets, or <code>null</code> to
+	 *            always parse style sheets
+	 */
+	public void setStyleSheetCache(StyleSheetCache styleSheetCache) {
+		this.styleSheetCache = styleSheetCache;
+	}
+
+	/**
+	 * Returns the cache used to avoid parsing the same style sheets again.
+	 *
+	 * @return the cache of compiled style sheets, or <code>null</code>
+	 */
+	public StyleSheetCache getStyleSheetCache() {
+		return styleSheetCache;
+	}
+
 	/**
 	 * Return true if <code>source</code> is valid and false otherwise.
 	 *
@@ -366,17 +481,34 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 	@Override
 	public void applyStyles(Object element, boolean applyStylesToChildNodes,
 			boolean computeDefaultStyle) {
+		if (Policy.DEBUG_STYLE_CACHE && !tracingStyles) {
+			traceApplyStyles(element, applyStylesToChildNodes, computeDefaultStyle);
+			return;
+		}
+		if (profile != null && !profilingStyles) {
+			profileApplyStyles(element, applyStylesToChildNodes, computeDefaultStyle);
+			return;
+		}
 		Element elt = getElement(element);
 		if (elt != null) {
 			if (!isVisible(elt)) {
 				return;
 			}
+			if (deferHiddenStyles && elt != deferredElement && deferStyles(elt, childStylesDepth == 0)) {
+				// styled when shown
+				return;
+			}
+			if (profile != null) {
+				profile.elementStyled();
+			}
 
 			/*
 			 * Compute new Style to apply.
 			 */
 			CSSStyleDeclaration style = viewCSS.getComputedStyle(elt, null);
 			if (computeDefaultStyle) {
+				// the default style replaces the applied values
+				forgetAppliedValues(elt);
 				if (applyStylesToChildNodes) {
 					this.computeDefaultStyle = computeDefaultStyle;
 				}
@@ -435,8 +567,13 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 				NodeList nodes = elt instanceof ChildVisibilityAwareElement
 						? ((ChildVisibilityAwareElement) elt).getVisibleChildNodes() : elt.getChildNodes();
 				if (nodes != null) {
-					for (int k = 0; k < nodes.getLength(); k++) {
-						applyStyles(nodes.item(k), applyStylesToChildNodes);
+					childStylesDepth++;
+					try {
+						for (int k = 0; k < nodes.getLength(); k++) {
+							applyStyles(nodes.item(k), applyStylesToChildNodes);
+						}
+					} finally {
+						childStylesDepth--;
 					}
 					onStylesAppliedToChildNodes(elt, nodes);
 				}
@@ -445,6 +582,268 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 
 	}
 
+	/**
+	 * Applies styles and reports how many computed styles were shared and how
+	 * many property values did not change.
+	 */
+	private void traceApplyStyles(Object element, boolean applyStylesToChildNodes, boolean computeDefaultStyle) {
+		ViewCSSImpl view = (ViewCSSImpl) viewCSS;
+		long hits = view.getSharedStyleHits();
+		long misses = view.getSharedStyleMisses();
+		long unshared = view.getUnsharedStyles();
+		long applied = appliedProperties;
+		long skipped = skippedProperties;
+		tracingStyles = true;
+		try {
+			applyStyles(element, applyStylesToChildNodes, computeDefaultStyle);
+		} finally {
+			tracingStyles = false;
+		}
+		hits = view.getSharedStyleHits() - hits;
+		misses = view.getSharedStyleMisses() - misses;
+		unshared = view.getUnsharedStyles() - unshared;
+		long total = hits + misses + unshared;
+		Policy.trace("Styled " + element + ": " + total + " computed styles, " + hits + " shared (" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				+ (total == 0 ? 0 : hits * 100 / total) + "%), " + misses + " new signatures, " + unshared //$NON-NLS-1$ //$NON-NLS-2$
+				+ " not shareable, " + (appliedProperties - applied) + " properties applied, " //$NON-NLS-1$ //$NON-NLS-2$
+				+ (skippedProperties - skipped) + " unchanged"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Applies styles and records the number of elements styled from the
+	 * given root.
+	 */
+	private void profileApplyStyles(Object element, boolean applyStylesToChildNodes, boolean computeDefaultStyle) {
+		CSSEngineProfile rootProfile = profile;
+		long elements = rootProfile.getElementsStyled();
+		long start = System.nanoTime();
+		profilingStyles = true;
+		try {
+			applyStyles(element, applyStylesToChildNodes, computeDefaultStyle);
+		} finally {
+			profilingStyles = false;
+		}
+		long nanos = System.nanoTime() - start;
+		elements = rootProfile.getElementsStyled() - elements;
+		rootProfile.rootStyled(element, elements, nanos);
+		if (Policy.DEBUG_PROFILE) {
+			Policy.trace("Styled " + element + ": " + elements + " elements in " + nanos / 1000 + " us"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+
+	/**
+	 * Sets the profile recording the selector matches, the property handler
+	 * calls and the elements styled by this engine. Profiles are set for all
+	 * engines when the <code>debug/profile</code> tracing option is on.
+	 *
+	 * @param profile
+	 *            the profile, or <code>null</code> to stop recording
+	 */
+	public void setProfile(CSSEngineProfile profile) {
+		this.profile = profile;
+		if (viewCSS instanceof ViewCSSImpl) {
+			((ViewCSSImpl) viewCSS).setProfile(profile);
+		}
+	}
+
+	/**
+	 * Returns the profile recording the timings of this engine.
+	 *
+	 * @return the profile, or <code>null</code> if none is recorded
+	 */
+	public CSSEngineProfile getProfile() {
+		return profile;
+	}
+
+	/**
+	 * Prints the summary of the profile if the <code>debug/profile</code>
+	 * tracing option is on, and starts a new profile.
+	 */
+	protected void traceProfile() {
+		if (Policy.DEBUG_PROFILE && profile != null) {
+			Policy.trace(profile.toString());
+			Policy.trace(profile.toJSON());
+			profile.clear();
+		}
+	}
+
+	/*--------------- Invalidate styles -----------------*/
+
+	@Override
+	public void invalidateStyles(Object element) {
+		Element elt = getElement(element);
+		if (elt != null && invalidElements.add(elt) && !invalidatedStylesScheduled) {
+			invalidatedStylesScheduled = true;
+			scheduleInvalidatedStyles();
+		}
+	}
+
+	@Override
+	public void reapplyStyles(Object element) {
+		Element elt = getElement(element);
+		if (elt != null) {
+			// restyled now rather than with the other invalidated elements
+			invalidElements.remove(elt);
+			Set<Element> elements = new LinkedHashSet<>();
+			elements.add(elt);
+			applyStyles(elements);
+		}
+	}
+
+	/**
+	 * Called when an element is invalidated while no other element waits to
+	 * be restyled. Engines running in an event loop should call
+	 * {@link #applyInvalidatedStyles()} once the current event is handled,
+	 * so that the changes of several elements are applied in a single pass.
+	 * The default implementation calls it immediately.
+	 */
+	protected void scheduleInvalidatedStyles() {
+		applyInvalidatedStyles();
+	}
+
+	@Override
+	public void applyInvalidatedStyles() {
+		invalidatedStylesScheduled = false;
+		if (invalidElements.isEmpty()) {
+			return;
+		}
+		Set<Element> elements = invalidElements;
+		invalidElements = new LinkedHashSet<>();
+		applyStyles(elements);
+	}
+
+	/**
+	 * Applies styles to the given elements, which are out of date, and to
+	 * the nodes whose styles depend on them.
+	 */
+	private void applyStyles(Set<Element> elements) {
+		ViewCSSImpl view = viewCSS instanceof ViewCSSImpl ? (ViewCSSImpl) viewCSS : null;
+		boolean restyleSiblings = view == null || view.hasSiblingSelectors();
+		for (Element elt : elements) {
+			if (hasInvalidAncestor(elt, elements) || !isVisible(elt)) {
+				// restyled with the ancestor, or when it becomes visible
+				continue;
+			}
+			applyStyles(elt, false);
+			applyStylesToDependentNodes(elt, elements, view);
+			if (restyleSiblings) {
+				boolean following = false;
+				Node parent = elt.getParentNode();
+				NodeList siblings = parent == null ? null : parent.getChildNodes();
+				for (int k = 0; siblings != null && k < siblings.getLength(); k++) {
+					Element sibling = getElement(siblings.item(k));
+					if (sibling == elt) {
+						following = true;
+					} else if (following && sibling != null && !elements.contains(sibling)) {
+						applyStylesIfDependent(sibling, elements, view);
+						applyStylesToDependentNodes(sibling, elements, view);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sets whether styles of elements which are not shown, like the pages of
+	 * a minimized stack or the unselected pages of a page book, are applied
+	 * when the elements are shown instead of right away.
+	 *
+	 * @param deferHiddenStyles
+	 *            <code>true</code> to defer the styles of hidden elements
+	 * @see #deferStyles(Element, boolean)
+	 */
+	public void setDeferHiddenStyles(boolean deferHiddenStyles) {
+		this.deferHiddenStyles = deferHiddenStyles;
+	}
+
+	/**
+	 * Returns whether styles of elements which are not shown are applied when
+	 * the elements are shown.
+	 *
+	 * @return <code>true</code> if the styles of hidden elements are deferred
+	 */
+	public boolean isDeferHiddenStyles() {
+		return deferHiddenStyles;
+	}
+
+	/**
+	 * Returns whether applying styles to the given element is deferred because
+	 * it is not shown. Implementations remember the hidden element, or its
+	 * hidden ancestor, and pass it to {@link #applyDeferredStyles(Object)} once
+	 * it is shown. Only called if hidden styles are deferred. This
+	 * implementation never defers styles.
+	 *
+	 * @param elt
+	 *            the element to style
+	 * @param checkAncestors
+	 *            <code>false</code> if the element is styled with its parent,
+	 *            which is known to be shown
+	 * @return <code>true</code> if the element is styled later
+	 */
+	protected boolean deferStyles(Element elt, boolean checkAncestors) {
+		return false;
+	}
+
+	/**
+	 * Applies styles to an element and its children whose styles were
+	 * deferred, whether or not it is shown by now. Hidden children are
+	 * deferred again.
+	 *
+	 * @param element
+	 *            the element or widget passed to
+	 *            {@link #deferStyles(Element, boolean)}
+	 */
+	protected void applyDeferredStyles(Object element) {
+		Element elt = getElement(element);
+		if (elt == null) {
+			return;
+		}
+		Element previous = deferredElement;
+		deferredElement = elt;
+		try {
+			applyStyles(elt, true);
+		} finally {
+			deferredElement = previous;
+		}
+	}
+
+	private static boolean hasInvalidAncestor(Element elt, Set<Element> elements) {
+		for (Node node = elt.getParentNode(); node != null; node = node.getParentNode()) {
+			if (elements.contains(node)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Applies styles to the descendants of the given element which are
+	 * invalid or whose matching style rules depend on their ancestors.
+	 * Descendants matched only by rules which ignore their ancestors keep
+	 * their styles.
+	 */
+	private void applyStylesToDependentNodes(Element elt, Set<Element> elements, ViewCSSImpl view) {
+		NodeList nodes = elt instanceof ChildVisibilityAwareElement
+				? ((ChildVisibilityAwareElement) elt).getVisibleChildNodes() : elt.getChildNodes();
+		if (nodes == null) {
+			return;
+		}
+		for (int k = 0; k < nodes.getLength(); k++) {
+			Element child = getElement(nodes.item(k));
+			if (child != null) {
+				applyStylesIfDependent(child, elements, view);
+				applyStylesToDependentNodes(child, elements, view);
+			}
+		}
+		onStylesAppliedToChildNodes(elt, nodes);
+	}
+
+	private void applyStylesIfDependent(Element elt, Set<Element> elements, ViewCSSImpl view) {
+		if (elements.contains(elt) || view == null || view.dependsOnAncestors(elt)) {
+			applyStyles(elt, false);
+		}
+	}
+
 	/**
 	 * Allow the CSS engine to skip particular elements if they are not visible.
 	 * Elements need to be restyled when they become visible.
@@ -751,37 +1150,197 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 			value = parsePropertyValue(parentValueString);
 		}
 
-		for (ICSSPropertyHandlerProvider provider : propertyHandlerProviders) {
-			Collection<ICSSPropertyHandler> handlers = provider
-					.getCSSPropertyHandlers(element, property);
-			if (handlers == null) {
-				continue;
+		// skip values which are already applied to the element
+		Map<String, AppliedValue> appliedValues = getAppliedValues(element);
+		String appliedKey = pseudo == null ? property : property + ':' + pseudo;
+		String cssText = value.getCssText();
+		AppliedValue appliedValue = appliedValues == null ? null : appliedValues.get(appliedKey);
+		if (appliedValue != null && appliedValue.cssText.equals(cssText)) {
+			skippedProperties++;
+			if (currentCSSPropertiesApplyed != null) {
+				currentCSSPropertiesApplyed.put(property, property);
 			}
-			for (ICSSPropertyHandler handler : handlers) {
-				try {
-					boolean result = handler.applyCSSProperty(element,
-							property,
-							value, pseudo, this);
-					if (result) {
-						// Add CSS Property to flag that this CSS Property was
-						// applied.
-						if (currentCSSPropertiesApplyed != null) {
-							currentCSSPropertiesApplyed.put(property, property);
+			// ICSSPropertyHandler2 handlers are still notified
+			return appliedValue.handler;
+		}
+
+		// count references to the resources the handlers convert, so that
+		// they can be disposed when the element no longer uses them
+		List<Object> resources = appliedValues != null ? new ArrayList<>(2) : null;
+		List<Object> outerResources = convertedResources;
+		convertedResources = resources;
+		try {
+			for (ICSSPropertyHandlerProvider provider : propertyHandlerProviders) {
+				Collection<ICSSPropertyHandler> handlers = provider
+						.getCSSPropertyHandlers(element, property);
+				if (handlers == null) {
+					continue;
+				}
+				for (ICSSPropertyHandler handler : handlers) {
+					try {
+						boolean result = false;
+						if (profile != null) {
+							long start = System.nanoTime();
+							try {
+								result = handler.applyCSSProperty(element, property, value, pseudo, this);
+							} finally {
+								profile.propertyApplied(handler, property, result, System.nanoTime() - start);
+							}
+						} else {
+							result = handler.applyCSSProperty(element, property, value, pseudo, this);
+						}
+						if (result) {
+							// Add CSS Property to flag that this CSS Property was
+							// applied.
+							if (currentCSSPropertiesApplyed != null) {
+								currentCSSPropertiesApplyed.put(property, property);
+							}
+							if (appliedValues != null) {
+								if (cssText != null && handler.canSkipUnchangedValue(element, property)) {
+									appliedValues.put(appliedKey, new AppliedValue(cssText, handler));
+								} else {
+									appliedValues.remove(appliedKey);
+								}
+								setAppliedResources(element, appliedKey, resources, true);
+							}
+							appliedProperties++;
+							return handler;
+						}
+					} catch (Exception e) {
+						if (throwError
+								|| (!throwError && !(e instanceof UnsupportedPropertyException))) {
+							handleExceptions(e);
 						}
-						return handler;
-					}
-				} catch (Exception e) {
-					if (throwError
-							|| (!throwError && !(e instanceof UnsupportedPropertyException))) {
-						handleExceptions(e);
 					}
 				}
 			}
+		} finally {
+			convertedResources = outerResources;
+		}
+		if (resources != null) {
+			// the previous value may still be in use
+			setAppliedResources(element, appliedKey, resources, false);
 		}
 
 		return null;
 	}
 
+	/**
+	 * Records the resources converted to apply a property value to the given
+	 * element.
+	 *
+	 * @param replace
+	 *            <code>true</code> to release the resources converted for the
+	 *            previous value, <code>false</code> to keep them
+	 */
+	@SuppressWarnings("unchecked")
+	private void setAppliedResources(Object element, String appliedKey, List<Object> resources,
+			boolean replace) {
+		CSSElementContext context = getCSSElementContext(element);
+		if (context == null) {
+			releaseResources(resources);
+			return;
+		}
+		Map<String, List<Object>> appliedResources = (Map<String, List<Object>>) context
+				.getData(APPLIED_RESOURCES_KEY);
+		if (appliedResources == null) {
+			if (resources.isEmpty()) {
+				return;
+			}
+			appliedResources = new HashMap<>(8);
+			context.setData(APPLIED_RESOURCES_KEY, appliedResources);
+		}
+		if (replace) {
+			List<Object> previous = resources.isEmpty() ? appliedResources.remove(appliedKey)
+					: appliedResources.put(appliedKey, resources);
+			releaseResources(previous);
+		} else if (!resources.isEmpty()) {
+			appliedResources.computeIfAbsent(appliedKey, k -> new ArrayList<>(2)).addAll(resources);
+		}
+	}
+
+	/**
+	 * Releases the resources converted for all property values applied to the
+	 * element of the given context.
+	 */
+	@SuppressWarnings("unchecked")
+	private void releaseAppliedResources(CSSElementContext context) {
+		Map<String, List<Object>> appliedResources = (Map<String, List<Object>>) context
+				.getData(APPLIED_RESOURCES_KEY);
+		if (appliedResources != null) {
+			context.setData(APPLIED_RESOURCES_KEY, null);
+			for (List<Object> resources : appliedResources.values()) {
+				releaseResources(resources);
+			}
+		}
+	}
+
+	private void releaseResources(List<Object> resources) {
+		if (resources != null && getResourcesRegistry() instanceof AbstractResourcesRegistry) {
+			AbstractResourcesRegistry registry = (AbstractResourcesRegistry) getResourcesRegistry();
+			for (Object resource : resources) {
+				registry.removeReference(resource);
+			}
+		}
+	}
+
+	/**
+	 * Returns the values last applied to the given element, or
+	 * <code>null</code> if the element is not registered with this engine.
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<String, AppliedValue> getAppliedValues(Object element) {
+		if (getNativeWidget(element) == null) {
+			return null;
+		}
+		CSSElementContext context = getCSSElementContext(element);
+		if (context == null) {
+			return null;
+		}
+		Map<String, AppliedValue> appliedValues = (Map<String, AppliedValue>) context.getData(APPLIED_VALUES_KEY);
+		if (appliedValues == null) {
+			appliedValues = new HashMap<>(8);
+			context.setData(APPLIED_VALUES_KEY, appliedValues);
+		}
+		return appliedValues;
+	}
+
+	/**
+	 * Makes the next styling of the given element apply all property values,
+	 * including the ones which have not changed since they were last applied.
+	 * Must be called when something else than this engine changes what the
+	 * applied values were set on, like the renderer of a widget.
+	 *
+	 * @param element
+	 *            the element or widget
+	 */
+	public void forgetAppliedValues(Object element) {
+		CSSElementContext context = getCSSElementContext(element);
+		if (context != null) {
+			context.setData(APPLIED_VALUES_KEY, null);
+		}
+	}
+
+	/**
+	 * Returns the number of property values applied to elements by a
+	 * property handler.
+	 *
+	 * @return the number of applied property values
+	 */
+	public long getAppliedPropertyCount() {
+		return appliedProperties;
+	}
+
+	/**
+	 * Returns the number of property values which were not applied because
+	 * the element already had them.
+	 *
+	 * @return the number of skipped property values
+	 */
+	public long getSkippedPropertyCount() {
+		return skippedProperties;
+	}
+
 	@Override
 	public String retrieveCSSProperty(Object element, String property,
 			String pseudo) {
@@ -935,7 +1494,11 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 	 */
 	protected void handleWidgetDisposed(Object widget) {
 		if (elementsContext != null) {
-			elementsContext.remove(widget);
+			CSSElementContext context = elementsContext.remove(widget);
+			if (context != null) {
+				invalidElements.remove(context.getElement());
+				releaseAppliedResources(context);
+			}
 		}
 	}
 
@@ -1056,8 +1619,18 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 
 	@Override
 	public void reset() {
+		traceProfile();
 		// Remove All Style Sheets
 		documentCSS.removeAllStyleSheets();
+		invalidElements.clear();
+		// widgets may be restored to their initial values, so forget what was
+		// applied to them
+		if (elementsContext != null) {
+			for (CSSElementContext context : elementsContext.values()) {
+				context.setData(APPLIED_VALUES_KEY, null);
+				releaseAppliedResources(context);
+			}
+		}
 	}
 
 	/*--------------- Resources Registry -----------------*/
@@ -1122,6 +1695,16 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 				registerResource(toType, key, newValue);
 			}
 		}
+		if (key != null && newValue != null && getResourcesRegistry() instanceof AbstractResourcesRegistry) {
+			AbstractResourcesRegistry registry = (AbstractResourcesRegistry) getResourcesRegistry();
+			if (convertedResources != null) {
+				registry.addReference(newValue);
+				convertedResources.add(newValue);
+			} else {
+				// used by someone the engine cannot track
+				registry.pinResource(newValue);
+			}
+		}
 		return newValue;
 	}
 
@@ -0,0 +1,272 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.ui.css.core.impl.engine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.e4.ui.css.core.dom.properties.ICSSPropertyHandler;
+import org.w3c.css.sac.Selector;
+
+/**
+ * Timings of a CSS engine: the match attempts and match time per selector,
+ * the apply time per property handler and property, and the number of
+ * elements styled per {@link AbstractCSSEngine#applyStyles(Object, boolean)}
+ * root. A profile is recorded while it is set with
+ * {@link AbstractCSSEngine#setProfile(CSSEngineProfile)}, and can be exported
+ * with {@link #toJSON()}.
+ */
+public class CSSEngineProfile {
+
+	/**
+	 * The number of most recently styled roots which are kept.
+	 */
+	private static final int MAX_ROOTS = 256;
+
+	/**
+	 * The number of entries of each kind in {@link #toString()}.
+	 */
+	private static final int SUMMARY_SIZE = 10;
+
+	private static class Timing {
+		final String name;
+		final String detail;
+		long count;
+		long hits;
+		long nanos;
+
+		Timing(String name, String detail) {
+			this.name = name;
+			this.detail = detail;
+		}
+	}
+
+	private static class Root {
+		final String root;
+		final long elements;
+		final long nanos;
+
+		Root(String root, long elements, long nanos) {
+			this.root = root;
+			this.elements = elements;
+			this.nanos = nanos;
+		}
+	}
+
+	private final Map<Selector, Timing> selectors = new IdentityHashMap<>();
+
+	private final Map<ICSSPropertyHandler, Map<String, Timing>> handlers = new IdentityHashMap<>();
+
+	private final Deque<Root> roots = new ArrayDeque<>();
+
+	private long elementsStyled;
+
+	/**
+	 * Records an attempt to match an element against a selector.
+	 *
+	 * @param selector
+	 *            the selector
+	 * @param matched
+	 *            whether the element matched
+	 * @param nanos
+	 *            the time spent matching, in nanoseconds
+	 */
+	public void selectorMatched(Selector selector, boolean matched, long nanos) {
+		Timing timing = selectors.get(selector);
+		if (timing == null) {
+			timing = new Timing(selector.toString(), null);
+			selectors.put(selector, timing);
+		}
+		timing.count++;
+		if (matched) {
+			timing.hits++;
+		}
+		timing.nanos += nanos;
+	}
+
+	/**
+	 * Records a call of a property handler.
+	 *
+	 * @param handler
+	 *            the property handler
+	 * @param property
+	 *            the property applied
+	 * @param applied
+	 *            whether the handler applied the property
+	 * @param nanos
+	 *            the time spent in the handler, in nanoseconds
+	 */
+	public void propertyApplied(ICSSPropertyHandler handler, String property, boolean applied, long nanos) {
+		Map<String, Timing> properties = handlers.get(handler);
+		if (properties == null) {
+			properties = new HashMap<>();
+			handlers.put(handler, properties);
+		}
+		Timing timing = properties.get(property);
+		if (timing == null) {
+			timing = new Timing(handler.getClass().getName(), property);
+			properties.put(property, timing);
+		}
+		timing.count++;
+		if (applied) {
+			timing.hits++;
+		}
+		timing.nanos += nanos;
+	}
+
+	void elementStyled() {
+		elementsStyled++;
+	}
+
+	/**
+	 * Returns the number of elements styled since the profile was created or
+	 * cleared.
+	 *
+	 * @return the number of styled elements
+	 */
+	public long getElementsStyled() {
+		return elementsStyled;
+	}
+
+	void rootStyled(Object root, long elements, long nanos) {
+		if (roots.size() == MAX_ROOTS) {
+			roots.removeFirst();
+		}
+		roots.addLast(new Root(String.valueOf(root), elements, nanos));
+	}
+
+	/**
+	 * Forgets everything recorded so far.
+	 */
+	public void clear() {
+		selectors.clear();
+		handlers.clear();
+		roots.clear();
+		elementsStyled = 0;
+	}
+
+	/**
+	 * Returns the profile as a JSON object. Selectors and handlers are sorted
+	 * by decreasing time, roots from the least to the most recently styled.
+	 *
+	 * @return the JSON text
+	 */
+	public String toJSON() {
+		StringBuilder json = new StringBuilder();
+		json.append("{\n  \"elementsStyled\": ").append(elementsStyled); //$NON-NLS-1$
+		json.append(",\n  \"selectors\": ["); //$NON-NLS-1$
+		List<Timing> timings = getSelectorTimings();
+		for (int i = 0; i < timings.size(); i++) {
+			Timing timing = timings.get(i);
+			json.append(i == 0 ? "\n    {" : ",\n    {"); //$NON-NLS-1$ //$NON-NLS-2$
+			appendString(json.append("\"selector\": "), timing.name); //$NON-NLS-1$
+			json.append(", \"attempts\": ").append(timing.count); //$NON-NLS-1$
+			json.append(", \"matches\": ").append(timing.hits); //$NON-NLS-1$
+			json.append(", \"nanos\": ").append(timing.nanos).append('}'); //$NON-NLS-1$
+		}
+		json.append("\n  ],\n  \"handlers\": ["); //$NON-NLS-1$
+		timings = getHandlerTimings();
+		for (int i = 0; i < timings.size(); i++) {
+			Timing timing = timings.get(i);
+			json.append(i == 0 ? "\n    {" : ",\n    {"); //$NON-NLS-1$ //$NON-NLS-2$
+			appendString(json.append("\"handler\": "), timing.name); //$NON-NLS-1$
+			appendString(json.append(", \"property\": "), timing.detail); //$NON-NLS-1$
+			json.append(", \"calls\": ").append(timing.count); //$NON-NLS-1$
+			json.append(", \"applied\": ").append(timing.hits); //$NON-NLS-1$
+			json.append(", \"nanos\": ").append(timing.nanos).append('}'); //$NON-NLS-1$
+		}
+		json.append("\n  ],\n  \"roots\": ["); //$NON-NLS-1$
+		boolean first = true;
+		for (Root root : roots) {
+			json.append(first ? "\n    {" : ",\n    {"); //$NON-NLS-1$ //$NON-NLS-2$
+			appendString(json.append("\"root\": "), root.root); //$NON-NLS-1$
+			json.append(", \"elements\": ").append(root.elements); //$NON-NLS-1$
+			json.append(", \"nanos\": ").append(root.nanos).append('}'); //$NON-NLS-1$
+			first = false;
+		}
+		json.append("\n  ]\n}\n"); //$NON-NLS-1$
+		return json.toString();
+	}
+
+	/**
+	 * Returns a summary of the selectors and property handlers which took the
+	 * most time.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder summary = new StringBuilder();
+		summary.append(elementsStyled).append(" elements styled, slowest selectors:"); //$NON-NLS-1$
+		List<Timing> timings = getSelectorTimings();
+		for (int i = 0; i < timings.size() && i < SUMMARY_SIZE; i++) {
+			Timing timing = timings.get(i);
+			summary.append("\n  ").append(timing.nanos / 1000).append(" us, ").append(timing.count) //$NON-NLS-1$ //$NON-NLS-2$
+					.append(" attempts, ").append(timing.hits).append(" matches: ").append(timing.name); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		summary.append("\nslowest property handlers:"); //$NON-NLS-1$
+		timings = getHandlerTimings();
+		for (int i = 0; i < timings.size() && i < SUMMARY_SIZE; i++) {
+			Timing timing = timings.get(i);
+			summary.append("\n  ").append(timing.nanos / 1000).append(" us, ").append(timing.count) //$NON-NLS-1$ //$NON-NLS-2$
+					.append(" calls: ").append(timing.detail).append(" (").append(timing.name).append(')'); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return summary.toString();
+	}
+
+	private List<Timing> getSelectorTimings() {
+		List<Timing> timings = new ArrayList<>(selectors.values());
+		timings.sort((t1, t2) -> Long.compare(t2.nanos, t1.nanos));
+		return timings;
+	}
+
+	private List<Timing> getHandlerTimings() {
+		List<Timing> timings = new ArrayList<>();
+		for (Map<String, Timing> properties : handlers.values()) {
+			timings.addAll(properties.values());
+		}
+		timings.sort((t1, t2) -> Long.compare(t2.nanos, t1.nanos));
+		return timings;
+	}
+
+	private static void appendString(StringBuilder json, String value) {
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				json.append("\\\""); //$NON-NLS-1$
+				break;
+			case '\\':
+				json.append("\\\\"); //$NON-NLS-1$
+				break;
+			case '\n':
+				json.append("\\n"); //$NON-NLS-1$
+				break;
+			case '\r':
+				json.append("\\r"); //$NON-NLS-1$
+				break;
+			case '\t':
+				json.append("\\t"); //$NON-NLS-1$
+				break;
+			default:
+				if (c < 0x20) {
+					json.append(String.format("\\u%04x", Integer.valueOf(c))); //$NON-NLS-1$
+				} else {
+					json.append(c);
+				}
+			}
+		}
+		json.append('"');
+	}
+}
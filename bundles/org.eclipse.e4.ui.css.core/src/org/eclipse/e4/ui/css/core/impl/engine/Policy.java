@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.ui.css.core.impl.engine;
+
+import org.eclipse.core.runtime.Platform;
+
+/**
+ * Policy is the class for the debug arguments of the CSS engine.
+ */
+public class Policy {
+
+	private static final String PLUGIN_ID = "org.eclipse.e4.ui.css.core"; //$NON-NLS-1$
+
+	/**
+	 * The default value
+	 */
+	public static final boolean DEFAULT = false;
+
+	/**
+	 * Option for tracing the sharing of computed styles
+	 */
+	public static boolean DEBUG_STYLE_CACHE = DEFAULT;
+
+	/**
+	 * Option for profiling selector matches and property handlers
+	 */
+	public static boolean DEBUG_PROFILE = DEFAULT;
+
+	static {
+		if (getDebugOption("/debug")) { //$NON-NLS-1$
+			DEBUG_STYLE_CACHE = getDebugOption("/debug/styleCache"); //$NON-NLS-1$
+			DEBUG_PROFILE = getDebugOption("/debug/profile"); //$NON-NLS-1$
+		}
+	}
+
+	private static boolean getDebugOption(String option) {
+		return "true".equalsIgnoreCase(Platform.getDebugOption(PLUGIN_ID + option)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Prints the given trace message.
+	 *
+	 * @param message
+	 *            the message
+	 */
+	public static void trace(String message) {
+		System.out.println("[CSS] " + message); //$NON-NLS-1$
+	}
+}
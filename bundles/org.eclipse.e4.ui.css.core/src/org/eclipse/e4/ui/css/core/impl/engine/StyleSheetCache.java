@@ -0,0 +1,885 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.ui.css.core.impl.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Stack;
+import org.apache.batik.css.parser.CSSLexicalUnit;
+import org.apache.batik.css.parser.CSSSACMediaList;
+import org.apache.batik.css.parser.CSSSelectorList;
+import org.eclipse.e4.ui.css.core.dom.parsers.CSSParser;
+import org.eclipse.e4.ui.css.core.impl.dom.parsers.AbstractCSSParser;
+import org.eclipse.e4.ui.css.core.sac.DocumentHandlerFactory;
+import org.eclipse.e4.ui.css.core.sac.ExtendedDocumentHandler;
+import org.w3c.css.sac.AttributeCondition;
+import org.w3c.css.sac.CSSException;
+import org.w3c.css.sac.CombinatorCondition;
+import org.w3c.css.sac.Condition;
+import org.w3c.css.sac.ConditionFactory;
+import org.w3c.css.sac.ConditionalSelector;
+import org.w3c.css.sac.DescendantSelector;
+import org.w3c.css.sac.ElementSelector;
+import org.w3c.css.sac.InputSource;
+import org.w3c.css.sac.LangCondition;
+import org.w3c.css.sac.LexicalUnit;
+import org.w3c.css.sac.SACMediaList;
+import org.w3c.css.sac.Selector;
+import org.w3c.css.sac.SelectorFactory;
+import org.w3c.css.sac.SelectorList;
+import org.w3c.css.sac.SiblingSelector;
+import org.w3c.css.sac.SimpleSelector;
+import org.w3c.dom.css.CSSStyleSheet;
+
+/**
+ * Cache of compiled style sheets in a directory. A compiled style sheet is
+ * the sequence of SAC events which the parser sent to the document handler,
+ * with the selectors and property values in binary form. It is stored under
+ * a hash of the style sheet content, and replayed to a new document handler
+ * instead of parsing the same content again. Style sheets which cannot be
+ * replayed are parsed.
+ */
+public class StyleSheetCache {
+
+	private static final int MAGIC = 0x43535343; // CSSC
+
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * The number of compiled style sheets to keep in the directory.
+	 */
+	private static final int MAX_ENTRIES = 128;
+
+	private static final String SUFFIX = ".bin"; //$NON-NLS-1$
+
+	// SAC events
+	private static final byte END = 0;
+	private static final byte START_DOCUMENT = 1;
+	private static final byte END_DOCUMENT = 2;
+	private static final byte COMMENT = 3;
+	private static final byte IGNORABLE_AT_RULE = 4;
+	private static final byte NAMESPACE_DECLARATION = 5;
+	private static final byte IMPORT_STYLE = 6;
+	private static final byte START_MEDIA = 7;
+	private static final byte END_MEDIA = 8;
+	private static final byte START_PAGE = 9;
+	private static final byte END_PAGE = 10;
+	private static final byte START_FONT_FACE = 11;
+	private static final byte END_FONT_FACE = 12;
+	private static final byte START_SELECTOR = 13;
+	private static final byte END_SELECTOR = 14;
+	private static final byte PROPERTY = 15;
+
+	private final File directory;
+
+	private long hits;
+
+	private long misses;
+
+	/**
+	 * Creates a cache storing compiled style sheets in the given directory,
+	 * which is created when the first style sheet is stored.
+	 *
+	 * @param directory
+	 *            the cache directory
+	 */
+	public StyleSheetCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the style sheet read from the given source, replaying the
+	 * compiled style sheet for the same content if there is one. Otherwise
+	 * the source is parsed and the compiled style sheet is stored.
+	 *
+	 * @param parser
+	 *            the parser to use
+	 * @param source
+	 *            the style sheet source
+	 * @return the style sheet
+	 * @throws IOException
+	 *             if the source cannot be read
+	 */
+	public CSSStyleSheet parseStyleSheet(CSSParser parser, InputSource source) throws IOException {
+		if (!(parser instanceof AbstractCSSParser)) {
+			return parser.parseStyleSheet(source);
+		}
+		AbstractCSSParser cssParser = (AbstractCSSParser) parser;
+		DocumentHandlerFactory documentHandlerFactory = cssParser.getDocumentHandlerFactory();
+
+		// read the content to hash it
+		InputSource contentSource = copy(source);
+		File file = new File(directory, getKey(cssParser, contentSource) + SUFFIX);
+		if (file.isFile()) {
+			try {
+				CSSStyleSheet styleSheet = replay(Files.readAllBytes(file.toPath()), cssParser, source);
+				hits++;
+				file.setLastModified(System.currentTimeMillis());
+				return styleSheet;
+			} catch (IOException | RuntimeException e) {
+				// incompatible or damaged, parse again
+				file.delete();
+			}
+		}
+		misses++;
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		RecordingDocumentHandler recorder = new RecordingDocumentHandler(
+				documentHandlerFactory.makeDocumentHandler(), out);
+		cssParser.setDocumentHandlerFactory(new DocumentHandlerFactory() {
+			@Override
+			public ExtendedDocumentHandler makeDocumentHandler() {
+				return recorder;
+			}
+		});
+		CSSStyleSheet styleSheet;
+		try {
+			styleSheet = cssParser.parseStyleSheet(contentSource);
+		} finally {
+			cssParser.setDocumentHandlerFactory(documentHandlerFactory);
+		}
+		if (recorder.isComplete()) {
+			out.writeByte(END);
+			store(file, bytes.toByteArray());
+		}
+		return styleSheet;
+	}
+
+	/**
+	 * Returns the number of style sheets which were replayed from the cache.
+	 *
+	 * @return the number of cache hits
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of style sheets which had to be parsed.
+	 *
+	 * @return the number of cache misses
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns a copy of the given source whose content is read into memory.
+	 */
+	private static InputSource copy(InputSource source) throws IOException {
+		InputSource copy = new InputSource();
+		copy.setURI(source.getURI());
+		copy.setEncoding(source.getEncoding());
+		copy.setTitle(source.getTitle());
+		copy.setMedia(source.getMedia());
+		Reader reader = source.getCharacterStream();
+		if (reader != null) {
+			CharArrayWriter writer = new CharArrayWriter();
+			char[] buffer = new char[4096];
+			int count;
+			while ((count = reader.read(buffer)) != -1) {
+				writer.write(buffer, 0, count);
+			}
+			copy.setCharacterStream(new StringReader(writer.toString()));
+		} else {
+			InputStream stream = source.getByteStream();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int count;
+			while ((count = stream.read(buffer)) != -1) {
+				bytes.write(buffer, 0, count);
+			}
+			copy.setByteStream(new ByteArrayInputStream(bytes.toByteArray()));
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns a hash of the content of the given source and of the classes
+	 * which turn it into a style sheet.
+	 */
+	private static String getKey(AbstractCSSParser parser, InputSource source) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256"); //$NON-NLS-1$
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		StringBuilder header = new StringBuilder();
+		header.append(FORMAT_VERSION).append('\n');
+		header.append(parser.getParser().getClass().getName()).append('\n');
+		header.append(parser.getDocumentHandlerFactory().getClass().getName()).append('\n');
+		header.append(getClassName(parser.getSelectorFactory())).append('\n');
+		header.append(getClassName(parser.getConditionFactory())).append('\n');
+		header.append(source.getEncoding()).append('\n');
+		if (source.getCharacterStream() != null) {
+			// read by copy(), so the reader supports reset
+			Reader reader = source.getCharacterStream();
+			header.append('c');
+			digest.update(header.toString().getBytes(StandardCharsets.UTF_8));
+			StringBuilder content = new StringBuilder();
+			char[] buffer = new char[4096];
+			int count;
+			while ((count = reader.read(buffer)) != -1) {
+				content.append(buffer, 0, count);
+			}
+			reader.reset();
+			digest.update(content.toString().getBytes(StandardCharsets.UTF_8));
+		} else {
+			InputStream stream = source.getByteStream();
+			header.append('b');
+			digest.update(header.toString().getBytes(StandardCharsets.UTF_8));
+			byte[] buffer = new byte[4096];
+			int count;
+			while ((count = stream.read(buffer)) != -1) {
+				digest.update(buffer, 0, count);
+			}
+			stream.reset();
+		}
+		StringBuilder key = new StringBuilder();
+		for (byte b : digest.digest()) {
+			key.append(Character.forDigit((b >> 4) & 0xF, 16));
+			key.append(Character.forDigit(b & 0xF, 16));
+		}
+		return key.toString();
+	}
+
+	private static String getClassName(Object object) {
+		return object == null ? "" : object.getClass().getName(); //$NON-NLS-1$
+	}
+
+	/**
+	 * Stores a compiled style sheet, removing the least recently used ones
+	 * if there are too many. Failures are ignored, the style sheet is parsed
+	 * again next time.
+	 */
+	private void store(File file, byte[] content) {
+		File temp = null;
+		try {
+			directory.mkdirs();
+			temp = File.createTempFile("stylesheet", ".tmp", directory); //$NON-NLS-1$ //$NON-NLS-2$
+			Files.write(temp.toPath(), content);
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				// a reader seeing the partially moved file fails to replay it
+				// and parses the style sheet again
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			temp = null;
+		} catch (IOException e) {
+			return;
+		} finally {
+			if (temp != null) {
+				temp.delete();
+			}
+		}
+		File[] entries = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+		if (entries != null && entries.length > MAX_ENTRIES) {
+			Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+			for (int i = 0; i < entries.length - MAX_ENTRIES; i++) {
+				entries[i].delete();
+			}
+		}
+	}
+
+	/*--------------- Replay -----------------*/
+
+	private static CSSStyleSheet replay(byte[] content, AbstractCSSParser parser, InputSource source)
+			throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+		if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+			throw new IOException("Incompatible compiled style sheet"); //$NON-NLS-1$
+		}
+		SelectorFactory selectorFactory = parser.getSelectorFactory();
+		ConditionFactory conditionFactory = parser.getConditionFactory();
+		if (selectorFactory == null || conditionFactory == null) {
+			throw new IOException("Selector factories are required"); //$NON-NLS-1$
+		}
+		ExtendedDocumentHandler handler = parser.getDocumentHandlerFactory().makeDocumentHandler();
+		Deque<SelectorList> selectors = new ArrayDeque<>();
+		Deque<SACMediaList> media = new ArrayDeque<>();
+		while (true) {
+			byte event = in.readByte();
+			switch (event) {
+			case END:
+				return (CSSStyleSheet) handler.getNodeRoot();
+			case START_DOCUMENT:
+				handler.startDocument(source);
+				break;
+			case END_DOCUMENT:
+				handler.endDocument(source);
+				break;
+			case COMMENT:
+				handler.comment(readString(in));
+				break;
+			case IGNORABLE_AT_RULE:
+				handler.ignorableAtRule(readString(in));
+				break;
+			case NAMESPACE_DECLARATION:
+				handler.namespaceDeclaration(readString(in), readString(in));
+				break;
+			case IMPORT_STYLE:
+				handler.importStyle(readString(in), readMediaList(in), readString(in));
+				break;
+			case START_MEDIA:
+				media.push(readMediaList(in));
+				handler.startMedia(media.peek());
+				break;
+			case END_MEDIA:
+				handler.endMedia(media.pop());
+				break;
+			case START_PAGE:
+				handler.startPage(readString(in), readString(in));
+				break;
+			case END_PAGE:
+				handler.endPage(readString(in), readString(in));
+				break;
+			case START_FONT_FACE:
+				handler.startFontFace();
+				break;
+			case END_FONT_FACE:
+				handler.endFontFace();
+				break;
+			case START_SELECTOR:
+				CSSSelectorList list = new CSSSelectorList();
+				for (int i = in.readInt(); i > 0; i--) {
+					list.append(readSelector(in, selectorFactory, conditionFactory));
+				}
+				selectors.push(list);
+				handler.startSelector(list);
+				break;
+			case END_SELECTOR:
+				handler.endSelector(selectors.pop());
+				break;
+			case PROPERTY:
+				handler.property(readString(in), readLexicalUnits(in, null), in.readBoolean());
+				break;
+			default:
+				throw new IOException("Unknown event " + event); //$NON-NLS-1$
+			}
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length == -1) {
+			return null;
+		}
+		// the stream reads from memory, so the rest of the entry is available
+		if (length < 0 || length > in.available()) {
+			throw new IOException("Invalid string length " + length); //$NON-NLS-1$
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static SACMediaList readMediaList(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		CSSSACMediaList mediaList = new CSSSACMediaList();
+		for (int i = 0; i < length; i++) {
+			mediaList.append(readString(in));
+		}
+		return mediaList;
+	}
+
+	private static Selector readSelector(DataInputStream in, SelectorFactory selectorFactory,
+			ConditionFactory conditionFactory) throws IOException {
+		short type = in.readShort();
+		switch (type) {
+		case Selector.SAC_ELEMENT_NODE_SELECTOR:
+			return selectorFactory.createElementSelector(readString(in), readString(in));
+		case Selector.SAC_PSEUDO_ELEMENT_SELECTOR:
+			return selectorFactory.createPseudoElementSelector(readString(in), readString(in));
+		case Selector.SAC_CONDITIONAL_SELECTOR:
+			SimpleSelector simpleSelector = (SimpleSelector) readSelector(in, selectorFactory, conditionFactory);
+			return selectorFactory.createConditionalSelector(simpleSelector,
+					readCondition(in, conditionFactory));
+		case Selector.SAC_DESCENDANT_SELECTOR:
+			Selector ancestor = readSelector(in, selectorFactory, conditionFactory);
+			return selectorFactory.createDescendantSelector(ancestor,
+					(SimpleSelector) readSelector(in, selectorFactory, conditionFactory));
+		case Selector.SAC_CHILD_SELECTOR:
+			Selector parent = readSelector(in, selectorFactory, conditionFactory);
+			return selectorFactory.createChildSelector(parent,
+					(SimpleSelector) readSelector(in, selectorFactory, conditionFactory));
+		case Selector.SAC_DIRECT_ADJACENT_SELECTOR:
+			short nodeType = in.readShort();
+			Selector child = readSelector(in, selectorFactory, conditionFactory);
+			return selectorFactory.createDirectAdjacentSelector(nodeType, child,
+					(SimpleSelector) readSelector(in, selectorFactory, conditionFactory));
+		default:
+			throw new IOException("Unknown selector type " + type); //$NON-NLS-1$
+		}
+	}
+
+	private static Condition readCondition(DataInputStream in, ConditionFactory conditionFactory)
+			throws IOException {
+		short type = in.readShort();
+		switch (type) {
+		case Condition.SAC_AND_CONDITION:
+			Condition first = readCondition(in, conditionFactory);
+			return conditionFactory.createAndCondition(first, readCondition(in, conditionFactory));
+		case Condition.SAC_ID_CONDITION:
+			return conditionFactory.createIdCondition(readString(in));
+		case Condition.SAC_CLASS_CONDITION:
+			return conditionFactory.createClassCondition(readString(in), readString(in));
+		case Condition.SAC_PSEUDO_CLASS_CONDITION:
+			return conditionFactory.createPseudoClassCondition(readString(in), readString(in));
+		case Condition.SAC_LANG_CONDITION:
+			return conditionFactory.createLangCondition(readString(in));
+		case Condition.SAC_ATTRIBUTE_CONDITION:
+			return conditionFactory.createAttributeCondition(readString(in), readString(in), in.readBoolean(),
+					readString(in));
+		case Condition.SAC_ONE_OF_ATTRIBUTE_CONDITION:
+			return conditionFactory.createOneOfAttributeCondition(readString(in), readString(in),
+					in.readBoolean(), readString(in));
+		case Condition.SAC_BEGIN_HYPHEN_ATTRIBUTE_CONDITION:
+			return conditionFactory.createBeginHyphenAttributeCondition(readString(in), readString(in),
+					in.readBoolean(), readString(in));
+		default:
+			throw new IOException("Unknown condition type " + type); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Reads a chain of lexical units, appending the first one to the given
+	 * unit.
+	 */
+	private static LexicalUnit readLexicalUnits(DataInputStream in, LexicalUnit previous) throws IOException {
+		LexicalUnit first = null;
+		while (in.readBoolean()) {
+			previous = readLexicalUnit(in, previous);
+			if (first == null) {
+				first = previous;
+			}
+		}
+		return first;
+	}
+
+	private static LexicalUnit readLexicalUnit(DataInputStream in, LexicalUnit previous) throws IOException {
+		short type = in.readShort();
+		switch (type) {
+		case LexicalUnit.SAC_INTEGER:
+			return CSSLexicalUnit.createInteger(in.readInt(), previous);
+		case LexicalUnit.SAC_DIMENSION:
+			float value = in.readFloat();
+			return CSSLexicalUnit.createDimension(value, readString(in), previous);
+		case LexicalUnit.SAC_FUNCTION:
+			String name = readString(in);
+			return CSSLexicalUnit.createFunction(name, readLexicalUnits(in, null), previous);
+		default:
+			switch (getValueKind(type)) {
+			case SIMPLE:
+				return CSSLexicalUnit.createSimple(type, previous);
+			case FLOAT:
+				return CSSLexicalUnit.createFloat(type, in.readFloat(), previous);
+			case STRING:
+				return CSSLexicalUnit.createString(type, readString(in), previous);
+			case PREDEFINED_FUNCTION:
+				return CSSLexicalUnit.createPredefinedFunction(type, readLexicalUnits(in, null), previous);
+			default:
+				throw new IOException("Unknown lexical unit type " + type); //$NON-NLS-1$
+			}
+		}
+	}
+
+	private static final int UNSUPPORTED = 0;
+	private static final int SIMPLE = 1;
+	private static final int FLOAT = 2;
+	private static final int STRING = 3;
+	private static final int PREDEFINED_FUNCTION = 4;
+
+	/**
+	 * Returns how the value of a lexical unit of the given type is stored,
+	 * for the types not handled individually.
+	 */
+	private static int getValueKind(short type) {
+		switch (type) {
+		case LexicalUnit.SAC_OPERATOR_COMMA:
+		case LexicalUnit.SAC_OPERATOR_PLUS:
+		case LexicalUnit.SAC_OPERATOR_MINUS:
+		case LexicalUnit.SAC_OPERATOR_MULTIPLY:
+		case LexicalUnit.SAC_OPERATOR_SLASH:
+		case LexicalUnit.SAC_OPERATOR_MOD:
+		case LexicalUnit.SAC_OPERATOR_EXP:
+		case LexicalUnit.SAC_OPERATOR_LT:
+		case LexicalUnit.SAC_OPERATOR_GT:
+		case LexicalUnit.SAC_OPERATOR_LE:
+		case LexicalUnit.SAC_OPERATOR_GE:
+		case LexicalUnit.SAC_OPERATOR_TILDE:
+		case LexicalUnit.SAC_INHERIT:
+			return SIMPLE;
+		case LexicalUnit.SAC_REAL:
+		case LexicalUnit.SAC_EM:
+		case LexicalUnit.SAC_EX:
+		case LexicalUnit.SAC_PIXEL:
+		case LexicalUnit.SAC_INCH:
+		case LexicalUnit.SAC_CENTIMETER:
+		case LexicalUnit.SAC_MILLIMETER:
+		case LexicalUnit.SAC_POINT:
+		case LexicalUnit.SAC_PICA:
+		case LexicalUnit.SAC_PERCENTAGE:
+		case LexicalUnit.SAC_DEGREE:
+		case LexicalUnit.SAC_GRADIAN:
+		case LexicalUnit.SAC_RADIAN:
+		case LexicalUnit.SAC_MILLISECOND:
+		case LexicalUnit.SAC_SECOND:
+		case LexicalUnit.SAC_HERTZ:
+		case LexicalUnit.SAC_KILOHERTZ:
+			return FLOAT;
+		case LexicalUnit.SAC_URI:
+		case LexicalUnit.SAC_IDENT:
+		case LexicalUnit.SAC_STRING_VALUE:
+		case LexicalUnit.SAC_ATTR:
+		case LexicalUnit.SAC_UNICODERANGE:
+			return STRING;
+		case LexicalUnit.SAC_RGBCOLOR:
+		case LexicalUnit.SAC_RECT_FUNCTION:
+		case LexicalUnit.SAC_COUNTER_FUNCTION:
+		case LexicalUnit.SAC_COUNTERS_FUNCTION:
+			return PREDEFINED_FUNCTION;
+		default:
+			return UNSUPPORTED;
+		}
+	}
+
+	/*--------------- Record -----------------*/
+
+	/**
+	 * Document handler which writes the events it passes on to another
+	 * document handler. Recording stops at the first selector or value which
+	 * cannot be written, and the style sheet is not stored.
+	 */
+	private static class RecordingDocumentHandler implements ExtendedDocumentHandler {
+
+		private final ExtendedDocumentHandler delegate;
+
+		private final DataOutputStream out;
+
+		private boolean complete = true;
+
+		RecordingDocumentHandler(ExtendedDocumentHandler delegate, DataOutputStream out) {
+			this.delegate = delegate;
+			this.out = out;
+		}
+
+		boolean isComplete() {
+			return complete;
+		}
+
+		@Override
+		public Object getNodeRoot() {
+			return delegate.getNodeRoot();
+		}
+
+		@Override
+		public void setNodeStack(Stack<Object> stack) {
+			delegate.setNodeStack(stack);
+			// only complete style sheets can be replayed
+			complete = false;
+		}
+
+		@Override
+		public void startDocument(InputSource source) throws CSSException {
+			record(START_DOCUMENT);
+			delegate.startDocument(source);
+		}
+
+		@Override
+		public void endDocument(InputSource source) throws CSSException {
+			record(END_DOCUMENT);
+			delegate.endDocument(source);
+		}
+
+		@Override
+		public void comment(String text) throws CSSException {
+			record(COMMENT, text);
+			delegate.comment(text);
+		}
+
+		@Override
+		public void ignorableAtRule(String atRule) throws CSSException {
+			record(IGNORABLE_AT_RULE, atRule);
+			delegate.ignorableAtRule(atRule);
+		}
+
+		@Override
+		public void namespaceDeclaration(String prefix, String uri) throws CSSException {
+			record(NAMESPACE_DECLARATION, prefix, uri);
+			delegate.namespaceDeclaration(prefix, uri);
+		}
+
+		@Override
+		public void importStyle(String uri, SACMediaList media, String defaultNamespaceURI) throws CSSException {
+			if (complete) {
+				try {
+					out.writeByte(IMPORT_STYLE);
+					writeString(uri);
+					writeMediaList(media);
+					writeString(defaultNamespaceURI);
+				} catch (IOException e) {
+					complete = false;
+				}
+			}
+			delegate.importStyle(uri, media, defaultNamespaceURI);
+		}
+
+		@Override
+		public void startMedia(SACMediaList media) throws CSSException {
+			if (complete) {
+				try {
+					out.writeByte(START_MEDIA);
+					writeMediaList(media);
+				} catch (IOException e) {
+					complete = false;
+				}
+			}
+			delegate.startMedia(media);
+		}
+
+		@Override
+		public void endMedia(SACMediaList media) throws CSSException {
+			record(END_MEDIA);
+			delegate.endMedia(media);
+		}
+
+		@Override
+		public void startPage(String name, String pseudoPage) throws CSSException {
+			record(START_PAGE, name, pseudoPage);
+			delegate.startPage(name, pseudoPage);
+		}
+
+		@Override
+		public void endPage(String name, String pseudoPage) throws CSSException {
+			record(END_PAGE, name, pseudoPage);
+			delegate.endPage(name, pseudoPage);
+		}
+
+		@Override
+		public void startFontFace() throws CSSException {
+			record(START_FONT_FACE);
+			delegate.startFontFace();
+		}
+
+		@Override
+		public void endFontFace() throws CSSException {
+			record(END_FONT_FACE);
+			delegate.endFontFace();
+		}
+
+		@Override
+		public void startSelector(SelectorList selectors) throws CSSException {
+			if (complete) {
+				try {
+					out.writeByte(START_SELECTOR);
+					out.writeInt(selectors.getLength());
+					for (int i = 0; i < selectors.getLength(); i++) {
+						writeSelector(selectors.item(i));
+					}
+				} catch (IOException e) {
+					complete = false;
+				}
+			}
+			delegate.startSelector(selectors);
+		}
+
+		@Override
+		public void endSelector(SelectorList selectors) throws CSSException {
+			record(END_SELECTOR);
+			delegate.endSelector(selectors);
+		}
+
+		@Override
+		public void property(String name, LexicalUnit value, boolean important) throws CSSException {
+			if (complete) {
+				try {
+					out.writeByte(PROPERTY);
+					writeString(name);
+					writeLexicalUnits(value);
+					out.writeBoolean(important);
+				} catch (IOException e) {
+					complete = false;
+				}
+			}
+			delegate.property(name, value, important);
+		}
+
+		private void record(byte event, String... values) {
+			if (complete) {
+				try {
+					out.writeByte(event);
+					for (String value : values) {
+						writeString(value);
+					}
+				} catch (IOException e) {
+					complete = false;
+				}
+			}
+		}
+
+		private void writeString(String value) throws IOException {
+			if (value == null) {
+				out.writeInt(-1);
+			} else {
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		}
+
+		private void writeMediaList(SACMediaList media) throws IOException {
+			if (media == null) {
+				out.writeInt(-1);
+				return;
+			}
+			out.writeInt(media.getLength());
+			for (int i = 0; i < media.getLength(); i++) {
+				writeString(media.item(i));
+			}
+		}
+
+		private void writeSelector(Selector selector) throws IOException {
+			short type = selector.getSelectorType();
+			out.writeShort(type);
+			switch (type) {
+			case Selector.SAC_ELEMENT_NODE_SELECTOR:
+			case Selector.SAC_PSEUDO_ELEMENT_SELECTOR:
+				ElementSelector element = (ElementSelector) selector;
+				writeString(element.getNamespaceURI());
+				writeString(element.getLocalName());
+				break;
+			case Selector.SAC_CONDITIONAL_SELECTOR:
+				ConditionalSelector conditional = (ConditionalSelector) selector;
+				writeSelector(conditional.getSimpleSelector());
+				writeCondition(conditional.getCondition());
+				break;
+			case Selector.SAC_DESCENDANT_SELECTOR:
+			case Selector.SAC_CHILD_SELECTOR:
+				DescendantSelector descendant = (DescendantSelector) selector;
+				writeSelector(descendant.getAncestorSelector());
+				writeSelector(descendant.getSimpleSelector());
+				break;
+			case Selector.SAC_DIRECT_ADJACENT_SELECTOR:
+				SiblingSelector sibling = (SiblingSelector) selector;
+				out.writeShort(sibling.getNodeType());
+				writeSelector(sibling.getSelector());
+				writeSelector(sibling.getSiblingSelector());
+				break;
+			default:
+				throw new IOException("Unsupported selector type " + type); //$NON-NLS-1$
+			}
+		}
+
+		private void writeCondition(Condition condition) throws IOException {
+			short type = condition.getConditionType();
+			out.writeShort(type);
+			switch (type) {
+			case Condition.SAC_AND_CONDITION:
+				CombinatorCondition combinator = (CombinatorCondition) condition;
+				writeCondition(combinator.getFirstCondition());
+				writeCondition(combinator.getSecondCondition());
+				break;
+			case Condition.SAC_ID_CONDITION:
+				writeString(((AttributeCondition) condition).getValue());
+				break;
+			case Condition.SAC_CLASS_CONDITION:
+			case Condition.SAC_PSEUDO_CLASS_CONDITION:
+				AttributeCondition namespaced = (AttributeCondition) condition;
+				writeString(namespaced.getNamespaceURI());
+				writeString(namespaced.getValue());
+				break;
+			case Condition.SAC_LANG_CONDITION:
+				writeString(((LangCondition) condition).getLang());
+				break;
+			case Condition.SAC_ATTRIBUTE_CONDITION:
+			case Condition.SAC_ONE_OF_ATTRIBUTE_CONDITION:
+			case Condition.SAC_BEGIN_HYPHEN_ATTRIBUTE_CONDITION:
+				AttributeCondition attribute = (AttributeCondition) condition;
+				writeString(attribute.getLocalName());
+				writeString(attribute.getNamespaceURI());
+				out.writeBoolean(attribute.getSpecified());
+				writeString(attribute.getValue());
+				break;
+			default:
+				throw new IOException("Unsupported condition type " + type); //$NON-NLS-1$
+			}
+		}
+
+		private void writeLexicalUnits(LexicalUnit unit) throws IOException {
+			for (; unit != null; unit = unit.getNextLexicalUnit()) {
+				out.writeBoolean(true);
+				writeLexicalUnit(unit);
+			}
+			out.writeBoolean(false);
+		}
+
+		private void writeLexicalUnit(LexicalUnit unit) throws IOException {
+			short type = unit.getLexicalUnitType();
+			out.writeShort(type);
+			switch (type) {
+			case LexicalUnit.SAC_INTEGER:
+				out.writeInt(unit.getIntegerValue());
+				return;
+			case LexicalUnit.SAC_DIMENSION:
+				out.writeFloat(unit.getFloatValue());
+				writeString(unit.getDimensionUnitText());
+				return;
+			case LexicalUnit.SAC_FUNCTION:
+				writeString(unit.getFunctionName());
+				writeLexicalUnits(unit.getParameters());
+				return;
+			default:
+				switch (getValueKind(type)) {
+				case SIMPLE:
+					return;
+				case FLOAT:
+					out.writeFloat(unit.getFloatValue());
+					return;
+				case STRING:
+					writeString(unit.getStringValue());
+					return;
+				case PREDEFINED_FUNCTION:
+					writeLexicalUnits(unit.getParameters());
+					return;
+				default:
+					throw new IOException("Unsupported lexical unit type " + type); //$NON-NLS-1$
+				}
+			}
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2015 Angelo Zerr and others.
+ * Copyright (c) 2008, 2017 Angelo Zerr and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,12 +13,23 @@ package org.eclipse.e4.ui.css.core.resources;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
 /**
  * Abstract class resources registry which implement basic cache with Map.
+ * <p>
+ * References to registered resources can be counted with
+ * {@link #addReference(Object)} and {@link #removeReference(Object)}. A
+ * resource whose references were all removed is kept for reuse, and disposed
+ * once too many other resources became unreferenced since. Resources which
+ * are used without counting references are pinned with
+ * {@link #pinResource(Object)} and only disposed with the registry.
+ * </p>
  *
  * @version 1.0.0
  * @author <a href="mailto:angelo.zerr@gmail.com">Angelo ZERR</a>
@@ -26,8 +37,55 @@ import java.util.Set;
  */
 public abstract class AbstractResourcesRegistry implements IResourcesRegistry {
 
+	/**
+	 * The default number of unreferenced resources kept for reuse.
+	 */
+	private static final int MAX_UNREFERENCED_RESOURCES = 64;
+
+	/**
+	 * Counted references to a registered resource.
+	 */
+	private static class ResourceUsage {
+		final Object type;
+		final Object key;
+		final Object resource;
+		int references;
+		boolean pinned;
+
+		ResourceUsage(Object type, Object key, Object resource) {
+			this.type = type;
+			this.key = key;
+			this.resource = resource;
+		}
+	}
+
 	private Map<Object, Map<Object, Object>> allResourcesMap;
 
+	/**
+	 * Usage of the registered resources, by resource identity.
+	 */
+	private Map<Object, ResourceUsage> usages;
+
+	/**
+	 * Usage of the resources which are no longer referenced, least recently
+	 * released first.
+	 */
+	private LinkedHashSet<ResourceUsage> unreferenced;
+
+	private final int maxUnreferencedResources;
+
+	public AbstractResourcesRegistry() {
+		this(MAX_UNREFERENCED_RESOURCES);
+	}
+
+	/**
+	 * @param maxUnreferencedResources
+	 *            the number of unreferenced resources kept for reuse
+	 */
+	protected AbstractResourcesRegistry(int maxUnreferencedResources) {
+		this.maxUnreferencedResources = maxUnreferencedResources;
+	}
+
 	@Override
 	public Object getResource(Object type, Object key) {
 		if (allResourcesMap == null) {
@@ -50,7 +108,94 @@ public abstract class AbstractResourcesRegistry implements IResourcesRegistry {
 			resourcesMap = new HashMap<>();
 			allResourcesMap.put(type, resourcesMap);
 		}
-		resourcesMap.put(key, resource);
+		Object replaced = resourcesMap.put(key, resource);
+		if (replaced != null && replaced != resource) {
+			removeUsage(replaced);
+		}
+		if (usages == null) {
+			usages = new IdentityHashMap<>();
+			unreferenced = new LinkedHashSet<>();
+		}
+		usages.put(resource, new ResourceUsage(type, key, resource));
+	}
+
+	/**
+	 * Counts a reference to a registered resource, which is not disposed
+	 * until the reference is removed.
+	 *
+	 * @param resource
+	 *            the registered resource
+	 */
+	public void addReference(Object resource) {
+		ResourceUsage usage = usages == null ? null : usages.get(resource);
+		if (usage != null) {
+			usage.references++;
+			unreferenced.remove(usage);
+		}
+	}
+
+	/**
+	 * Removes a reference counted with {@link #addReference(Object)}. If it
+	 * was the last reference and the resource is not pinned, the resource may
+	 * be disposed.
+	 *
+	 * @param resource
+	 *            the registered resource
+	 */
+	public void removeReference(Object resource) {
+		ResourceUsage usage = usages == null ? null : usages.get(resource);
+		if (usage == null || usage.references == 0) {
+			return;
+		}
+		if (--usage.references == 0 && !usage.pinned) {
+			unreferenced.add(usage);
+			if (unreferenced.size() > maxUnreferencedResources) {
+				Iterator<ResourceUsage> iter = unreferenced.iterator();
+				ResourceUsage eldest = iter.next();
+				iter.remove();
+				evict(eldest);
+			}
+		}
+	}
+
+	/**
+	 * Marks a registered resource as used without counted references, so
+	 * that it is only disposed with the registry.
+	 *
+	 * @param resource
+	 *            the registered resource
+	 */
+	public void pinResource(Object resource) {
+		ResourceUsage usage = usages == null ? null : usages.get(resource);
+		if (usage != null && !usage.pinned) {
+			usage.pinned = true;
+			unreferenced.remove(usage);
+		}
+	}
+
+	private void evict(ResourceUsage usage) {
+		usages.remove(usage.resource);
+		Map<Object, Object> resourcesMap = allResourcesMap.get(usage.type);
+		// resources removed from the cache are owned by whoever removed them
+		if (resourcesMap != null && resourcesMap.get(usage.key) == usage.resource) {
+			resourcesMap.remove(usage.key);
+			disposeResource(usage.type, usage.key, usage.resource);
+		}
+	}
+
+	/**
+	 * Stops counting the references to a resource removed from the cache.
+	 * Must be called whenever a resource is removed other than by the
+	 * registry's own eviction.
+	 *
+	 * @param resource
+	 *            the removed resource
+	 */
+	protected void removeUsage(Object resource) {
+		ResourceUsage usage = usages == null ? null : usages.remove(resource);
+		if (usage != null) {
+			unreferenced.remove(usage);
+		}
 	}
 
 	protected Map<Object, Object> getCacheByType(Object type) {
@@ -72,20 +217,21 @@ public abstract class AbstractResourcesRegistry implements IResourcesRegistry {
 		if (resourcesMap == null) {
 			return;
 		}
-		Object resource = resourcesMap.get(key);
+		Object resource = resourcesMap.remove(key);
 		if (resource != null) {
-			resourcesMap.remove(resource);
+			removeUsage(resource);
 		}
 	}
 
 	public void unregisterResource(Object resource) {
 		Object type = getResourceType(resource);
-		if (type != null) {
+		if (type != null && allResourcesMap != null) {
 			Map<Object, Object> resourcesMap = allResourcesMap.get(type);
 			if (resourcesMap != null) {
-				resourcesMap.remove(resource);
+				resourcesMap.values().remove(resource);
 			}
 		}
+		removeUsage(resource);
 	}
 
 	public Object getResourceType(Object resource) {
@@ -108,6 +254,8 @@ public abstract class AbstractResourcesRegistry implements IResourcesRegistry {
 			}
 		}
 		allResourcesMap = null;
+		usages = null;
+		unreferenced = null;
 	}
 
 	public abstract void disposeResource(Object type, Object key, Object resource);
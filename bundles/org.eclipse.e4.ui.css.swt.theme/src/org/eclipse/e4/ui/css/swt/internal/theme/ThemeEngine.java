@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2015 Tom Schindl and others.
+ * Copyright (c) 2010, 2017 Tom Schindl and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -41,6 +41,8 @@ import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.core.runtime.preferences.InstanceScope;
 import org.eclipse.e4.ui.css.core.engine.CSSElementContext;
 import org.eclipse.e4.ui.css.core.engine.CSSEngine;
+import org.eclipse.e4.ui.css.core.impl.engine.AbstractCSSEngine;
+import org.eclipse.e4.ui.css.core.impl.engine.StyleSheetCache;
 import org.eclipse.e4.ui.css.core.util.impl.resources.FileResourcesLocatorImpl;
 import org.eclipse.e4.ui.css.core.util.impl.resources.OSGiResourceLocator;
 import org.eclipse.e4.ui.css.core.util.resources.IResourceLocator;
@@ -69,6 +71,8 @@ public class ThemeEngine implements IThemeEngine {
 
 	private ITheme currentTheme;
 
+	private StyleSheetCache styleSheetCache;
+
 	private List<String> globalStyles = new ArrayList<>();
 	private List<IResourceLocator> globalSourceLocators = new ArrayList<>();
 
@@ -518,6 +522,33 @@ public class ThemeEngine implements IThemeEngine {
 		}
 	}
 
+	@Override
+	public void invalidateStyles(Object widget) {
+		for (CSSEngine engine : cssEngines) {
+			Object element = engine.getElement(widget);
+			if (element != null) {
+				engine.invalidateStyles(element);
+			}
+		}
+	}
+
+	@Override
+	public void applyInvalidatedStyles() {
+		for (CSSEngine engine : cssEngines) {
+			engine.applyInvalidatedStyles();
+		}
+	}
+
+	@Override
+	public void reapplyStyles(Object widget) {
+		for (CSSEngine engine : cssEngines) {
+			Object element = engine.getElement(widget);
+			if (element != null) {
+				engine.reapplyStyles(element);
+			}
+		}
+	}
+
 	private String getPreferenceThemeId() {
 		return getPreferences().get(THEMEID_KEY, null);
 	}
@@ -615,10 +646,36 @@ public class ThemeEngine implements IThemeEngine {
 
 	@Override
 	public void addCSSEngine(CSSEngine cssEngine) {
+		if (cssEngine instanceof AbstractCSSEngine) {
+			AbstractCSSEngine engine = (AbstractCSSEngine) cssEngine;
+			if (engine.getStyleSheetCache() == null) {
+				engine.setStyleSheetCache(getStyleSheetCache());
+			}
+		}
 		cssEngines.add(cssEngine);
 		resetCurrentTheme();
 	}
 
+	/**
+	 * Returns the cache of compiled style sheets in the workspace metadata
+	 * area, or <code>null</code> if there is no workspace.
+	 */
+	private StyleSheetCache getStyleSheetCache() {
+		if (styleSheetCache == null) {
+			Location instanceLocation = org.eclipse.core.runtime.Platform.getInstanceLocation();
+			if (instanceLocation == null || !instanceLocation.isSet() || instanceLocation.isReadOnly()) {
+				return null;
+			}
+			try {
+				URL dataArea = instanceLocation.getDataArea(THEME_PLUGIN_ID + "/stylesheets"); //$NON-NLS-1$
+				styleSheetCache = new StyleSheetCache(new File(dataArea.getFile()));
+			} catch (IOException e) {
+				return null;
+			}
+		}
+		return styleSheetCache;
+	}
+
 	public Collection<CSSEngine> getCSSEngines() {
 		return cssEngines;
 	}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2015 Tom Schindl and others.
+ * Copyright (c) 2010, 2017 Tom Schindl and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -152,6 +152,42 @@ public interface IThemeEngine {
 	 */
 	public void applyStyles(Object widget, boolean applyStylesToChildNodes);
 
+	/**
+	 * Mark the style of the widget as out of date, because its class, id or
+	 * state changed. The widget and the children whose style depends on it
+	 * are restyled together with the other invalidated widgets. The default
+	 * implementation reapplies the style to the widget and its children
+	 * immediately.
+	 *
+	 * @param widget
+	 *            the widget
+	 */
+	public default void invalidateStyles(Object widget) {
+		applyStyles(widget, true);
+	}
+
+	/**
+	 * Restyle the widgets passed to {@link #invalidateStyles(Object)} right
+	 * away, instead of waiting for the engine to restyle them. The default
+	 * implementation does nothing, since the default implementation of
+	 * {@link #invalidateStyles(Object)} restyles the widget immediately.
+	 */
+	public default void applyInvalidatedStyles() {
+	}
+
+	/**
+	 * Restyle the widget, whose class, id or state changed, and the children
+	 * whose style depends on it right away, without waiting for the other
+	 * invalidated widgets. The default implementation reapplies the style to
+	 * the widget and its children.
+	 *
+	 * @param widget
+	 *            the widget
+	 */
+	public default void reapplyStyles(Object widget) {
+		applyStyles(widget, true);
+	}
+
 	/**
 	 * Get the style currently active for a widget
 	 *
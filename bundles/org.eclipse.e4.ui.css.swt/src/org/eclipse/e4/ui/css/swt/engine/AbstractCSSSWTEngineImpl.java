@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2014 Angelo Zerr and others.
+ * Copyright (c) 2008, 2017 Angelo Zerr and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,9 +11,13 @@
  *******************************************************************************/
 package org.eclipse.e4.ui.css.swt.engine;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import org.eclipse.e4.ui.css.core.dom.CSSStylableElement;
 import org.eclipse.e4.ui.css.core.engine.CSSElementContext;
 import org.eclipse.e4.ui.css.core.impl.engine.CSSEngineImpl;
+import org.eclipse.e4.ui.css.core.impl.engine.Policy;
 import org.eclipse.e4.ui.css.core.resources.IResourcesRegistry;
 import org.eclipse.e4.ui.css.swt.dom.WidgetElement;
 import org.eclipse.e4.ui.css.swt.properties.converters.CSSValueSWTColorConverterImpl;
@@ -25,7 +29,11 @@ import org.eclipse.e4.ui.css.swt.properties.converters.CSSValueSWTImageConverter
 import org.eclipse.e4.ui.css.swt.properties.converters.CSSValueSWTRGBConverterImpl;
 import org.eclipse.e4.ui.css.swt.resources.SWTResourceRegistryKeyFactory;
 import org.eclipse.e4.ui.css.swt.resources.SWTResourcesRegistry;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.Widget;
 import org.w3c.dom.Element;
 
@@ -35,8 +43,36 @@ import org.w3c.dom.Element;
  */
 public abstract class AbstractCSSSWTEngineImpl extends CSSEngineImpl {
 
+	/**
+	 * Delay before the styles of hidden controls are applied in the
+	 * background, in milliseconds.
+	 */
+	private static final int WARM_UP_DELAY = 2000;
+
+	/**
+	 * Time spent applying the styles of hidden controls before yielding to
+	 * the event loop, in milliseconds.
+	 */
+	private static final long WARM_UP_BUDGET = 20;
+
 	protected Display display;
 
+	/**
+	 * Hidden controls whose styles and the styles of whose children are
+	 * applied when they are shown, oldest first.
+	 */
+	private final Set<Control> hiddenControls = new LinkedHashSet<>();
+
+	private final Listener showListener = event -> {
+		Control control = (Control) event.widget;
+		if (forgetHiddenControl(control) && event.type != SWT.Dispose) {
+			applyDeferredStyles(control);
+			relayout(control);
+		}
+	};
+
+	private boolean warmUpScheduled;
+
 	public AbstractCSSSWTEngineImpl(Display display) {
 		this(display, false);
 	}
@@ -66,6 +102,11 @@ public abstract class AbstractCSSSWTEngineImpl extends CSSEngineImpl {
 
 		if (lazyApplyingStyles) {
 			new CSSSWTApplyStylesListener(display, this);
+			setDeferHiddenStyles(true);
+		}
+		if (Policy.DEBUG_PROFILE) {
+			// report the profile of the whole session
+			display.addListener(SWT.Dispose, event -> traceProfile());
 		}
 
 		initializeCSSElementProvider();
@@ -118,8 +159,107 @@ public abstract class AbstractCSSSWTEngineImpl extends CSSEngineImpl {
 				.getData("org.eclipse.e4.ui.css.disabled")); //$NON-NLS-1$
 	}
 
+	/**
+	 * Applies the styles of the invalidated widgets once the display has
+	 * handled the current event, so that all widgets invalidated in the
+	 * meantime are restyled together.
+	 */
+	@Override
+	protected void scheduleInvalidatedStyles() {
+		if (!display.isDisposed()) {
+			display.asyncExec(this::applyInvalidatedStyles);
+		}
+	}
+
+	/**
+	 * Defers the styles of a control which is hidden, or whose parent or
+	 * another ancestor below the shell is hidden, until the hidden control is
+	 * shown or painted. The styles of hidden controls are also applied in the
+	 * background a little at a time after a while. Once styled, the hidden
+	 * control is laid out again together with its ancestors, since fonts and
+	 * other styles may have changed its preferred size.
+	 */
+	@Override
+	protected boolean deferStyles(Element elt, boolean checkAncestors) {
+		Object widget = elt instanceof CSSStylableElement ? ((CSSStylableElement) elt).getNativeWidget() : null;
+		if (!(widget instanceof Control) || widget instanceof Shell || ((Control) widget).isDisposed()) {
+			return false;
+		}
+		Control hidden = (Control) widget;
+		if (hidden.getVisible()) {
+			if (!checkAncestors) {
+				return false;
+			}
+			do {
+				hidden = hidden.getParent();
+			} while (hidden != null && !(hidden instanceof Shell) && hidden.getVisible());
+			if (hidden == null || hidden instanceof Shell) {
+				return false;
+			}
+		}
+		if (hiddenControls.add(hidden)) {
+			hidden.addListener(SWT.Show, showListener);
+			hidden.addListener(SWT.Paint, showListener);
+			hidden.addListener(SWT.Dispose, showListener);
+			scheduleWarmUp();
+		}
+		return true;
+	}
+
+	private boolean forgetHiddenControl(Control control) {
+		if (!hiddenControls.remove(control)) {
+			return false;
+		}
+		if (!control.isDisposed()) {
+			control.removeListener(SWT.Show, showListener);
+			control.removeListener(SWT.Paint, showListener);
+			control.removeListener(SWT.Dispose, showListener);
+		}
+		return true;
+	}
+
+	private void scheduleWarmUp() {
+		if (!warmUpScheduled && !display.isDisposed()) {
+			warmUpScheduled = true;
+			display.timerExec(WARM_UP_DELAY, this::warmUp);
+		}
+	}
+
+	/**
+	 * Applies the styles of hidden controls until the time budget is spent,
+	 * and schedules itself again if hidden controls remain.
+	 */
+	private void warmUp() {
+		warmUpScheduled = false;
+		long end = System.currentTimeMillis() + WARM_UP_BUDGET;
+		while (!hiddenControls.isEmpty() && System.currentTimeMillis() < end) {
+			Control control = hiddenControls.iterator().next();
+			forgetHiddenControl(control);
+			if (!control.isDisposed()) {
+				applyDeferredStyles(control);
+				relayout(control);
+			}
+		}
+		if (!hiddenControls.isEmpty()) {
+			scheduleWarmUp();
+		}
+	}
+
+	/**
+	 * Lays out the given control and its ancestors again after its deferred
+	 * styles have been applied.
+	 */
+	private void relayout(Control control) {
+		if (!control.isDisposed()) {
+			control.requestLayout();
+		}
+	}
+
 	@Override
 	public void reset() {
+		for (Control control : new ArrayList<>(hiddenControls)) {
+			forgetHiddenControl(control);
+		}
 		for (CSSElementContext elementContext : getElementsContext().values()) {
 			Element element = elementContext.getElement();
 			if (element instanceof WidgetElement
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2015 IBM Corporation and others.
+ * Copyright (c) 2010, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -219,4 +219,11 @@ AbstractCSSPropertyPaddingHandler {
 			}
 		}
 	}
+
+	@Override
+	public boolean canSkipUnchangedValue(Object element, String property) {
+		// the padding of a CTabFolder is applied to its renderer, which can be
+		// replaced
+		return !(SWTElementHelpers.getControl(element) instanceof CTabFolder);
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2016 IBM Corporation and others.
+ * Copyright (c) 2010, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -44,4 +44,10 @@ public class CSSPropertyOuterKeylineSWTHandler extends AbstractCSSPropertySWTHan
 		return null;
 	}
 
+	@Override
+	public boolean canSkipUnchangedValue(Object element, String property) {
+		// the value is applied to the renderer, which can be replaced
+		return false;
+	}
+
 }
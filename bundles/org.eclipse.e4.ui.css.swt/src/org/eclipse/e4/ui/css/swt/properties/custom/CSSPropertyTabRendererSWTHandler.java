@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2014 IBM Corporation and others.
+ * Copyright (c) 2010, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,6 +12,7 @@ package org.eclipse.e4.ui.css.swt.properties.custom;
 
 import java.lang.reflect.Constructor;
 import org.eclipse.e4.ui.css.core.engine.CSSEngine;
+import org.eclipse.e4.ui.css.core.impl.engine.AbstractCSSEngine;
 import org.eclipse.e4.ui.css.swt.helpers.URI;
 import org.eclipse.e4.ui.css.swt.properties.AbstractCSSPropertySWTHandler;
 import org.eclipse.e4.ui.internal.css.swt.CSSActivator;
@@ -68,6 +69,7 @@ public class CSSPropertyTabRendererSWTHandler extends AbstractCSSPropertySWTHand
 								Object rend = constructor.newInstance(control);
 								if (rend != null && rend instanceof CTabFolderRenderer) {
 									((CTabFolder) control).setRenderer((CTabFolderRenderer)rend);
+									rendererChanged(control, engine);
 								}
 							}
 						} catch (ClassNotFoundException e) {
@@ -79,10 +81,21 @@ public class CSSPropertyTabRendererSWTHandler extends AbstractCSSPropertySWTHand
 				}
 			} else {
 				((CTabFolder) control).setRenderer(null);
+				rendererChanged(control, engine);
 			}
 		}
 	}
 
+	/**
+	 * The values applied to the previous renderer have to be applied to the
+	 * new one again.
+	 */
+	private void rendererChanged(Control control, CSSEngine engine) {
+		if (engine instanceof AbstractCSSEngine) {
+			((AbstractCSSEngine) engine).forgetAppliedValues(control);
+		}
+	}
+
 	@Override
 	protected String retrieveCSSProperty(Control control, String property,
 			String pseudo, CSSEngine engine) throws Exception {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2015 Angelo Zerr and others.
+ * Copyright (c) 2008, 2017 Angelo Zerr and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -53,7 +53,7 @@ public class SWTResourcesRegistry extends AbstractResourcesRegistry {
 			if (isDisposed(resource)) {
 				// SWT Resource is disposed
 				// unregister it.
-				super.unregisterResource(resource);
+				super.unregisterResource(type, key);
 				return null;
 			}
 		}
@@ -136,6 +136,7 @@ public class SWTResourcesRegistry extends AbstractResourcesRegistry {
 				if (keyType.isAssignableFrom(entry.getKey().getClass())) {
 					removedResources.add(entry.getValue());
 					iter.remove();
+					removeUsage(entry.getValue());
 				}
 			}
 		}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 IBM Corporation and others.
+ * Copyright (c) 2015, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,6 +12,7 @@
 package org.eclipse.e4.ui.workbench.renderers.swt;
 
 import javax.inject.Inject;
+import org.eclipse.core.expressions.ExpressionInfo;
 import org.eclipse.core.runtime.ISafeRunnable;
 import org.eclipse.core.runtime.SafeRunner;
 import org.eclipse.e4.core.contexts.IContextFunction;
@@ -467,6 +468,19 @@ public abstract class AbstractContributionItem extends ContributionItem {
 	 */
 	protected abstract boolean canExecuteItem(Event event);
 
+	/**
+	 * Adds the context variables read by {@link #canExecuteItem(Event)} to the
+	 * given info, so that the enablement of this item is only updated when one
+	 * of them changes. The default implementation marks this item as
+	 * misbehaving, which updates its enablement on every change.
+	 *
+	 * @param info
+	 *            the info to add the variables to
+	 */
+	protected void collectEnablementInfo(ExpressionInfo info) {
+		info.addMisBehavingExpressionType(getClass());
+	}
+
 	protected Listener getItemListener() {
 		if (menuItemListener == null) {
 			menuItemListener = new Listener() {
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.e4.ui.workbench.renderers.swt;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.eclipse.jface.action.IContributionManager;
+import org.eclipse.jface.action.MenuManager;
+import org.eclipse.jface.action.ToolBarManager;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.ToolBar;
+
+/**
+ * Coalesces the updates of the contribution managers of a renderer.
+ * <p>
+ * A scheduled manager is marked dirty right away, which also marks its parent
+ * menus dirty, and updated once in an <code>asyncExec</code> on the display,
+ * however often it is scheduled before. Adding many elements to the model, as
+ * done when installing a plug-in or switching perspectives, thus updates each
+ * manager once instead of once per element. A menu about to be shown is
+ * updated together with its pending sub-menus with {@link #update}.
+ * </p>
+ */
+class ContributionManagerUpdater {
+
+	private final Display display;
+
+	/**
+	 * The managers to update, mapped to whether the update is forced.
+	 */
+	private final Map<IContributionManager, Boolean> managersToUpdate = new LinkedHashMap<>();
+
+	private boolean updateScheduled;
+
+	private final Runnable updateRunnable = new Runnable() {
+		@Override
+		public void run() {
+			updateAll();
+		}
+	};
+
+	/**
+	 * @param display
+	 *            the display to update the managers in, or <code>null</code>
+	 *            to update them right away
+	 */
+	ContributionManagerUpdater(Display display) {
+		this.display = display;
+	}
+
+	/**
+	 * Schedules an update of the given manager.
+	 *
+	 * @param manager
+	 *            the manager to update
+	 * @param force
+	 *            whether the update is forced, see
+	 *            {@link IContributionManager#update(boolean)}
+	 */
+	void scheduleUpdate(IContributionManager manager, boolean force) {
+		manager.markDirty();
+		if (display == null || display.isDisposed()) {
+			update(manager, force);
+			return;
+		}
+		synchronized (managersToUpdate) {
+			Boolean forced = managersToUpdate.get(manager);
+			if (forced == null || (force && !forced.booleanValue())) {
+				managersToUpdate.put(manager, Boolean.valueOf(force));
+			}
+			if (updateScheduled) {
+				return;
+			}
+			updateScheduled = true;
+		}
+		display.asyncExec(updateRunnable);
+	}
+
+	/**
+	 * Updates the given manager and its sub-menus right away, if they have a
+	 * scheduled update.
+	 *
+	 * @param manager
+	 *            the manager about to be shown
+	 */
+	void update(IContributionManager manager) {
+		List<Entry<IContributionManager, Boolean>> toUpdate = new ArrayList<>();
+		synchronized (managersToUpdate) {
+			if (managersToUpdate.isEmpty()) {
+				return;
+			}
+			Iterator<Entry<IContributionManager, Boolean>> iterator = managersToUpdate.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Entry<IContributionManager, Boolean> entry = iterator.next();
+				if (isSelfOrDescendant(entry.getKey(), manager)) {
+					toUpdate.add(entry);
+					iterator.remove();
+				}
+			}
+		}
+		for (Entry<IContributionManager, Boolean> entry : toUpdate) {
+			update(entry.getKey(), entry.getValue().booleanValue());
+		}
+	}
+
+	/**
+	 * Updates all managers with a scheduled update right away.
+	 */
+	void updateAll() {
+		Map<IContributionManager, Boolean> toUpdate;
+		synchronized (managersToUpdate) {
+			updateScheduled = false;
+			toUpdate = new LinkedHashMap<>(managersToUpdate);
+			managersToUpdate.clear();
+		}
+		for (Entry<IContributionManager, Boolean> entry : toUpdate.entrySet()) {
+			update(entry.getKey(), entry.getValue().booleanValue());
+		}
+	}
+
+	private static boolean isSelfOrDescendant(IContributionManager manager, IContributionManager ancestor) {
+		IContributionManager current = manager;
+		while (current != null) {
+			if (current == ancestor) {
+				return true;
+			}
+			current = current instanceof MenuManager ? ((MenuManager) current).getParent() : null;
+		}
+		return false;
+	}
+
+	private static void update(IContributionManager manager, boolean force) {
+		manager.update(force);
+		if (manager instanceof ToolBarManager) {
+			ToolBar toolbar = ((ToolBarManager) manager).getControl();
+			if (toolbar != null && !toolbar.isDisposed()) {
+				toolbar.requestLayout();
+			}
+		}
+	}
+}
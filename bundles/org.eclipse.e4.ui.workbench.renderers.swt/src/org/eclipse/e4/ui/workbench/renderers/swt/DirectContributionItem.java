@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2015 IBM Corporation and others.
+ * Copyright (c) 2010, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,6 +15,7 @@
 package org.eclipse.e4.ui.workbench.renderers.swt;
 
 import javax.inject.Inject;
+import org.eclipse.core.expressions.ExpressionInfo;
 import org.eclipse.e4.core.contexts.ContextInjectionFactory;
 import org.eclipse.e4.core.contexts.EclipseContextFactory;
 import org.eclipse.e4.core.contexts.IEclipseContext;
@@ -149,6 +150,14 @@ public class DirectContributionItem extends AbstractContributionItem {
 		return result.booleanValue();
 	}
 
+	@Override
+	protected void collectEnablementInfo(ExpressionInfo info) {
+		for (String name : ToolItemUpdater.ACTIVE_LEAF_VARIABLES) {
+			info.addVariableNameAccess(name);
+		}
+		ToolItemUpdater.collectCanExecuteInfo(((MContribution) getModel()).getObject(), info);
+	}
+
 	/**
 	 * Return the execution context for the @CanExecute and @Execute methods.
 	 * This should be the same as the execution context used by the
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2015 IBM Corporation and others.
+ * Copyright (c) 2010, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -25,9 +25,11 @@ import org.eclipse.core.commands.IStateListener;
 import org.eclipse.core.commands.ParameterizedCommand;
 import org.eclipse.core.commands.State;
 import org.eclipse.core.commands.common.NotDefinedException;
+import org.eclipse.core.expressions.ExpressionInfo;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.e4.core.commands.ECommandService;
 import org.eclipse.e4.core.commands.EHandlerService;
+import org.eclipse.e4.core.commands.internal.HandlerServiceImpl;
 import org.eclipse.e4.core.commands.internal.ICommandHelpService;
 import org.eclipse.e4.core.contexts.EclipseContextFactory;
 import org.eclipse.e4.core.contexts.IContextFunction;
@@ -448,6 +450,25 @@ public class HandledContributionItem extends AbstractContributionItem {
 		return service.canExecute(cmd, staticContext);
 	}
 
+	@Override
+	@SuppressWarnings("restriction")
+	protected void collectEnablementInfo(ExpressionInfo info) {
+		for (String name : ToolItemUpdater.ACTIVE_LEAF_VARIABLES) {
+			info.addVariableNameAccess(name);
+		}
+		if (getModel().getWbCommand() == null) {
+			return;
+		}
+		// the handler which canExecuteItem looked up, the item is updated on
+		// every change if it has not run
+		Object handler = null;
+		if (infoContext != null) {
+			handler = infoContext.get(HandlerServiceImpl.HANDLER);
+			infoContext.remove(HandlerServiceImpl.HANDLER);
+		}
+		ToolItemUpdater.collectCanExecuteInfo(handler, info);
+	}
+
 	@Override
 	public MHandledItem getModel() {
 		return (MHandledItem) super.getModel();
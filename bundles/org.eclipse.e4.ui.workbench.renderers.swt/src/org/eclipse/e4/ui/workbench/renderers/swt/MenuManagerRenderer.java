@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2016 IBM Corporation and others.
+ * Copyright (c) 2009, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -26,7 +26,6 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -105,7 +104,7 @@ public class MenuManagerRenderer extends SWTPartRenderer {
 	private Map<MMenuElement, ContributionRecord> modelContributionToRecord = new HashMap<>();
 	private Map<MMenuElement, ArrayList<ContributionRecord>> sharedElementToRecord = new HashMap<>();
 
-	private Collection<IContributionManager> mgrToUpdate = new LinkedHashSet<>();
+	private ContributionManagerUpdater managerUpdater;
 
 	@Inject
 	private Logger logger;
@@ -302,6 +301,7 @@ public class MenuManagerRenderer extends SWTPartRenderer {
 
 		context.set(MenuManagerRenderer.class, this);
 		Display display = context.get(Display.class);
+		managerUpdater = new ContributionManagerUpdater(display);
 		rendererFilter = ContextInjectionFactory.make(MenuManagerRendererFilter.class, context);
 		display.addFilter(SWT.Show, rendererFilter);
 		display.addFilter(SWT.Hide, rendererFilter);
@@ -325,7 +325,10 @@ public class MenuManagerRenderer extends SWTPartRenderer {
 		MMenu menuModel = (MMenu) event.getProperty(UIEvents.EventTags.ELEMENT);
 		if (UIEvents.isADD(event)) {
 			Object obj = menuModel;
-			processContents((MElementContainer<MUIElement>) obj);
+			MenuManager manager = processChildren((MElementContainer<MUIElement>) obj);
+			if (manager != null) {
+				scheduleManagerUpdate(manager);
+			}
 		}
 	}
 
@@ -636,10 +639,24 @@ public class MenuManagerRenderer extends SWTPartRenderer {
 		if (container == null)
 			return;
 
+		MenuManager parentManager = processChildren(container);
+		if (parentManager != null) {
+			parentManager.update(false);
+		}
+	}
+
+	/**
+	 * Adds contribution items for the children of the given menu which do not
+	 * have one yet.
+	 *
+	 * @return the manager of the menu, or <code>null</code> if it is not
+	 *         rendered
+	 */
+	private MenuManager processChildren(MElementContainer<MUIElement> container) {
 		// this is in direct violation of good programming
 		MenuManager parentManager = getManager((MMenu) ((Object) container));
 		if (parentManager == null) {
-			return;
+			return null;
 		}
 		// Process any contents of the newly created ME
 		List<MUIElement> parts = container.getChildren();
@@ -650,7 +667,7 @@ public class MenuManagerRenderer extends SWTPartRenderer {
 				modelProcessSwitch(parentManager, (MMenuElement) childME);
 			}
 		}
-		scheduleManagerUpdate(parentManager);
+		return parentManager;
 	}
 
 	private void addToManager(MenuManager parentManager, MMenuElement model, IContributionItem menuManager) {
@@ -1183,34 +1200,23 @@ public class MenuManagerRenderer extends SWTPartRenderer {
 	}
 
 	private void scheduleManagerUpdate(IContributionManager mgr) {
-		// Bug 467000: Avoid repeatedly updating menu managers
-		// This workaround is opt-in for 4.5
-		boolean workaroundEnabled = Boolean.getBoolean("eclipse.workaround.bug467000"); //$NON-NLS-1$
-		if (!workaroundEnabled) {
+		if (managerUpdater == null) {
 			mgr.update(false);
-			return;
+		} else {
+			managerUpdater.scheduleUpdate(mgr, false);
 		}
-		synchronized (mgrToUpdate) {
-			if (this.mgrToUpdate.isEmpty()) {
-				Display display = context.get(Display.class);
-				if (display != null && !display.isDisposed()) {
-					display.timerExec(100, new Runnable() {
-
-						@Override
-						public void run() {
-							Collection<IContributionManager> toUpdate = new LinkedHashSet<>();
-							synchronized (mgrToUpdate) {
-								toUpdate.addAll(mgrToUpdate);
-								mgrToUpdate.clear();
-							}
-							for (IContributionManager mgr : toUpdate) {
-								mgr.update(false);
-							}
-						}
-					});
-				}
-				this.mgrToUpdate.add(mgr);
-			}
+	}
+
+	/**
+	 * Updates the given menu manager and its sub-menus right away if they have
+	 * a scheduled update. Called before the menu is shown.
+	 *
+	 * @param mgr
+	 *            the menu manager about to be shown
+	 */
+	void updateScheduledManagers(MenuManager mgr) {
+		if (managerUpdater != null) {
+			managerUpdater.update(mgr);
 		}
 	}
 }
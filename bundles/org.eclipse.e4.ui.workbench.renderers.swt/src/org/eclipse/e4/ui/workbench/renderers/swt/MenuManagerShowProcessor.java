@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2016 IBM Corporation and others.
+ * Copyright (c) 2010, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -74,6 +74,8 @@ public class MenuManagerShowProcessor implements IMenuListener2 {
 			return;
 		}
 		MenuManager menuManager = (MenuManager) manager;
+		// don't wait for the scheduled updates of the menu being shown
+		renderer.updateScheduledManagers(menuManager);
 		final MMenu menuModel = renderer.getMenuModel(menuManager);
 		final Menu menu = menuManager.getMenu();
 
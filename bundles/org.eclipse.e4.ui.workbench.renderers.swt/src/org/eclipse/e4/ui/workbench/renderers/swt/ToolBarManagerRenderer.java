@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2016 IBM Corporation and others.
+ * Copyright (c) 2009, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -74,6 +74,7 @@ import org.eclipse.swt.events.DisposeEvent;
 import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.ToolBar;
 import org.eclipse.swt.widgets.ToolItem;
 import org.eclipse.swt.widgets.Widget;
@@ -112,6 +113,8 @@ public class ToolBarManagerRenderer extends SWTPartRenderer {
 
 	private ToolItemUpdater enablementUpdater = new ToolItemUpdater();
 
+	private ContributionManagerUpdater managerUpdater;
+
 	@Inject
 	private MApplication application;
 
@@ -162,11 +165,7 @@ public class ToolBarManagerRenderer extends SWTPartRenderer {
 			if (itemModel.isToBeRendered()) {
 				if (parent != null) {
 					modelProcessSwitch(parent, itemModel);
-					parent.update(true);
-					ToolBar toolbar = parent.getControl();
-					if (toolbar != null && !toolbar.isDisposed()) {
-						toolbar.requestLayout();
-					}
+					scheduleManagerUpdate(parent);
 				}
 			} else {
 				IContributionItem ici = modelToContribution.remove(itemModel);
@@ -209,12 +208,7 @@ public class ToolBarManagerRenderer extends SWTPartRenderer {
 				}
 			}
 
-			parent.markDirty();
-			parent.update(true);
-			ToolBar toolbar = parent.getControl();
-			if (toolbar != null && !toolbar.isDisposed()) {
-				toolbar.requestLayout();
-			}
+			scheduleManagerUpdate(parent);
 		}
 	}
 
@@ -259,7 +253,10 @@ public class ToolBarManagerRenderer extends SWTPartRenderer {
 		MToolBar toolbarModel = (MToolBar) event.getProperty(UIEvents.EventTags.ELEMENT);
 		if (UIEvents.isADD(event)) {
 			Object obj = toolbarModel;
-			processContents((MElementContainer<MUIElement>) obj);
+			ToolBarManager manager = processChildren((MElementContainer<MUIElement>) obj);
+			if (manager != null) {
+				scheduleManagerUpdate(manager);
+			}
 		}
 	}
 
@@ -338,6 +335,7 @@ public class ToolBarManagerRenderer extends SWTPartRenderer {
 	@PostConstruct
 	public void init() {
 		context.set(ToolBarManagerRenderer.class, this);
+		managerUpdater = new ContributionManagerUpdater(context.get(Display.class));
 
 		String[] vars = {
 				"org.eclipse.ui.internal.services.EvaluationService.evaluate", //$NON-NLS-1$
@@ -349,12 +347,22 @@ public class ToolBarManagerRenderer extends SWTPartRenderer {
 		context.set(UPDATE_VARS, updateVariables);
 		RunAndTrack enablementUpdater = new RunAndTrack() {
 
+			private final Map<String, Object> values = new HashMap<>();
+
 			@Override
 			public boolean changed(IEclipseContext context) {
+				// only update the items reading one of the changed variables
+				List<String> changedVariables = new ArrayList<>();
 				for (String var : updateVariables) {
-					context.get(var);
+					Object value = context.get(var);
+					if (value != values.get(var) || !values.containsKey(var)) {
+						values.put(var, value);
+						changedVariables.add(var);
+					}
+				}
+				if (!changedVariables.isEmpty()) {
+					getUpdater().updateContributionItems(changedVariables);
 				}
-				getUpdater().updateContributionItems(ALL_SELECTOR);
 				return true;
 			}
 		};
@@ -481,8 +489,13 @@ public class ToolBarManagerRenderer extends SWTPartRenderer {
 
 						@Override
 						public void run() {
-							manager.update(false);
-							getUpdater().updateContributionItems(ALL_SELECTOR);
+							scheduleManagerUpdate(manager);
+							getUpdater().updateContributionItems(new Selector() {
+								@Override
+								public boolean select(MApplicationElement element) {
+									return record.generatedElements.contains(element);
+								}
+							});
 						}
 					});
 					return true;
@@ -577,20 +590,10 @@ public class ToolBarManagerRenderer extends SWTPartRenderer {
 			return;
 		}
 
-		Object obj = container;
-		ToolBarManager parentManager = getManager((MToolBar) obj);
+		ToolBarManager parentManager = processChildren(container);
 		if (parentManager == null) {
 			return;
 		}
-		// Process any contents of the newly created ME
-		List<MUIElement> parts = container.getChildren();
-		if (parts != null) {
-			MUIElement[] plist = parts.toArray(new MUIElement[parts.size()]);
-			for (int i = 0; i < plist.length; i++) {
-				MUIElement childME = plist[i];
-				modelProcessSwitch(parentManager, (MToolBarElement) childME);
-			}
-		}
 		parentManager.update(true);
 
 		ToolBar toolbar = getToolbarFrom(container.getWidget());
@@ -630,6 +633,43 @@ public class ToolBarManagerRenderer extends SWTPartRenderer {
 		return true;
 	}
 
+	/**
+	 * Adds contribution items for the children of the given tool bar which do
+	 * not have one yet.
+	 *
+	 * @return the manager of the tool bar, or <code>null</code> if it is not
+	 *         rendered
+	 */
+	private ToolBarManager processChildren(MElementContainer<MUIElement> container) {
+		Object obj = container;
+		ToolBarManager parentManager = getManager((MToolBar) obj);
+		if (parentManager == null) {
+			return null;
+		}
+		// Process any contents of the newly created ME
+		List<MUIElement> parts = container.getChildren();
+		if (parts != null) {
+			MUIElement[] plist = parts.toArray(new MUIElement[parts.size()]);
+			for (int i = 0; i < plist.length; i++) {
+				MUIElement childME = plist[i];
+				modelProcessSwitch(parentManager, (MToolBarElement) childME);
+			}
+		}
+		return parentManager;
+	}
+
+	/**
+	 * Schedules a forced update of the given manager, followed by a layout of
+	 * its tool bar.
+	 */
+	private void scheduleManagerUpdate(ToolBarManager manager) {
+		if (managerUpdater == null) {
+			manager.update(true);
+		} else {
+			managerUpdater.scheduleUpdate(manager, true);
+		}
+	}
+
 	@Override
 	public void hideChild(MElementContainer<MUIElement> parentElement, MUIElement child) {
 		super.hideChild(parentElement, child);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014, 2015 IBM Corporation and others.
+ * Copyright (c) 2014, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,36 +11,299 @@
 
 package org.eclipse.e4.ui.workbench.renderers.swt;
 
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Qualifier;
+import org.eclipse.core.expressions.ExpressionInfo;
+import org.eclipse.e4.core.contexts.Active;
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.core.di.annotations.CanExecute;
+import org.eclipse.e4.core.di.annotations.Optional;
+import org.eclipse.e4.ui.model.application.MApplicationElement;
+import org.eclipse.e4.ui.services.IServiceConstants;
 import org.eclipse.e4.ui.workbench.Selector;
+import org.eclipse.swt.widgets.Display;
 
+/**
+ * Updates the enablement of the tool items rendered by a
+ * {@link ToolBarManagerRenderer}.
+ * <p>
+ * Updates are coalesced: the items to update are collected and their
+ * enablement is evaluated once in an <code>asyncExec</code> on the display.
+ * When context variables change, only the items whose enablement reads one of
+ * the changed variables are updated. The variables read by an item are
+ * collected with {@link AbstractContributionItem#collectEnablementInfo}
+ * whenever its enablement is evaluated. Items which cannot tell which
+ * variables they read are updated on every change.
+ * </p>
+ */
 public class ToolItemUpdater {
 
+	/**
+	 * The variables through which the active leaf of a context is resolved.
+	 * Handlers and the execution context of direct items are looked up in the
+	 * active leaf, so the enablement of every item depends on them.
+	 */
+	static final String[] ACTIVE_LEAF_VARIABLES = { IServiceConstants.ACTIVE_CONTEXTS,
+			IServiceConstants.ACTIVE_PART, IServiceConstants.ACTIVE_SHELL };
+
+	/**
+	 * The context variables read by the <code>@CanExecute</code> methods of a
+	 * class, or <code>null</code> if they cannot be determined.
+	 */
+	private static final Map<Class<?>, String[]> canExecuteVariables = new WeakHashMap<>();
+
 	private List<AbstractContributionItem> itemsToCheck = new ArrayList<>();
 	private final List<AbstractContributionItem> orphanedToolItems = new ArrayList<>();
 
+	/**
+	 * The context variables read by the enablement of each item, when last
+	 * evaluated. Items without an entry are updated on every change.
+	 */
+	private final Map<AbstractContributionItem, Set<String>> dependencies = new HashMap<>();
+
+	/**
+	 * The items to update in the next <code>asyncExec</code>.
+	 */
+	private final Set<AbstractContributionItem> pendingItems = new LinkedHashSet<>();
+
+	private boolean updateScheduled;
+
+	private final Runnable updateRunnable = new Runnable() {
+		@Override
+		public void run() {
+			updateScheduled = false;
+			updatePendingItems();
+		}
+	};
+
 	void registerItem(AbstractContributionItem item) {
 		if (!itemsToCheck.contains(item)) {
 			itemsToCheck.add(item);
+			scheduleUpdate(item);
 		}
 	}
 
 	void removeItem(AbstractContributionItem item) {
 		itemsToCheck.remove(item);
+		dependencies.remove(item);
+		pendingItems.remove(item);
 	}
 
+	/**
+	 * Schedules an enablement update of the items whose model is selected by
+	 * the given selector.
+	 *
+	 * @param selector
+	 *            selects the models of the items to update
+	 */
 	public void updateContributionItems(Selector selector) {
 		for (final AbstractContributionItem ci : itemsToCheck) {
-			if (ci.getModel() != null && ci.getModel().getParent() != null && selector.select(ci.getModel())) {
-				ci.updateItemEnablement();
-			} else {
+			if (isOrphaned(ci)) {
+				orphanedToolItems.add(ci);
+			} else if (selector.select(ci.getModel())) {
+				scheduleUpdate(ci);
+			}
+		}
+		removeOrphanedItems();
+	}
+
+	/**
+	 * Schedules an enablement update of the items whose enablement reads one
+	 * of the given context variables, or which cannot tell which variables
+	 * they read.
+	 *
+	 * @param variableNames
+	 *            the names of the changed variables
+	 */
+	void updateContributionItems(Collection<String> variableNames) {
+		for (final AbstractContributionItem ci : itemsToCheck) {
+			if (isOrphaned(ci)) {
 				orphanedToolItems.add(ci);
+				continue;
 			}
+			Set<String> variables = dependencies.get(ci);
+			if (variables == null) {
+				scheduleUpdate(ci);
+				continue;
+			}
+			for (String name : variableNames) {
+				if (variables.contains(name)) {
+					scheduleUpdate(ci);
+					break;
+				}
+			}
+		}
+		removeOrphanedItems();
+	}
+
+	/**
+	 * Updates the enablement of the items with a scheduled update right away.
+	 */
+	public void updatePendingItems() {
+		if (pendingItems.isEmpty()) {
+			return;
+		}
+		AbstractContributionItem[] items = pendingItems.toArray(new AbstractContributionItem[pendingItems.size()]);
+		pendingItems.clear();
+		for (AbstractContributionItem ci : items) {
+			if (isOrphaned(ci)) {
+				orphanedToolItems.add(ci);
+				continue;
+			}
+			ci.updateItemEnablement();
+			ExpressionInfo info = new ExpressionInfo();
+			ci.collectEnablementInfo(info);
+			if (info.getMisbehavingExpressionTypes() != null) {
+				dependencies.remove(ci);
+			} else {
+				dependencies.put(ci, new LinkedHashSet<>(Arrays.asList(info.getAccessedVariableNames())));
+			}
+		}
+		removeOrphanedItems();
+	}
+
+	private void scheduleUpdate(AbstractContributionItem item) {
+		pendingItems.add(item);
+		if (updateScheduled) {
+			return;
+		}
+		Display display = Display.getCurrent();
+		if (display == null) {
+			display = Display.getDefault();
 		}
+		if (!display.isDisposed()) {
+			updateScheduled = true;
+			display.asyncExec(updateRunnable);
+		}
+	}
+
+	private static boolean isOrphaned(AbstractContributionItem item) {
+		return item.getModel() == null || item.getModel().getParent() == null;
+	}
+
+	private void removeOrphanedItems() {
 		if (!orphanedToolItems.isEmpty()) {
 			itemsToCheck.removeAll(orphanedToolItems);
+			for (AbstractContributionItem ci : orphanedToolItems) {
+				dependencies.remove(ci);
+				pendingItems.remove(ci);
+			}
 			orphanedToolItems.clear();
 		}
 	}
+
+	/**
+	 * Adds the context variables read by the <code>@CanExecute</code> methods
+	 * of the given object to the given info. The object is marked as
+	 * misbehaving if the variables cannot be determined, because a method
+	 * takes the whole context, a model element or a service, or the object
+	 * has injected fields
+	 * or methods which may change what the methods return. The info is also
+	 * marked as misbehaving if there is no object, like when no handler is
+	 * active, since the object found later may read any variable.
+	 *
+	 * @param object
+	 *            a handler or contribution, may be <code>null</code>
+	 * @param info
+	 *            the info to add the variables to
+	 */
+	static void collectCanExecuteInfo(Object object, ExpressionInfo info) {
+		if (object == null) {
+			info.addMisBehavingExpressionType(ToolItemUpdater.class);
+			return;
+		}
+		Class<?> type = object.getClass();
+		String[] names;
+		synchronized (canExecuteVariables) {
+			if (canExecuteVariables.containsKey(type)) {
+				names = canExecuteVariables.get(type);
+			} else {
+				names = computeCanExecuteVariables(type);
+				canExecuteVariables.put(type, names);
+			}
+		}
+		if (names == null) {
+			info.addMisBehavingExpressionType(type);
+			return;
+		}
+		for (String name : names) {
+			info.addVariableNameAccess(name);
+		}
+	}
+
+	private static String[] computeCanExecuteVariables(Class<?> type) {
+		Set<String> names = new LinkedHashSet<>();
+		for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				if (field.isAnnotationPresent(Inject.class)) {
+					return null;
+				}
+			}
+			for (Method method : c.getDeclaredMethods()) {
+				if (method.isAnnotationPresent(Inject.class)) {
+					return null;
+				}
+				if (!method.isAnnotationPresent(CanExecute.class)) {
+					continue;
+				}
+				Class<?>[] parameterTypes = method.getParameterTypes();
+				Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+				for (int i = 0; i < parameterTypes.length; i++) {
+					String name = getVariableName(parameterTypes[i], parameterAnnotations[i]);
+					if (name == null) {
+						return null;
+					}
+					names.add(name);
+				}
+			}
+		}
+		return names.toArray(new String[names.size()]);
+	}
+
+	/**
+	 * Returns the context variable injected into a parameter, or
+	 * <code>null</code> if the parameter is not a single context variable.
+	 * Model elements and parameters injected by type which are not values do
+	 * not count; they may return something else without any variable
+	 * changing, like the active part when it becomes dirty or the selection
+	 * service when the active part changes its selection.
+	 */
+	private static String getVariableName(Class<?> parameterType, Annotation[] annotations) {
+		if (parameterType == IEclipseContext.class || MApplicationElement.class.isAssignableFrom(parameterType)) {
+			return null;
+		}
+		String name = null;
+		for (Annotation annotation : annotations) {
+			if (annotation instanceof Named) {
+				name = ((Named) annotation).value();
+			} else if (annotation instanceof Optional || annotation instanceof Active) {
+				continue;
+			} else if (annotation.annotationType().isAnnotationPresent(Qualifier.class)) {
+				// supplied from somewhere else, like the preferences
+				return null;
+			}
+		}
+		if (name != null) {
+			return name;
+		}
+		return isValueType(parameterType) ? parameterType.getName() : null;
+	}
+
+	private static boolean isValueType(Class<?> type) {
+		return type.isPrimitive() || type == String.class
+				|| type == Boolean.class || type == Character.class || Number.class.isAssignableFrom(type);
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2016 BestSolution.at and others.
+ * Copyright (c) 2010, 2017 BestSolution.at and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,12 +15,17 @@
 
 package org.eclipse.e4.ui.internal.workbench;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import javax.inject.Inject;
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IContributor;
@@ -35,6 +40,7 @@ import org.eclipse.e4.core.services.contributions.IContributionFactory;
 import org.eclipse.e4.core.services.log.Logger;
 import org.eclipse.e4.ui.model.application.MApplication;
 import org.eclipse.e4.ui.model.application.MApplicationElement;
+import org.eclipse.e4.ui.model.application.impl.ApplicationPackageImpl;
 import org.eclipse.e4.ui.model.fragment.MModelFragment;
 import org.eclipse.e4.ui.model.fragment.MModelFragments;
 import org.eclipse.e4.ui.model.fragment.impl.FragmentPackageImpl;
@@ -43,9 +49,14 @@ import org.eclipse.emf.common.util.Diagnostic;
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.common.util.TreeIterator;
 import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EFactory;
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
 import org.eclipse.emf.ecore.EStructuralFeature;
 import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.impl.EPackageRegistryImpl;
 import org.eclipse.emf.ecore.resource.ResourceSet;
 import org.eclipse.emf.ecore.util.Diagnostician;
 import org.eclipse.emf.ecore.util.EContentsEList;
@@ -113,26 +124,189 @@ public class ModelAssembler {
 	 *
 	 */
 	private void processFragments(IExtension[] extensions, boolean initial) {
-		Set<ModelFragmentWrapper> fragmentList = new TreeSet<>(new ModelFragmentComparator());
+		List<IConfigurationElement> fragmentElements = new ArrayList<>();
 		for (IExtension extension : extensions) {
 			IConfigurationElement[] ces = extension.getConfigurationElements();
 			for (IConfigurationElement ce : ces) {
 				if ("fragment".equals(ce.getName()) && (initial || !INITIAL.equals(ce.getAttribute("apply")))) { //$NON-NLS-1$ //$NON-NLS-2$
-					MModelFragments fragmentsContainer = getFragmentsContainer(ce);
-					if (fragmentsContainer == null)
-						continue;
-					for (MModelFragment fragment : fragmentsContainer.getFragments()) {
-						boolean checkExist = !initial && NOTEXISTS.equals(ce.getAttribute("apply")); //$NON-NLS-1$
-						fragmentList.add(new ModelFragmentWrapper(fragmentsContainer, fragment,
-								ce.getContributor().getName(), URIHelper.constructPlatformURI(ce.getContributor()),
-								checkExist)); // $NON-NLS-1$
-					}
+					fragmentElements.add(ce);
 				}
 			}
 		}
+		loadFragmentResources(fragmentElements);
+
+		Set<ModelFragmentWrapper> fragmentList = new TreeSet<>(new ModelFragmentComparator());
+		for (IConfigurationElement ce : fragmentElements) {
+			MModelFragments fragmentsContainer = getFragmentsContainer(ce);
+			if (fragmentsContainer == null)
+				continue;
+			for (MModelFragment fragment : fragmentsContainer.getFragments()) {
+				boolean checkExist = !initial && NOTEXISTS.equals(ce.getAttribute("apply")); //$NON-NLS-1$
+				fragmentList.add(new ModelFragmentWrapper(fragmentsContainer, fragment,
+						ce.getContributor().getName(), URIHelper.constructPlatformURI(ce.getContributor()),
+						checkExist)); // $NON-NLS-1$
+			}
+		}
 		processFragments(fragmentList);
 	}
 
+	/**
+	 * Loads the resources of the given fragment contributions in parallel.
+	 * Parsing the fragments is the costly part of processing them, while
+	 * merging them into the application model has to be done one after the
+	 * other, in order.
+	 * <p>
+	 * The resources are created in the resource set of the application first,
+	 * and each one is then loaded by a single thread. Loading reads the meta
+	 * data of the model packages, which EMF computes lazily and without
+	 * synchronization, like the features of a class or the lookup of a feature
+	 * by name. Therefore the packages are looked up in a synchronized package
+	 * registry while the resources are loaded, which computes the meta data
+	 * of each package before returning it. The meta data of the e4 model
+	 * packages is computed before, since they are also reached without the
+	 * registry. The
+	 * parser pool shared by the resources is synchronized, and the other load
+	 * options hold no shared state. Resources which fail to load are unloaded
+	 * again, so that {@link #getFragmentsContainer(IConfigurationElement)}
+	 * reports the failure.
+	 * </p>
+	 *
+	 * @param fragmentElements
+	 *            the fragment contributions
+	 */
+	private void loadFragmentResources(List<IConfigurationElement> fragmentElements) {
+		ResourceSet resourceSet = ((EObject) application).eResource().getResourceSet();
+		Map<URI, Resource> resources = new LinkedHashMap<>();
+		for (IConfigurationElement ce : fragmentElements) {
+			String attrURI = ce.getAttribute("uri"); //$NON-NLS-1$
+			if (attrURI == null) {
+				continue;
+			}
+			URI uri;
+			try {
+				uri = createFragmentURI(attrURI, ce.getContributor().getName());
+			} catch (RuntimeException e) {
+				// reported when reading the fragments
+				continue;
+			}
+			if (resources.containsKey(uri) || resourceSet.getResource(uri, false) != null) {
+				continue;
+			}
+			Resource resource = resourceSet.createResource(uri);
+			if (resource != null) {
+				resources.put(uri, resource);
+			}
+		}
+		if (resources.size() < 2) {
+			// loaded on demand when reading the fragments
+			return;
+		}
+
+		EPackage.Registry packageRegistry = resourceSet.getPackageRegistry();
+		SynchronizedPackageRegistry synchronizedRegistry = new SynchronizedPackageRegistry(packageRegistry);
+		synchronizedRegistry.computeMetaData(ApplicationPackageImpl.eINSTANCE);
+		synchronizedRegistry.computeMetaData(FragmentPackageImpl.eINSTANCE);
+		resourceSet.setPackageRegistry(synchronizedRegistry);
+		final Map<?, ?> loadOptions = resourceSet.getLoadOptions();
+		final Collection<Resource> failed = new ConcurrentLinkedQueue<>();
+		try {
+			resources.values().parallelStream().forEach(resource -> {
+				try {
+					resource.load(loadOptions);
+				} catch (IOException | RuntimeException e) {
+					failed.add(resource);
+				}
+			});
+		} finally {
+			resourceSet.setPackageRegistry(packageRegistry);
+		}
+		for (Resource resource : failed) {
+			resource.unload();
+		}
+	}
+
+	/**
+	 * Computes the lazily initialized meta data of the classes of the given
+	 * package and its sub packages, which is read when loading a model.
+	 *
+	 * @param ePackage
+	 *            the package
+	 */
+	private static void initializeMetaData(EPackage ePackage) {
+		for (EClassifier eClassifier : ePackage.getEClassifiers()) {
+			ePackage.getEClassifier(eClassifier.getName());
+			if (!(eClassifier instanceof EClass)) {
+				continue;
+			}
+			EClass eClass = (EClass) eClassifier;
+			eClass.getEAllSuperTypes();
+			eClass.getEAllAttributes();
+			eClass.getEAllReferences();
+			eClass.getEAllContainments();
+			eClass.getEIDAttribute();
+			for (EStructuralFeature feature : eClass.getEAllStructuralFeatures()) {
+				eClass.getEStructuralFeature(feature.getName());
+				eClass.getFeatureID(feature);
+			}
+		}
+		for (EPackage subPackage : ePackage.getESubpackages()) {
+			initializeMetaData(subPackage);
+		}
+	}
+
+	/**
+	 * A package registry resolving the packages of its delegate one at a time,
+	 * since resolving a package descriptor modifies the registry. The meta
+	 * data of each package is computed once, before the package is returned.
+	 */
+	private static class SynchronizedPackageRegistry extends EPackageRegistryImpl {
+		private static final long serialVersionUID = 1L;
+
+		private final transient Set<EPackage> initializedPackages = new HashSet<>();
+
+		SynchronizedPackageRegistry(EPackage.Registry delegateRegistry) {
+			super(delegateRegistry);
+		}
+
+		/**
+		 * Computes the meta data of the given package, unless it was computed
+		 * already.
+		 *
+		 * @param ePackage
+		 *            the package, may be <code>null</code>
+		 */
+		synchronized void computeMetaData(EPackage ePackage) {
+			if (ePackage != null && initializedPackages.add(ePackage)) {
+				initializeMetaData(ePackage);
+			}
+		}
+
+		@Override
+		public synchronized EPackage getEPackage(String nsURI) {
+			EPackage ePackage = super.getEPackage(nsURI);
+			computeMetaData(ePackage);
+			return ePackage;
+		}
+
+		@Override
+		public synchronized EFactory getEFactory(String nsURI) {
+			EFactory eFactory = super.getEFactory(nsURI);
+			if (eFactory != null) {
+				computeMetaData(eFactory.getEPackage());
+			}
+			return eFactory;
+		}
+	}
+
+	private static URI createFragmentURI(String attrURI, String bundleName) {
+		// check if the attrURI is already a platform URI
+		if (URIHelper.isPlatformURI(attrURI)) {
+			return URI.createURI(attrURI);
+		}
+		String path = bundleName + '/' + attrURI;
+		return URI.createPlatformPluginURI(path, false);
+	}
+
 	/**
 	 * Processes the given list of fragments wrapped in
 	 * {@link ModelFragmentWrapper} elements.
@@ -213,13 +387,7 @@ public class ModelAssembler {
 
 		URI uri;
 		try {
-			// check if the attrURI is already a platform URI
-			if (URIHelper.isPlatformURI(attrURI)) {
-				uri = URI.createURI(attrURI);
-			} else {
-				String path = bundleName + '/' + attrURI;
-				uri = URI.createPlatformPluginURI(path, false);
-			}
+			uri = createFragmentURI(attrURI, bundleName);
 		} catch (RuntimeException e) {
 			logger.warn(e, "Invalid location \"" + attrURI + "\" of model extension \"" + bundleName + "\""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 			return null;
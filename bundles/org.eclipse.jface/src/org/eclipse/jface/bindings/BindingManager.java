@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2015 IBM Corporation and others.
+ * Copyright (c) 2004, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -275,6 +275,28 @@ public final class BindingManager extends HandleObjectManager implements
 	 */
 	private Map prefixTable;
 
+	/**
+	 * The tree of active contexts for which the active bindings were computed.
+	 * This value is <code>null</code> if there is no existing solution.
+	 */
+	private Map solutionContextTree = null;
+
+	/**
+	 * The bindings which are not deleted and which match the locale, the
+	 * platform and the active schemes, indexed by context identifier (
+	 * <code>String</code>). The values are lists of bindings (
+	 * <code>Binding</code>) in the order of <code>bindings</code>. This value
+	 * is <code>null</code> until the active bindings are updated incrementally.
+	 */
+	private Map matchingBindingsByContextId = null;
+
+	/**
+	 * The bindings of <code>matchingBindingsByContextId</code>, indexed by
+	 * trigger (<code>TriggerSequence</code>). The values are lists of bindings
+	 * (<code>Binding</code>) in the order of <code>bindings</code>.
+	 */
+	private Map matchingBindingsByTrigger = null;
+
 	/**
 	 * <p>
 	 * Constructs a new instance of <code>BindingManager</code>.
@@ -354,6 +376,50 @@ public final class BindingManager extends HandleObjectManager implements
 		addListenerObject(listener);
 	}
 
+	/**
+	 * <p>
+	 * Adds a warning for bindings which conflict to the given status. Each
+	 * trigger is only reported once, so as not to flood the logs.
+	 * </p>
+	 *
+	 * @param conflicts
+	 *            The status collecting the conflicts; must not be
+	 *            <code>null</code>.
+	 * @param trigger
+	 *            The trigger of the conflicting bindings; must not be
+	 *            <code>null</code>.
+	 * @param match
+	 *            The conflicting bindings; must not be <code>null</code>.
+	 */
+	private final void addConflict(final MultiStatus conflicts,
+			final TriggerSequence trigger, final Collection match) {
+		if (triggerConflicts.add(trigger)) {
+			final StringWriter sw = new StringWriter();
+			final BufferedWriter buffer = new BufferedWriter(sw);
+			try {
+				buffer.write("A conflict occurred for "); //$NON-NLS-1$
+				buffer.write(trigger.toString());
+				buffer.write(':');
+				Iterator i = match.iterator();
+				while (i.hasNext()) {
+					buffer.newLine();
+					buffer.write(i.next().toString());
+				}
+				buffer.flush();
+			} catch (IOException e) {
+				// we should not get this
+			}
+			conflicts.add(new Status(IStatus.WARNING,
+					"org.eclipse.jface", //$NON-NLS-1$
+					sw.toString()));
+		}
+		if (DEBUG) {
+			Tracing.printTrace("BINDINGS", //$NON-NLS-1$
+					"A conflict occurred for " + trigger); //$NON-NLS-1$
+			Tracing.printTrace("BINDINGS", "    " + match); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
 	/**
 	 * <p>
 	 * Builds a prefix table look-up for a map of active bindings.
@@ -439,6 +505,9 @@ public final class BindingManager extends HandleObjectManager implements
 	 * This method completes in <code>O(1)</code>.
 	 */
 	private final void clearSolution() {
+		solutionContextTree = null;
+		matchingBindingsByContextId = null;
+		matchingBindingsByTrigger = null;
 		setActiveBindings(null, null, null, null);
 	}
 
@@ -527,7 +596,6 @@ public final class BindingManager extends HandleObjectManager implements
 		final int length = trimmedBindings.length;
 		for (int i = 0; i < length; i++) {
 			final Binding binding = trimmedBindings[i];
-			boolean found;
 
 			// Check the context.
 			final String contextId = binding.getContextId();
@@ -547,17 +615,7 @@ public final class BindingManager extends HandleObjectManager implements
 			}
 
 			// Check the scheme ids.
-			final String schemeId = binding.getSchemeId();
-			found = false;
-			if (activeSchemeIds != null) {
-				for (int j = 0; j < activeSchemeIds.length; j++) {
-					if (Util.equals(schemeId, activeSchemeIds[j])) {
-						found = true;
-						break;
-					}
-				}
-			}
-			if (!found) {
+			if (!schemeMatches(binding)) {
 				continue;
 			}
 
@@ -633,33 +691,8 @@ public final class BindingManager extends HandleObjectManager implements
 					final Binding winner = resolveConflicts((Collection) match,
 							activeContextTree);
 					if (winner == null) {
-						// warn once ... so as not to flood the logs
 						conflictsByTrigger.put(trigger, match);
-						if (triggerConflicts.add(trigger)) {
-							final StringWriter sw = new StringWriter();
-							final BufferedWriter buffer = new BufferedWriter(sw);
-							try {
-								buffer.write("A conflict occurred for "); //$NON-NLS-1$
-								buffer.write(trigger.toString());
-								buffer.write(':');
-								Iterator i = ((Collection) match).iterator();
-								while (i.hasNext()) {
-									buffer.newLine();
-									buffer.write(i.next().toString());
-								}
-								buffer.flush();
-							} catch (IOException e) {
-								// we should not get this
-							}
-							conflicts.add(new Status(IStatus.WARNING,
-									"org.eclipse.jface", //$NON-NLS-1$
-									sw.toString()));
-						}
-						if (DEBUG) {
-							Tracing.printTrace("BINDINGS", //$NON-NLS-1$
-									"A conflict occurred for " + trigger); //$NON-NLS-1$
-							Tracing.printTrace("BINDINGS", "    " + match); //$NON-NLS-1$ //$NON-NLS-2$
-						}
+						addConflict(conflicts, trigger, (Collection) match);
 					} else {
 						bindingsByTrigger.put(trigger, winner);
 						addReverseLookup(triggersByCommandId, winner
@@ -691,6 +724,40 @@ public final class BindingManager extends HandleObjectManager implements
 		}
 	}
 
+	/**
+	 * <p>
+	 * Returns the value of the given key, replacing it by a copy the first
+	 * time it is returned. This allows to change a map derived from a
+	 * previous solution without changing the maps and collections which are
+	 * shared with the previous solution.
+	 * </p>
+	 *
+	 * @param map
+	 *            The map of which the value should be returned; must not be
+	 *            <code>null</code>. The values are either maps or
+	 *            collections.
+	 * @param key
+	 *            The key whose value should be returned.
+	 * @param copiedKeys
+	 *            The keys whose values have already been copied; must not be
+	 *            <code>null</code>.
+	 * @return The copied value; <code>null</code> if there is no value for the
+	 *         given key.
+	 */
+	private static final Object copyOnWrite(final Map map, final Object key,
+			final Set copiedKeys) {
+		Object value = map.get(key);
+		if ((value != null) && copiedKeys.add(key)) {
+			if (value instanceof Map) {
+				value = new HashMap((Map) value);
+			} else {
+				value = new ArrayList((Collection) value);
+			}
+			map.put(key, value);
+		}
+		return value;
+	}
+
 	/**
 	 * Returns the number of strokes in an array of triggers. It is assumed that
 	 * there is one natural key per trigger. The strokes are counted based on
@@ -1584,6 +1651,46 @@ public final class BindingManager extends HandleObjectManager implements
 		return (String[]) strings.toArray(new String[strings.size()]);
 	}
 
+	/**
+	 * <p>
+	 * Indexes the bindings which are not deleted and which match the locale,
+	 * the platform and the active schemes by context and by trigger, so that
+	 * the active bindings can be updated when contexts are activated or
+	 * deactivated.
+	 * </p>
+	 * <p>
+	 * This method completes in <code>O(n)</code>, where <code>n</code> is
+	 * the number of bindings.
+	 * </p>
+	 */
+	private final void indexMatchingBindings() {
+		matchingBindingsByContextId = new HashMap();
+		matchingBindingsByTrigger = new HashMap();
+		final Binding[] trimmedBindings = removeDeletions(bindings);
+		for (int i = 0; i < trimmedBindings.length; i++) {
+			final Binding binding = trimmedBindings[i];
+			if (!localeMatches(binding) || !platformMatches(binding)
+					|| !schemeMatches(binding)) {
+				continue;
+			}
+			List matches = (List) matchingBindingsByContextId.get(binding
+					.getContextId());
+			if (matches == null) {
+				matches = new ArrayList();
+				matchingBindingsByContextId.put(binding.getContextId(), matches);
+			}
+			matches.add(binding);
+			matches = (List) matchingBindingsByTrigger.get(binding
+					.getTriggerSequence());
+			if (matches == null) {
+				matches = new ArrayList(1);
+				matchingBindingsByTrigger.put(binding.getTriggerSequence(),
+						matches);
+			}
+			matches.add(binding);
+		}
+	}
+
 	/**
 	 * <p>
 	 * Returns whether the given trigger sequence is a partial match for the
@@ -1739,9 +1846,13 @@ public final class BindingManager extends HandleObjectManager implements
 			if (DEBUG) {
 				Tracing.printTrace("BINDINGS", "Cache hit"); //$NON-NLS-1$ //$NON-NLS-2$
 			}
-			setActiveBindings(existingCache.getBindingsByTrigger(), existingCache.getTriggersByCommandId(),
-					existingCache.getPrefixTable(),
-					existingCache.getConflictsByTrigger());
+			final boolean changed = existingCache.getBindingsByTrigger() != activeBindings;
+			solutionContextTree = activeContextTree;
+			if (changed) {
+				setActiveBindings(existingCache.getBindingsByTrigger(), existingCache.getTriggersByCommandId(),
+						existingCache.getPrefixTable(),
+						existingCache.getConflictsByTrigger());
+			}
 			return;
 		}
 
@@ -1750,6 +1861,16 @@ public final class BindingManager extends HandleObjectManager implements
 			Tracing.printTrace("BINDINGS", "Cache miss"); //$NON-NLS-1$ //$NON-NLS-2$
 		}
 
+		/*
+		 * If there is an existing solution for other contexts, only the
+		 * triggers bound in the contexts which were activated or deactivated
+		 * have to be resolved again.
+		 */
+		if ((activeBindings != null) && (solutionContextTree != null)) {
+			updateBindings(activeContextTree, existingCache);
+			return;
+		}
+
 		// Compute the active bindings.
 		final Map commandIdsByTrigger = new HashMap();
 		final Map triggersByParameterizedCommand = new HashMap();
@@ -1764,6 +1885,7 @@ public final class BindingManager extends HandleObjectManager implements
 		existingCache.setConflictsByTrigger(conflictsByTrigger);
 		existingCache.setPrefixTable(newPrefixTable);
 
+		solutionContextTree = activeContextTree;
 		setActiveBindings(commandIdsByTrigger, triggersByParameterizedCommand,
 				newPrefixTable,
 				conflictsByTrigger);
@@ -2146,6 +2268,35 @@ public final class BindingManager extends HandleObjectManager implements
 		}
 	}
 
+	/**
+	 * <p>
+	 * Tests whether the scheme for the binding is one of the active schemes.
+	 * </p>
+	 * <p>
+	 * This method completes in <code>O(n)</code>, where <code>n</code> is
+	 * the number of active schemes.
+	 * </p>
+	 *
+	 * @param binding
+	 *            The binding with which to test; must not be <code>null</code>.
+	 * @return <code>true</code> if the binding's scheme is active;
+	 *         <code>false</code> otherwise.
+	 */
+	private final boolean schemeMatches(final Binding binding) {
+		if (activeSchemeIds == null) {
+			return false;
+		}
+
+		final String schemeId = binding.getSchemeId();
+		for (int i = 0; i < activeSchemeIds.length; i++) {
+			if (Util.equals(schemeId, activeSchemeIds[i])) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
 	/**
 	 * Sets the active bindings and the prefix table. This ensures that the two
 	 * values change at the same time, and that any listeners are notified
@@ -2357,4 +2508,186 @@ public final class BindingManager extends HandleObjectManager implements
 					null, false, null, false, false, true));
 		}
 	}
+
+	/**
+	 * <p>
+	 * Updates the existing solution for a new tree of active contexts. Only
+	 * the triggers which are bound in contexts that were activated or
+	 * deactivated are resolved again; the maps of the existing solution are
+	 * copied and changed, as they may be shared with the cache. Listeners are
+	 * only notified if the active bindings or conflicts change.
+	 * </p>
+	 * <p>
+	 * This method completes in <code>O(n+mp)</code>, where <code>n</code> is
+	 * the number of active bindings, <code>m</code> is the number of bindings
+	 * in the changed contexts, and <code>p</code> is the average number of
+	 * triggers in a trigger sequence.
+	 * </p>
+	 *
+	 * @param activeContextTree
+	 *            The tree of active contexts; must not be <code>null</code>.
+	 * @param bindingCache
+	 *            The cache entry for the new state, which is initialized by
+	 *            this method; must not be <code>null</code>.
+	 */
+	private final void updateBindings(final Map activeContextTree,
+			final CachedBindingSet bindingCache) {
+		if (matchingBindingsByContextId == null) {
+			indexMatchingBindings();
+		}
+
+		// Collect the triggers bound in contexts which changed.
+		final Set changedTriggers = new HashSet();
+		final Set contextIds = new HashSet(activeContextTree.keySet());
+		contextIds.addAll(solutionContextTree.keySet());
+		final Iterator contextIdItr = contextIds.iterator();
+		while (contextIdItr.hasNext()) {
+			final String contextId = (String) contextIdItr.next();
+			if ((activeContextTree.containsKey(contextId) == solutionContextTree
+					.containsKey(contextId))
+					&& Util.equals(activeContextTree.get(contextId),
+							solutionContextTree.get(contextId))) {
+				continue;
+			}
+			final List matches = (List) matchingBindingsByContextId
+					.get(contextId);
+			if (matches != null) {
+				final Iterator matchItr = matches.iterator();
+				while (matchItr.hasNext()) {
+					changedTriggers.add(((Binding) matchItr.next())
+							.getTriggerSequence());
+				}
+			}
+		}
+
+		final Map bindingsByTrigger = new HashMap(activeBindings);
+		final Map triggersByCommand = new HashMap(
+				activeBindingsByParameterizedCommand);
+		final Map conflictsByTrigger = new HashMap(currentConflicts);
+		final Map newPrefixTable = new HashMap(prefixTable);
+		final Set copiedCommands = new HashSet();
+		final Set copiedPrefixes = new HashSet();
+		boolean changed = false;
+		final MultiStatus conflicts = new MultiStatus("org.eclipse.jface", 0, //$NON-NLS-1$
+				"Keybinding conflicts occurred.  They may interfere with normal accelerator operation.", //$NON-NLS-1$
+				null);
+
+		final Iterator triggerItr = changedTriggers.iterator();
+		while (triggerItr.hasNext()) {
+			final TriggerSequence trigger = (TriggerSequence) triggerItr.next();
+
+			// Resolve the trigger in the new contexts.
+			final List matches = new ArrayList(2);
+			final Iterator matchItr = ((List) matchingBindingsByTrigger
+					.get(trigger)).iterator();
+			while (matchItr.hasNext()) {
+				final Binding binding = (Binding) matchItr.next();
+				if (activeContextTree.containsKey(binding.getContextId())) {
+					matches.add(binding);
+				}
+			}
+			Binding winner = null;
+			if (matches.size() == 1) {
+				winner = (Binding) matches.get(0);
+			} else if (matches.size() > 1) {
+				winner = resolveConflicts(matches, activeContextTree);
+			}
+			if ((winner == null) && (matches.size() > 1)) {
+				if (!matches.equals(conflictsByTrigger.put(trigger, matches))) {
+					changed = true;
+					addConflict(conflicts, trigger, matches);
+				}
+			} else if (conflictsByTrigger.remove(trigger) != null) {
+				changed = true;
+			}
+
+			final Binding previous = (Binding) bindingsByTrigger.get(trigger);
+			if (winner == previous) {
+				continue;
+			}
+			changed = true;
+
+			// Remove the previous binding.
+			if (previous != null) {
+				bindingsByTrigger.remove(trigger);
+				final Collection triggers = (Collection) copyOnWrite(
+						triggersByCommand, previous.getParameterizedCommand(),
+						copiedCommands);
+				if (triggers != null) {
+					triggers.remove(trigger);
+					if (triggers.isEmpty()) {
+						triggersByCommand.remove(previous
+								.getParameterizedCommand());
+					}
+				}
+				final TriggerSequence[] prefixes = trigger.getPrefixes();
+				for (int i = 0; i < prefixes.length; i++) {
+					final TriggerSequence prefix = prefixes[i];
+					final Map completions = (Map) copyOnWrite(newPrefixTable,
+							prefix, copiedPrefixes);
+					if (completions == null) {
+						continue;
+					}
+					completions.remove(trigger);
+					if (completions.isEmpty()) {
+						if (bindingsByTrigger.containsKey(prefix)) {
+							newPrefixTable.put(prefix, null);
+						} else {
+							newPrefixTable.remove(prefix);
+						}
+					}
+				}
+				if (newPrefixTable.containsKey(trigger)
+						&& (newPrefixTable.get(trigger) == null)) {
+					newPrefixTable.remove(trigger);
+				}
+			}
+
+			// Add the new binding.
+			if (winner != null) {
+				bindingsByTrigger.put(trigger, winner);
+				copyOnWrite(triggersByCommand, winner.getParameterizedCommand(),
+						copiedCommands);
+				addReverseLookup(triggersByCommand, winner
+						.getParameterizedCommand(), trigger);
+				if (!newPrefixTable.containsKey(trigger)) {
+					newPrefixTable.put(trigger, null);
+				}
+				final TriggerSequence[] prefixes = trigger.getPrefixes();
+				for (int i = 0; i < prefixes.length; i++) {
+					final TriggerSequence prefix = prefixes[i];
+					Map completions = (Map) copyOnWrite(newPrefixTable, prefix,
+							copiedPrefixes);
+					if (completions == null) {
+						completions = new HashMap();
+						newPrefixTable.put(prefix, completions);
+						copiedPrefixes.add(prefix);
+					}
+					completions.put(trigger, winner);
+				}
+			}
+		}
+		if (conflicts.getSeverity() != IStatus.OK) {
+			Policy.getLog().log(conflicts);
+		}
+
+		solutionContextTree = activeContextTree;
+		if (!changed) {
+			if (DEBUG) {
+				Tracing.printTrace("BINDINGS", "Active bindings unchanged"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			bindingCache.setBindingsByTrigger(activeBindings);
+			bindingCache.setTriggersByCommandId(activeBindingsByParameterizedCommand);
+			bindingCache.setConflictsByTrigger(currentConflicts);
+			bindingCache.setPrefixTable(prefixTable);
+			return;
+		}
+
+		bindingCache.setBindingsByTrigger(bindingsByTrigger);
+		bindingCache.setTriggersByCommandId(triggersByCommand);
+		bindingCache.setConflictsByTrigger(conflictsByTrigger);
+		bindingCache.setPrefixTable(newPrefixTable);
+		setActiveBindings(bindingsByTrigger, triggersByCommand, newPrefixTable,
+				conflictsByTrigger);
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2015 IBM Corporation and others.
+ * Copyright (c) 2004, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -245,7 +245,7 @@ public final class KeyStroke extends Trigger {
 
 	@Override
 	public final int hashCode() {
-		return modifierKeys << 4 + naturalKey;
+		return (modifierKeys << 4) + naturalKey;
 	}
 
 	/**
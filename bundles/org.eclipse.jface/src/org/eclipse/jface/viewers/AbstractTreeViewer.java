@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -20,9 +20,11 @@ package org.eclipse.jface.viewers;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IStatus;
@@ -100,6 +102,23 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 	 */
 	private boolean isExpandableCheckFilters = false;
 
+	/**
+	 * The operations recorded since the outermost call to
+	 * {@link #beginUpdateBatch()}, or <code>null</code> if no batch is open.
+	 */
+	private TreeUpdateBatch updateBatch;
+
+	/**
+	 * The nesting depth of {@link #beginUpdateBatch()} calls.
+	 */
+	private int updateBatchDepth;
+
+	/**
+	 * The expanded tree paths, recorded as nodes are expanded and collapsed,
+	 * or <code>null</code> if expanded state tracking is disabled.
+	 */
+	private ExpansionTrie expansionTrie;
+
 	/**
 	 * Safe runnable used to update an item.
 	 */
@@ -148,6 +167,10 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 	public void add(Object parentElementOrTreePath, Object[] childElements) {
 		Assert.isNotNull(parentElementOrTreePath);
 		assertElementsNotNull(childElements);
+		if (updateBatch != null) {
+			updateBatch.add(parentElementOrTreePath, childElements);
+			return;
+		}
 		if (checkBusy())
 			return;
 		Widget[] widgets = internalFindItems(parentElementOrTreePath);
@@ -161,6 +184,335 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 		}
 	}
 
+	/**
+	 * Starts collecting the additions, removals, updates and refreshes issued
+	 * against this viewer instead of applying them immediately. The collected
+	 * operations are applied by the matching call to
+	 * {@link #commitUpdateBatch()}.
+	 * <p>
+	 * While a batch is open, operations made redundant by later ones are
+	 * dropped: an element added and removed again is not shown at all, several
+	 * updates of an element are merged into one, and additions below a
+	 * refreshed element are left to the refresh. The remaining operations are
+	 * applied in one pass per parent element with redraw turned off. Calls to
+	 * {@link #insert(Object, Object, int)} and
+	 * {@link #remove(Object, Object[])} apply the pending operations first.
+	 * </p>
+	 * <p>
+	 * Batches can be nested; only the outermost commit applies the changes.
+	 * This method must be called from the UI thread.
+	 * </p>
+	 *
+	 * @see #commitUpdateBatch()
+	 * @since 3.13
+	 */
+	public void beginUpdateBatch() {
+		if (updateBatchDepth++ == 0) {
+			updateBatch = new TreeUpdateBatch(this);
+		}
+	}
+
+	/**
+	 * Ends a batch started by {@link #beginUpdateBatch()}. If this call closes
+	 * the outermost batch, the collected operations are applied to the viewer.
+	 *
+	 * @see #beginUpdateBatch()
+	 * @since 3.13
+	 */
+	public void commitUpdateBatch() {
+		Assert.isTrue(updateBatchDepth > 0, "No update batch is open"); //$NON-NLS-1$
+		if (--updateBatchDepth == 0) {
+			flushUpdateBatch();
+		}
+	}
+
+	/**
+	 * Returns whether an update batch is open on this viewer.
+	 *
+	 * @return <code>true</code> if operations are currently being collected
+	 * @see #beginUpdateBatch()
+	 * @since 3.13
+	 */
+	public boolean isUpdateBatchOpen() {
+		return updateBatchDepth > 0;
+	}
+
+	/**
+	 * Enables or disables expanded state tracking. While tracking is enabled,
+	 * the viewer records the expanded nodes as they are expanded and collapsed
+	 * by the user or through this viewer's API, instead of finding them by
+	 * walking all items of the tree. This makes
+	 * {@link #getExpandedStateSnapshot()} cheap, and lets a refresh re-expand
+	 * the nodes below the refreshed element that were expanded before, for
+	 * example elements which were temporarily filtered out. The recorded state
+	 * of an element is forgotten when it is removed from this viewer, or when
+	 * a refresh finds that the content provider no longer returns it.
+	 * <p>
+	 * The default is <code>false</code>. Enabling tracking records the
+	 * currently expanded nodes.
+	 * </p>
+	 *
+	 * @param enabled
+	 *            <code>true</code> to track expanded state
+	 * @since 3.13
+	 */
+	public void setExpandedStateTracking(boolean enabled) {
+		if (!enabled) {
+			expansionTrie = null;
+		} else if (expansionTrie == null) {
+			expansionTrie = new ExpansionTrie(getComparer());
+			if (getControl() != null && !getControl().isDisposed()) {
+				TreePath[] paths = getExpandedTreePaths();
+				for (int i = 0; i < paths.length; i++) {
+					expansionTrie.setExpanded(paths[i], true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns whether expanded state tracking is enabled.
+	 *
+	 * @return <code>true</code> if expanded state is tracked
+	 * @see #setExpandedStateTracking(boolean)
+	 * @since 3.13
+	 */
+	public boolean getExpandedStateTracking() {
+		return expansionTrie != null;
+	}
+
+	/**
+	 * Returns the tree paths of the expanded nodes, suitable for persisting
+	 * and passing to {@link #restoreExpandedStateSnapshot(TreePath[])}.
+	 * Parent paths come before the paths of their children. If expanded state
+	 * tracking is enabled, this is proportional to the number of expanded
+	 * nodes and also includes expanded nodes whose items are currently not
+	 * created; otherwise it is equivalent to {@link #getExpandedTreePaths()}.
+	 *
+	 * @return the expanded tree paths
+	 * @see #setExpandedStateTracking(boolean)
+	 * @since 3.13
+	 */
+	public TreePath[] getExpandedStateSnapshot() {
+		if (expansionTrie != null) {
+			return expansionTrie.getExpandedPaths();
+		}
+		return getExpandedTreePaths();
+	}
+
+	/**
+	 * Restores the expanded nodes captured by an earlier call to
+	 * {@link #getExpandedStateSnapshot()}. All other nodes are collapsed. If
+	 * expanded state tracking is enabled, only the nodes recorded as expanded
+	 * and the nodes in the snapshot are visited; otherwise this is equivalent
+	 * to {@link #setExpandedTreePaths(TreePath[])}.
+	 *
+	 * @param treePaths
+	 *            the expanded tree paths
+	 * @since 3.13
+	 */
+	public void restoreExpandedStateSnapshot(TreePath[] treePaths) {
+		assertElementsNotNull(treePaths);
+		if (expansionTrie == null) {
+			setExpandedTreePaths(treePaths);
+			return;
+		}
+		if (checkBusy())
+			return;
+		ExpansionTrie restored = new ExpansionTrie(getComparer());
+		for (int i = 0; i < treePaths.length; i++) {
+			restored.setExpanded(treePaths[i], true);
+		}
+		TreePath[] previous = expansionTrie.getExpandedPaths();
+		for (int i = previous.length - 1; i >= 0; i--) {
+			if (!isExpanded(restored, previous[i])) {
+				Widget[] items = internalFindItems(previous[i]);
+				for (int j = 0; j < items.length; j++) {
+					if (items[j] instanceof Item) {
+						setExpanded((Item) items[j], false);
+					}
+				}
+			}
+		}
+		expansionTrie = restored;
+		TreePath[] expanded = restored.getExpandedPaths();
+		for (int i = 0; i < expanded.length; i++) {
+			Widget w = internalExpand(expanded[i], false);
+			if (w instanceof Item && !getExpanded((Item) w)) {
+				createChildren(w);
+				setExpanded((Item) w, true);
+			}
+		}
+	}
+
+	private static boolean isExpanded(ExpansionTrie trie, TreePath path) {
+		ExpansionTrie.Node node = trie.find(path);
+		return node != null && node.isExpanded();
+	}
+
+	/**
+	 * Sets the expanded state of the given item and records it if expanded
+	 * state tracking is enabled.
+	 */
+	private void setItemExpanded(Item item, boolean expanded) {
+		setExpanded(item, expanded);
+		trackExpanded(item, expanded);
+	}
+
+	private void trackExpanded(Item item, boolean expanded) {
+		if (expansionTrie != null && item.getData() != null) {
+			TreePath path = getTreePathFromItem(item);
+			if (path != null) {
+				expansionTrie.setExpanded(path, expanded);
+			}
+		}
+	}
+
+	/**
+	 * Re-expands the recorded expanded nodes below the given refreshed
+	 * element, and forgets recorded nodes whose elements are gone. Nodes of
+	 * elements which are only filtered out are kept.
+	 */
+	private void restoreTrackedExpansion(Object element) {
+		if (expansionTrie == null || expansionTrie.size() == 0) {
+			return;
+		}
+		Widget[] widgets;
+		if (element == null || equals(element, getRoot())) {
+			widgets = new Widget[] { getControl() };
+		} else {
+			widgets = findItems(element);
+		}
+		for (int i = 0; i < widgets.length; i++) {
+			Widget widget = widgets[i];
+			TreePath path = widget instanceof Item ? getTreePathFromItem((Item) widget) : TreePath.EMPTY;
+			ExpansionTrie.Node node = path == null ? null : expansionTrie.find(path);
+			if (node != null) {
+				restoreTrackedExpansion(node, widget);
+			}
+		}
+	}
+
+	private void restoreTrackedExpansion(ExpansionTrie.Node node, Widget widget) {
+		if (widget instanceof Item && node.isExpanded() && !getExpanded((Item) widget)) {
+			createChildren(widget);
+			setExpanded((Item) widget, true);
+		}
+		if (!node.hasChildren()) {
+			return;
+		}
+		Item[] items = getChildren(widget);
+		if (items.length > 0 && items[0].getData() == null) {
+			// children not created yet, keep the recorded state
+			return;
+		}
+		int found = 0;
+		CustomHashtable matched = null;
+		for (int i = 0; i < items.length && found < node.getChildCount(); i++) {
+			Object data = items[i].getData();
+			ExpansionTrie.Node child = data == null ? null : node.getChild(data);
+			if (child != null) {
+				if (matched == null) {
+					matched = newHashtable(node.getChildCount() * 2 + 1);
+				}
+				if (!matched.containsKey(data)) {
+					matched.put(data, data);
+					found++;
+				}
+				restoreTrackedExpansion(child, items[i]);
+			}
+		}
+		if (found < node.getChildCount()) {
+			CustomHashtable rawChildren = null;
+			ExpansionTrie.Node[] children = node.getChildren();
+			for (int i = 0; i < children.length; i++) {
+				if (matched != null && matched.containsKey(children[i].element)) {
+					continue;
+				}
+				if (rawChildren == null) {
+					Object parent = widget instanceof Item ? getTreePathFromItem((Item) widget) : getRoot();
+					Object[] raw = getRawChildren(parent);
+					rawChildren = newHashtable(raw.length * 2 + 1);
+					for (int j = 0; j < raw.length; j++) {
+						rawChildren.put(raw[j], raw[j]);
+					}
+				}
+				if (!rawChildren.containsKey(children[i].element)) {
+					expansionTrie.remove(children[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forgets the recorded expanded state of the given item, which is about
+	 * to be removed, and of the items below it.
+	 */
+	private void forgetTrackedExpansion(Item item) {
+		if (expansionTrie != null && item.getData() != null) {
+			TreePath path = getTreePathFromItem(item);
+			if (path != null) {
+				expansionTrie.remove(path);
+			}
+		}
+	}
+
+	/**
+	 * Applies the operations collected so far, keeping the batch open if it
+	 * was open before.
+	 */
+	private void flushUpdateBatch() {
+		TreeUpdateBatch batch = updateBatch;
+		if (batch == null) {
+			return;
+		}
+		updateBatch = null;
+		try {
+			Control control = getControl();
+			if (batch.isEmpty() || control == null || control.isDisposed()) {
+				return;
+			}
+			control.setRedraw(false);
+			try {
+				batch.apply();
+			} finally {
+				control.setRedraw(true);
+			}
+		} finally {
+			if (updateBatchDepth > 0) {
+				updateBatch = new TreeUpdateBatch(this);
+			}
+		}
+	}
+
+	@Override
+	public void refresh(Object element) {
+		if (updateBatch != null) {
+			updateBatch.refresh(element, true);
+			return;
+		}
+		super.refresh(element);
+	}
+
+	@Override
+	public void refresh(Object element, boolean updateLabels) {
+		if (updateBatch != null) {
+			updateBatch.refresh(element, updateLabels);
+			return;
+		}
+		super.refresh(element, updateLabels);
+	}
+
+	@Override
+	public void update(Object element, String[] properties) {
+		if (updateBatch != null) {
+			Assert.isNotNull(element);
+			updateBatch.update(element, properties);
+			return;
+		}
+		super.update(element, properties);
+	}
+
 	/**
 	 * Find the items for the given element of tree path
 	 *
@@ -279,7 +631,7 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 					}
 					tpvs.sort(this, path, filtered);
 				} else {
-					comparator.sort(this, filtered);
+					sort(comparator, filtered);
 				}
 			}
 			createAddedElements(widget, filtered);
@@ -641,7 +993,7 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 		} else if (comparator != null) {
 			// be sure we're not modifying the original array from the model
 			result = result.clone();
-			comparator.sort(this, result);
+			sort(comparator, result);
 		}
 		return result;
 	}
@@ -1142,6 +1494,30 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 	 */
 	protected abstract Item[] getChildren(Widget widget);
 
+	@Override
+	List<Object> getRefreshedElements(Object element) {
+		List<Object> elements = new ArrayList<>();
+		elements.add(element);
+		for (Widget item : findItems(element)) {
+			collectChildElements(item, elements);
+		}
+		return elements;
+	}
+
+	/**
+	 * Adds the elements of all items below the given widget to the given list.
+	 */
+	private void collectChildElements(Widget widget, List<Object> elements) {
+		for (Item child : getChildren(widget)) {
+			Object data = child.getData();
+			// dummy items have no data
+			if (data != null) {
+				elements.add(data);
+				collectChildElements(child, elements);
+			}
+		}
+	}
+
 	/**
 	 * Get the child for the widget at index. Note that the default
 	 * implementation is not very efficient and should be overridden if this
@@ -1474,6 +1850,7 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 	 *            the SWT tree event
 	 */
 	protected void handleTreeCollapse(TreeEvent event) {
+		trackExpanded((Item) event.item, false);
 		if (event.item.getData() != null) {
 			fireTreeCollapsed(new TreeExpansionEvent(this, event.item.getData()));
 		}
@@ -1487,6 +1864,7 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 	 */
 	protected void handleTreeExpand(TreeEvent event) {
 		createChildren(event.item);
+		trackExpanded((Item) event.item, true);
 		if (event.item.getData() != null) {
 			fireTreeExpanded(new TreeExpansionEvent(this, event.item.getData()));
 		}
@@ -1510,6 +1888,13 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 
 	@Override
 	protected void inputChanged(Object input, Object oldInput) {
+		if (updateBatch != null) {
+			// pending operations refer to the old input
+			updateBatch = new TreeUpdateBatch(this);
+		}
+		if (expansionTrie != null) {
+			expansionTrie.clear();
+		}
 		preservingSelection(() -> {
 		    Control tree = getControl();
 		    tree.setRedraw(false);
@@ -1555,6 +1940,15 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 			if (widget instanceof Item) {
 				Item item = (Item) widget;
 				setExpanded(item, false);
+				if (expansionTrie != null && level == ALL_LEVELS) {
+					// nothing below the item stays expanded
+					TreePath path = item.getData() == null ? null : getTreePathFromItem(item);
+					if (path != null) {
+						expansionTrie.remove(path);
+					}
+				} else {
+					trackExpanded(item, false);
+				}
 				Object element = item.getData();
 				if (element != null && level == ALL_LEVELS) {
 					if (optionallyPruneChildren(item, element)) {
@@ -1643,7 +2037,7 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 						for (Iterator it = toExpandList.iterator(); it
 								.hasNext();) {
 							Item toExpand = (Item) it.next();
-							setExpanded(toExpand, true);
+							setItemExpanded(toExpand, true);
 						}
 					}
 				}
@@ -1755,7 +2149,7 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 			}
 			createChildren(widget, false);
 			if (widget instanceof Item) {
-				setExpanded((Item) widget, true);
+				setItemExpanded((Item) widget, true);
 			}
 			if (level == ALL_LEVELS || level > 1) {
 				Item[] children = getChildren(widget);
@@ -1832,6 +2226,7 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 		// If element is null, do a full refresh.
 		if (element == null) {
 			internalRefresh(getControl(), getRoot(), true, updateLabels);
+			restoreTrackedExpansion(null);
 			return;
 		}
 		Widget[] items = findItems(element);
@@ -1840,6 +2235,7 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 				// pick up structure changes too
 				internalRefresh(items[i], element, true, updateLabels);
 			}
+			restoreTrackedExpansion(element);
 		}
 	}
 
@@ -1945,11 +2341,15 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 				for (int j = 0; j < childItems.length; j++) {
 					Widget childItem = childItems[j];
 					if (childItem instanceof Item) {
+						forgetTrackedExpansion((Item) childItem);
 						disassociate((Item) childItem);
 						childItem.dispose();
 					}
 				}
 			} else {
+				if (expansionTrie != null && element instanceof TreePath) {
+					expansionTrie.remove((TreePath) element);
+				}
 				// see https://bugs.eclipse.org/bugs/show_bug.cgi?id=210747
 				Object parent = getParentElement(element);
 				if (parent != null
@@ -2007,6 +2407,7 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 
 					Object data = child.getData();
 					if (data != null && toRemove.containsKey(data)) {
+						forgetTrackedExpansion(child);
 						disassociate(child);
 						child.dispose();
 					}
@@ -2039,7 +2440,7 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 					if (expanded) {
 						createChildren(item);
 					}
-					setExpanded(item, expanded);
+					setItemExpanded(item, expanded);
 				}
 			}
 			if (expandedElements.size() > 0) {
@@ -2075,7 +2476,7 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 					if (expanded) {
 						createChildren(item);
 					}
-					setExpanded(item, expanded);
+					setItemExpanded(item, expanded);
 				}
 			}
 			internalSetExpandedTreePaths(expandedTreePaths, item, childPath);
@@ -2203,6 +2604,10 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 		if (elementsOrTreePaths.length == 0) {
 			return;
 		}
+		if (updateBatch != null) {
+			updateBatch.remove(elementsOrTreePaths);
+			return;
+		}
 		if (checkBusy())
 			return;
 		preservingSelection(() -> internalRemove(elementsOrTreePaths));
@@ -2231,6 +2636,7 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 		if (elements.length == 0) {
 			return;
 		}
+		flushUpdateBatch();
 		if (checkBusy())
 			return;
 		preservingSelection(() -> internalRemove(parent, elements));
@@ -2466,6 +2872,18 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 				new TreePath(new Object[0]));
 	}
 
+	@Override
+	public void setComparer(IElementComparer comparer) {
+		super.setComparer(comparer);
+		if (expansionTrie != null) {
+			TreePath[] paths = expansionTrie.getExpandedPaths();
+			expansionTrie = new ExpansionTrie(comparer);
+			for (int i = 0; i < paths.length; i++) {
+				expansionTrie.setExpanded(paths[i], true);
+			}
+		}
+	}
+
 	/**
 	 * Sets whether the node corresponding to the given element or tree path is
 	 * expanded or collapsed.
@@ -2485,7 +2903,7 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 			if (expanded) {
 				createChildren(item);
 			}
-			setExpanded((Item) item, expanded);
+			setItemExpanded((Item) item, expanded);
 		}
 	}
 
@@ -2917,14 +3335,48 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 	 * @since 3.2
 	 */
 	protected TreePath getTreePathFromItem(Item item) {
-		LinkedList segments = new LinkedList();
+		ArrayList<Object> segments = new ArrayList<>();
 		while (item != null) {
 			Object segment = item.getData();
 			Assert.isNotNull(segment);
-			segments.addFirst(segment);
+			segments.add(segment);
 			item = getParentItem(item);
 		}
-		return new TreePath(segments.toArray());
+		int count = segments.size();
+		Object[] result = new Object[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = segments.get(count - 1 - i);
+		}
+		return new TreePath(result);
+	}
+
+	/**
+	 * Returns the tree path for the given item, sharing the paths of ancestor
+	 * items which have been computed before. The paths of all items on the way
+	 * to the root are added to the given map, so that the paths of siblings and
+	 * cousins share their common prefix instead of copying it.
+	 *
+	 * @param item
+	 *            the item
+	 * @param paths
+	 *            the paths computed so far, keyed by item
+	 * @return the tree path of the item
+	 */
+	private TreePath getTreePathFromItem(Item item, Map<Item, TreePath> paths) {
+		TreePath path = paths.get(item);
+		if (path != null) {
+			return path;
+		}
+		Item parentItem = getParentItem(item);
+		TreePath parentPath = parentItem == null ? TreePath.EMPTY : paths.get(parentItem);
+		if (parentPath == null) {
+			parentPath = getTreePathFromItem(parentItem, paths);
+		}
+		Object segment = item.getData();
+		Assert.isNotNull(segment);
+		path = parentPath.createChildPath(segment);
+		paths.put(item, path);
+		return path;
 	}
 
 	/**
@@ -2946,16 +3398,19 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 		if (control == null || control.isDisposed()) {
 			return TreeSelection.EMPTY;
 		}
-		Widget[] items = getSelection(getControl());
-		ArrayList list = new ArrayList(items.length);
-		for (int i = 0; i < items.length; i++) {
-			Widget item = items[i];
+		Item[] items = getSelection(getControl());
+		TreePath[] paths = new TreePath[items.length];
+		int count = 0;
+		Map<Item, TreePath> itemPaths = new HashMap<>();
+		for (Item item : items) {
 			if (item.getData() != null) {
-				list.add(getTreePathFromItem((Item) item));
+				paths[count++] = getTreePathFromItem(item, itemPaths);
 			}
 		}
-		return new TreeSelection((TreePath[]) list.toArray(new TreePath[list
-				.size()]), getComparer());
+		if (count < paths.length) {
+			paths = Arrays.copyOf(paths, count);
+		}
+		return new TreeSelection(paths, getComparer(), false);
 	}
 
 	/**
@@ -3008,15 +3463,12 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 	public TreePath[] getExpandedTreePaths() {
 		ArrayList items = new ArrayList();
 		internalCollectExpandedItems(items, getControl());
-		ArrayList result = new ArrayList(items.size());
-		for (Iterator it = items.iterator(); it.hasNext();) {
-			Item item = (Item) it.next();
-			TreePath treePath = getTreePathFromItem(item);
-			if (treePath != null) {
-				result.add(treePath);
-			}
+		TreePath[] result = new TreePath[items.size()];
+		Map<Item, TreePath> itemPaths = new HashMap<>();
+		for (int i = 0; i < result.length; i++) {
+			result[i] = getTreePathFromItem((Item) items.get(i), itemPaths);
 		}
-		return (TreePath[]) result.toArray(new TreePath[items.size()]);
+		return result;
 	}
 
 	private boolean isTreePathContentProvider() {
@@ -3048,6 +3500,7 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 			int position) {
 		Assert.isNotNull(parentElementOrTreePath);
 		Assert.isNotNull(element);
+		flushUpdateBatch();
 		if (checkBusy())
 			return;
 		if (getComparator() != null || hasFilters()) {
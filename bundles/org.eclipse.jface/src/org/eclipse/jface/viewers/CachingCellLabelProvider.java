@@ -0,0 +1,384 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.jface.viewers;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.swt.custom.StyleRange;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.widgets.Event;
+
+/**
+ * A {@link CachingCellLabelProvider} wraps another {@link CellLabelProvider}
+ * and remembers the text, image, colors, font and style ranges it computed
+ * for each element and column. When a cell of the same element and column is
+ * updated again, the remembered label is applied without calling the wrapped
+ * label provider. This avoids recomputing labels when rows are re-populated,
+ * for example when a virtual table is scrolled or a sorted table is refreshed
+ * without updating labels.
+ * <p>
+ * The wrapped label provider must compute labels from the element and column
+ * alone. Cached labels are discarded:
+ * </p>
+ * <ul>
+ * <li>for the affected elements, when the wrapped label provider fires a
+ * {@link LabelProviderChangedEvent},</li>
+ * <li>for an element, when the viewer's <code>update</code> method is called
+ * for it and decides that its label has to be updated,</li>
+ * <li>for an element and the elements shown below it, when the viewer refreshes
+ * the element with labels updated, and for all elements when it refreshes its
+ * input,</li>
+ * <li>when {@link #invalidate(Object)} or {@link #invalidateAll()} is
+ * called.</li>
+ * </ul>
+ * <p>
+ * At most a configurable number of elements is cached; the least recently
+ * used ones are evicted first. Owner draw label providers such as
+ * {@link StyledCellLabelProvider} can be wrapped, paint events are forwarded
+ * to them.
+ * </p>
+ *
+ * @since 3.13
+ */
+public class CachingCellLabelProvider extends OwnerDrawLabelProvider {
+
+	/**
+	 * The label of one cell as computed by the wrapped label provider.
+	 */
+	private static final class CachedLabel {
+		private final String text;
+
+		private final Image image;
+
+		private final Color foreground;
+
+		private final Color background;
+
+		private final Font font;
+
+		private final StyleRange[] styleRanges;
+
+		CachedLabel(ViewerCell cell) {
+			text = cell.getText();
+			image = cell.getImage();
+			foreground = cell.getForeground();
+			background = cell.getBackground();
+			font = cell.getFont();
+			styleRanges = cell.getStyleRanges();
+		}
+
+		void apply(ViewerCell cell) {
+			cell.setText(text);
+			cell.setImage(image);
+			cell.setForeground(foreground);
+			cell.setBackground(background);
+			cell.setFont(font);
+			if (styleRanges != null || cell.getStyleRanges() != null) {
+				cell.setStyleRanges(styleRanges);
+			}
+		}
+	}
+
+	/**
+	 * Compares elements with the viewer's comparer, if any.
+	 */
+	private static final class ElementKey {
+		private final Object element;
+
+		private final IElementComparer comparer;
+
+		ElementKey(Object element, IElementComparer comparer) {
+			this.element = element;
+			this.comparer = comparer;
+		}
+
+		@Override
+		public int hashCode() {
+			return comparer == null ? element.hashCode() : comparer.hashCode(element);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ElementKey)) {
+				return false;
+			}
+			Object other = ((ElementKey) obj).element;
+			return comparer == null ? element.equals(other) : comparer.equals(element, other);
+		}
+	}
+
+	private final CellLabelProvider labelProvider;
+
+	private final int maxElements;
+
+	/**
+	 * Cached labels, indexed by column, least recently used elements first.
+	 */
+	private final Map<ElementKey, CachedLabel[]> cache;
+
+	private ColumnViewer viewer;
+
+	private IElementComparer comparer;
+
+	private long hitCount;
+
+	private long missCount;
+
+	private final ILabelProviderListener labelProviderListener = event -> {
+		Object[] elements = event.getElements();
+		if (elements == null) {
+			invalidateAll();
+		} else {
+			for (Object element : elements) {
+				invalidate(element);
+			}
+		}
+		fireLabelProviderChanged(new LabelProviderChangedEvent(this, elements));
+	};
+
+	/**
+	 * Creates a caching label provider for the given label provider.
+	 *
+	 * @param labelProvider
+	 *            the label provider computing the labels; disposed together
+	 *            with this label provider
+	 * @param maxElements
+	 *            the maximum number of elements to cache labels for
+	 */
+	public CachingCellLabelProvider(CellLabelProvider labelProvider, int maxElements) {
+		Assert.isNotNull(labelProvider);
+		Assert.isTrue(maxElements > 0);
+		this.labelProvider = labelProvider;
+		this.maxElements = maxElements;
+		this.cache = new LinkedHashMap<ElementKey, CachedLabel[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ElementKey, CachedLabel[]> eldest) {
+				return size() > CachingCellLabelProvider.this.maxElements;
+			}
+		};
+		labelProvider.addListener(labelProviderListener);
+	}
+
+	/**
+	 * Returns the wrapped label provider.
+	 *
+	 * @return the label provider computing the labels
+	 */
+	public CellLabelProvider getLabelProvider() {
+		return labelProvider;
+	}
+
+	/**
+	 * Discards the cached labels of the given element.
+	 *
+	 * @param element
+	 *            the element
+	 */
+	public void invalidate(Object element) {
+		if (element != null) {
+			cache.remove(new ElementKey(element, comparer));
+		}
+	}
+
+	/**
+	 * Discards all cached labels.
+	 */
+	public void invalidateAll() {
+		cache.clear();
+	}
+
+	/**
+	 * Returns the number of cell updates served from the cache.
+	 *
+	 * @return the number of cache hits
+	 */
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Returns the number of cell updates delegated to the wrapped label
+	 * provider.
+	 *
+	 * @return the number of cache misses
+	 */
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Resets the hit and miss counts to zero.
+	 */
+	public void resetStatistics() {
+		hitCount = 0;
+		missCount = 0;
+	}
+
+	@Override
+	public void update(ViewerCell cell) {
+		IElementComparer currentComparer = viewer == null ? null : viewer.getComparer();
+		if (currentComparer != comparer) {
+			// keys made with the old comparer can no longer be found
+			comparer = currentComparer;
+			invalidateAll();
+		}
+		Object element = cell.getElement();
+		int columnIndex = cell.getColumnIndex();
+		ElementKey key = new ElementKey(element, comparer);
+		CachedLabel[] labels = cache.get(key);
+		CachedLabel label = labels != null && columnIndex < labels.length ? labels[columnIndex] : null;
+		if (label != null) {
+			hitCount++;
+			label.apply(cell);
+			if (labelProvider instanceof OwnerDrawLabelProvider) {
+				// the label is painted from the cell, make sure it is repainted
+				super.update(cell);
+			}
+			return;
+		}
+		missCount++;
+		labelProvider.update(cell);
+		if (labels == null) {
+			labels = new CachedLabel[columnIndex + 1];
+			cache.put(key, labels);
+		} else if (columnIndex >= labels.length) {
+			labels = Arrays.copyOf(labels, columnIndex + 1);
+			cache.put(key, labels);
+		}
+		labels[columnIndex] = new CachedLabel(cell);
+	}
+
+	/**
+	 * Called by the viewer before the label of the given element is updated
+	 * because it has changed.
+	 *
+	 * @param element
+	 *            the element, or <code>null</code> for all elements
+	 */
+	/* package */void labelChanged(Object element) {
+		if (element == null) {
+			invalidateAll();
+		} else {
+			invalidate(element);
+		}
+	}
+
+	@Override
+	protected void initialize(ColumnViewer columnViewer, ViewerColumn column) {
+		// owner draw is enabled by the wrapped label provider if it needs it
+		viewer = columnViewer;
+		comparer = columnViewer.getComparer();
+		invalidateAll();
+		labelProvider.initialize(columnViewer, column);
+	}
+
+	@Override
+	public void dispose(ColumnViewer columnViewer, ViewerColumn column) {
+		labelProvider.removeListener(labelProviderListener);
+		invalidateAll();
+		viewer = null;
+		labelProvider.dispose(columnViewer, column);
+		clearListeners();
+	}
+
+	@Override
+	public void dispose() {
+		labelProvider.removeListener(labelProviderListener);
+		invalidateAll();
+		labelProvider.dispose();
+		super.dispose();
+	}
+
+	@Override
+	public boolean isLabelProperty(Object element, String property) {
+		return labelProvider.isLabelProperty(element, property);
+	}
+
+	@Override
+	protected void measure(Event event, Object element) {
+		if (labelProvider instanceof OwnerDrawLabelProvider) {
+			((OwnerDrawLabelProvider) labelProvider).measure(event, element);
+		}
+	}
+
+	@Override
+	protected void erase(Event event, Object element) {
+		if (labelProvider instanceof OwnerDrawLabelProvider) {
+			((OwnerDrawLabelProvider) labelProvider).erase(event, element);
+		}
+	}
+
+	@Override
+	protected void paint(Event event, Object element) {
+		if (labelProvider instanceof OwnerDrawLabelProvider) {
+			((OwnerDrawLabelProvider) labelProvider).paint(event, element);
+		}
+	}
+
+	@Override
+	public Image getToolTipImage(Object object) {
+		return labelProvider.getToolTipImage(object);
+	}
+
+	@Override
+	public String getToolTipText(Object element) {
+		return labelProvider.getToolTipText(element);
+	}
+
+	@Override
+	public Color getToolTipBackgroundColor(Object object) {
+		return labelProvider.getToolTipBackgroundColor(object);
+	}
+
+	@Override
+	public Color getToolTipForegroundColor(Object object) {
+		return labelProvider.getToolTipForegroundColor(object);
+	}
+
+	@Override
+	public Font getToolTipFont(Object object) {
+		return labelProvider.getToolTipFont(object);
+	}
+
+	@Override
+	public Point getToolTipShift(Object object) {
+		return labelProvider.getToolTipShift(object);
+	}
+
+	@Override
+	public boolean useNativeToolTip(Object object) {
+		return labelProvider.useNativeToolTip(object);
+	}
+
+	@Override
+	public int getToolTipTimeDisplayed(Object object) {
+		return labelProvider.getToolTipTimeDisplayed(object);
+	}
+
+	@Override
+	public int getToolTipDisplayDelayTime(Object object) {
+		return labelProvider.getToolTipDisplayDelayTime(object);
+	}
+
+	@Override
+	public int getToolTipStyle(Object object) {
+		return labelProvider.getToolTipStyle(object);
+	}
+}
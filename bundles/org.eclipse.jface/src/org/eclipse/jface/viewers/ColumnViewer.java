@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2015 IBM Corporation and others.
+ * Copyright (c) 2006, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,9 @@
 
 package org.eclipse.jface.viewers;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -520,6 +523,8 @@ public abstract class ColumnViewer extends StructuredViewer {
 			cancelEditing();
 		}
 
+		labelsRefreshed(element);
+
 		super.refresh(element);
 	}
 
@@ -532,6 +537,10 @@ public abstract class ColumnViewer extends StructuredViewer {
 			cancelEditing();
 		}
 
+		if (updateLabels) {
+			labelsRefreshed(element);
+		}
+
 		super.refresh(element, updateLabels);
 	}
 
@@ -704,6 +713,51 @@ public abstract class ColumnViewer extends StructuredViewer {
 		}
 	}
 
+	@Override
+	void labelChanged(Object element) {
+		int count = doGetColumnCount();
+		for (int i = 0; i < count || i == 0; i++) {
+			Widget owner = getColumnViewerOwner(i);
+			if (owner != null && !owner.isDisposed()) {
+				ViewerColumn column = (ViewerColumn) owner.getData(ViewerColumn.COLUMN_VIEWER_KEY);
+				if (column != null && column.getLabelProvider() instanceof CachingCellLabelProvider) {
+					((CachingCellLabelProvider) column.getLabelProvider()).labelChanged(element);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Called before the given element is refreshed with its labels updated.
+	 * Lets column label providers discard the cached labels of the element and
+	 * of the elements shown below it.
+	 *
+	 * @param element
+	 *            the element being refreshed, or <code>null</code> for the
+	 *            input
+	 */
+	void labelsRefreshed(Object element) {
+		if (element == null || equals(element, getRoot())) {
+			labelChanged(null);
+		} else {
+			for (Object refreshed : getRefreshedElements(element)) {
+				labelChanged(refreshed);
+			}
+		}
+	}
+
+	/**
+	 * Returns the elements whose labels are updated when the given element is
+	 * refreshed. The default implementation returns the element alone.
+	 *
+	 * @param element
+	 *            the element being refreshed
+	 * @return the element and the elements shown below it
+	 */
+	List<Object> getRefreshedElements(Object element) {
+		return Collections.singletonList(element);
+	}
+
 	void clearLegacyEditingSetup() {
 		if (!getControl().isDisposed() && getCellEditors() != null) {
 			int count = doGetColumnCount();
@@ -0,0 +1,385 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.jface.viewers;
+
+import org.eclipse.swt.widgets.Widget;
+
+/**
+ * ElementItemMap is the element to item index used by {@link StructuredViewer}
+ * when hash lookup is enabled. It maps each element to the single widget or
+ * the array of widgets which currently represent it.
+ * <p>
+ * Unlike {@link CustomHashtable} the map does not allocate an entry object per
+ * mapping: keys and values are kept in two parallel arrays which are probed
+ * linearly. Removal shifts the following entries of the probe sequence back
+ * so that no tombstones accumulate in maps which see many associate and
+ * disassociate cycles.
+ * </p>
+ * <p>
+ * Keys are compared using the viewer's {@link IElementComparer} if one is
+ * set. Keys and values cannot be <code>null</code>.
+ * </p>
+ */
+/* package */final class ElementItemMap {
+
+	private static final Widget[] NO_WIDGETS = new Widget[0];
+
+	/**
+	 * The default number of mappings the map can hold without growing.
+	 */
+	static final int DEFAULT_CAPACITY = 13;
+
+	private final IElementComparer comparer;
+
+	private Object[] keys;
+
+	/**
+	 * The values, each of type <code>Widget</code> or <code>Widget[]</code>.
+	 */
+	private Object[] values;
+
+	private int size;
+
+	private int threshold;
+
+	/**
+	 * Creates a new map which can hold the given number of mappings without
+	 * growing.
+	 *
+	 * @param capacity
+	 *            the expected number of mappings
+	 * @param comparer
+	 *            the element comparer to use to compare keys and obtain hash
+	 *            codes for keys, or <code>null</code> to use the normal
+	 *            <code>equals</code> and <code>hashCode</code> methods
+	 */
+	ElementItemMap(int capacity, IElementComparer comparer) {
+		this.comparer = comparer;
+		allocate(tableSizeFor(capacity));
+	}
+
+	/**
+	 * Creates a new map holding all mappings of the given map, using the given
+	 * element comparer.
+	 *
+	 * @param map
+	 *            the map to copy
+	 * @param comparer
+	 *            the element comparer to use, or <code>null</code>
+	 */
+	ElementItemMap(ElementItemMap map, IElementComparer comparer) {
+		this(map.size, comparer);
+		Object[] oldKeys = map.keys;
+		Object[] oldValues = map.values;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the element comparer used by this map.
+	 *
+	 * @return the element comparer or <code>null</code>
+	 */
+	IElementComparer getComparer() {
+		return comparer;
+	}
+
+	/**
+	 * Returns the widgets mapped to the given element.
+	 *
+	 * @param element
+	 *            the element
+	 * @return the widgets, never <code>null</code>. The returned array must
+	 *         not be modified.
+	 */
+	Widget[] getItems(Object element) {
+		Object widgetOrWidgets = get(element);
+		if (widgetOrWidgets == null) {
+			return NO_WIDGETS;
+		} else if (widgetOrWidgets instanceof Widget) {
+			return new Widget[] { (Widget) widgetOrWidgets };
+		}
+		return (Widget[]) widgetOrWidgets;
+	}
+
+	/**
+	 * Adds the given widget to the widgets mapped to the given element. Does
+	 * nothing if the widget is already mapped to the element.
+	 *
+	 * @param element
+	 *            the element
+	 * @param item
+	 *            the widget
+	 */
+	void addItem(Object element, Widget item) {
+		int index = indexOf(element);
+		if (index < 0) {
+			insert(~index, element, item);
+			return;
+		}
+		Object widgetOrWidgets = values[index];
+		// keep the most recent key, see bug 30607
+		keys[index] = element;
+		if (widgetOrWidgets instanceof Widget) {
+			if (widgetOrWidgets != item) {
+				values[index] = new Widget[] { (Widget) widgetOrWidgets, item };
+			}
+			return;
+		}
+		Widget[] widgets = (Widget[]) widgetOrWidgets;
+		for (int i = 0; i < widgets.length; i++) {
+			if (widgets[i] == item) {
+				return;
+			}
+		}
+		int length = widgets.length;
+		Widget[] newWidgets = new Widget[length + 1];
+		System.arraycopy(widgets, 0, newWidgets, 0, length);
+		newWidgets[length] = item;
+		values[index] = newWidgets;
+	}
+
+	/**
+	 * Removes the given widget from the widgets mapped to the given element.
+	 * Removes the element when no widget remains. Does nothing if the element
+	 * does not map to the given widget.
+	 *
+	 * @param element
+	 *            the element
+	 * @param item
+	 *            the widget
+	 */
+	void removeItem(Object element, Widget item) {
+		int index = indexOf(element);
+		if (index < 0) {
+			return;
+		}
+		Object widgetOrWidgets = values[index];
+		if (widgetOrWidgets instanceof Widget) {
+			if (widgetOrWidgets == item) {
+				removeAt(index);
+			}
+			return;
+		}
+		Widget[] widgets = (Widget[]) widgetOrWidgets;
+		int indexOfItem = -1;
+		for (int i = 0; i < widgets.length; i++) {
+			if (widgets[i] == item) {
+				indexOfItem = i;
+				break;
+			}
+		}
+		if (indexOfItem == -1) {
+			return;
+		}
+		int length = widgets.length;
+		if (length == 1) {
+			removeAt(index);
+		} else if (length == 2) {
+			values[index] = widgets[1 - indexOfItem];
+		} else {
+			Widget[] updatedWidgets = new Widget[length - 1];
+			System.arraycopy(widgets, 0, updatedWidgets, 0, indexOfItem);
+			System.arraycopy(widgets, indexOfItem + 1, updatedWidgets, indexOfItem, length - indexOfItem - 1);
+			values[index] = updatedWidgets;
+		}
+	}
+
+	/**
+	 * Returns the value associated with the given element.
+	 *
+	 * @param element
+	 *            the element
+	 * @return a <code>Widget</code>, a <code>Widget[]</code>, or
+	 *         <code>null</code> if the element is not mapped
+	 */
+	Object get(Object element) {
+		int index = indexOf(element);
+		return index < 0 ? null : values[index];
+	}
+
+	/**
+	 * Associates the given value with the given element, replacing any
+	 * previous value.
+	 *
+	 * @param element
+	 *            the element
+	 * @param value
+	 *            a <code>Widget</code> or <code>Widget[]</code>
+	 * @return the previous value, or <code>null</code>
+	 */
+	Object put(Object element, Object value) {
+		if (element == null || value == null) {
+			throw new NullPointerException();
+		}
+		int index = indexOf(element);
+		if (index < 0) {
+			insert(~index, element, value);
+			return null;
+		}
+		Object result = values[index];
+		keys[index] = element;
+		values[index] = value;
+		return result;
+	}
+
+	/**
+	 * Removes the given element and all of its widgets from the map.
+	 *
+	 * @param element
+	 *            the element
+	 * @return the previous value, or <code>null</code>
+	 */
+	Object remove(Object element) {
+		int index = indexOf(element);
+		if (index < 0) {
+			return null;
+		}
+		Object result = values[index];
+		removeAt(index);
+		return result;
+	}
+
+	/**
+	 * Returns the number of elements in this map.
+	 *
+	 * @return the number of elements
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the slot of the given element, or the one's complement of the
+	 * free slot where it would be inserted.
+	 */
+	private int indexOf(Object element) {
+		int mask = keys.length - 1;
+		int index = hash(element) & mask;
+		Object key;
+		while ((key = keys[index]) != null) {
+			if (key == element || keyEquals(element, key)) {
+				return index;
+			}
+			index = (index + 1) & mask;
+		}
+		return ~index;
+	}
+
+	private void insert(int index, Object element, Object value) {
+		if (size >= threshold) {
+			rehash(keys.length << 1);
+			index = ~indexOf(element);
+		}
+		keys[index] = element;
+		values[index] = value;
+		size++;
+	}
+
+	/**
+	 * Clears the given slot and moves back the entries of the probe sequence
+	 * which follow it.
+	 */
+	private void removeAt(int index) {
+		int mask = keys.length - 1;
+		int gap = index;
+		int next = (gap + 1) & mask;
+		Object key;
+		while ((key = keys[next]) != null) {
+			int home = hash(key) & mask;
+			// move the entry into the gap unless its home slot lies
+			// cyclically in (gap, next]
+			if (((next - home) & mask) >= ((next - gap) & mask)) {
+				keys[gap] = key;
+				values[gap] = values[next];
+				gap = next;
+			}
+			next = (next + 1) & mask;
+		}
+		keys[gap] = null;
+		values[gap] = null;
+		size--;
+	}
+
+	private void rehash(int length) {
+		Object[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(length);
+		int mask = length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			Object key = oldKeys[i];
+			if (key != null) {
+				int index = hash(key) & mask;
+				while (keys[index] != null) {
+					index = (index + 1) & mask;
+				}
+				keys[index] = key;
+				values[index] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int length) {
+		keys = new Object[length];
+		values = new Object[length];
+		threshold = (length >> 1) + (length >> 2);
+	}
+
+	private static int tableSizeFor(int capacity) {
+		int length = 4;
+		// keep the load factor at 3/4
+		while (length - (length >> 2) < capacity && length < (1 << 30)) {
+			length <<= 1;
+		}
+		return length;
+	}
+
+	/**
+	 * Answers the spread hash code of the given key.
+	 */
+	private int hash(Object key) {
+		int h = comparer == null ? key.hashCode() : comparer.hashCode(key);
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Compares two keys for equality.
+	 */
+	private boolean keyEquals(Object a, Object b) {
+		if (comparer == null) {
+			return a.equals(b);
+		}
+		return comparer.equals(a, b);
+	}
+
+	@Override
+	public String toString() {
+		StringBuffer buffer = new StringBuffer();
+		buffer.append('{');
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != null) {
+				if (buffer.length() > 1) {
+					buffer.append(", "); //$NON-NLS-1$
+				}
+				buffer.append(keys[i]);
+				buffer.append('=');
+				buffer.append(values[i]);
+			}
+		}
+		buffer.append('}');
+		return buffer.toString();
+	}
+}
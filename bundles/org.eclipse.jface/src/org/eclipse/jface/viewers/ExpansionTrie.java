@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.jface.viewers;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * ExpansionTrie records the expanded nodes of an {@link AbstractTreeViewer}
+ * as a trie of tree paths. Paths sharing a prefix share the nodes of the
+ * prefix, and only nodes which are expanded or have expanded descendants are
+ * kept. Elements are compared using the viewer's comparer.
+ */
+/* package */final class ExpansionTrie {
+
+	/**
+	 * A segment of a recorded tree path.
+	 */
+	static final class Node {
+		final Object element;
+
+		private final Node parent;
+
+		private boolean expanded;
+
+		/**
+		 * Child nodes keyed by element, or <code>null</code> if there are
+		 * none.
+		 */
+		private CustomHashtable children;
+
+		Node(Node parent, Object element) {
+			this.parent = parent;
+			this.element = element;
+		}
+
+		boolean isExpanded() {
+			return expanded;
+		}
+
+		boolean hasChildren() {
+			return children != null && children.size() > 0;
+		}
+
+		int getChildCount() {
+			return children == null ? 0 : children.size();
+		}
+
+		Node getChild(Object childElement) {
+			return children == null ? null : (Node) children.get(childElement);
+		}
+
+		Node[] getChildren() {
+			Node[] result = new Node[getChildCount()];
+			if (children != null) {
+				int i = 0;
+				for (Enumeration e = children.elements(); e.hasMoreElements();) {
+					result[i++] = (Node) e.nextElement();
+				}
+			}
+			return result;
+		}
+	}
+
+	private final IElementComparer comparer;
+
+	private final Node root = new Node(null, null);
+
+	private int size;
+
+	/**
+	 * @param comparer
+	 *            the comparer used to compare elements, or <code>null</code>
+	 */
+	ExpansionTrie(IElementComparer comparer) {
+		this.comparer = comparer;
+	}
+
+	/**
+	 * Returns the node for the given path, or <code>null</code> if neither
+	 * the path nor any path below it is recorded.
+	 *
+	 * @param path
+	 *            the tree path
+	 * @return the node or <code>null</code>
+	 */
+	Node find(TreePath path) {
+		Node node = root;
+		for (int i = 0, n = path.getSegmentCount(); i < n && node != null; i++) {
+			node = node.getChild(path.getSegment(i));
+		}
+		return node;
+	}
+
+	/**
+	 * Records whether the node with the given path is expanded. Expanded
+	 * descendants of a collapsed node stay recorded.
+	 *
+	 * @param path
+	 *            the tree path
+	 * @param expanded
+	 *            the expanded state
+	 */
+	void setExpanded(TreePath path, boolean expanded) {
+		if (path.getSegmentCount() == 0) {
+			return;
+		}
+		if (!expanded) {
+			Node node = find(path);
+			if (node != null && node.expanded) {
+				node.expanded = false;
+				size--;
+				prune(node);
+			}
+			return;
+		}
+		Node node = root;
+		for (int i = 0, n = path.getSegmentCount(); i < n; i++) {
+			Object segment = path.getSegment(i);
+			Node child = node.getChild(segment);
+			if (child == null) {
+				child = new Node(node, segment);
+				if (node.children == null) {
+					node.children = new CustomHashtable(comparer);
+				}
+				node.children.put(segment, child);
+			}
+			node = child;
+		}
+		if (!node.expanded) {
+			node.expanded = true;
+			size++;
+		}
+	}
+
+	/**
+	 * Forgets the given node and all nodes below it.
+	 *
+	 * @param node
+	 *            the node to remove
+	 */
+	void remove(Node node) {
+		if (node == root) {
+			clear();
+			return;
+		}
+		size -= countExpanded(node);
+		node.parent.children.remove(node.element);
+		prune(node.parent);
+	}
+
+	/**
+	 * Forgets the node with the given path and all nodes below it.
+	 *
+	 * @param path
+	 *            the tree path
+	 */
+	void remove(TreePath path) {
+		Node node = find(path);
+		if (node != null) {
+			remove(node);
+		}
+	}
+
+	private static int countExpanded(Node node) {
+		int count = node.expanded ? 1 : 0;
+		if (node.children != null) {
+			for (Enumeration e = node.children.elements(); e.hasMoreElements();) {
+				count += countExpanded((Node) e.nextElement());
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Removes the given node and its ancestors as long as they are neither
+	 * expanded nor have children.
+	 */
+	private void prune(Node node) {
+		while (node != root && !node.expanded && !node.hasChildren()) {
+			Node parent = node.parent;
+			parent.children.remove(node.element);
+			node = parent;
+		}
+	}
+
+	/**
+	 * Returns the root node, representing the viewer's input.
+	 *
+	 * @return the root node
+	 */
+	Node getRoot() {
+		return root;
+	}
+
+	/**
+	 * Returns the number of recorded expanded paths.
+	 *
+	 * @return the number of expanded paths
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Forgets all recorded paths.
+	 */
+	void clear() {
+		root.children = null;
+		size = 0;
+	}
+
+	/**
+	 * Returns the recorded expanded paths. Parents are returned before their
+	 * children.
+	 *
+	 * @return the expanded paths
+	 */
+	TreePath[] getExpandedPaths() {
+		List<TreePath> result = new ArrayList<>(size);
+		collect(root, new ArrayList<>(), result);
+		return result.toArray(new TreePath[result.size()]);
+	}
+
+	private static void collect(Node node, List<Object> segments, List<TreePath> result) {
+		if (node.children == null) {
+			return;
+		}
+		for (Enumeration e = node.children.elements(); e.hasMoreElements();) {
+			Node child = (Node) e.nextElement();
+			segments.add(child.element);
+			if (child.expanded) {
+				result.add(new TreePath(segments.toArray()));
+			}
+			collect(child, segments, result);
+			segments.remove(segments.size() - 1);
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.jface.viewers;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * ParallelFilterAndSort filters and sorts the children of a
+ * {@link StructuredViewer} on the common fork-join pool. It is used by the
+ * viewer when parallel filtering and sorting has been enabled with
+ * {@link StructuredViewer#setParallelFilterAndSortThreshold(int)}.
+ * <p>
+ * Only the default implementations of {@link ViewerFilter} and
+ * {@link ViewerComparator} are parallelized. Filters overriding
+ * <code>filter(Viewer, Object, Object[])</code> and comparators overriding
+ * <code>sort(Viewer, Object[])</code> are called as usual, since they may
+ * rely on being called sequentially. Comparators which keep the default
+ * <code>compare(Viewer, Object, Object)</code> have the category and the
+ * (collation) key of each element computed once instead of once per
+ * comparison.
+ * </p>
+ */
+/* package */final class ParallelFilterAndSort {
+
+	/**
+	 * Caches whether a filter class overrides
+	 * {@link ViewerFilter#filter(Viewer, Object, Object[])}.
+	 */
+	private static final ClassValue<Boolean> OVERRIDES_FILTER = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			return Boolean.valueOf(overrides(type, ViewerFilter.class, "filter", Viewer.class, Object.class, //$NON-NLS-1$
+					Object[].class));
+		}
+	};
+
+	/**
+	 * Caches whether a comparator class overrides
+	 * {@link ViewerComparator#sort(Viewer, Object[])}.
+	 */
+	private static final ClassValue<Boolean> OVERRIDES_SORT = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			return Boolean.valueOf(overrides(type, ViewerComparator.class, "sort", Viewer.class, Object[].class)); //$NON-NLS-1$
+		}
+	};
+
+	/**
+	 * Caches whether a comparator class overrides
+	 * {@link ViewerComparator#compare(Viewer, Object, Object)}.
+	 */
+	private static final ClassValue<Boolean> OVERRIDES_COMPARE = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			return Boolean.valueOf(overrides(type, ViewerComparator.class, "compare", Viewer.class, Object.class, //$NON-NLS-1$
+					Object.class));
+		}
+	};
+
+	/**
+	 * An element together with its precomputed sort keys.
+	 */
+	private static final class SortEntry {
+		final Object element;
+
+		final int category;
+
+		final Object key;
+
+		SortEntry(Object element, int category, Object key) {
+			this.element = element;
+			this.category = category;
+			this.key = key;
+		}
+	}
+
+	private ParallelFilterAndSort() {
+		// static methods only
+	}
+
+	private static boolean overrides(Class<?> type, Class<?> base, String name, Class<?>... parameterTypes) {
+		try {
+			return type.getMethod(name, parameterTypes).getDeclaringClass() != base;
+		} catch (NoSuchMethodException e) {
+			return true;
+		}
+	}
+
+	/**
+	 * Filters the given elements, calling <code>select</code> concurrently if
+	 * the filter does not override
+	 * {@link ViewerFilter#filter(Viewer, Object, Object[])}.
+	 *
+	 * @param filter
+	 *            the filter
+	 * @param viewer
+	 *            the viewer
+	 * @param parent
+	 *            the parent element
+	 * @param elements
+	 *            the elements to filter, not modified
+	 * @return the filtered elements
+	 */
+	static Object[] filter(final ViewerFilter filter, final Viewer viewer, final Object parent,
+			final Object[] elements) {
+		if (OVERRIDES_FILTER.get(filter.getClass()).booleanValue()) {
+			return filter.filter(viewer, parent, elements);
+		}
+		final boolean[] selected = new boolean[elements.length];
+		IntStream.range(0, elements.length).parallel()
+				.forEach(i -> selected[i] = filter.select(viewer, parent, elements[i]));
+		int count = 0;
+		for (boolean s : selected) {
+			if (s) {
+				count++;
+			}
+		}
+		Object[] result = new Object[count];
+		for (int i = 0, j = 0; i < elements.length; i++) {
+			if (selected[i]) {
+				result[j++] = elements[i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Sorts the given elements in place.
+	 *
+	 * @param comparator
+	 *            the comparator
+	 * @param viewer
+	 *            the viewer
+	 * @param elements
+	 *            the elements to sort
+	 */
+	static void sort(final ViewerComparator comparator, final Viewer viewer, Object[] elements) {
+		Class<? extends ViewerComparator> type = comparator.getClass();
+		if (OVERRIDES_SORT.get(type).booleanValue()) {
+			comparator.sort(viewer, elements);
+		} else if (OVERRIDES_COMPARE.get(type).booleanValue()) {
+			Arrays.parallelSort(elements, (a, b) -> comparator.compare(viewer, a, b));
+		} else {
+			sortWithKeys(comparator, viewer, elements);
+		}
+	}
+
+	private static void sortWithKeys(final ViewerComparator comparator, final Viewer viewer, Object[] elements) {
+		final Comparator<? super String> stringComparator = comparator.getComparator();
+		final ThreadLocal<Collator> collators;
+		if (stringComparator instanceof Collator) {
+			// collators synchronize on themselves, give each worker its own
+			collators = ThreadLocal.withInitial(() -> (Collator) ((Collator) stringComparator).clone());
+		} else {
+			collators = null;
+		}
+		final SortEntry[] entries = new SortEntry[elements.length];
+		final Object[] source = elements;
+		IntStream.range(0, elements.length).parallel().forEach(i -> {
+			Object element = source[i];
+			String label = comparator.getLabel(viewer, element);
+			Object key = collators == null ? label : collators.get().getCollationKey(label);
+			entries[i] = new SortEntry(element, comparator.category(element), key);
+		});
+		Arrays.parallelSort(entries, (a, b) -> {
+			if (a.category != b.category) {
+				return a.category - b.category;
+			}
+			if (collators != null) {
+				return ((CollationKey) a.key).compareTo((CollationKey) b.key);
+			}
+			return stringComparator.compare((String) a.key, (String) b.key);
+		});
+		for (int i = 0; i < entries.length; i++) {
+			elements[i] = entries[i].element;
+		}
+	}
+}
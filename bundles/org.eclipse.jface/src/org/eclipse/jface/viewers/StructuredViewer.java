@@ -65,7 +65,7 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 	 * <code>Object</code>, value type: <code>Widget</code>, or <code>Widget[]</code>).
 	 * <code>null</code> means that the element map is disabled.
 	 */
-	private CustomHashtable elementMap;
+	private ElementItemMap elementMap;
 
 	/**
 	 * The comparer to use for comparing elements, or <code>null</code> to use
@@ -108,6 +108,15 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 	 */
 	private boolean restoreSelection;
 
+	/**
+	 * The minimum number of children for which filtering and sorting run on
+	 * the common fork-join pool, or <code>-1</code> if they always run on the
+	 * calling thread.
+	 *
+	 * @see #setParallelFilterAndSortThreshold(int)
+	 */
+	private int parallelFilterAndSortThreshold = -1;
+
 	/**
 	 * List of double-click state listeners (element type:
 	 * <code>IDoubleClickListener</code>).
@@ -800,14 +809,7 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 		}
 		// if we have an element map use it, otherwise search for the item.
 		if (usingElementMap()) {
-			Object widgetOrWidgets = elementMap.get(element);
-			if (widgetOrWidgets==null) {
-				return NO_WIDGETS;
-			} else if (widgetOrWidgets instanceof Widget) {
-				return new Widget[] {(Widget) widgetOrWidgets};
-			} else {
-				return (Widget[])widgetOrWidgets;
-			}
+			return elementMap.getItems(element);
 		}
 		result = doFindItem(element);
 		return result == null ? NO_WIDGETS : new Widget[] { result };
@@ -902,7 +904,8 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 		if (filters != null) {
 			for (Iterator iter = filters.iterator(); iter.hasNext();) {
 				ViewerFilter f = (ViewerFilter) iter.next();
-				Object[] filteredResult = f.filter(this, parent, result);
+				Object[] filteredResult = isParallelFilterAndSort(result.length)
+						? ParallelFilterAndSort.filter(f, this, parent, result) : f.filter(this, parent, result);
 				if (associateListener != null && filteredResult.length != result.length) {
 					notifyFilteredOut(result, filteredResult);
 				}
@@ -1079,11 +1082,76 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 		if (sorter != null) {
 			// be sure we're not modifying the original array from the model
 			result = result.clone();
-			sorter.sort(this, result);
+			sort(sorter, result);
 		}
 		return result;
 	}
 
+	/**
+	 * Sorts the given elements in place using the given comparator, on the
+	 * common fork-join pool if parallel sorting is enabled for the number of
+	 * elements.
+	 *
+	 * @param comparator
+	 *            the comparator
+	 * @param elements
+	 *            the elements to sort
+	 */
+	void sort(ViewerComparator comparator, Object[] elements) {
+		if (isParallelFilterAndSort(elements.length)) {
+			ParallelFilterAndSort.sort(comparator, this, elements);
+		} else {
+			comparator.sort(this, elements);
+		}
+	}
+
+	private boolean isParallelFilterAndSort(int elementCount) {
+		return parallelFilterAndSortThreshold >= 0 && elementCount >= parallelFilterAndSortThreshold;
+	}
+
+	/**
+	 * Configures whether this viewer filters and sorts large numbers of
+	 * children concurrently on the common fork-join pool. Only the final
+	 * creation and update of items happens on the calling thread.
+	 * <p>
+	 * When enabled, {@link ViewerFilter#select(Viewer, Object, Object)},
+	 * {@link ViewerComparator#category(Object)},
+	 * {@link ViewerComparator#compare(Viewer, Object, Object)} and the text of
+	 * the label provider may be called from several threads at once and must
+	 * not access widgets. Filters overriding
+	 * {@link ViewerFilter#filter(Viewer, Object, Object[])} and comparators
+	 * overriding {@link ViewerComparator#sort(Viewer, Object[])} are still
+	 * called on the calling thread. Comparators keeping the default
+	 * <code>compare</code> implementation have the category and label of each
+	 * element computed once per sort, using collation keys if the string
+	 * comparator is a {@link java.text.Collator}.
+	 * </p>
+	 * <p>
+	 * Parallel filtering and sorting is disabled by default.
+	 * </p>
+	 *
+	 * @param threshold
+	 *            the minimum number of children for which filtering and
+	 *            sorting run concurrently, or <code>-1</code> to disable
+	 * @since 3.13
+	 */
+	public void setParallelFilterAndSortThreshold(int threshold) {
+		Assert.isTrue(threshold >= -1);
+		this.parallelFilterAndSortThreshold = threshold;
+	}
+
+	/**
+	 * Returns the minimum number of children for which this viewer filters
+	 * and sorts concurrently.
+	 *
+	 * @return the threshold, or <code>-1</code> if disabled
+	 * @see #setParallelFilterAndSortThreshold(int)
+	 * @since 3.13
+	 */
+	public int getParallelFilterAndSortThreshold() {
+		return parallelFilterAndSortThreshold;
+	}
+
 	/**
 	 * Returns this viewer's sorter, or <code>null</code> if it does not have
 	 * one.  If this viewer has a comparator that was set via
@@ -1322,25 +1390,7 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 	 */
 	protected void mapElement(Object element, Widget item) {
 		if (elementMap != null) {
-			Object widgetOrWidgets = elementMap.get(element);
-			if (widgetOrWidgets == null) {
-				elementMap.put(element, item);
-			} else if (widgetOrWidgets instanceof Widget) {
-				if (widgetOrWidgets != item) {
-					elementMap.put(element, new Widget[] {
-							(Widget) widgetOrWidgets, item });
-				}
-			} else {
-				Widget[] widgets = (Widget[]) widgetOrWidgets;
-				int indexOfItem = Arrays.asList(widgets).indexOf(item);
-				if (indexOfItem == -1) {
-					int length = widgets.length;
-					System.arraycopy(widgets, 0,
-							widgets = new Widget[length + 1], 0, length);
-					widgets[length] = item;
-					elementMap.put(element, widgets);
-				}
-			}
+			elementMap.addItem(element, item);
 		}
 	}
 
@@ -1387,6 +1437,18 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 		return new CustomHashtable(capacity, getComparer());
 	}
 
+	/**
+	 * Returns a new element map using the given capacity and this viewer's
+	 * element comparer.
+	 *
+	 * @param capacity
+	 *            the number of elements the map can hold without growing
+	 * @return a new element map
+	 */
+	ElementItemMap newElementMap(int capacity) {
+		return new ElementItemMap(capacity, getComparer());
+	}
+
 	/**
 	 * Attempts to preserves the current selection across a run of the given
 	 * code. This method should not preserve the selection if
@@ -1821,7 +1883,7 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 		Assert.isTrue(getInput() == null,
 				"Can only enable the hash look up before input has been set");//$NON-NLS-1$
 		if (enable) {
-			elementMap = newHashtable(CustomHashtable.DEFAULT_CAPACITY);
+			elementMap = newElementMap(ElementItemMap.DEFAULT_CAPACITY);
 		} else {
 			elementMap = null;
 		}
@@ -1839,7 +1901,7 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 	public void setComparer(IElementComparer comparer) {
 		this.comparer = comparer;
 		if (elementMap != null) {
-			elementMap = new CustomHashtable(elementMap, comparer);
+			elementMap = new ElementItemMap(elementMap, comparer);
 		}
 	}
 
@@ -1908,7 +1970,7 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 	 */
 	protected void unmapAllElements() {
 		if (elementMap != null) {
-			elementMap = newHashtable(CustomHashtable.DEFAULT_CAPACITY);
+			elementMap = newElementMap(ElementItemMap.DEFAULT_CAPACITY);
 		}
 	}
 
@@ -1948,36 +2010,7 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 		// double-check that the element actually maps to the given item before
 		// unmapping it
 		if (elementMap != null) {
-			Object widgetOrWidgets = elementMap.get(element);
-			if (widgetOrWidgets == null) {
-				// item was not mapped, return
-				return;
-			} else if (widgetOrWidgets instanceof Widget) {
-				if (item == widgetOrWidgets) {
-					elementMap.remove(element);
-				}
-			} else {
-				Widget[] widgets = (Widget[]) widgetOrWidgets;
-				int indexOfItem = Arrays.asList(widgets).indexOf(item);
-				if (indexOfItem == -1) {
-					return;
-				}
-				int length = widgets.length;
-				if (indexOfItem == 0) {
-					if(length == 1) {
-						elementMap.remove(element);
-					} else {
-						Widget[] updatedWidgets = new Widget[length - 1];
-						System.arraycopy(widgets, 1, updatedWidgets, 0, length -1 );
-						elementMap.put(element, updatedWidgets);
-					}
-				} else {
-					Widget[] updatedWidgets = new Widget[length - 1];
-					System.arraycopy(widgets, 0, updatedWidgets, 0, indexOfItem);
-					System.arraycopy(widgets, indexOfItem + 1, updatedWidgets, indexOfItem, length - indexOfItem - 1);
-					elementMap.put(element, updatedWidgets);
-				}
-			}
+			elementMap.removeItem(element, item);
 		}
 	}
 
@@ -2144,10 +2177,22 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 			}
 		}
 		if (needsUpdate) {
+			labelChanged(element);
 			updateItem(widget, element);
 		}
 	}
 
+	/**
+	 * Called before the labels of the given element are updated because they
+	 * may have changed. Lets column viewers discard cached labels.
+	 *
+	 * @param element
+	 *            the element, or <code>null</code> for all elements
+	 */
+	/* package */void labelChanged(Object element) {
+		// no labels are cached
+	}
+
 	/**
 	 * Copies attributes of the given element into the given widget.
 	 * <p>
@@ -2326,7 +2371,7 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 		comparer = null;
 		if (filters != null)
 			filters.clear();
-		elementMap = newHashtable(1);
+		elementMap = newElementMap(1);
 		openListeners.clear();
 		doubleClickListeners.clear();
 		colorAndFontCollector.clear();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2015 IBM Corporation and others.
+ * Copyright (c) 2005, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,6 +18,11 @@ import org.eclipse.core.runtime.Assert;
  * value semantics. A model element is represented by a path of elements in the
  * tree from the root element to the leaf element.
  * <p>
+ * Paths created with {@link #createChildPath(Object)} share the segments of
+ * their parent path rather than copying them, so that the paths of many
+ * siblings can be created without copying the common prefix for each of them.
+ * </p>
+ * <p>
  * Clients may instantiate this class. Not intended to be subclassed.
  * </p>
  *
@@ -30,7 +35,29 @@ public final class TreePath {
 	 */
 	public static final TreePath EMPTY = new TreePath(new Object[0]);
 
-	private Object[] segments;
+	/**
+	 * The segments of this path, or <code>null</code> if this path was created
+	 * by {@link #createChildPath(Object)}.
+	 */
+	private final Object[] segments;
+
+	/**
+	 * The segments of a path created by {@link #createChildPath(Object)}, or
+	 * <code>null</code> if they have not been computed from {@link #parent}
+	 * and {@link #lastSegment} yet. Volatile, since paths may be shared
+	 * between threads after the segments were computed by one of them.
+	 */
+	private volatile Object[] childSegments;
+
+	/**
+	 * The parent path if this path was created by
+	 * {@link #createChildPath(Object)}, or <code>null</code>.
+	 */
+	private final TreePath parent;
+
+	private final Object lastSegment;
+
+	private final int segmentCount;
 
 	private int hash;
 
@@ -47,6 +74,49 @@ public final class TreePath {
 			Assert.isNotNull(segment);
 		}
 		this.segments = segments;
+		this.parent = null;
+		this.segmentCount = segments.length;
+		this.lastSegment = segmentCount == 0 ? null : segments[segmentCount - 1];
+	}
+
+	/**
+	 * Constructs a path sharing the segments of the given parent path.
+	 *
+	 * @param parent
+	 *            the parent path
+	 * @param lastSegment
+	 *            the segment to add at the end
+	 */
+	private TreePath(TreePath parent, Object lastSegment) {
+		Assert.isNotNull(lastSegment);
+		this.segments = null;
+		this.parent = parent;
+		this.lastSegment = lastSegment;
+		this.segmentCount = parent.segmentCount + 1;
+	}
+
+	/**
+	 * Returns the segments of this path, computing them from the parent paths
+	 * if necessary. The result must not be modified.
+	 */
+	private Object[] getSegments() {
+		if (segments != null) {
+			return segments;
+		}
+		Object[] result = childSegments;
+		if (result == null) {
+			result = new Object[segmentCount];
+			TreePath path = this;
+			int i = segmentCount;
+			Object[] prefix;
+			while ((prefix = path.segments) == null && (prefix = path.childSegments) == null) {
+				result[--i] = path.lastSegment;
+				path = path.parent;
+			}
+			System.arraycopy(prefix, 0, result, 0, i);
+			childSegments = result;
+		}
+		return result;
 	}
 
 	/**
@@ -57,7 +127,10 @@ public final class TreePath {
 	 * @return element at the specified index
 	 */
 	public Object getSegment(int index) {
-		return segments[index];
+		if (index == segmentCount - 1 && index >= 0) {
+			return lastSegment;
+		}
+		return getSegments()[index];
 	}
 
 	/**
@@ -66,7 +139,7 @@ public final class TreePath {
 	 * @return the number of elements in this path
 	 */
 	public int getSegmentCount() {
-		return segments.length;
+		return segmentCount;
 	}
 
 	/**
@@ -76,10 +149,10 @@ public final class TreePath {
 	 * @return the first element in this path
 	 */
 	public Object getFirstSegment() {
-		if (segments.length == 0) {
+		if (segmentCount == 0) {
 			return null;
 		}
-		return segments[0];
+		return getSegment(0);
 	}
 
 	/**
@@ -89,10 +162,7 @@ public final class TreePath {
 	 * @return the last element in this path
 	 */
 	public Object getLastSegment() {
-		if (segments.length == 0) {
-			return null;
-		}
-		return segments[segments.length - 1];
+		return lastSegment;
 	}
 
 	@Override
@@ -105,10 +175,16 @@ public final class TreePath {
 
 	@Override
 	public int hashCode() {
-		if (hash == 0) {
-			hash = hashCode(null);
+		int result = hash;
+		if (result == 0) {
+			if (parent != null) {
+				result = parent.hashCode() + lastSegment.hashCode();
+			} else {
+				result = hashCode(null);
+			}
+			hash = result;
 		}
-		return hash;
+		return result;
 	}
 
 	/**
@@ -122,7 +198,7 @@ public final class TreePath {
 	 */
 	public int hashCode(IElementComparer comparer) {
 		int result = 0;
-		for (Object segment : segments) {
+		for (Object segment : getSegments()) {
 			if (comparer == null) {
 				result += segment.hashCode();
 			} else {
@@ -147,23 +223,39 @@ public final class TreePath {
 		if (otherPath == null) {
 			return false;
 		}
-		if (segments.length != otherPath.segments.length) {
+		if (segmentCount != otherPath.segmentCount) {
 			return false;
 		}
-		for (int i = 0; i < segments.length; i++) {
-			if (comparer == null) {
-				if (!segments[i].equals(otherPath.segments[i])) {
-					return false;
-				}
-			} else {
-				if (!comparer.equals(segments[i], otherPath.segments[i])) {
-					return false;
+		TreePath path = this;
+		TreePath other = otherPath;
+		// compare from the end; paths sharing a prefix meet at the same parent
+		while (path != other) {
+			if (path.parent == null || other.parent == null) {
+				Object[] thisSegments = path.getSegments();
+				Object[] otherSegments = other.getSegments();
+				for (int i = 0; i < thisSegments.length; i++) {
+					if (!segmentEquals(thisSegments[i], otherSegments[i], comparer)) {
+						return false;
+					}
 				}
+				return true;
+			}
+			if (!segmentEquals(path.lastSegment, other.lastSegment, comparer)) {
+				return false;
 			}
+			path = path.parent;
+			other = other.parent;
 		}
 		return true;
 	}
 
+	private static boolean segmentEquals(Object segment, Object otherSegment, IElementComparer comparer) {
+		if (comparer == null) {
+			return segment.equals(otherSegment);
+		}
+		return comparer.equals(segment, otherSegment);
+	}
+
 	/**
 	 * Returns whether this path starts with the same segments as the given
 	 * path, using the given comparer to compare segments.
@@ -185,16 +277,17 @@ public final class TreePath {
 		if (otherSegmentCount > thisSegmentCount) {
 			return false;
 		}
+		TreePath prefix = this;
+		while (prefix.parent != null && prefix.segmentCount > otherSegmentCount) {
+			prefix = prefix.parent;
+		}
+		if (prefix.segmentCount == otherSegmentCount) {
+			return prefix.equals(treePath, comparer);
+		}
+		Object[] thisSegments = prefix.getSegments();
 		for (int i = 0; i < otherSegmentCount; i++) {
-			Object otherSegment = treePath.getSegment(i);
-			if (comparer == null) {
-				if (!otherSegment.equals(segments[i])) {
-					return false;
-				}
-			} else {
-				if (!comparer.equals(otherSegment, segments[i])) {
-					return false;
-				}
+			if (!segmentEquals(treePath.getSegment(i), thisSegments[i], comparer)) {
+				return false;
 			}
 		}
 		return true;
@@ -206,29 +299,26 @@ public final class TreePath {
 	 * @return a tree path
 	 */
 	public TreePath getParentPath() {
-		int segmentCount = getSegmentCount();
+		if (parent != null) {
+			return parent;
+		}
 		if (segmentCount < 1) {
 			return null;
 		} else if (segmentCount == 1) {
 			return EMPTY;
 		}
 		Object[] parentSegments = new Object[segmentCount - 1];
-		System.arraycopy(segments, 0, parentSegments, 0, segmentCount - 1);
+		System.arraycopy(getSegments(), 0, parentSegments, 0, segmentCount - 1);
 		return new TreePath(parentSegments);
 	}
 
 	/**
-	 * Returns a copy of this tree path with the given segment added at the end.
+	 * Returns a tree path with the given segment added at the end. The
+	 * returned path shares the segments of this path.
 	 * @param newSegment
 	 * @return a tree path
 	 */
 	public TreePath createChildPath(Object newSegment) {
-		int segmentCount = getSegmentCount();
-		Object[] childSegments = new Object[segmentCount + 1];
-		if(segmentCount>0) {
-			System.arraycopy(segments, 0, childSegments, 0, segmentCount);
-		}
-		childSegments[segmentCount] = newSegment;
-		return new TreePath(childSegments);
+		return new TreePath(this, newSegment);
 	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2015 IBM Corporation and others.
+ * Copyright (c) 2005, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -50,9 +50,13 @@ public class TreeSelection extends StructuredSelection implements ITreeSelection
 		TreePath[] paths;
 		CustomHashtable element2TreePaths;
 
-		private InitializeData(TreePath[] paths, IElementComparer comparer) {
-			this.paths= new TreePath[paths.length];
-			System.arraycopy(paths, 0, this.paths, 0, paths.length);
+		private InitializeData(TreePath[] paths, IElementComparer comparer, boolean copy) {
+			if (copy) {
+				this.paths= new TreePath[paths.length];
+				System.arraycopy(paths, 0, this.paths, 0, paths.length);
+			} else {
+				this.paths= paths;
+			}
 			element2TreePaths = new CustomHashtable(comparer);
 			int size = paths.length;
 			selection = new ArrayList(size);
@@ -82,7 +86,7 @@ public class TreeSelection extends StructuredSelection implements ITreeSelection
 	 *            tree paths
 	 */
 	public TreeSelection(TreePath[] paths) {
-		this(new InitializeData(paths, null));
+		this(new InitializeData(paths, null, true));
 	}
 
 	/**
@@ -95,7 +99,24 @@ public class TreeSelection extends StructuredSelection implements ITreeSelection
 	 *            the comparer, or <code>null</code> if default equals is to be used
 	 */
 	public TreeSelection(TreePath[] paths, IElementComparer comparer) {
-		this(new InitializeData(paths, comparer));
+		this(new InitializeData(paths, comparer, true));
+	}
+
+	/**
+	 * Constructs a selection based on the elements identified by the given tree
+	 * paths, optionally taking ownership of the given array instead of copying
+	 * it.
+	 *
+	 * @param paths
+	 *            tree paths
+	 * @param comparer
+	 *            the comparer, or <code>null</code> if default equals is to be used
+	 * @param copy
+	 *            <code>false</code> if the caller does not keep a reference to
+	 *            the array and it may be used by the selection directly
+	 */
+	/* package */TreeSelection(TreePath[] paths, IElementComparer comparer, boolean copy) {
+		this(new InitializeData(paths, comparer, copy));
 	}
 
 	/**
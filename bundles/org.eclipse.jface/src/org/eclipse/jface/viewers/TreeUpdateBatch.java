@@ -0,0 +1,348 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.jface.viewers;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * TreeUpdateBatch collects the structural and label changes issued against an
+ * {@link AbstractTreeViewer} between
+ * {@link AbstractTreeViewer#beginUpdateBatch()} and
+ * {@link AbstractTreeViewer#commitUpdateBatch()}, and cancels out those which
+ * are made redundant by later ones:
+ * <ul>
+ * <li>an element added and then removed within the batch is neither added nor
+ * removed, unless it was already shown before the batch started</li>
+ * <li>updates of an element are merged into one update, and dropped if the
+ * element is added or removed within the batch</li>
+ * <li>additions below an element which is refreshed within the batch are
+ * dropped, since the refresh picks the new children up</li>
+ * <li>a refresh of the viewer's input supersedes all additions and removals
+ * </li>
+ * </ul>
+ * The remaining operations are applied with one call per parent element.
+ */
+/* package */final class TreeUpdateBatch {
+
+	/**
+	 * Wraps an element or tree path so that it can be used as a hash key
+	 * respecting the viewer's element comparer. A <code>null</code> element
+	 * stands for the viewer's input.
+	 */
+	private static final class Key {
+		final Object elementOrTreePath;
+
+		private final IElementComparer comparer;
+
+		Key(Object elementOrTreePath, IElementComparer comparer) {
+			this.elementOrTreePath = elementOrTreePath;
+			this.comparer = comparer;
+		}
+
+		@Override
+		public int hashCode() {
+			if (elementOrTreePath == null) {
+				return 0;
+			}
+			if (elementOrTreePath instanceof TreePath) {
+				return ((TreePath) elementOrTreePath).hashCode(comparer);
+			}
+			return comparer == null ? elementOrTreePath.hashCode() : comparer.hashCode(elementOrTreePath);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Object other = ((Key) obj).elementOrTreePath;
+			if (elementOrTreePath == null || other == null) {
+				return elementOrTreePath == other;
+			}
+			if (elementOrTreePath instanceof TreePath) {
+				return other instanceof TreePath && ((TreePath) elementOrTreePath).equals((TreePath) other, comparer);
+			}
+			if (other instanceof TreePath) {
+				return false;
+			}
+			return comparer == null ? elementOrTreePath.equals(other) : comparer.equals(elementOrTreePath, other);
+		}
+	}
+
+	private final AbstractTreeViewer viewer;
+
+	private final IElementComparer comparer;
+
+	/**
+	 * Pending additions, from parent element or tree path to the set of child
+	 * elements.
+	 */
+	private final Map<Key, Set<Key>> additions = new LinkedHashMap<>();
+
+	/**
+	 * Parents of the pending additions, keyed by child element.
+	 */
+	private final Map<Key, List<Key>> addedChildren = new LinkedHashMap<>();
+
+	private final Set<Key> removals = new LinkedHashSet<>();
+
+	/**
+	 * Pending updates, from element to the set of changed properties, or to
+	 * <code>null</code> if the element needs a full update.
+	 */
+	private final Map<Key, Set<String>> updates = new LinkedHashMap<>();
+
+	/**
+	 * Pending refreshes, from element to whether labels have to be updated.
+	 */
+	private final Map<Key, Boolean> refreshes = new LinkedHashMap<>();
+
+	/**
+	 * Creates a new batch for the given viewer.
+	 *
+	 * @param viewer
+	 *            the viewer
+	 */
+	TreeUpdateBatch(AbstractTreeViewer viewer) {
+		this.viewer = viewer;
+		this.comparer = viewer.getComparer();
+	}
+
+	private Key key(Object elementOrTreePath) {
+		return new Key(elementOrTreePath, comparer);
+	}
+
+	/**
+	 * Returns the key of the given element, using the key of
+	 * <code>null</code> for the viewer's input.
+	 */
+	private Key elementKey(Object element) {
+		Object root = viewer.getRoot();
+		if (element == null || (root != null && key(root).equals(key(element)))) {
+			return key(null);
+		}
+		return key(element);
+	}
+
+	/**
+	 * Records the addition of the given children to the given parent.
+	 *
+	 * @param parentElementOrTreePath
+	 *            the parent element or tree path
+	 * @param childElements
+	 *            the child elements
+	 */
+	void add(Object parentElementOrTreePath, Object[] childElements) {
+		Key parent = key(parentElementOrTreePath);
+		Set<Key> children = additions.get(parent);
+		if (children == null) {
+			children = new LinkedHashSet<>();
+			additions.put(parent, children);
+		}
+		for (int i = 0; i < childElements.length; i++) {
+			Key child = key(childElements[i]);
+			if (children.add(child)) {
+				List<Key> parents = addedChildren.get(child);
+				if (parents == null) {
+					parents = new ArrayList<>(1);
+					addedChildren.put(child, parents);
+				}
+				parents.add(parent);
+			}
+			// the new item is labeled when it is created
+			updates.remove(child);
+		}
+	}
+
+	/**
+	 * Records the removal of the given elements or tree paths. The removal of
+	 * a tree path only cancels the pending addition below its parent.
+	 *
+	 * @param elementsOrTreePaths
+	 *            the elements or tree paths
+	 */
+	void remove(Object[] elementsOrTreePaths) {
+		for (int i = 0; i < elementsOrTreePaths.length; i++) {
+			Object elementOrTreePath = elementsOrTreePaths[i];
+			Key removed = key(elementOrTreePath);
+			Object element = elementOrTreePath instanceof TreePath
+					? ((TreePath) elementOrTreePath).getLastSegment() : elementOrTreePath;
+			Key removedElement = key(element);
+			boolean cancelled = cancelAdditions(elementOrTreePath, removedElement);
+			if (!(elementOrTreePath instanceof TreePath)) {
+				// other occurrences of the element keep their updates
+				updates.remove(removedElement);
+				refreshes.remove(removedElement);
+			}
+			if (!cancelled || viewer.internalFindItems(elementOrTreePath).length > 0) {
+				removals.add(removed);
+			}
+		}
+	}
+
+	/**
+	 * Cancels the pending additions of the removed element or tree path.
+	 *
+	 * @return <code>true</code> if an addition was cancelled
+	 */
+	private boolean cancelAdditions(Object removedElementOrTreePath, Key removedElement) {
+		List<Key> parents = addedChildren.get(removedElement);
+		if (parents == null) {
+			return false;
+		}
+		boolean cancelled = false;
+		for (Iterator<Key> iterator = parents.iterator(); iterator.hasNext();) {
+			Key parent = iterator.next();
+			if (removedElementOrTreePath instanceof TreePath
+					&& !isParent(parent, ((TreePath) removedElementOrTreePath).getParentPath())) {
+				continue;
+			}
+			Set<Key> children = additions.get(parent);
+			children.remove(removedElement);
+			if (children.isEmpty()) {
+				additions.remove(parent);
+			}
+			iterator.remove();
+			cancelled = true;
+		}
+		if (parents.isEmpty()) {
+			addedChildren.remove(removedElement);
+		}
+		return cancelled;
+	}
+
+	/**
+	 * Returns whether the given parent of an addition, an element or a tree
+	 * path, denotes the given parent path.
+	 */
+	private boolean isParent(Key parent, TreePath parentPath) {
+		if (parent.equals(key(parentPath))) {
+			return true;
+		}
+		Object parentElement = parentPath.getSegmentCount() == 0 ? viewer.getRoot() : parentPath.getLastSegment();
+		return parent.equals(key(parentElement));
+	}
+
+	/**
+	 * Records an update of the given element.
+	 *
+	 * @param element
+	 *            the element
+	 * @param properties
+	 *            the changed properties, or <code>null</code> for a full
+	 *            update
+	 */
+	void update(Object element, String[] properties) {
+		Key updated = key(element);
+		if (addedChildren.containsKey(updated)) {
+			return;
+		}
+		if (updates.containsKey(updated)) {
+			Set<String> pending = updates.get(updated);
+			if (pending == null) {
+				return;
+			}
+			if (properties == null) {
+				updates.put(updated, null);
+			} else {
+				for (String property : properties) {
+					pending.add(property);
+				}
+			}
+			return;
+		}
+		Set<String> pending = null;
+		if (properties != null) {
+			pending = new LinkedHashSet<>();
+			for (String property : properties) {
+				pending.add(property);
+			}
+		}
+		updates.put(updated, pending);
+	}
+
+	/**
+	 * Records a refresh of the given element.
+	 *
+	 * @param element
+	 *            the element, or <code>null</code> for the viewer's input
+	 * @param updateLabels
+	 *            whether labels of existing elements have to be updated
+	 */
+	void refresh(Object element, boolean updateLabels) {
+		Key refreshed = elementKey(element);
+		Boolean pending = refreshes.get(refreshed);
+		refreshes.put(refreshed, Boolean.valueOf(updateLabels || (pending != null && pending.booleanValue())));
+	}
+
+	/**
+	 * Returns whether no operation has been recorded.
+	 *
+	 * @return <code>true</code> if this batch is empty
+	 */
+	boolean isEmpty() {
+		return additions.isEmpty() && removals.isEmpty() && updates.isEmpty() && refreshes.isEmpty();
+	}
+
+	/**
+	 * Applies the recorded operations to the viewer. Must be called after the
+	 * viewer stopped recording into this batch.
+	 */
+	void apply() {
+		Boolean rootRefresh = refreshes.get(key(null));
+		if (rootRefresh != null) {
+			// also refreshes the tree if the input is null
+			viewer.refresh(null, rootRefresh.booleanValue());
+			if (!rootRefresh.booleanValue()) {
+				applyUpdates();
+			}
+			return;
+		}
+		if (!removals.isEmpty()) {
+			Object[] removed = new Object[removals.size()];
+			int i = 0;
+			for (Key key : removals) {
+				removed[i++] = key.elementOrTreePath;
+			}
+			viewer.remove(removed);
+		}
+		for (Map.Entry<Key, Set<Key>> entry : additions.entrySet()) {
+			if (refreshes.containsKey(entry.getKey())) {
+				continue;
+			}
+			Object[] children = new Object[entry.getValue().size()];
+			int i = 0;
+			for (Key key : entry.getValue()) {
+				children[i++] = key.elementOrTreePath;
+			}
+			viewer.add(entry.getKey().elementOrTreePath, children);
+		}
+		for (Map.Entry<Key, Boolean> entry : refreshes.entrySet()) {
+			viewer.refresh(entry.getKey().elementOrTreePath, entry.getValue().booleanValue());
+		}
+		applyUpdates();
+	}
+
+	private void applyUpdates() {
+		for (Map.Entry<Key, Set<String>> entry : updates.entrySet()) {
+			Set<String> properties = entry.getValue();
+			viewer.update(entry.getKey().elementOrTreePath,
+					properties == null ? null : properties.toArray(new String[properties.size()]));
+		}
+	}
+}
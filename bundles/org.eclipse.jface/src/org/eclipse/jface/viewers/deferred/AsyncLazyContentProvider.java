@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.viewers.deferred;
+
+import java.util.concurrent.Executor;
+
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.jface.viewers.AbstractTableViewer;
+import org.eclipse.jface.viewers.ILazyContentProvider;
+import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.swt.widgets.Control;
+
+/**
+ * Lazy content provider which fetches elements in pages on a background
+ * executor, so that a slow backing store does not block the display thread
+ * while the user scrolls. Requires an <code>AbstractTableViewer</code> created
+ * with the <code>SWT.VIRTUAL</code> flag.
+ * <p>
+ * The item count is fetched when the input is set. When the viewer asks for
+ * an element whose page has not been fetched yet, the item is left blank and
+ * the page is requested, together with a configurable number of following
+ * pages. Items are filled in as their pages arrive.
+ * </p>
+ * <p>
+ * Subclasses implement {@link #fetchElementCount(Object)} and
+ * {@link #fetchElements(Object, int, int)}, which are called in a background
+ * thread. Results fetched for a previous input or before a call to
+ * {@link #invalidate()} are discarded.
+ * </p>
+ *
+ * @see AsyncLazyTreeContentProvider
+ * @since 3.13
+ */
+public abstract class AsyncLazyContentProvider implements ILazyContentProvider {
+
+	private final AsyncPageLoader loader;
+
+	private AbstractTableViewer viewer;
+
+	private Object input;
+
+	private final AsyncPageLoader.Source source = new AsyncPageLoader.Source() {
+		@Override
+		public int fetchCount(Object parent) {
+			return fetchElementCount(parent);
+		}
+
+		@Override
+		public Object[] fetchPage(Object parent, int offset, int length) {
+			return fetchElements(parent, offset, length);
+		}
+
+		@Override
+		public void countLoaded(Object parent, int count) {
+			if (isViewerAlive()) {
+				viewer.setItemCount(count);
+			}
+		}
+
+		@Override
+		public void elementLoaded(Object parent, int index, Object element) {
+			if (isViewerAlive()) {
+				viewer.replace(element, index);
+			}
+		}
+	};
+
+	/**
+	 * Creates a content provider fetching elements on the given executor.
+	 *
+	 * @param executor
+	 *            the executor running {@link #fetchElementCount(Object)} and
+	 *            {@link #fetchElements(Object, int, int)}
+	 * @param pageSize
+	 *            the number of elements fetched at once
+	 * @param prefetchPages
+	 *            the number of pages fetched ahead of the requested one
+	 */
+	public AsyncLazyContentProvider(Executor executor, int pageSize, int prefetchPages) {
+		Assert.isNotNull(executor);
+		Assert.isTrue(pageSize > 0 && prefetchPages >= 0);
+		this.loader = new AsyncPageLoader(source, executor, pageSize, prefetchPages);
+	}
+
+	/**
+	 * Returns the number of elements of the given input. Called in a
+	 * background thread.
+	 *
+	 * @param input
+	 *            the viewer's input
+	 * @return the number of elements
+	 */
+	protected abstract int fetchElementCount(Object input);
+
+	/**
+	 * Returns a page of elements of the given input. Called in a background
+	 * thread.
+	 *
+	 * @param input
+	 *            the viewer's input
+	 * @param offset
+	 *            the index of the first element to return
+	 * @param length
+	 *            the maximum number of elements to return
+	 * @return the elements, at most <code>length</code> of them
+	 */
+	protected abstract Object[] fetchElements(Object input, int offset, int length);
+
+	/**
+	 * Discards all fetched elements and fetches the item count again. Must be
+	 * called from the display thread.
+	 */
+	public void invalidate() {
+		if (input != null) {
+			loader.invalidate(input);
+			loader.requestCount(input);
+		}
+	}
+
+	@Override
+	public void updateElement(int index) {
+		if (input != null) {
+			loader.requestElement(input, index);
+		}
+	}
+
+	@Override
+	public void inputChanged(Viewer newViewer, Object oldInput, Object newInput) {
+		Assert.isTrue(newViewer == null || newViewer instanceof AbstractTableViewer);
+		this.viewer = (AbstractTableViewer) newViewer;
+		this.input = newInput;
+		Control control = viewer == null ? null : viewer.getControl();
+		loader.reset(control == null || control.isDisposed() ? null : control.getDisplay());
+		if (newInput != null && viewer != null) {
+			loader.requestCount(newInput);
+		}
+	}
+
+	@Override
+	public void dispose() {
+		viewer = null;
+		input = null;
+		loader.reset(null);
+	}
+
+	private boolean isViewerAlive() {
+		return viewer != null && !viewer.getControl().isDisposed();
+	}
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.viewers.deferred;
+
+import java.util.concurrent.Executor;
+
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.jface.viewers.ILazyTreeContentProvider;
+import org.eclipse.jface.viewers.TreeViewer;
+import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.swt.widgets.Control;
+
+/**
+ * Lazy tree content provider which fetches children in pages on a background
+ * executor, so that a slow backing store does not block the display thread
+ * while the user scrolls. Requires a <code>TreeViewer</code> created with the
+ * <code>SWT.VIRTUAL</code> flag.
+ * <p>
+ * When the viewer asks for a child whose page has not been fetched yet, the
+ * item is left blank and the page is requested, together with a configurable
+ * number of following pages. Items are filled in as their pages arrive. Child
+ * counts are fetched the same way.
+ * </p>
+ * <p>
+ * Subclasses implement {@link #fetchChildCount(Object)} and
+ * {@link #fetchChildren(Object, int, int)}, which are called in a background
+ * thread, and {@link #getParent(Object)}. Results fetched for a previous input
+ * or before a call to {@link #invalidate(Object)} are discarded.
+ * </p>
+ *
+ * @since 3.13
+ */
+public abstract class AsyncLazyTreeContentProvider implements ILazyTreeContentProvider {
+
+	private final AsyncPageLoader loader;
+
+	private TreeViewer viewer;
+
+	private final AsyncPageLoader.Source source = new AsyncPageLoader.Source() {
+		@Override
+		public int fetchCount(Object parent) {
+			return fetchChildCount(parent);
+		}
+
+		@Override
+		public Object[] fetchPage(Object parent, int offset, int length) {
+			return fetchChildren(parent, offset, length);
+		}
+
+		@Override
+		public void countLoaded(Object parent, int count) {
+			if (isViewerAlive()) {
+				viewer.setChildCount(parent, count);
+			}
+		}
+
+		@Override
+		public void elementLoaded(Object parent, int index, Object element) {
+			if (isViewerAlive()) {
+				viewer.replace(parent, index, element);
+				loader.requestCount(element);
+			}
+		}
+	};
+
+	/**
+	 * Creates a content provider fetching children on the given executor.
+	 *
+	 * @param executor
+	 *            the executor running {@link #fetchChildCount(Object)} and
+	 *            {@link #fetchChildren(Object, int, int)}
+	 * @param pageSize
+	 *            the number of children fetched at once
+	 * @param prefetchPages
+	 *            the number of pages fetched ahead of the requested one
+	 */
+	public AsyncLazyTreeContentProvider(Executor executor, int pageSize, int prefetchPages) {
+		Assert.isNotNull(executor);
+		Assert.isTrue(pageSize > 0 && prefetchPages >= 0);
+		this.loader = new AsyncPageLoader(source, executor, pageSize, prefetchPages);
+	}
+
+	/**
+	 * Returns the number of children of the given element. Called in a
+	 * background thread.
+	 *
+	 * @param parent
+	 *            the element, or the viewer's input for the root elements
+	 * @return the number of children
+	 */
+	protected abstract int fetchChildCount(Object parent);
+
+	/**
+	 * Returns a page of children of the given element. Called in a background
+	 * thread.
+	 *
+	 * @param parent
+	 *            the element, or the viewer's input for the root elements
+	 * @param offset
+	 *            the index of the first child to return
+	 * @param length
+	 *            the maximum number of children to return
+	 * @return the children, at most <code>length</code> of them
+	 */
+	protected abstract Object[] fetchChildren(Object parent, int offset, int length);
+
+	/**
+	 * Discards the fetched children and child count of the given element, so
+	 * that they are fetched again the next time the viewer asks for them. Must
+	 * be called from the display thread, typically before refreshing the
+	 * element in the viewer.
+	 *
+	 * @param parent
+	 *            the element, or the viewer's input for the root elements
+	 */
+	public void invalidate(Object parent) {
+		loader.invalidate(parent);
+	}
+
+	@Override
+	public void updateElement(Object parent, int index) {
+		loader.requestElement(parent, index);
+	}
+
+	@Override
+	public void updateChildCount(Object element, int currentChildCount) {
+		loader.requestCount(element);
+	}
+
+	@Override
+	public void inputChanged(Viewer newViewer, Object oldInput, Object newInput) {
+		Assert.isTrue(newViewer == null || newViewer instanceof TreeViewer);
+		this.viewer = (TreeViewer) newViewer;
+		Control control = viewer == null ? null : viewer.getControl();
+		loader.reset(control == null || control.isDisposed() ? null : control.getDisplay());
+	}
+
+	@Override
+	public void dispose() {
+		viewer = null;
+		loader.reset(null);
+	}
+
+	private boolean isViewerAlive() {
+		return viewer != null && !viewer.getControl().isDisposed();
+	}
+}
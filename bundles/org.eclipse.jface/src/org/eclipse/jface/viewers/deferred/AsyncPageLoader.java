@@ -0,0 +1,302 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.viewers.deferred;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jface.util.Policy;
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Loads the children of virtual viewer parents in pages on a background
+ * executor and hands them to the display thread as they arrive. Used by
+ * {@link AsyncLazyContentProvider} and {@link AsyncLazyTreeContentProvider}.
+ * <p>
+ * All methods except the ones of {@link Source} which fetch data must be called
+ * from the display thread. Results of requests issued before the last call to
+ * {@link #reset(Display)} are dropped.
+ * </p>
+ */
+final class AsyncPageLoader {
+
+	/**
+	 * The data source and the receiver of the loaded data.
+	 */
+	interface Source {
+		/**
+		 * Called in a background thread.
+		 */
+		int fetchCount(Object parent);
+
+		/**
+		 * Called in a background thread.
+		 */
+		Object[] fetchPage(Object parent, int offset, int length);
+
+		/**
+		 * Called in the display thread.
+		 */
+		void countLoaded(Object parent, int count);
+
+		/**
+		 * Called in the display thread.
+		 */
+		void elementLoaded(Object parent, int index, Object element);
+	}
+
+	/**
+	 * The loading state of the children of one parent.
+	 */
+	private final class Children {
+		int count = -1;
+
+		boolean countRequested;
+
+		/**
+		 * Loaded pages, least recently used first.
+		 */
+		final Map<Integer, Object[]> pages = new LinkedHashMap<Integer, Object[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Object[]> eldest) {
+				return size() > maxPagesPerParent;
+			}
+		};
+
+		final Set<Integer> requestedPages = new HashSet<>();
+
+		/**
+		 * Indexes of items waiting for their page.
+		 */
+		final BitSet waiting = new BitSet();
+
+		boolean isLoading() {
+			return countRequested || !requestedPages.isEmpty();
+		}
+	}
+
+	/**
+	 * The number of parents whose loaded children are kept.
+	 */
+	private static final int MAX_PARENTS = 64;
+
+	private final Source source;
+
+	private final Executor executor;
+
+	private final int pageSize;
+
+	private final int prefetchPages;
+
+	private final int maxPagesPerParent;
+
+	/**
+	 * The loading state of the children of each parent, least recently used
+	 * first. Parents which are still loading are kept, as items are waiting
+	 * for their children.
+	 */
+	private final Map<Object, Children> children = new LinkedHashMap<Object, Children>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Object, Children> eldest) {
+			return size() > MAX_PARENTS && !eldest.getValue().isLoading();
+		}
+	};
+
+	private volatile Display display;
+
+	private int generation;
+
+	/**
+	 * @param source
+	 *            the data source
+	 * @param executor
+	 *            the executor running the fetches
+	 * @param pageSize
+	 *            the number of children fetched at once
+	 * @param prefetchPages
+	 *            the number of pages fetched ahead of a requested index
+	 */
+	AsyncPageLoader(Source source, Executor executor, int pageSize, int prefetchPages) {
+		this.source = source;
+		this.executor = executor;
+		this.pageSize = pageSize;
+		this.prefetchPages = prefetchPages;
+		this.maxPagesPerParent = Math.max(64, 4 * (prefetchPages + 1));
+	}
+
+	/**
+	 * Drops all loaded data and pending requests.
+	 *
+	 * @param newDisplay
+	 *            the display to deliver results to, or <code>null</code> to
+	 *            stop delivering results
+	 */
+	void reset(Display newDisplay) {
+		generation++;
+		children.clear();
+		display = newDisplay;
+	}
+
+	/**
+	 * Drops the loaded data of the given parent so that it is fetched again
+	 * when next requested.
+	 *
+	 * @param parent
+	 *            the parent
+	 */
+	void invalidate(Object parent) {
+		// pending requests for the parent still arrive, but find no state
+		children.remove(parent);
+	}
+
+	private Children childrenOf(Object parent) {
+		Children result = children.get(parent);
+		if (result == null) {
+			result = new Children();
+			children.put(parent, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Requests the child count of the given parent. Calls
+	 * {@link Source#countLoaded(Object, int)} immediately if the count is
+	 * known, or once it has been fetched otherwise.
+	 *
+	 * @param parent
+	 *            the parent
+	 */
+	void requestCount(final Object parent) {
+		final Children state = childrenOf(parent);
+		if (state.count >= 0) {
+			source.countLoaded(parent, state.count);
+			return;
+		}
+		if (state.countRequested) {
+			return;
+		}
+		state.countRequested = true;
+		final int requestGeneration = generation;
+		executor.execute(() -> {
+			int count;
+			try {
+				count = source.fetchCount(parent);
+			} catch (RuntimeException e) {
+				log(e);
+				count = -1;
+			}
+			final int result = count;
+			deliver(() -> {
+				if (requestGeneration != generation || children.get(parent) != state) {
+					return;
+				}
+				state.countRequested = false;
+				if (result >= 0) {
+					state.count = result;
+					source.countLoaded(parent, result);
+				}
+			});
+		});
+	}
+
+	/**
+	 * Requests the child of the given parent at the given index. Calls
+	 * {@link Source#elementLoaded(Object, int, Object)} immediately if the
+	 * child is known, or once its page has been fetched otherwise. Pages
+	 * following the requested one are fetched ahead.
+	 *
+	 * @param parent
+	 *            the parent
+	 * @param index
+	 *            the index of the child
+	 */
+	void requestElement(Object parent, int index) {
+		Children state = childrenOf(parent);
+		int page = index / pageSize;
+		Object[] loaded = state.pages.get(Integer.valueOf(page));
+		int offset = index - page * pageSize;
+		if (loaded != null && offset < loaded.length) {
+			source.elementLoaded(parent, index, loaded[offset]);
+		} else {
+			state.waiting.set(index);
+			requestPage(parent, state, page);
+		}
+		for (int i = 1; i <= prefetchPages; i++) {
+			int next = page + i;
+			if (state.count >= 0 && next * pageSize >= state.count) {
+				break;
+			}
+			requestPage(parent, state, next);
+		}
+	}
+
+	private void requestPage(final Object parent, final Children state, final int page) {
+		final Integer key = Integer.valueOf(page);
+		if (state.pages.containsKey(key) || !state.requestedPages.add(key)) {
+			return;
+		}
+		final int requestGeneration = generation;
+		executor.execute(() -> {
+			Object[] elements;
+			try {
+				elements = source.fetchPage(parent, page * pageSize, pageSize);
+			} catch (RuntimeException e) {
+				log(e);
+				elements = null;
+			}
+			final Object[] result = elements;
+			deliver(() -> {
+				if (requestGeneration != generation || children.get(parent) != state) {
+					return;
+				}
+				state.requestedPages.remove(key);
+				if (result == null) {
+					return;
+				}
+				state.pages.put(key, result);
+				int first = page * pageSize;
+				int end = first + result.length;
+				for (int index = state.waiting.nextSetBit(first); index >= 0
+						&& index < end; index = state.waiting.nextSetBit(index + 1)) {
+					state.waiting.clear(index);
+					source.elementLoaded(parent, index, result[index - first]);
+				}
+			});
+		});
+	}
+
+	private void deliver(Runnable runnable) {
+		Display target = display;
+		if (target == null || target.isDisposed()) {
+			return;
+		}
+		try {
+			target.asyncExec(runnable);
+		} catch (SWTException e) {
+			// the display has been disposed in the meantime
+		}
+	}
+
+	private static void log(RuntimeException e) {
+		Policy.getLog().log(new Status(IStatus.ERROR, Policy.JFACE, "Failed to fetch viewer content", e)); //$NON-NLS-1$
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2015 IBM Corporation and others.
+ * Copyright (c) 2005, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,6 +11,8 @@
 package org.eclipse.jface.viewers.deferred;
 
 import java.util.Comparator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
@@ -51,6 +53,12 @@ import org.eclipse.jface.viewers.deferred.ConcurrentTableUpdator.Range;
  * the previous range.
  * </p>
  *
+ * <p>
+ * Changes can be sent by any number of model threads at once. They are collected in a
+ * striped <code>ChangeQueue</code> and processed in batches by a single sort task, which
+ * runs either on a dedicated thread or on an <code>Executor</code> supplied by the client.
+ * </p>
+ *
  * @since 3.1
  */
 /* package */ final class BackgroundContentProvider {
@@ -119,7 +127,11 @@ import org.eclipse.jface.viewers.deferred.ConcurrentTableUpdator.Range;
     private ConcurrentTableUpdator updator;
 
     private IProgressMonitor sortingProgressMonitor = new NullProgressMonitor();
-    private Thread sortThread = null;
+
+    /**
+     * Executor running the sort task, or null to start a thread for it
+     */
+    private final Executor executor;
 
 	private volatile FastProgressReporter sortMon = new FastProgressReporter();
 
@@ -134,7 +146,22 @@ import org.eclipse.jface.viewers.deferred.ConcurrentTableUpdator.Range;
      */
     public BackgroundContentProvider(AbstractVirtualTable table,
             IConcurrentModel model, Comparator sortOrder) {
+        this(table, model, sortOrder, null);
+    }
+
+    /**
+     * Creates a new background content provider which sorts on the given executor
+     *
+     * @param table table that will receive updates
+     * @param model data source
+     * @param sortOrder initial sort order
+     * @param executor executor running the sort task, or <code>null</code> to run it
+     *            in a thread of its own
+     */
+    public BackgroundContentProvider(AbstractVirtualTable table,
+            IConcurrentModel model, Comparator sortOrder, Executor executor) {
 
+        this.executor = executor;
         updator = new ConcurrentTableUpdator(table);
         this.model = model;
         this.sortOrder = sortOrder;
@@ -433,64 +460,73 @@ import org.eclipse.jface.viewers.deferred.ConcurrentTableUpdator.Range;
     }
 
     /**
-     * This lock protects the two boolean variables sortThreadStarted and resortScheduled.
+     * The sort task is not running
      */
-    private Object lock = new Object();
+    private static final int SORT_IDLE = 0;
 
     /**
-     * true if the sort thread is running
+     * The sort task is running
      */
-    private boolean sortThreadStarted = false;
+    private static final int SORT_RUNNING = 1;
 
     /**
-     * true if we need to sort
+     * The sort task is running and needs to sort again once it is done
      */
-    private boolean sortScheduled = false;
-
-	private final class SortThread extends Thread {
-		private SortThread(String name) {
-			super(name);
-		}
+    private static final int SORT_RESCHEDULED = 2;
 
-		@Override
-		public void run() {
-			loop: while (true) {
-				synchronized (lock) {
-					sortScheduled = false;
-				}
-				try {
-					// this is the main work
-					doSort(sortingProgressMonitor);
-				} catch (Exception ex) {
-					// ignore
-				}
-				synchronized (lock) {
-					if (sortScheduled) {
-						continue loop;
-					}
-					sortThreadStarted = false;
-					break loop;
-				}
+    /**
+     * State of the sort task. Producers only ever compare-and-set this value,
+     * so that sending changes from many threads does not contend on a lock.
+     */
+    private final AtomicInteger sortState = new AtomicInteger(SORT_IDLE);
+
+    private final Runnable sortTask = () -> {
+		while (true) {
+			sortState.set(SORT_RUNNING);
+			try {
+				// this is the main work
+				doSort(sortingProgressMonitor);
+			} catch (Exception ex) {
+				// ignore
+			}
+			if (sortState.compareAndSet(SORT_RUNNING, SORT_IDLE)) {
+				break;
 			}
 		}
-	}
+	};
 
     /**
      * Must be called whenever the model changes. Dirties this object and triggers a sort
      * if necessary.
      */
     private void makeDirty() {
-		synchronized (lock) {
-			sortMon.cancel();
-			// request sorting
-			sortScheduled = true;
-			if (!sortThreadStarted) {
-				sortThreadStarted = true;
-				sortThread = new SortThread(SORTING);
-				sortThread.setDaemon(true);
-				sortThread.setPriority(Thread.NORM_PRIORITY - 1);
-				sortThread.start();
+		sortMon.cancel();
+		while (true) {
+			int state = sortState.get();
+			if (state == SORT_RESCHEDULED) {
+				return;
+			}
+			if (state == SORT_RUNNING) {
+				if (sortState.compareAndSet(SORT_RUNNING, SORT_RESCHEDULED)) {
+					return;
+				}
+			} else if (sortState.compareAndSet(SORT_IDLE, SORT_RUNNING)) {
+				break;
+			}
+		}
+		if (executor != null) {
+			try {
+				executor.execute(sortTask);
+			} catch (RuntimeException e) {
+				// allow a later change to try again
+				sortState.set(SORT_IDLE);
+				throw e;
 			}
+		} else {
+			Thread sortThread = new Thread(sortTask, SORTING);
+			sortThread.setDaemon(true);
+			sortThread.setPriority(Thread.NORM_PRIORITY - 1);
+			sortThread.start();
 		}
 	}
 
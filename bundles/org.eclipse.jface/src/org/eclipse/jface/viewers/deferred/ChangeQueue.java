@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2015 IBM Corporation and others.
+ * Copyright (c) 2004, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,12 +10,24 @@
  *******************************************************************************/
 package org.eclipse.jface.viewers.deferred;
 
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Holds a queue of additions, removals, updates, and SET calls for a
- * BackgroundContentProvider
+ * BackgroundContentProvider.
+ * <p>
+ * Changes may be enqueued from any number of threads. To keep producers from
+ * contending on a single lock, each thread appends to one of several stripes,
+ * chosen by its thread id. Every change is stamped with a global sequence
+ * number, and the single consumer merges the stripes back into sequence order
+ * when it runs out of changes. Changes are therefore always dequeued in the
+ * order they were enqueued.
+ * </p>
  */
 final class ChangeQueue {
 	/**
@@ -46,6 +58,7 @@ final class ChangeQueue {
 	public static final class Change {
 		private int type;
 		private Object[] elements;
+		private long sequence;
 
 		/**
 		 * Create a change of the specified type that affects the given elements.
@@ -81,7 +94,45 @@ final class ChangeQueue {
 		}
 	}
 
-	private LinkedList queue = new LinkedList();
+	/**
+	 * Maximum number of stripes, must be a power of two
+	 */
+	private static final int MAX_STRIPES = 16;
+
+	private final List<Change>[] stripes;
+
+	private final int stripeMask;
+
+	private final AtomicLong nextSequence = new AtomicLong();
+
+	/**
+	 * Number of changes in all stripes, for a cheap <code>isEmpty</code>. Only
+	 * updated while holding the lock of the stripe being changed.
+	 */
+	private final AtomicInteger stripedCount = new AtomicInteger();
+
+	/**
+	 * Changes already taken from the stripes, in sequence order. Only
+	 * accessed by the consumer.
+	 */
+	private final ArrayDeque<Change> pending = new ArrayDeque<>();
+
+	/**
+	 * Creates an empty queue.
+	 */
+	@SuppressWarnings("unchecked")
+	public ChangeQueue() {
+		int count = 1;
+		int processors = Runtime.getRuntime().availableProcessors();
+		while (count < processors && count < MAX_STRIPES) {
+			count <<= 1;
+		}
+		stripes = new List[count];
+		for (int i = 0; i < count; i++) {
+			stripes[i] = new ArrayList<>();
+		}
+		stripeMask = count - 1;
+	}
 
 	/**
 	 * Create a change of the given type and elements and enqueue it.
@@ -89,48 +140,116 @@ final class ChangeQueue {
 	 * @param type the type of change to be created
 	 * @param elements the elements affected by the change
 	 */
-	public synchronized void enqueue(int type, Object[] elements) {
+	public void enqueue(int type, Object[] elements) {
 		enqueue(new Change(type, elements));
 	}
 
 	/**
-	 * Add the specified change to the queue
+	 * Add the specified change to the queue. May be called from any thread.
+	 *
 	 * @param toQueue the change to be added
 	 */
-	public synchronized void enqueue(Change toQueue) {
-		// A SET event makes all previous adds, removes, and sets redundant... so remove
-		// them from the queue
-		if (toQueue.type == SET) {
-			LinkedList newQueue = new LinkedList();
-			for (Iterator iter = queue.iterator(); iter.hasNext();) {
-				Change next = (Change) iter.next();
-
-				if (next.getType() == ADD || next.getType() == REMOVE || next.getType() == SET) {
-					continue;
-				}
+	public void enqueue(Change toQueue) {
+		List<Change> stripe = stripes[(int) Thread.currentThread().getId() & stripeMask];
+		synchronized (stripe) {
+			// Stamping inside the stripe lock keeps every stripe sorted by sequence
+			toQueue.sequence = nextSequence.getAndIncrement();
+			stripe.add(toQueue);
+			stripedCount.incrementAndGet();
+		}
+	}
 
-				newQueue.add(next);
-			}
-			queue = newQueue;
+	/**
+	 * Remove the first change from the queue. Must only be called by the
+	 * consumer, and only if the queue is not empty. Consecutive changes of the
+	 * same type are merged into a single change.
+	 *
+	 * @return the first change
+	 */
+	public Change dequeue() {
+		while (pending.isEmpty()) {
+			drainStripes();
+		}
+		Change result = pending.removeFirst();
+		Change next = pending.peekFirst();
+		if (next == null || next.type != result.type || result.type == SET) {
+			return result;
 		}
 
-		queue.add(toQueue);
+		// Merge the run of changes of the same type
+		List<Change> run = new ArrayList<>();
+		run.add(result);
+		int length = result.elements.length;
+		while (next != null && next.type == result.type) {
+			run.add(pending.removeFirst());
+			length += next.elements.length;
+			next = pending.peekFirst();
+		}
+		Object[] elements = new Object[length];
+		int pos = 0;
+		for (Change change : run) {
+			System.arraycopy(change.elements, 0, elements, pos, change.elements.length);
+			pos += change.elements.length;
+		}
+		return new Change(result.type, elements);
 	}
 
 	/**
-	 * Remove the first change from the queue.
-	 * @return the first change
+	 * Moves the changes enqueued so far from all stripes to the pending queue,
+	 * in sequence order. A SET makes all previous adds, removes, and sets
+	 * redundant, so they are dropped.
+	 * <p>
+	 * Only changes stamped before the drain started are moved. A change
+	 * enqueued into an already drained stripe while the others are still
+	 * being read has a higher sequence than any change moved, and is left for
+	 * the next drain, so changes are never moved out of order.
+	 * </p>
 	 */
-	public synchronized Change dequeue() {
-		Change result = (Change)queue.removeFirst();
-		return result;
+	private void drainStripes() {
+		// every change below the watermark has been added to its stripe,
+		// since it is stamped and added while holding the stripe lock
+		long watermark = nextSequence.get();
+		List<Change> drained = new ArrayList<>();
+		for (List<Change> stripe : stripes) {
+			synchronized (stripe) {
+				int count = 0;
+				while (count < stripe.size() && stripe.get(count).sequence < watermark) {
+					count++;
+				}
+				if (count == 0) {
+					continue;
+				}
+				List<Change> head = stripe.subList(0, count);
+				drained.addAll(head);
+				stripedCount.addAndGet(-count);
+				head.clear();
+			}
+		}
+		if (stripes.length > 1) {
+			Collections.sort(drained, (a, b) -> Long.compare(a.sequence, b.sequence));
+		}
+
+		int lastSet = -1;
+		for (int i = drained.size() - 1; i >= 0; i--) {
+			if (drained.get(i).type == SET) {
+				lastSet = i;
+				break;
+			}
+		}
+		for (int i = 0; i < drained.size(); i++) {
+			Change change = drained.get(i);
+			if (i >= lastSet || change.type == UPDATE) {
+				pending.add(change);
+			}
+		}
 	}
 
 	/**
-	 * Return whether the queue is empty
+	 * Return whether the queue is empty. Must only be called by the consumer.
+	 *
 	 * @return <code>true</code> if empty, <code>false</code> otherwise
 	 */
-	public synchronized boolean isEmpty() {
-		return queue.isEmpty();
+	public boolean isEmpty() {
+		return pending.isEmpty() && stripedCount.get() == 0;
 	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2015 IBM Corporation and others.
+ * Copyright (c) 2004, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -212,7 +212,7 @@ package org.eclipse.jface.viewers.deferred;
         sentObjects[toClear] = null;
 
         if (lastClear >= pendingClears.length) {
-            int newCapacity = Math.min(MIN_FLUSHLENGTH, lastClear * 2);
+            int newCapacity = Math.max(MIN_FLUSHLENGTH, lastClear * 2);
             int[] newPendingClears = new int[newCapacity];
             System.arraycopy(pendingClears, 0, newPendingClears, 0, lastClear);
             pendingClears = newPendingClears;
@@ -301,7 +301,7 @@ package org.eclipse.jface.viewers.deferred;
         	// Resize the table if necessary
 	        if (sentObjects.length != knownObjects.length) {
 	        	Object[] newSentObjects = new Object[knownObjects.length];
-	        	System.arraycopy(newSentObjects, 0, sentObjects, 0,
+	        	System.arraycopy(sentObjects, 0, newSentObjects, 0,
 	        			Math.min(newSentObjects.length, sentObjects.length));
 	        	sentObjects = newSentObjects;
 	            table.setItemCount(newSentObjects.length);
@@ -359,9 +359,9 @@ package org.eclipse.jface.viewers.deferred;
 	        	int row = idx + start;
 
 	        	Object obj = knownObjects[row];
-	        	if (obj != null && obj != sentObjects[idx]) {
+	        	if (obj != null && obj != sentObjects[row]) {
 	        		table.replace(obj, row);
-	        		sentObjects[idx] = obj;
+	        		sentObjects[row] = obj;
 	        	}
 	        }
 
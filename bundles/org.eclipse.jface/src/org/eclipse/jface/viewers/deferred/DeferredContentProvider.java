@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2015 IBM Corporation and others.
+ * Copyright (c) 2004, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,6 +11,7 @@
 package org.eclipse.jface.viewers.deferred;
 
 import java.util.Comparator;
+import java.util.concurrent.Executor;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.jface.viewers.AcceptAllFilter;
@@ -46,6 +47,7 @@ public class DeferredContentProvider implements ILazyContentProvider {
 	private Comparator sortOrder;
 	private IFilter filter = AcceptAllFilter.getInstance();
 	private AbstractVirtualTable table;
+	private Executor executor;
 
 	private static final class TableViewerAdapter extends AbstractVirtualTable {
 
@@ -107,6 +109,22 @@ public class DeferredContentProvider implements ILazyContentProvider {
 		this.sortOrder = sortOrder;
 	}
 
+	/**
+	 * Create a DeferredContentProvider with the given sort order, which sorts
+	 * and filters on the given executor instead of a thread of its own. The
+	 * executor only ever runs one sort task of this content provider at a
+	 * time, so it may be shared with other content providers.
+	 *
+	 * @param sortOrder a comparator that sorts the content.
+	 * @param executor the executor running the background sorting and filtering
+	 * @since 3.13
+	 */
+	public DeferredContentProvider(Comparator sortOrder, Executor executor) {
+		Assert.isNotNull(executor);
+		this.sortOrder = sortOrder;
+		this.executor = executor;
+	}
+
 	@Override
 	public void dispose() {
 		setProvider(null);
@@ -127,7 +145,7 @@ public class DeferredContentProvider implements ILazyContentProvider {
 
 		BackgroundContentProvider newProvider = new BackgroundContentProvider(
 				table,
-				model, sortOrder);
+				model, sortOrder, executor);
 
 		setProvider(newProvider);
 
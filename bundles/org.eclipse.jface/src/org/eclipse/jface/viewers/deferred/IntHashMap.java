@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2015 IBM Corporation and others.
+ * Copyright (c) 2004, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,39 +10,105 @@
  *******************************************************************************/
 package org.eclipse.jface.viewers.deferred;
 
-import java.util.HashMap;
-
 /**
- * Represents a map of objects onto ints. This is intended for future optimization:
- * using int primitives would allow for an implementation that doesn't require
- * additional object allocations for Integers. However, the current implementation
- * simply delegates to the Java HashMap class.
+ * Represents a map of objects onto ints. Keys and values are kept in parallel
+ * arrays using open addressing with linear probing, so that neither
+ * <code>put</code> nor <code>get</code> allocate Integers or entry objects.
+ * Keys are compared using <code>equals</code>. A <code>null</code> key is
+ * never contained in the map.
  *
  * @since 3.1
  */
 /* package */ class IntHashMap {
-    private HashMap map;
+    private static final int MIN_CAPACITY = 16;
+
+    private Object[] keys;
+    private int[] values;
+    private int size;
+    private int threshold;
+    private final float loadFactor;
 
     /**
      * @param size
      * @param loadFactor
      */
     public IntHashMap(int size, float loadFactor) {
-        map = new HashMap(size, loadFactor);
+        if (loadFactor <= 0 || loadFactor >= 1) {
+            loadFactor = 0.75f;
+        }
+        this.loadFactor = loadFactor;
+        allocate(capacityFor(size));
     }
 
     /**
      *
      */
     public IntHashMap() {
-        map = new HashMap();
+        this(MIN_CAPACITY, 0.75f);
+    }
+
+    private static int capacityFor(int size) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < size && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        values = new int[capacity];
+        threshold = Math.min(capacity - 1, (int) (capacity * loadFactor));
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the slot holding the given key, or the empty slot where it
+     * would be inserted.
+     */
+    private int indexOf(Object key) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        Object current;
+        while ((current = keys[i]) != null && !current.equals(key)) {
+            i = (i + 1) & mask;
+        }
+        return i;
     }
 
     /**
      * @param key
      */
     public void remove(Object key) {
-        map.remove(key);
+        if (key == null) {
+            return;
+        }
+        int i = indexOf(key);
+        if (keys[i] == null) {
+            return;
+        }
+        // Shift back the following entries of the probe sequence so that
+        // lookups never need tombstones
+        int mask = keys.length - 1;
+        int hole = i;
+        int next = (i + 1) & mask;
+        Object current;
+        while ((current = keys[next]) != null) {
+            int home = hash(current) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = current;
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = null;
+        values[hole] = 0;
+        size--;
     }
 
     /**
@@ -50,7 +116,34 @@ import java.util.HashMap;
      * @param value
      */
     public void put(Object key, int value) {
-		map.put(key, Integer.valueOf(value));
+        int i = indexOf(key);
+        if (keys[i] == null) {
+            if (size >= threshold) {
+                rehash(keys.length << 1);
+                i = indexOf(key);
+            }
+            keys[i] = key;
+            size++;
+        }
+        values[i] = value;
+    }
+
+    private void rehash(int newCapacity) {
+        Object[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(newCapacity);
+        int mask = newCapacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            Object key = oldKeys[j];
+            if (key != null) {
+                int i = hash(key) & mask;
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                values[i] = oldValues[j];
+            }
+        }
     }
 
     /**
@@ -67,13 +160,11 @@ import java.util.HashMap;
      * @return the int value at the given key, or the default value if this map does not contain the given key
      */
     public int get(Object key, int defaultValue) {
-        Integer result = (Integer)map.get(key);
-
-        if (result != null) {
-            return result.intValue();
+        if (key == null) {
+            return defaultValue;
         }
-
-        return defaultValue;
+        int i = indexOf(key);
+        return keys[i] == null ? defaultValue : values[i];
     }
 
     /**
@@ -81,13 +172,13 @@ import java.util.HashMap;
      * @return <code>true</code> if this map contains the given key, <code>false</code> otherwise
      */
     public boolean containsKey(Object key) {
-        return map.containsKey(key);
+        return key != null && keys[indexOf(key)] != null;
     }
 
     /**
      * @return the number of key/value pairs
      */
     public int size() {
-    	return map.size();
+    	return size;
     }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2015 IBM Corporation and others.
+ * Copyright (c) 2004, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -767,6 +767,11 @@ public class LazySortedCollection {
      */
     public final void addAll(Object[] toAdd) {
     	Assert.isNotNull(toAdd);
+        // Grow the arrays once rather than repeatedly while adding
+        int required = lastNode + toAdd.length;
+        if (firstUnusedNode == -1 && required > contents.length) {
+            setArraySize(Math.max(required, contents.length * 2));
+        }
         for (int i = 0; i < toAdd.length; i++) {
             Object object = toAdd[i];
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2015 IBM Corporation and others.
+ * Copyright (c) 2007, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -95,6 +95,24 @@ public class EvaluationReference extends RunAndTrack implements IEvaluationRefer
 	public void evaluate() {
 		boolean value = cache;
 		evaluate(new ExpressionContext(context));
+		fireResultChanges(value);
+	}
+
+	/**
+	 * Sets the result of the expression evaluated by a
+	 * {@link SharedEvaluation} and notifies the listener like
+	 * {@link #evaluate()}.
+	 *
+	 * @param result
+	 *            the result of the expression
+	 */
+	void setEvaluationResult(boolean result) {
+		boolean value = cache;
+		cache = result;
+		fireResultChanges(value);
+	}
+
+	private void fireResultChanges(boolean value) {
 		if (!postingChanges) {
 			return;
 		}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2016 IBM Corporation and others.
+ * Copyright (c) 2007, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,11 +15,14 @@ package org.eclipse.ui.internal.services;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import org.eclipse.core.expressions.Expression;
 import org.eclipse.core.expressions.ExpressionInfo;
 import org.eclipse.core.expressions.IEvaluationContext;
@@ -60,6 +63,17 @@ public final class EvaluationService implements IEvaluationService {
 	private ListenerList<IPropertyChangeListener> serviceListeners = new ListenerList<>(ListenerList.IDENTITY);
 	ArrayList<ISourceProvider> sourceProviders = new ArrayList<>();
 	LinkedList<EvaluationReference> refs = new LinkedList<>();
+
+	/**
+	 * The evaluation of each distinct expression, shared by all references
+	 * with an equal expression.
+	 */
+	private HashMap<Expression, SharedEvaluation> evaluations = new HashMap<>();
+
+	/**
+	 * The evaluations of the expressions reading each variable or property.
+	 */
+	private HashMap<String, Set<SharedEvaluation>> evaluationsByName = new HashMap<>();
 	private ISourceProviderListener contextUpdater;
 
 	private HashSet<String> ratVariables = new HashSet<>();
@@ -195,6 +209,11 @@ public final class EvaluationService implements IEvaluationService {
 			invalidate(ref, false);
 		}
 		refs.clear();
+		for (SharedEvaluation evaluation : evaluations.values()) {
+			evaluation.dispose();
+		}
+		evaluations.clear();
+		evaluationsByName.clear();
 		serviceListeners.clear();
 	}
 
@@ -240,14 +259,56 @@ public final class EvaluationService implements IEvaluationService {
 			contextEvaluate();
 		}
 		eref.participating = true;
-		ratContext.runAndTrack(eref);
+		SharedEvaluation evaluation = evaluations.get(eref.getExpression());
+		if (evaluation != null) {
+			evaluation.add(eref);
+			return;
+		}
+		evaluation = new SharedEvaluation(ratContext, eref.getExpression());
+		evaluation.add(eref);
+		evaluations.put(eref.getExpression(), evaluation);
+		index(evaluation);
+		// evaluates the expression and tracks the variables it reads
+		ratContext.runAndTrack(evaluation);
+	}
+
+	private void index(SharedEvaluation evaluation) {
+		if (evaluation.expression == null) {
+			return;
+		}
+		ExpressionInfo info = evaluation.expression.computeExpressionInfo();
+		Set<String> names = new HashSet<>(Arrays.asList(info.getAccessedPropertyNames()));
+		names.addAll(Arrays.asList(info.getAccessedVariableNames()));
+		for (String name : names) {
+			Set<SharedEvaluation> indexed = evaluationsByName.get(name);
+			if (indexed == null) {
+				indexed = new LinkedHashSet<>();
+				evaluationsByName.put(name, indexed);
+			}
+			indexed.add(evaluation);
+		}
+	}
+
+	private void unindex(SharedEvaluation evaluation) {
+		Iterator<Set<SharedEvaluation>> i = evaluationsByName.values().iterator();
+		while (i.hasNext()) {
+			Set<SharedEvaluation> indexed = i.next();
+			if (indexed.remove(evaluation) && indexed.isEmpty()) {
+				i.remove();
+			}
+		}
 	}
 
 	private void invalidate(IEvaluationReference ref, boolean remove) {
+		EvaluationReference eref = (EvaluationReference) ref;
 		if (remove) {
 			refs.remove(ref);
+			SharedEvaluation evaluation = evaluations.get(eref.getExpression());
+			if (evaluation != null && evaluation.remove(eref)) {
+				evaluations.remove(eref.getExpression());
+				unindex(evaluation);
+			}
 		}
-		EvaluationReference eref = (EvaluationReference) ref;
 		eref.participating = false;
 		eref.evaluate();
 		eref.hasRun = false;
@@ -273,29 +334,10 @@ public final class EvaluationService implements IEvaluationService {
 
 		String[] sourceNames = new String[] { propertyName };
 		startSourceChange(sourceNames);
-		for (EvaluationReference ref : refs) {
-			Expression expr = ref.getExpression();
-			if (expr != null) {
-				boolean evaluated = false;
-				ExpressionInfo info = expr.computeExpressionInfo();
-				String[] names = info.getAccessedPropertyNames();
-				for (String name : names) {
-					if (propertyName.equals(name)) {
-						evaluated = true;
-						ref.evaluate();
-						break;
-					}
-				}
-				if (!evaluated) {
-					names = info.getAccessedVariableNames();
-					for (String name : names) {
-						if (propertyName.equals(name)) {
-							evaluated = true;
-							ref.evaluate();
-							break;
-						}
-					}
-				}
+		Set<SharedEvaluation> indexed = evaluationsByName.get(propertyName);
+		if (indexed != null) {
+			for (SharedEvaluation evaluation : indexed.toArray(new SharedEvaluation[indexed.size()])) {
+				evaluation.evaluate();
 			}
 		}
 		endSourceChange(sourceNames);
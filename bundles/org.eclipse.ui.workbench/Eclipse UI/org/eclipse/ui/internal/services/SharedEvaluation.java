@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.ui.internal.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.core.expressions.EvaluationResult;
+import org.eclipse.core.expressions.Expression;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.e4.core.commands.ExpressionContext;
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.core.contexts.RunAndTrack;
+import org.eclipse.e4.ui.internal.workbench.Activator;
+import org.eclipse.e4.ui.internal.workbench.Policy;
+
+/**
+ * Evaluates an expression shared by several evaluation references.
+ * <p>
+ * Many references, like the enabled when expressions of handlers, use equal
+ * expressions. The {@link EvaluationService} tracks each distinct expression
+ * once, so it is evaluated once whenever one of the variables it reads
+ * changes, and passes the result on to all references using it.
+ * </p>
+ *
+ * @since 3.109
+ */
+class SharedEvaluation extends RunAndTrack {
+	final IEclipseContext context;
+	final Expression expression;
+	private final List<EvaluationReference> references = new ArrayList<>(1);
+	private boolean hasResult;
+	private boolean result;
+
+	SharedEvaluation(IEclipseContext context, Expression expression) {
+		this.context = context;
+		this.expression = expression;
+	}
+
+	/**
+	 * Adds a reference using the expression. If the expression was evaluated
+	 * already, the reference gets the last result rather than evaluating the
+	 * expression again.
+	 *
+	 * @param ref
+	 *            the reference to add
+	 */
+	void add(EvaluationReference ref) {
+		if (!references.contains(ref)) {
+			references.add(ref);
+		}
+		if (hasResult) {
+			ref.setEvaluationResult(result);
+		}
+	}
+
+	/**
+	 * @param ref
+	 *            the reference to remove
+	 * @return <code>true</code> if no reference uses the expression any more
+	 */
+	boolean remove(EvaluationReference ref) {
+		references.remove(ref);
+		return references.isEmpty();
+	}
+
+	/**
+	 * Removes all references, so that the expression is no longer tracked.
+	 */
+	void dispose() {
+		references.clear();
+	}
+
+	@Override
+	public boolean changed(IEclipseContext context) {
+		// stops tracking once the references are invalidated, like when the
+		// service is disposed
+		if (!isParticipating()) {
+			return false;
+		}
+		evaluate();
+		return true;
+	}
+
+	private boolean isParticipating() {
+		for (EvaluationReference ref : references) {
+			if (ref.participating) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Evaluates the expression and passes the result on to the participating
+	 * references. If the evaluation fails, they keep the last result.
+	 */
+	void evaluate() {
+		if (expression == null) {
+			result = true;
+		} else {
+			try {
+				result = expression.evaluate(new ExpressionContext(context)) != EvaluationResult.FALSE;
+			} catch (CoreException e) {
+				Activator.trace(Policy.DEBUG_CMDS, "Failed to calculate active", e); //$NON-NLS-1$
+			}
+		}
+		hasResult = true;
+		// a listener may add or remove references
+		EvaluationReference[] refs = references.toArray(new EvaluationReference[references.size()]);
+		for (EvaluationReference ref : refs) {
+			if (ref.participating) {
+				ref.setEvaluationResult(result);
+			}
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 IBM Corporation and others.
+ * Copyright (c) 2009, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -30,7 +30,9 @@ import org.eclipse.core.commands.ParameterizedCommand;
 import org.eclipse.e4.core.commands.CommandServiceAddon;
 import org.eclipse.e4.core.commands.ECommandService;
 import org.eclipse.e4.core.commands.EHandlerService;
+import org.eclipse.e4.core.commands.internal.HandlerServiceImpl;
 import org.eclipse.e4.core.contexts.ContextInjectionFactory;
+import org.eclipse.e4.core.contexts.EclipseContextFactory;
 import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.e4.core.di.annotations.CanExecute;
 import org.eclipse.e4.core.di.annotations.Execute;
@@ -280,6 +282,56 @@ public class HandlerTest {
 		assertNull(wHS.executeHandler(cmd));
 	}
 
+	@Test
+	public void testCanExecuteWithoutHandler() {
+		ECommandService cs = workbenchContext.get(ECommandService.class);
+		EHandlerService wHS = workbenchContext.get(EHandlerService.class);
+		ParameterizedCommand cmd = cs.createCommand(TEST_ID1, null);
+		assertFalse(wHS.canExecute(cmd));
+		assertFalse(cmd.getCommand().isEnabled());
+
+		CallHandler handler = new CallHandler();
+		wHS.activateHandler(TEST_ID1, handler);
+		assertTrue(wHS.canExecute(cmd));
+		assertTrue(handler.q1);
+
+		wHS.deactivateHandler(TEST_ID1, handler);
+		assertFalse(wHS.canExecute(cmd));
+	}
+
+	@Test
+	public void testHandlerLookedUpOnce() {
+		ECommandService cs = workbenchContext.get(ECommandService.class);
+		EHandlerService wHS = workbenchContext.get(EHandlerService.class);
+		ParameterizedCommand cmd = cs.createCommand(TEST_ID1, null);
+		wHS.activateHandler(TEST_ID1, new CallHandler());
+
+		HandlerServiceImpl.resetCounts();
+		assertTrue(wHS.canExecute(cmd));
+		assertEquals(1, HandlerServiceImpl.getCanExecuteCount());
+		assertEquals(1, HandlerServiceImpl.getLookUpCount());
+	}
+
+	@Test
+	public void testCanExecuteStoresHandler() {
+		ECommandService cs = workbenchContext.get(ECommandService.class);
+		EHandlerService wHS = workbenchContext.get(EHandlerService.class);
+		ParameterizedCommand cmd = cs.createCommand(TEST_ID1, null);
+		CallHandler handler = new CallHandler();
+		wHS.activateHandler(TEST_ID1, handler);
+
+		IEclipseContext staticContext = EclipseContextFactory.create();
+		HandlerServiceImpl.resetCounts();
+		assertTrue(wHS.canExecute(cmd, staticContext));
+		assertEquals(handler, staticContext.get(HandlerServiceImpl.HANDLER));
+		assertEquals(1, HandlerServiceImpl.getLookUpCount());
+
+		wHS.deactivateHandler(TEST_ID1, handler);
+		assertFalse(wHS.canExecute(cmd, staticContext));
+		assertNull(staticContext.get(HandlerServiceImpl.HANDLER));
+		staticContext.dispose();
+	}
+
 	@Test
 	public void testBug314847() {
 		ECommandService cs = workbenchContext.get(ECommandService.class);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 IBM Corporation and others.
+ * Copyright (c) 2013, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,6 +13,7 @@
 package org.eclipse.e4.ui.bindings.tests;
 
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertEquals;
@@ -383,6 +384,32 @@ public class BindingTableTests {
 		assertEquals(about, it.next());
 	}
 
+	@Test
+	public void testManagerLookupFollowsTableChanges() throws Exception {
+		BindingTableManager manager = createManager();
+		ContextSet javaSet = createJavaSet(manager);
+		KeySequence ctrl8 = KeySequence.getInstance("CTRL+8");
+		KeySequence ctrl8X = KeySequence.getInstance("CTRL+8 X");
+		assertNull(manager.getPerfectMatch(javaSet, ctrl8X));
+		assertFalse(manager.isPartialMatch(javaSet, ctrl8));
+
+		Command exit = commandManager.getCommand(EXIT_ID);
+		Binding exitCtrl8 = new KeyBinding(ctrl8X, new ParameterizedCommand(exit, null),
+				"org.eclipse.ui.defaultAcceleratorConfiguration", ID_TEXT, null, null, null, Binding.SYSTEM);
+		BindingTable table = manager.getTable(ID_TEXT);
+		table.addBinding(exitCtrl8);
+		try {
+			assertEquals(exitCtrl8, manager.getPerfectMatch(javaSet, ctrl8X));
+			assertTrue(manager.isPartialMatch(javaSet, ctrl8));
+			assertTrue(manager.getSequencesFor(javaSet, exitCtrl8.getParameterizedCommand()).contains(exitCtrl8));
+		} finally {
+			table.removeBinding(exitCtrl8);
+		}
+		assertNull(manager.getPerfectMatch(javaSet, ctrl8X));
+		assertFalse(manager.isPartialMatch(javaSet, ctrl8));
+		assertFalse(manager.getSequencesFor(javaSet, exitCtrl8.getParameterizedCommand()).contains(exitCtrl8));
+	}
+
 	private BindingTable loadTable(String contextId) {
 		Context context = contextManager.getContext(contextId);
 		BindingTable table = new BindingTable(context);
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.ui.css.core.impl.engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.eclipse.e4.ui.css.core.dom.parsers.CSSParser;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.css.sac.InputSource;
+import org.w3c.dom.css.CSSFontFaceRule;
+import org.w3c.dom.css.CSSImportRule;
+import org.w3c.dom.css.CSSMediaRule;
+import org.w3c.dom.css.CSSRule;
+import org.w3c.dom.css.CSSRuleList;
+import org.w3c.dom.css.CSSStyleSheet;
+
+public class StyleSheetCacheTest {
+
+	private static final String CSS = "@import url(\"base.css\");\n"
+			+ "Shell, .MPartStack { background-color: rgb(255, 0, 0); font: Arial 12px italic; }\n"
+			+ "#main > Label:disabled { color: #808080 !important; margin: 1em 2.5% 0 -3px; }\n"
+			+ "Composite Button[style~='SWT.CHECK'] { swt-corner-radius: 4; }\n"
+			+ "Label + Text { background-image: url(./images/a.png); }\n"
+			+ "CTabFolder.active { swt-selected-tab-fill: 100% 50%, inherit; }\n"
+			+ "@media screen, print { Table { color: blue; } }\n"
+			+ "@font-face { font-family: 'Test' }\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private CSSEngineImpl engine;
+
+	@Before
+	public void setUp() {
+		engine = new CSSEngineImpl() {
+			@Override
+			public void reapply() {
+			}
+		};
+	}
+
+	@Test
+	public void testReplayedStyleSheetEqualsParsedStyleSheet() throws Exception {
+		StyleSheetCache cache = new StyleSheetCache(folder.getRoot());
+		CSSStyleSheet parsed = parse(cache, CSS);
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, folder.getRoot().list().length);
+
+		CSSStyleSheet replayed = parse(cache, CSS);
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertSameRules(parsed, replayed);
+		assertSameRules(engine.makeCSSParser().parseStyleSheet(source(CSS)), replayed);
+	}
+
+	@Test
+	public void testChangedContentIsParsed() throws Exception {
+		StyleSheetCache cache = new StyleSheetCache(folder.getRoot());
+		parse(cache, CSS);
+		CSSStyleSheet styleSheet = parse(cache, "Shell { color: red; }");
+		assertEquals(0, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(1, styleSheet.getCssRules().getLength());
+	}
+
+	@Test
+	public void testDamagedCacheFallsBackToParser() throws Exception {
+		StyleSheetCache cache = new StyleSheetCache(folder.getRoot());
+		CSSStyleSheet parsed = parse(cache, CSS);
+		File[] files = folder.getRoot().listFiles();
+		Files.write(files[0].toPath(), new byte[] { 1, 2, 3 });
+
+		CSSStyleSheet styleSheet = parse(cache, CSS);
+		assertEquals(0, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertSameRules(parsed, styleSheet);
+
+		// the damaged file was replaced
+		styleSheet = parse(cache, CSS);
+		assertEquals(1, cache.getHits());
+		assertSameRules(parsed, styleSheet);
+	}
+
+	@Test
+	public void testInvalidStringLengthFallsBackToParser() throws Exception {
+		StyleSheetCache cache = new StyleSheetCache(folder.getRoot());
+		CSSStyleSheet parsed = parse(cache, CSS);
+		Path file = folder.getRoot().listFiles()[0].toPath();
+		byte[] content = Files.readAllBytes(file);
+		byte[] uri = "base.css".getBytes(StandardCharsets.UTF_8);
+		int offset = indexOf(content, uri);
+		// the length written before the string
+		ByteBuffer.wrap(content, offset - 4, 4).putInt(Integer.MAX_VALUE);
+		Files.write(file, content);
+
+		CSSStyleSheet styleSheet = parse(cache, CSS);
+		assertEquals(0, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertSameRules(parsed, styleSheet);
+	}
+
+	private static int indexOf(byte[] content, byte[] bytes) {
+		search: for (int i = 0; i <= content.length - bytes.length; i++) {
+			for (int j = 0; j < bytes.length; j++) {
+				if (content[i + j] != bytes[j]) {
+					continue search;
+				}
+			}
+			return i;
+		}
+		throw new AssertionError("not found");
+	}
+
+	@Test
+	public void testFailedStoreLeavesNoTemporaryFile() throws Exception {
+		StyleSheetCache cache = new StyleSheetCache(folder.getRoot());
+		parse(cache, CSS);
+		File file = folder.getRoot().listFiles()[0];
+		file.delete();
+		// the compiled style sheet cannot replace a directory with contents
+		new File(file, "child").mkdirs();
+
+		CSSStyleSheet styleSheet = parse(cache, CSS);
+		assertEquals(2, cache.getMisses());
+		assertSameRules(engine.makeCSSParser().parseStyleSheet(source(CSS)), styleSheet);
+		assertArrayEquals(new String[] { file.getName() }, folder.getRoot().list());
+	}
+
+	@Test
+	public void testByteStream() throws Exception {
+		StyleSheetCache cache = new StyleSheetCache(folder.getRoot());
+		CSSParser parser = engine.makeCSSParser();
+		InputSource source = new InputSource();
+		source.setByteStream(new ByteArrayInputStream(CSS.getBytes("UTF-8")));
+		CSSStyleSheet parsed = cache.parseStyleSheet(parser, source);
+		source = new InputSource();
+		source.setByteStream(new ByteArrayInputStream(CSS.getBytes("UTF-8")));
+		CSSStyleSheet replayed = cache.parseStyleSheet(parser, source);
+		assertEquals(1, cache.getHits());
+		assertSameRules(parsed, replayed);
+	}
+
+	private CSSStyleSheet parse(StyleSheetCache cache, String css) throws IOException {
+		return cache.parseStyleSheet(engine.makeCSSParser(), source(css));
+	}
+
+	private static InputSource source(String css) {
+		InputSource source = new InputSource();
+		source.setCharacterStream(new StringReader(css));
+		return source;
+	}
+
+	private static void assertSameRules(CSSStyleSheet expected, CSSStyleSheet actual) {
+		assertSameRules(expected.getCssRules(), actual.getCssRules());
+	}
+
+	private static void assertSameRules(CSSRuleList expectedRules, CSSRuleList actualRules) {
+		assertEquals(expectedRules.getLength(), actualRules.getLength());
+		for (int i = 0; i < expectedRules.getLength(); i++) {
+			CSSRule expected = expectedRules.item(i);
+			CSSRule actual = actualRules.item(i);
+			assertEquals(expected.getType(), actual.getType());
+			switch (expected.getType()) {
+			case CSSRule.STYLE_RULE:
+				assertEquals(expected.getCssText(), actual.getCssText());
+				break;
+			case CSSRule.IMPORT_RULE:
+				assertEquals(((CSSImportRule) expected).getHref(), ((CSSImportRule) actual).getHref());
+				break;
+			case CSSRule.MEDIA_RULE:
+				CSSMediaRule expectedMedia = (CSSMediaRule) expected;
+				CSSMediaRule actualMedia = (CSSMediaRule) actual;
+				assertEquals(expectedMedia.getMedia().getMediaText(), actualMedia.getMedia().getMediaText());
+				assertSameRules(expectedMedia.getCssRules(), actualMedia.getCssRules());
+				break;
+			case CSSRule.FONT_FACE_RULE:
+				assertEquals(((CSSFontFaceRule) expected).getStyle().getCssText(),
+						((CSSFontFaceRule) actual).getStyle().getCssText());
+				break;
+			default:
+				break;
+			}
+		}
+	}
+}
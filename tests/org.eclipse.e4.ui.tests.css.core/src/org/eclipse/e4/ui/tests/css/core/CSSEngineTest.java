@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2016 IBM Corporation and others.
+ * Copyright (c) 2013, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,17 +13,34 @@
  *******************************************************************************/
 package org.eclipse.e4.ui.tests.css.core;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
+import org.eclipse.e4.ui.css.core.dom.properties.ICSSPropertyHandler;
+import org.eclipse.e4.ui.css.core.dom.properties.ICSSPropertyHandler2;
+import org.eclipse.e4.ui.css.core.dom.properties.ICSSPropertyHandlerProvider;
+import org.eclipse.e4.ui.css.core.dom.properties.converters.AbstractCSSValueConverter;
+import org.eclipse.e4.ui.css.core.dom.properties.converters.ICSSValueConverterConfig;
+import org.eclipse.e4.ui.css.core.engine.CSSEngine;
 import org.eclipse.e4.ui.css.core.impl.engine.CSSEngineImpl;
+import org.eclipse.e4.ui.css.core.impl.engine.CSSEngineProfile;
+import org.eclipse.e4.ui.css.core.resources.AbstractResourcesRegistry;
 import org.eclipse.e4.ui.tests.css.core.util.TestElement;
 import org.junit.Test;
 import org.w3c.css.sac.Selector;
 import org.w3c.css.sac.SelectorList;
 import org.w3c.dom.Element;
+import org.w3c.dom.css.CSSStyleDeclaration;
+import org.w3c.dom.css.CSSValue;
 
 public class CSSEngineTest {
 
@@ -33,6 +50,113 @@ public class CSSEngineTest {
 		}
 	}
 
+	/**
+	 * Records the elements whose color is applied, and only restyles
+	 * invalidated elements when asked to.
+	 */
+	private static class RecordingCSSEngine extends TestCSSEngine {
+		final List<String> styled = new ArrayList<>();
+
+		int scheduled;
+
+		/**
+		 * Whether the handler lets the engine skip unchanged values.
+		 */
+		boolean canSkip = true;
+
+		/**
+		 * The number of times the handler was notified that all properties
+		 * of an element were applied.
+		 */
+		int allApplied;
+
+		private class RecordingHandler implements ICSSPropertyHandler, ICSSPropertyHandler2 {
+			@Override
+			public boolean applyCSSProperty(Object element, String property, CSSValue value, String pseudo,
+					CSSEngine engine) {
+				TestElement testElement = (TestElement) element;
+				testElement.setAttribute(property, value.getCssText());
+				styled.add(testElement.getLocalName());
+				return true;
+			}
+
+			@Override
+			public boolean canSkipUnchangedValue(Object element, String property) {
+				return canSkip;
+			}
+
+			@Override
+			public void onAllCSSPropertiesApplyed(Object element, CSSEngine engine) {
+				allApplied++;
+			}
+		}
+
+		RecordingCSSEngine() {
+			ICSSPropertyHandler handler = new RecordingHandler();
+			registerCSSPropertyHandlerProvider(new ICSSPropertyHandlerProvider() {
+				@Override
+				public Collection<ICSSPropertyHandler> getCSSPropertyHandlers(String property) {
+					return Collections.singleton(handler);
+				}
+
+				@Override
+				public Collection<ICSSPropertyHandler> getCSSPropertyHandlers(Object element, String property) {
+					return Collections.singleton(handler);
+				}
+
+				@Override
+				public CSSStyleDeclaration getDefaultCSSStyleDeclaration(CSSEngine engine, Object element,
+						CSSStyleDeclaration newStyle, String pseudoE) {
+					return null;
+				}
+
+				@Override
+				public Collection<String> getCSSProperties(Object element) {
+					return Collections.singleton("color");
+				}
+			});
+		}
+
+		@Override
+		protected void scheduleInvalidatedStyles() {
+			scheduled++;
+		}
+
+		@Override
+		public Element getElement(Object element) {
+			return element instanceof TestElement ? (TestElement) element : super.getElement(element);
+		}
+	}
+
+	/**
+	 * Defers the styles of elements with a <code>hidden</code> attribute.
+	 */
+	private static class DeferringCSSEngine extends RecordingCSSEngine {
+		final List<Element> deferred = new ArrayList<>();
+
+		DeferringCSSEngine() {
+			setDeferHiddenStyles(true);
+		}
+
+		@Override
+		protected boolean deferStyles(Element elt, boolean checkAncestors) {
+			for (Element e = elt; e != null; e = checkAncestors ? (Element) e.getParentNode() : null) {
+				if ("true".equals(e.getAttribute("hidden"))) {
+					if (!deferred.contains(e)) {
+						deferred.add(e);
+					}
+					return true;
+				}
+			}
+			return false;
+		}
+
+		void show(Element elt) {
+			elt.setAttribute("hidden", "false");
+			applyDeferredStyles(elt);
+		}
+	}
+
 	@Test
 	public void testSelectorMatch() throws Exception {
 		TestCSSEngine engine = new TestCSSEngine();
@@ -77,6 +201,296 @@ public class CSSEngineTest {
 		assertFalse(engine.matches(selector, "", null));
 	}
 
+	@Test
+	public void testInvalidateStylesRestylesDependentDescendants() throws Exception {
+		RecordingCSSEngine engine = new RecordingCSSEngine();
+		engine.parseStyleSheet(new StringReader("Shell { color: black; }\n" + "Shell.active Button { color: red; }\n"
+				+ "Button { color: gray; }\n" + "Label { color: blue; }\n"));
+		TestElement shell = new TestElement("Shell", engine);
+		TestElement button = new TestElement("Button", shell, engine);
+		TestElement label = new TestElement("Label", shell, engine);
+		engine.applyStyles(shell, true);
+		assertEquals("gray", button.getAttribute("color"));
+
+		engine.styled.clear();
+		shell.setClass("active");
+		engine.invalidateStyles(shell);
+		assertTrue(engine.styled.isEmpty());
+
+		engine.applyInvalidatedStyles();
+		assertEquals("red", button.getAttribute("color"));
+		assertEquals("blue", label.getAttribute("color"));
+		assertEquals("[Shell, Button]", engine.styled.toString());
+	}
+
+	@Test
+	public void testInvalidateStylesCoalescesChanges() throws Exception {
+		RecordingCSSEngine engine = new RecordingCSSEngine();
+		engine.parseStyleSheet(new StringReader("Label { color: blue; }\n" + "Label.error { color: red; }\n"));
+		TestElement shell = new TestElement("Shell", engine);
+		TestElement label = new TestElement("Label", shell, engine);
+		label.setClass("error");
+		engine.invalidateStyles(label);
+		engine.invalidateStyles(shell);
+		engine.invalidateStyles(label);
+
+		engine.applyInvalidatedStyles();
+		assertEquals("red", label.getAttribute("color"));
+		assertEquals("[Label]", engine.styled.toString());
+
+		engine.applyInvalidatedStyles();
+		assertEquals("[Label]", engine.styled.toString());
+	}
+
+	@Test
+	public void testInvalidateStylesSchedulesOnce() throws Exception {
+		RecordingCSSEngine engine = new RecordingCSSEngine();
+		engine.parseStyleSheet(new StringReader("Label { color: blue; }\n"));
+		TestElement shell = new TestElement("Shell", engine);
+		TestElement label = new TestElement("Label", shell, engine);
+		engine.invalidateStyles(label);
+		engine.invalidateStyles(shell);
+		assertEquals(1, engine.scheduled);
+
+		// the scheduled pass is still pending
+		engine.reapplyStyles(label);
+		engine.reapplyStyles(shell);
+		engine.invalidateStyles(label);
+		assertEquals(1, engine.scheduled);
+
+		engine.applyInvalidatedStyles();
+		engine.invalidateStyles(label);
+		assertEquals(2, engine.scheduled);
+	}
+
+	@Test
+	public void testReapplyStylesRestylesDependentDescendantsNow() throws Exception {
+		RecordingCSSEngine engine = new RecordingCSSEngine();
+		engine.parseStyleSheet(new StringReader("Shell.active Button { color: red; }\n"
+				+ "Button { color: gray; }\n" + "Label { color: blue; }\n"));
+		TestElement shell = new TestElement("Shell", engine);
+		TestElement button = new TestElement("Button", shell, engine);
+		TestElement label = new TestElement("Label", shell, engine);
+		engine.applyStyles(shell, true);
+		assertEquals("gray", button.getAttribute("color"));
+
+		engine.styled.clear();
+		shell.setClass("active");
+		engine.reapplyStyles(shell);
+		assertEquals("red", button.getAttribute("color"));
+		assertEquals("blue", label.getAttribute("color"));
+		assertEquals("[Button]", engine.styled.toString());
+		assertEquals("nothing should be scheduled", 0, engine.scheduled);
+	}
+
+	@Test
+	public void testUnchangedPropertiesAreSkipped() throws Exception {
+		RecordingCSSEngine engine = createNativeRecordingEngine();
+		engine.parseStyleSheet(new StringReader("Button { color: blue; }\n"));
+		String button = "Button";
+		engine.applyStyles(button, false);
+		engine.applyStyles(button, false);
+		assertEquals("[Button]", engine.styled.toString());
+		assertEquals(1, engine.getAppliedPropertyCount());
+		assertEquals(1, engine.getSkippedPropertyCount());
+
+		engine.parseStyleSheet(new StringReader("Button { color: red; }\n"));
+		engine.applyStyles(button, false);
+		assertEquals("red", engine.getElement(button).getAttribute("color"));
+		assertEquals(2, engine.getAppliedPropertyCount());
+
+		engine.reset();
+		engine.parseStyleSheet(new StringReader("Button { color: red; }\n"));
+		engine.applyStyles(button, false);
+		assertEquals(3, engine.getAppliedPropertyCount());
+		assertEquals(1, engine.getSkippedPropertyCount());
+	}
+
+	@Test
+	public void testSkippedPropertiesNotifyHandlers() throws Exception {
+		RecordingCSSEngine engine = createNativeRecordingEngine();
+		engine.parseStyleSheet(new StringReader("Button { color: blue; }\n"));
+		String button = "Button";
+		engine.applyStyles(button, false);
+		engine.applyStyles(button, false);
+		assertEquals(1, engine.getSkippedPropertyCount());
+		assertEquals(2, engine.allApplied);
+	}
+
+	@Test
+	public void testDefaultStyleRestoresValuesChangedOutsideCSS() throws Exception {
+		RecordingCSSEngine engine = createNativeRecordingEngine();
+		engine.parseStyleSheet(new StringReader("Button { color: blue; }\n"));
+		String button = "Button";
+		engine.applyStyles(button, false);
+		Element element = engine.getElement(button);
+		element.setAttribute("color", "green");
+
+		engine.applyStyles(button, false);
+		assertEquals("green", element.getAttribute("color"));
+
+		engine.applyStyles(button, false, true);
+		assertEquals("blue", element.getAttribute("color"));
+		assertEquals("[Button, Button]", engine.styled.toString());
+	}
+
+	@Test
+	public void testUnchangedPropertiesAreAppliedIfHandlerOptsOut() throws Exception {
+		RecordingCSSEngine engine = createNativeRecordingEngine();
+		engine.canSkip = false;
+		engine.parseStyleSheet(new StringReader("Button { color: blue; }\n"));
+		String button = "Button";
+		engine.applyStyles(button, false);
+		engine.getElement(button).setAttribute("color", "green");
+		engine.applyStyles(button, false);
+		assertEquals("blue", engine.getElement(button).getAttribute("color"));
+		assertEquals(0, engine.getSkippedPropertyCount());
+
+		// values of other handlers are skipped again once they are recorded
+		engine.canSkip = true;
+		engine.applyStyles(button, false);
+		engine.applyStyles(button, false);
+		assertEquals(1, engine.getSkippedPropertyCount());
+
+		engine.forgetAppliedValues(button);
+		engine.applyStyles(button, false);
+		assertEquals(1, engine.getSkippedPropertyCount());
+		assertEquals(4, engine.getAppliedPropertyCount());
+	}
+
+	/**
+	 * Creates an engine whose elements have the styled string as native
+	 * widget, so that the values applied to them are recorded.
+	 */
+	private static RecordingCSSEngine createNativeRecordingEngine() {
+		RecordingCSSEngine engine = new RecordingCSSEngine();
+		engine.setElementProvider((element, engine1) -> new TestElement((String) element, engine1) {
+			@Override
+			public Object getNativeWidget() {
+				return element;
+			}
+		});
+		return engine;
+	}
+
+	@Test
+	public void testHiddenStylesAreDeferred() throws Exception {
+		DeferringCSSEngine engine = new DeferringCSSEngine();
+		List<Element> deferred = engine.deferred;
+		engine.parseStyleSheet(new StringReader("* { color: black; }\n"));
+		TestElement shell = new TestElement("Shell", engine);
+		TestElement book = new TestElement("PageBook", shell, engine);
+		TestElement page = new TestElement("Page", book, engine);
+		TestElement label = new TestElement("Label", page, engine);
+		TestElement hiddenLabel = new TestElement("HiddenLabel", page, engine);
+		page.setAttribute("hidden", "true");
+		hiddenLabel.setAttribute("hidden", "true");
+
+		engine.applyStyles(shell, true);
+		assertEquals("[Shell, PageBook]", engine.styled.toString());
+		assertEquals(Collections.singletonList(page), deferred);
+
+		// styled directly, deferred with its hidden ancestor
+		engine.applyStyles(label, false);
+		assertEquals("[Shell, PageBook]", engine.styled.toString());
+
+		engine.show(page);
+		assertEquals("[Shell, PageBook, Page, Label]", engine.styled.toString());
+		assertEquals(Arrays.asList(page, hiddenLabel), deferred);
+
+		engine.show(hiddenLabel);
+		assertEquals("[Shell, PageBook, Page, Label, HiddenLabel]", engine.styled.toString());
+	}
+
+	@Test
+	public void testResourcesAreReleasedWhenValuesChange() throws Exception {
+		TestCSSEngine engine = new TestCSSEngine();
+		List<Object> disposed = new ArrayList<>();
+		engine.setResourcesRegistry(new AbstractResourcesRegistry() {
+			@Override
+			public void disposeResource(Object type, Object key, Object resource) {
+				disposed.add(resource);
+			}
+		});
+		engine.registerCSSValueConverter(new AbstractCSSValueConverter(StringBuilder.class) {
+			@Override
+			public Object convert(CSSValue value, CSSEngine engine, Object context) {
+				return new StringBuilder(value.getCssText());
+			}
+
+			@Override
+			public String convert(Object value, CSSEngine engine, Object context, ICSSValueConverterConfig config) {
+				return value.toString();
+			}
+		});
+		ICSSPropertyHandler handler = (element, property, value, pseudo, engine1) -> {
+			((TestElement) element).setAttribute(property,
+					engine1.convert(value, StringBuilder.class, null).toString());
+			return true;
+		};
+		engine.registerCSSPropertyHandlerProvider(new ICSSPropertyHandlerProvider() {
+			@Override
+			public Collection<ICSSPropertyHandler> getCSSPropertyHandlers(String property) {
+				return Collections.singleton(handler);
+			}
+
+			@Override
+			public Collection<ICSSPropertyHandler> getCSSPropertyHandlers(Object element, String property) {
+				return Collections.singleton(handler);
+			}
+
+			@Override
+			public CSSStyleDeclaration getDefaultCSSStyleDeclaration(CSSEngine engine, Object element,
+					CSSStyleDeclaration newStyle, String pseudoE) {
+				return null;
+			}
+
+			@Override
+			public Collection<String> getCSSProperties(Object element) {
+				return Collections.singleton("color");
+			}
+		});
+		engine.setElementProvider((element, engine1) -> new TestElement((String) element, engine1) {
+			@Override
+			public Object getNativeWidget() {
+				return element;
+			}
+		});
+
+		// more distinct values than unreferenced resources are kept
+		for (int i = 0; i < 100; i++) {
+			engine.parseStyleSheet(new StringReader("Button { color: c" + i + "; }\n"));
+			engine.applyStyles("Button", false);
+		}
+		assertEquals("c99", engine.getElement("Button").getAttribute("color"));
+		assertEquals(100 - 1 - 64, disposed.size());
+		assertEquals("c0", disposed.get(0).toString());
+	}
+
+	@Test
+	public void testProfile() throws Exception {
+		RecordingCSSEngine engine = new RecordingCSSEngine();
+		CSSEngineProfile profile = new CSSEngineProfile();
+		engine.setProfile(profile);
+		engine.parseStyleSheet(new StringReader("Shell { color: black; }\n" + "Shell > Button { color: red; }\n"
+				+ "Label[text=\"a\"] { color: blue; }\n"));
+		TestElement shell = new TestElement("Shell", engine);
+		new TestElement("Button", shell, engine);
+		new TestElement("Label", shell, engine);
+		engine.applyStyles(shell, true);
+		assertEquals(3, profile.getElementsStyled());
+
+		String json = profile.toJSON();
+		assertTrue(json, json.contains("\"elementsStyled\": 3"));
+		assertTrue(json, json.contains("\"selector\": \"Shell > Button\", \"attempts\": 1, \"matches\": 1"));
+		assertTrue(json, json.contains("\"selector\": \"Label[text=\\\"a\\\"]\", \"attempts\": 1, \"matches\": 0"));
+		assertTrue(json, json.contains("\"property\": \"color\", \"calls\": 2, \"applied\": 2"));
+		assertTrue(json, json.contains("\"root\": \"" + shell + "\", \"elements\": 3"));
+
+		engine.setProfile(null);
+		engine.applyStyles(shell, true);
+		assertEquals(3, profile.getElementsStyled());
+	}
 
 	private TestCSSEngine engineWhichProducesElementsWithAttributeA() {
 		TestCSSEngine engine = new TestCSSEngine();
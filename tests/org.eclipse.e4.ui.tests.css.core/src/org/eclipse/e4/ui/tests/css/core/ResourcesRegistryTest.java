@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.ui.tests.css.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.e4.ui.css.core.resources.AbstractResourcesRegistry;
+import org.junit.Test;
+
+public class ResourcesRegistryTest {
+
+	private static class TestResourcesRegistry extends AbstractResourcesRegistry {
+		final List<Object> disposed = new ArrayList<>();
+
+		TestResourcesRegistry(int maxUnreferencedResources) {
+			super(maxUnreferencedResources);
+		}
+
+		@Override
+		public void disposeResource(Object type, Object key, Object resource) {
+			disposed.add(key);
+		}
+	}
+
+	@Test
+	public void testUnreferencedResourcesAreEvicted() {
+		TestResourcesRegistry registry = new TestResourcesRegistry(1);
+		Object red = register(registry, "red");
+		Object blue = register(registry, "blue");
+		registry.addReference(red);
+		registry.addReference(red);
+		registry.addReference(blue);
+
+		registry.removeReference(red);
+		registry.removeReference(blue);
+		assertTrue(registry.disposed.isEmpty());
+
+		registry.removeReference(red);
+		assertEquals("[blue]", registry.disposed.toString());
+		assertNull(registry.getResource(String.class, "blue"));
+		assertSame(red, registry.getResource(String.class, "red"));
+	}
+
+	@Test
+	public void testReferencedAgainIsNotEvicted() {
+		TestResourcesRegistry registry = new TestResourcesRegistry(1);
+		Object red = register(registry, "red");
+		Object blue = register(registry, "blue");
+		registry.addReference(red);
+		registry.addReference(blue);
+		registry.removeReference(red);
+		registry.addReference(red);
+		registry.removeReference(blue);
+		assertTrue(registry.disposed.isEmpty());
+	}
+
+	@Test
+	public void testPinnedResourcesAreNotEvicted() {
+		TestResourcesRegistry registry = new TestResourcesRegistry(0);
+		Object red = register(registry, "red");
+		registry.addReference(red);
+		registry.pinResource(red);
+		registry.removeReference(red);
+		assertTrue(registry.disposed.isEmpty());
+
+		registry.dispose();
+		assertEquals("[red]", registry.disposed.toString());
+	}
+
+	@Test
+	public void testUnregisteredResourcesAreForgotten() throws Exception {
+		TestResourcesRegistry registry = new TestResourcesRegistry(2);
+		Object red = register(registry, "red");
+		Object blue = register(registry, "blue");
+		Object green = new Object();
+		registry.registerResource(Object.class, "green", green);
+		registry.addReference(red);
+		registry.removeReference(red);
+		registry.addReference(blue);
+		registry.addReference(green);
+		register(registry, "blue");
+
+		registry.unregisterResource(String.class, "red");
+		registry.unregisterResource(green);
+		registry.unregisterResource(String.class, "blue");
+		assertNull(registry.getResource(String.class, "red"));
+		assertNull(registry.getResource(Object.class, "green"));
+		assertEquals(0, size(registry, "usages"));
+		assertEquals(0, size(registry, "unreferenced"));
+
+		registry.removeReference(blue);
+		assertEquals(0, size(registry, "unreferenced"));
+		assertTrue(registry.disposed.isEmpty());
+	}
+
+	/**
+	 * Returns the size of the given map or collection field of the registry.
+	 */
+	static int size(AbstractResourcesRegistry registry, String fieldName) throws Exception {
+		Field field = AbstractResourcesRegistry.class.getDeclaredField(fieldName);
+		field.setAccessible(true);
+		Object value = field.get(registry);
+		if (value instanceof Map) {
+			return ((Map<?, ?>) value).size();
+		}
+		return value == null ? 0 : ((Collection<?>) value).size();
+	}
+
+	private static Object register(AbstractResourcesRegistry registry, String key) {
+		Object resource = new Object();
+		registry.registerResource(String.class, key, resource);
+		return resource;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 EclipseSource and others. All rights reserved.
+ * Copyright (c) 2009, 2017 EclipseSource and others. All rights reserved.
  * This program and the accompanying materials are made available under the
  * terms of the Eclipse Public License v1.0 which accompanies this distribution,
  * and is available at http://www.eclipse.org/legal/epl-v10.html
@@ -14,6 +14,7 @@ package org.eclipse.e4.ui.tests.css.core.parser;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.io.IOException;
 
@@ -108,6 +109,71 @@ public class ViewCSSTest {
 		assertEquals("color: blue;", buttonStyle.getCssText());
 	}
 
+	@Test
+	public void testOrderAcrossIdClassAndElementRules() throws Exception {
+		String css = "#special { color: red; }\n" + "Button { color: blue; }\n" + ".flat { color: green; }\n"
+				+ "* { color: black; }\n" + "Button { font-weight: bold; }\n";
+		ViewCSS viewCSS = createViewCss(css);
+
+		TestElement button = new TestElement("Button", engine);
+		button.setClass("large flat");
+		CSSStyleDeclaration buttonStyle = viewCSS.getComputedStyle(button, null);
+		assertEquals("green", buttonStyle.getPropertyCSSValue("color").getCssText());
+		assertEquals("bold", buttonStyle.getPropertyCSSValue("font-weight").getCssText());
+
+		button.setId("special");
+		buttonStyle = viewCSS.getComputedStyle(button, null);
+		assertEquals("red", buttonStyle.getPropertyCSSValue("color").getCssText());
+	}
+
+	@Test
+	public void testStyleSheetChanges() throws Exception {
+		DocumentCSSImpl docCss = new DocumentCSSImpl();
+		docCss.addStyleSheet(ParserTestUtil.parseCss("Button { color: blue; }"));
+		ViewCSS viewCSS = new ViewCSSImpl(docCss);
+		TestElement button = new TestElement("Button", engine);
+		assertEquals("color: blue;", viewCSS.getComputedStyle(button, null).getCssText());
+
+		docCss.addStyleSheet(ParserTestUtil.parseCss("Button { color: red; }"));
+		assertEquals("color: red;", viewCSS.getComputedStyle(button, null).getCssText());
+
+		docCss.removeAllStyleSheets();
+		assertNull(viewCSS.getComputedStyle(button, null));
+	}
+
+	@Test
+	public void testElementsWithSameSignatureShareStyle() throws Exception {
+		String css = "Button { color: blue; }\n" + "Shell .flat { color: green; }\n";
+		ViewCSSImpl viewCSS = (ViewCSSImpl) createViewCss(css);
+
+		TestElement shell = new TestElement("Shell", engine);
+		TestElement button1 = new TestElement("Button", shell, engine);
+		TestElement button2 = new TestElement("Button", shell, engine);
+		CSSStyleDeclaration style1 = viewCSS.getComputedStyle(button1, null);
+		CSSStyleDeclaration style2 = viewCSS.getComputedStyle(button2, null);
+		assertSame(style1, style2);
+		assertEquals(1, viewCSS.getSharedStyleHits());
+
+		button2.setClass("flat");
+		style2 = viewCSS.getComputedStyle(button2, null);
+		assertEquals("color: green;", style2.getCssText());
+		assertEquals("color: blue;", viewCSS.getComputedStyle(button1, null).getCssText());
+	}
+
+	@Test
+	public void testAttributeSelectorsAreNotShared() throws Exception {
+		String css = "Button { color: blue; }\n" + "Button[BORDER] { color: red; }\n";
+		ViewCSSImpl viewCSS = (ViewCSSImpl) createViewCss(css);
+
+		TestElement button1 = new TestElement("Button", engine);
+		TestElement button2 = new TestElement("Button", engine);
+		button2.setAttribute("BORDER", "true");
+		assertEquals("color: blue;", viewCSS.getComputedStyle(button1, null).getCssText());
+		assertEquals("color: red;", viewCSS.getComputedStyle(button2, null).getCssText());
+		assertEquals(0, viewCSS.getSharedStyleHits());
+		assertEquals(2, viewCSS.getUnsharedStyles());
+	}
+
 	private static ViewCSS createViewCss(String css) throws IOException {
 		CSSStyleSheet styleSheet = ParserTestUtil.parseCss(css);
 		DocumentCSSImpl docCss = new DocumentCSSImpl();
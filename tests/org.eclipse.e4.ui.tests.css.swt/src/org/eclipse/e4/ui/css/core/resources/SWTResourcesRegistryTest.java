@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2015 IBM Corporation and others. All rights reserved. This
+ * Copyright (c) 2013, 2017 IBM Corporation and others. All rights reserved. This
  * program and the accompanying materials are made available under the terms of
  * the Eclipse Public License v1.0 which accompanies this distribution, and is
  * available at http://www.eclipse.org/legal/epl-v10.html
@@ -17,6 +17,7 @@ import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 
+import java.lang.reflect.Field;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -59,6 +60,20 @@ public class SWTResourcesRegistryTest {
 		assertTrue(resources.containsKey("key1"));
 	}
 
+	@Test
+	public void testRemovedResourcesAreForgotten() throws Exception {
+		SWTResourcesRegistry registry = new SWTResourcesRegistry(null);
+		Resource font = mock(Resource.class);
+		registry.registerResource(Font.class, new ResourceByDefinitionKey("key"), font);
+		registry.addReference(font);
+
+		registry.removeResourcesByKeyTypeAndType(ResourceByDefinitionKey.class, Font.class);
+
+		Field usages = AbstractResourcesRegistry.class.getDeclaredField("usages");
+		usages.setAccessible(true);
+		assertTrue(((Map<?, ?>) usages.get(registry)).isEmpty());
+	}
+
 	public static class SWTResourcesRegistryTestable extends
 	SWTResourcesRegistry {
 		public SWTResourcesRegistryTestable() {
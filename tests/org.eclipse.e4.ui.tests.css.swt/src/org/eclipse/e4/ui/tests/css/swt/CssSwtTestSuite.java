@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2016 IBM Corporation and others. All rights reserved. This
+ * Copyright (c) 2008, 2017 IBM Corporation and others. All rights reserved. This
  * program and the accompanying materials are made available under the terms of
  * the Eclipse Public License v1.0 which accompanies this distribution, and is
  * available at http://www.eclipse.org/legal/epl-v10.html
@@ -58,7 +58,8 @@ import org.junit.runners.Suite;
 	Bug419482Test.class,
 	ShellActiveTest.class,
 	InheritTest.class,
-	StyledTextScrollbarTest.class })
+	StyledTextScrollbarTest.class,
+	DeferredStylesTest.class })
 public class CssSwtTestSuite {
 
 }
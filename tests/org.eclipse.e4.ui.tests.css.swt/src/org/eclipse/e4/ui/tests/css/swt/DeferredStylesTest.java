@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others. All rights reserved. This
+ * program and the accompanying materials are made available under the terms of
+ * the Eclipse Public License v1.0 which accompanies this distribution, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.ui.tests.css.swt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.util.Set;
+
+import org.eclipse.e4.ui.css.swt.engine.AbstractCSSSWTEngineImpl;
+import org.eclipse.e4.ui.css.swt.engine.CSSSWTEngineImpl;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Layout;
+import org.eclipse.swt.widgets.Shell;
+import org.junit.Test;
+
+/**
+ * Tests that an engine applying styles lazily defers the styles of hidden
+ * controls until they are shown.
+ */
+public class DeferredStylesTest extends CSSSWTTestCase {
+
+	/**
+	 * Longer than the delay before hidden controls are styled in the
+	 * background.
+	 */
+	private static final long WARM_UP_TIMEOUT = 10000;
+
+	private static class CountingLayout extends Layout {
+		int layoutCount;
+
+		@Override
+		protected Point computeSize(Composite composite, int wHint, int hHint, boolean flushCache) {
+			return new Point(100, 100);
+		}
+
+		@Override
+		protected void layout(Composite composite, boolean flushCache) {
+			layoutCount++;
+		}
+	}
+
+	private CountingLayout panelLayout;
+
+	private Composite panel;
+
+	private Label createHiddenLabel() {
+		engine = new CSSSWTEngineImpl(display, true);
+		engine.setErrorHandler(e -> fail(e.getMessage()));
+		try {
+			engine.parseStyleSheet(new StringReader("Label { color: #FF0000 }"));
+		} catch (IOException e) {
+			fail(e.getMessage());
+		}
+		Shell shell = new Shell(display, SWT.SHELL_TRIM);
+		shell.setLayout(new FillLayout());
+		panel = new Composite(shell, SWT.NONE);
+		panelLayout = new CountingLayout();
+		panel.setLayout(panelLayout);
+		Label label = new Label(panel, SWT.NONE);
+		label.setText("Some label text");
+		label.setVisible(false);
+		shell.open();
+		engine.applyStyles(label, false);
+		processEvents();
+		return label;
+	}
+
+	private void processEvents() {
+		while (display.readAndDispatch()) {
+			// dispatch all pending events
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private int countHiddenControls() throws Exception {
+		Field field = AbstractCSSSWTEngineImpl.class.getDeclaredField("hiddenControls");
+		field.setAccessible(true);
+		return ((Set<Object>) field.get(engine)).size();
+	}
+
+	@Test
+	public void testHiddenControlIsNotStyled() throws Exception {
+		Label label = createHiddenLabel();
+		assertNotEquals(RED, label.getForeground().getRGB());
+		assertEquals(1, countHiddenControls());
+	}
+
+	@Test
+	public void testControlInHiddenParentIsNotStyled() throws Exception {
+		createHiddenLabel();
+		panel.setVisible(false);
+		Label other = new Label(panel, SWT.NONE);
+		engine.applyStyles(other, false);
+		processEvents();
+		assertNotEquals(RED, other.getForeground().getRGB());
+		assertEquals("the hidden parent should be tracked", 2, countHiddenControls());
+	}
+
+	@Test
+	public void testStyledAndLaidOutOnShow() throws Exception {
+		Label label = createHiddenLabel();
+		panelLayout.layoutCount = 0;
+		label.setVisible(true);
+		assertEquals(RED, label.getForeground().getRGB());
+		assertEquals(0, countHiddenControls());
+		processEvents();
+		assertTrue("the parent should be laid out again", panelLayout.layoutCount > 0);
+	}
+
+	@Test
+	public void testStyledAndLaidOutOnPaint() throws Exception {
+		Label label = createHiddenLabel();
+		panelLayout.layoutCount = 0;
+		// painted before being shown, for example by a custom widget
+		label.notifyListeners(SWT.Paint, new Event());
+		assertEquals(RED, label.getForeground().getRGB());
+		assertEquals(0, countHiddenControls());
+		processEvents();
+		assertTrue("the parent should be laid out again", panelLayout.layoutCount > 0);
+	}
+
+	@Test
+	public void testStyledByWarmUp() throws Exception {
+		Label label = createHiddenLabel();
+		panelLayout.layoutCount = 0;
+		long end = System.currentTimeMillis() + WARM_UP_TIMEOUT;
+		while (!RED.equals(label.getForeground().getRGB()) && System.currentTimeMillis() < end) {
+			if (!display.readAndDispatch()) {
+				display.timerExec(100, () -> {
+					// wakes up the event loop to check the timeout
+				});
+				display.sleep();
+			}
+		}
+		assertEquals("the hidden control should be styled in the background", RED,
+				label.getForeground().getRGB());
+		assertEquals(0, countHiddenControls());
+		processEvents();
+		assertTrue("the parent should be laid out again", panelLayout.layoutCount > 0);
+	}
+
+	@Test
+	public void testDisposedHiddenControlIsDropped() throws Exception {
+		Label label = createHiddenLabel();
+		assertEquals(1, countHiddenControls());
+		label.dispose();
+		assertEquals(0, countHiddenControls());
+	}
+}
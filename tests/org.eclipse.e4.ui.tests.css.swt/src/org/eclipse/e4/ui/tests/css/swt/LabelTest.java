@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2016 IBM Corporation and others. All rights reserved. This
+ * Copyright (c) 2009, 2017 IBM Corporation and others. All rights reserved. This
  * program and the accompanying materials are made available under the terms of
  * the Eclipse Public License v1.0 which accompanies this distribution, and is
  * available at http://www.eclipse.org/legal/epl-v10.html
@@ -28,6 +28,14 @@ public class LabelTest extends CSSSWTTestCase {
 		assertEquals(BLUE, labelToTest.getForeground().getRGB());
 	}
 
+	@Test
+	public void testColorChangedOutsideCSSIsRestored() {
+		Label labelToTest = createTestLabel("Label { background-color: #FF0000 }");
+		labelToTest.setBackground(labelToTest.getDisplay().getSystemColor(SWT.COLOR_GREEN));
+		engine.applyStyles(labelToTest, false, true);
+		assertEquals(RED, labelToTest.getBackground().getRGB());
+	}
+
 	@Test
 	public void testFontRegular() {
 		Label labelToTest = createTestLabel("Label { font: Verdana 16px }");
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016 EclipseSource Muenchen GmbH and others.
+ * Copyright (c) 2016, 2017 EclipseSource Muenchen GmbH and others.
  *
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
@@ -14,13 +14,17 @@ package org.eclipse.e4.ui.tests.workbench;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.eclipse.core.internal.registry.ExtensionRegistry;
 import org.eclipse.core.runtime.ContributorFactorySimple;
@@ -350,6 +354,36 @@ public class ModelAssemblerTests {
 		verifyZeroInteractions(logger);
 	}
 
+	/**
+	 * Tests that fragments loaded in parallel are merged in the order they are
+	 * contributed, and that a fragment which cannot be read is reported
+	 * without affecting the others.
+	 *
+	 * @throws Exception
+	 *             if anything went wrong during the test
+	 */
+	@Test
+	public void testFragments_parallelLoading() throws Exception {
+		IContributor contributor = ContributorFactorySimple.createContributor(BUNDLE_SYMBOLIC_NAME);
+		IExtensionRegistry registry = createTestExtensionRegistry();
+		String dataFilePath = "org.eclipse.e4.ui.tests/data/ModelAssembler/parallelLoading.xml";
+		registry.addContribution(getContentsAsInputStream(dataFilePath), contributor, false, null, null, null);
+
+		assembler.processModel(true);
+
+		List<String> windowIds = new ArrayList<>();
+		for (MWindow window : application.getChildren()) {
+			windowIds.add(window.getElementId());
+		}
+		assertEquals(Arrays.asList("testParallelLoading-window1", "testParallelLoading-window2",
+				"testParallelLoading-window3"), windowIds);
+		URI brokenURI = URI.createPlatformPluginURI(
+				BUNDLE_SYMBOLIC_NAME + "/data/ModelAssembler/parallelLoading-broken.e4xmi", false);
+		verify(logger).warn(any(Throwable.class), eq("Unable to read model extension from \"" + brokenURI.toString()
+				+ "\" of \"" + BUNDLE_SYMBOLIC_NAME + "\""));
+		verifyNoMoreInteractions(logger);
+	}
+
 	/**
 	 * Tests that pre-processors running from a non-persisted state that are
 	 * marked as "always" are executed.
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.e4.ui.workbench.renderers.swt;
+
+import static org.junit.Assert.assertEquals;
+
+import org.eclipse.jface.action.MenuManager;
+import org.eclipse.swt.widgets.Display;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ContributionManagerUpdaterTest {
+
+	private static class CountingMenuManager extends MenuManager {
+		int updates;
+
+		@Override
+		public void update(boolean force) {
+			updates++;
+			super.update(force);
+		}
+	}
+
+	private Display display;
+
+	private ContributionManagerUpdater updater;
+
+	@Before
+	public void setUp() {
+		display = Display.getDefault();
+		updater = new ContributionManagerUpdater(display);
+		processEvents();
+	}
+
+	private void processEvents() {
+		while (display.readAndDispatch())
+			;
+	}
+
+	@Test
+	public void testUpdatesAreCoalesced() {
+		CountingMenuManager first = new CountingMenuManager();
+		CountingMenuManager second = new CountingMenuManager();
+		for (int i = 0; i < 10; i++) {
+			updater.scheduleUpdate(first, false);
+			updater.scheduleUpdate(second, false);
+		}
+		assertEquals(0, first.updates);
+		assertEquals(0, second.updates);
+
+		processEvents();
+		assertEquals(1, first.updates);
+		assertEquals(1, second.updates);
+
+		processEvents();
+		assertEquals(1, first.updates);
+		assertEquals(1, second.updates);
+	}
+
+	@Test
+	public void testShownMenuIsUpdatedRightAway() {
+		CountingMenuManager menu = new CountingMenuManager();
+		CountingMenuManager subMenu = new CountingMenuManager();
+		CountingMenuManager otherMenu = new CountingMenuManager();
+		menu.add(subMenu);
+		updater.scheduleUpdate(subMenu, false);
+		updater.scheduleUpdate(otherMenu, false);
+
+		updater.update(menu);
+		assertEquals(0, menu.updates);
+		assertEquals(1, subMenu.updates);
+		assertEquals(0, otherMenu.updates);
+
+		processEvents();
+		assertEquals(0, menu.updates);
+		assertEquals(1, subMenu.updates);
+		assertEquals(1, otherMenu.updates);
+	}
+}
@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.e4.ui.workbench.renderers.swt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import javax.inject.Inject;
+import javax.inject.Named;
+import org.eclipse.core.expressions.ExpressionInfo;
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.core.di.annotations.CanExecute;
+import org.eclipse.e4.core.di.annotations.Execute;
+import org.eclipse.e4.core.di.annotations.Optional;
+import org.eclipse.e4.ui.model.application.MApplication;
+import org.eclipse.e4.ui.model.application.ui.basic.MPart;
+import org.eclipse.e4.ui.model.application.ui.menu.MDirectToolItem;
+import org.eclipse.e4.ui.model.application.ui.menu.MMenuFactory;
+import org.eclipse.e4.ui.model.application.ui.menu.MToolBar;
+import org.eclipse.e4.ui.services.IServiceConstants;
+import org.eclipse.e4.ui.workbench.modeling.ESelectionService;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ToolItemUpdaterTest {
+
+	public static class SelectionHandler {
+		@CanExecute
+		public boolean canExecute(@Optional @Named(IServiceConstants.ACTIVE_SELECTION) Object selection,
+				@Optional String text) {
+			return selection != null;
+		}
+
+		@Execute
+		public void execute() {
+		}
+	}
+
+	public static class SubclassHandler extends SelectionHandler {
+	}
+
+	public static class AlwaysEnabledHandler {
+		@Execute
+		public void execute() {
+		}
+	}
+
+	public static class ContextHandler {
+		@CanExecute
+		public boolean canExecute(IEclipseContext context) {
+			return true;
+		}
+	}
+
+	public static class InjectedHandler {
+		@Inject
+		@Optional
+		@Named(IServiceConstants.ACTIVE_SELECTION)
+		Object selection;
+
+		@CanExecute
+		public boolean canExecute() {
+			return selection != null;
+		}
+	}
+
+	public static class PartHandler {
+		@CanExecute
+		public boolean canExecute(@Optional @Named(IServiceConstants.ACTIVE_PART) MPart part) {
+			return part != null && part.isDirty();
+		}
+	}
+
+	public static class ApplicationHandler {
+		@CanExecute
+		public boolean canExecute(MApplication application) {
+			return application.getSelectedElement() != null;
+		}
+	}
+
+	public static class ServiceHandler {
+		@CanExecute
+		public boolean canExecute(ESelectionService selectionService) {
+			return selectionService.getSelection() != null;
+		}
+	}
+
+	/**
+	 * Counts the enablement updates of an item reading the given variables,
+	 * or any variable if none are given.
+	 */
+	static class CountingItem extends AbstractContributionItem {
+		final String[] variables;
+		int updates;
+
+		CountingItem(MToolBar toolBar, String... variables) {
+			this.variables = variables;
+			MDirectToolItem model = MMenuFactory.INSTANCE.createDirectToolItem();
+			toolBar.getChildren().add(model);
+			setModel(model);
+		}
+
+		@Override
+		protected void updateItemEnablement() {
+			updates++;
+		}
+
+		@Override
+		protected void collectEnablementInfo(ExpressionInfo info) {
+			if (variables.length == 0) {
+				super.collectEnablementInfo(info);
+			}
+			for (String variable : variables) {
+				info.addVariableNameAccess(variable);
+			}
+		}
+
+		@Override
+		protected void updateMenuItem() {
+		}
+
+		@Override
+		protected void updateToolItem() {
+		}
+
+		@Override
+		protected void executeItem(Event event) {
+		}
+
+		@Override
+		protected boolean canExecuteItem(Event event) {
+			return true;
+		}
+
+		@Override
+		protected void handleWidgetDispose(Event event) {
+		}
+	}
+
+	private ToolItemUpdater updater;
+	private CountingItem selectionItem;
+	private CountingItem partItem;
+	private CountingItem misbehavingItem;
+
+	@Before
+	public void setUp() {
+		MToolBar toolBar = MMenuFactory.INSTANCE.createToolBar();
+		updater = new ToolItemUpdater();
+		selectionItem = new CountingItem(toolBar, IServiceConstants.ACTIVE_SELECTION);
+		partItem = new CountingItem(toolBar, IServiceConstants.ACTIVE_PART);
+		misbehavingItem = new CountingItem(toolBar);
+		updater.registerItem(selectionItem);
+		updater.registerItem(partItem);
+		updater.registerItem(misbehavingItem);
+		// the first update collects the variables read by each item
+		updater.updatePendingItems();
+		selectionItem.updates = 0;
+		partItem.updates = 0;
+		misbehavingItem.updates = 0;
+	}
+
+	@Test
+	public void testOnlyAffectedItemsUpdate() {
+		updater.updateContributionItems(Collections.singleton(IServiceConstants.ACTIVE_SELECTION));
+		updater.updatePendingItems();
+		assertEquals(1, selectionItem.updates);
+		assertEquals(0, partItem.updates);
+
+		updater.updateContributionItems(Arrays.asList(IServiceConstants.ACTIVE_SELECTION, IServiceConstants.ACTIVE_PART));
+		updater.updatePendingItems();
+		assertEquals(2, selectionItem.updates);
+		assertEquals(1, partItem.updates);
+	}
+
+	@Test
+	public void testMisbehavingItemsAlwaysUpdate() {
+		updater.updateContributionItems(Collections.singleton(IServiceConstants.ACTIVE_SELECTION));
+		updater.updatePendingItems();
+		assertEquals(1, misbehavingItem.updates);
+
+		updater.updateContributionItems(Collections.singleton("some.variable"));
+		updater.updatePendingItems();
+		assertEquals(2, misbehavingItem.updates);
+		assertEquals(1, selectionItem.updates);
+	}
+
+	@Test
+	public void testUpdatesAreCoalesced() {
+		updater.updateContributionItems(Collections.singleton(IServiceConstants.ACTIVE_SELECTION));
+		updater.updateContributionItems(Collections.singleton(IServiceConstants.ACTIVE_SELECTION));
+		updater.updateContributionItems(Collections.singleton(IServiceConstants.ACTIVE_PART));
+		assertEquals("updates wait for the next asyncExec", 0, selectionItem.updates);
+		Display display = Display.getDefault();
+		while (display.readAndDispatch()) {
+			// process the scheduled update
+		}
+		assertEquals(1, selectionItem.updates);
+		assertEquals(1, partItem.updates);
+		assertEquals(1, misbehavingItem.updates);
+
+		updater.updatePendingItems();
+		assertEquals("no update is left pending", 1, selectionItem.updates);
+	}
+
+	@Test
+	public void testCanExecuteParameters() {
+		ExpressionInfo info = new ExpressionInfo();
+		ToolItemUpdater.collectCanExecuteInfo(new SelectionHandler(), info);
+		assertNull(info.getMisbehavingExpressionTypes());
+		assertArrayEquals(new String[] { IServiceConstants.ACTIVE_SELECTION, String.class.getName() },
+				info.getAccessedVariableNames());
+
+		info = new ExpressionInfo();
+		ToolItemUpdater.collectCanExecuteInfo(new SubclassHandler(), info);
+		assertNull(info.getMisbehavingExpressionTypes());
+		assertArrayEquals(new String[] { IServiceConstants.ACTIVE_SELECTION, String.class.getName() },
+				info.getAccessedVariableNames());
+	}
+
+	@Test
+	public void testNoCanExecute() {
+		ExpressionInfo info = new ExpressionInfo();
+		ToolItemUpdater.collectCanExecuteInfo(new AlwaysEnabledHandler(), info);
+		assertNull(info.getMisbehavingExpressionTypes());
+		assertArrayEquals(new String[0], info.getAccessedVariableNames());
+
+	}
+
+	@Test
+	public void testNoHandler() {
+		ExpressionInfo info = new ExpressionInfo();
+		ToolItemUpdater.collectCanExecuteInfo(null, info);
+		assertNotNull(info.getMisbehavingExpressionTypes());
+	}
+
+	@Test
+	public void testUnknownVariables() {
+		ExpressionInfo info = new ExpressionInfo();
+		ToolItemUpdater.collectCanExecuteInfo(new ContextHandler(), info);
+		assertNotNull(info.getMisbehavingExpressionTypes());
+
+		info = new ExpressionInfo();
+		ToolItemUpdater.collectCanExecuteInfo(new InjectedHandler(), info);
+		assertNotNull(info.getMisbehavingExpressionTypes());
+
+		info = new ExpressionInfo();
+		ToolItemUpdater.collectCanExecuteInfo(new ServiceHandler(), info);
+		assertNotNull(info.getMisbehavingExpressionTypes());
+	}
+
+	@Test
+	public void testModelElementParameters() {
+		// model elements change without the variables holding them changing
+		ExpressionInfo info = new ExpressionInfo();
+		ToolItemUpdater.collectCanExecuteInfo(new PartHandler(), info);
+		assertNotNull(info.getMisbehavingExpressionTypes());
+
+		info = new ExpressionInfo();
+		ToolItemUpdater.collectCanExecuteInfo(new ApplicationHandler(), info);
+		assertNotNull(info.getMisbehavingExpressionTypes());
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2008 IBM Corporation and others.
+ * Copyright (c) 2007, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,7 +14,9 @@ package org.eclipse.core.tests.databinding.observable;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import junit.framework.TestCase;
 
@@ -253,6 +255,72 @@ public class Diffs_ListDiffTests extends TestCase {
 				Arrays.asList(new Object[] { "c", "a", "b" }));
 	}
 
+	public void testComputeListDiff_Nulls() {
+		checkComputedListDiff(Arrays.asList(new Object[] { null, "a", null }), Arrays.asList(new Object[] { "a", null }));
+		checkComputedListDiff(Arrays.asList(new Object[] { "a", "b" }), Arrays.asList(new Object[] { null, "b", null }));
+	}
+
+	public void testComputeListDiff_Duplicates() {
+		checkComputedListDiff(Arrays.asList(new Object[] { "a", "b", "a", "b" }),
+				Arrays.asList(new Object[] { "b", "a", "b", "a", "a" }));
+		checkComputedListDiff(Arrays.asList(new Object[] { "a", "a", "b", "b" }),
+				Arrays.asList(new Object[] { "b", "b", "a" }));
+	}
+
+	public void testComputeListDiff_Random() {
+		Random random = new Random(42);
+		for (int i = 0; i < 2000; i++) {
+			checkComputedListDiff(randomList(random, random.nextInt(20), 6), randomList(random, random.nextInt(20), 6));
+		}
+	}
+
+	public void testComputeListDiff_RandomEdits() {
+		Random random = new Random(7);
+		for (int i = 0; i < 200; i++) {
+			List<Object> oldList = randomList(random, 200, 50);
+			List<Object> newList = new ArrayList<Object>(oldList);
+			for (int edits = random.nextInt(20); edits > 0; edits--) {
+				if (random.nextBoolean() && !newList.isEmpty()) {
+					newList.remove(random.nextInt(newList.size()));
+				} else {
+					newList.add(random.nextInt(newList.size() + 1), "x" + random.nextInt(10));
+				}
+			}
+			checkComputedListDiff(oldList, newList);
+		}
+	}
+
+	public void testComputeListDiff_Shuffle() {
+		List<Object> oldList = new ArrayList<Object>();
+		for (int i = 0; i < 5000; i++) {
+			oldList.add(Integer.valueOf(i));
+		}
+		List<Object> newList = new ArrayList<Object>(oldList);
+		Collections.shuffle(newList, new Random(1));
+		checkComputedListDiff(oldList, newList);
+	}
+
+	public void testComputeListDiff_LargeListSingleMove() {
+		List<Object> oldList = new ArrayList<Object>();
+		for (int i = 0; i < 100000; i++) {
+			oldList.add(Integer.valueOf(i));
+		}
+		List<Object> newList = new ArrayList<Object>(oldList);
+		newList.add(90000, newList.remove(10));
+		ListDiff diff = Diffs.computeListDiff(oldList, newList);
+		assertEquals(2, diff.getDifferences().length);
+		checkComputedListDiff(oldList, newList);
+	}
+
+	private static List<Object> randomList(Random random, int size, int range) {
+		List<Object> list = new ArrayList<Object>(size);
+		for (int i = 0; i < size; i++) {
+			int value = random.nextInt(range + 1);
+			list.add(value == range ? null : "e" + value);
+		}
+		return list;
+	}
+
 	private static void checkComputedListDiff(List<Object> oldList, List<Object> newList) {
 		ListDiff diff = Diffs.computeListDiff(oldList, newList);
 
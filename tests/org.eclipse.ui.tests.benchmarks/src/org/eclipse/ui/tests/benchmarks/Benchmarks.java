@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.tests.benchmarks;
+
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Helpers shared by the benchmarks.
+ */
+final class Benchmarks {
+
+	private static final String[] WORDS = { "Abstract", "Tree", "Viewer", "Table", "Content", "Label", "Provider",
+			"Observable", "List", "Binding", "Style", "Sheet", "Command", "Handler", "Manager", "Element" };
+
+	private Benchmarks() {
+	}
+
+	/**
+	 * Returns the display of the calling thread, creating it if necessary.
+	 * Benchmarks run their setup and measurement on the same thread, which
+	 * becomes the user interface thread.
+	 *
+	 * @return the display
+	 */
+	static Display getDisplay() {
+		Display display = Display.getCurrent();
+		return display == null ? new Display() : display;
+	}
+
+	/**
+	 * Returns a camel case name which is unique for the given index, like the
+	 * names of types shown in a viewer or searched for in a dialog.
+	 *
+	 * @param index
+	 *            the index
+	 * @return the name
+	 */
+	static String name(int index) {
+		StringBuilder name = new StringBuilder();
+		int value = index;
+		do {
+			name.append(WORDS[value % WORDS.length]);
+			value /= WORDS.length;
+		} while (value > 0);
+		name.append(index);
+		return name.toString();
+	}
+}
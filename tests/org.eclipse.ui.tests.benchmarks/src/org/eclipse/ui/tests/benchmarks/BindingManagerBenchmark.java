@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.tests.benchmarks;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.commands.Category;
+import org.eclipse.core.commands.Command;
+import org.eclipse.core.commands.CommandManager;
+import org.eclipse.core.commands.ParameterizedCommand;
+import org.eclipse.core.commands.common.NotDefinedException;
+import org.eclipse.core.commands.contexts.ContextManager;
+import org.eclipse.jface.bindings.Binding;
+import org.eclipse.jface.bindings.BindingManager;
+import org.eclipse.jface.bindings.Scheme;
+import org.eclipse.jface.bindings.keys.KeyBinding;
+import org.eclipse.jface.bindings.keys.KeySequence;
+import org.eclipse.jface.bindings.keys.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how {@link BindingManager} recomputes its active bindings when a
+ * part context is activated and the previous one deactivated, as done whenever
+ * the user switches between parts. The binding manager caches the bindings of
+ * each state, so each iteration starts with a new binding manager and
+ * activates every part once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20, batchSize = BindingManagerBenchmark.CONTEXTS)
+@Measurement(iterations = 20, batchSize = BindingManagerBenchmark.CONTEXTS)
+@Fork(1)
+public class BindingManagerBenchmark {
+
+	private static final String WINDOW_CONTEXT_ID = "org.eclipse.ui.contexts.window"; //$NON-NLS-1$
+
+	private static final String SCHEME_ID = "org.eclipse.ui.defaultAcceleratorConfiguration"; //$NON-NLS-1$
+
+	private static final String KEYS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ"; //$NON-NLS-1$
+
+	/**
+	 * The number of part contexts, each one a child of the window context.
+	 */
+	static final int CONTEXTS = 50;
+
+	/**
+	 * The total number of bindings, spread over the window and part contexts.
+	 */
+	@Param({ "1000", "5000", "10000" })
+	public int bindings;
+
+	private ContextManager contextManager;
+
+	private CommandManager commandManager;
+
+	private Binding[] allBindings;
+
+	private BindingManager bindingManager;
+
+	private Set<String> activeContextIds;
+
+	private int part;
+
+	@Setup(Level.Trial)
+	public void setUp() throws ParseException {
+		contextManager = new ContextManager();
+		contextManager.getContext(WINDOW_CONTEXT_ID).define("Window", null, null); //$NON-NLS-1$
+		for (int i = 0; i < CONTEXTS; i++) {
+			contextManager.getContext(contextId(i)).define(contextId(i), null, WINDOW_CONTEXT_ID);
+		}
+		commandManager = new CommandManager();
+		Category category = commandManager.getCategory("benchmark"); //$NON-NLS-1$
+		category.define("Benchmark", null); //$NON-NLS-1$
+		allBindings = new Binding[bindings];
+		for (int i = 0; i < bindings; i++) {
+			String id = "command." + i; //$NON-NLS-1$
+			Command command = commandManager.getCommand(id);
+			command.define(id, null, category);
+			// a fifth of the bindings belong to the window, the others to one
+			// of the parts, where they override the bindings of the window
+			String contextId;
+			int key;
+			if (i % 5 == 0) {
+				contextId = WINDOW_CONTEXT_ID;
+				key = i / 5;
+			} else {
+				contextId = contextId(i % CONTEXTS);
+				key = i / CONTEXTS;
+			}
+			KeySequence sequence = KeySequence.getInstance("M1+M2+" + KEYS.charAt(key % KEYS.length()) + ' ' //$NON-NLS-1$
+					+ KEYS.charAt(key / KEYS.length() % KEYS.length()) + ' ' + KEYS.charAt(key / 676));
+			allBindings[i] = new KeyBinding(sequence, new ParameterizedCommand(command, null), SCHEME_ID, contextId,
+					null, null, null, Binding.SYSTEM);
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void setUpBindingManager() throws NotDefinedException {
+		if (bindingManager != null) {
+			contextManager.removeContextManagerListener(bindingManager);
+		}
+		bindingManager = new BindingManager(contextManager, commandManager);
+		Scheme scheme = bindingManager.getScheme(SCHEME_ID);
+		scheme.define("Default", null, null); //$NON-NLS-1$
+		bindingManager.setActiveScheme(scheme);
+		bindingManager.setBindings(allBindings);
+
+		part = 0;
+		activeContextIds = new HashSet<>();
+		activeContextIds.add(WINDOW_CONTEXT_ID);
+		activeContextIds.add(contextId(part));
+		contextManager.setActiveContextIds(new HashSet<>(activeContextIds));
+		bindingManager.getPerfectMatch(KeySequence.getInstance());
+	}
+
+	private static String contextId(int index) {
+		return "context." + index; //$NON-NLS-1$
+	}
+
+	/**
+	 * Activates the next part and deactivates the previous one.
+	 */
+	@Benchmark
+	public Binding activatePart() {
+		activeContextIds.remove(contextId(part));
+		part = (part + 1) % CONTEXTS;
+		activeContextIds.add(contextId(part));
+		contextManager.setActiveContextIds(new HashSet<>(activeContextIds));
+		return bindingManager.getPerfectMatch(KeySequence.getInstance());
+	}
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.tests.benchmarks;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.commands.Category;
+import org.eclipse.core.commands.Command;
+import org.eclipse.core.commands.CommandManager;
+import org.eclipse.core.commands.ParameterizedCommand;
+import org.eclipse.core.commands.contexts.Context;
+import org.eclipse.core.commands.contexts.ContextManager;
+import org.eclipse.e4.ui.bindings.internal.BindingTable;
+import org.eclipse.jface.bindings.Binding;
+import org.eclipse.jface.bindings.keys.KeyBinding;
+import org.eclipse.jface.bindings.keys.KeySequence;
+import org.eclipse.jface.bindings.keys.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link BindingTable#getPartialMatches(org.eclipse.jface.bindings.TriggerSequence)}
+ * for a table holding many two-stroke key bindings, as done for every key
+ * stroke while the user types a multi-stroke binding.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BindingTableBenchmark {
+
+	private static final String CONTEXT_ID = "org.eclipse.ui.contexts.window"; //$NON-NLS-1$
+
+	private static final String SCHEME_ID = "org.eclipse.ui.defaultAcceleratorConfiguration"; //$NON-NLS-1$
+
+	private static final String KEYS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ"; //$NON-NLS-1$
+
+	/**
+	 * The number of first key strokes; each one starts a binding for every
+	 * letter as the second key stroke.
+	 */
+	@Param({ "4", "26" })
+	public int prefixes;
+
+	private BindingTable table;
+
+	private KeySequence prefix;
+
+	private KeySequence complete;
+
+	@Setup
+	public void setUp() throws ParseException {
+		ContextManager contextManager = new ContextManager();
+		Context context = contextManager.getContext(CONTEXT_ID);
+		context.define("Window", null, null); //$NON-NLS-1$
+		CommandManager commandManager = new CommandManager();
+		Category category = commandManager.getCategory("benchmark"); //$NON-NLS-1$
+		category.define("Benchmark", null); //$NON-NLS-1$
+		table = new BindingTable(context);
+		for (int i = 0; i < prefixes; i++) {
+			for (int j = 0; j < KEYS.length(); j++) {
+				String id = "command." + i + '.' + j; //$NON-NLS-1$
+				Command command = commandManager.getCommand(id);
+				command.define(id, null, category);
+				KeySequence sequence = KeySequence.getInstance("M1+M2+" + KEYS.charAt(i) + ' ' + KEYS.charAt(j)); //$NON-NLS-1$
+				table.addBinding(new KeyBinding(sequence, new ParameterizedCommand(command, null), SCHEME_ID, CONTEXT_ID,
+						null, null, null, Binding.SYSTEM));
+			}
+		}
+		prefix = KeySequence.getInstance("M1+M2+" + KEYS.charAt(prefixes - 1)); //$NON-NLS-1$
+		complete = KeySequence.getInstance("M1+M2+" + KEYS.charAt(prefixes - 1) + " Z"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	@Benchmark
+	public Collection<Binding> getPartialMatches() {
+		return table.getPartialMatches(prefix);
+	}
+
+	@Benchmark
+	public Collection<Binding> getPartialMatchesOfCompleteSequence() {
+		return table.getPartialMatches(complete);
+	}
+}
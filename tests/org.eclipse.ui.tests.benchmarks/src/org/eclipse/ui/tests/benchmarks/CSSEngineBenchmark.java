@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.tests.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.e4.ui.css.core.dom.properties.css2.ICSSPropertyBackgroundHandler;
+import org.eclipse.e4.ui.css.core.dom.properties.css2.ICSSPropertyFontHandler;
+import org.eclipse.e4.ui.css.core.dom.properties.css2.ICSSPropertyTextHandler;
+import org.eclipse.e4.ui.css.core.engine.CSSEngine;
+import org.eclipse.e4.ui.css.swt.CSSSWTConstants;
+import org.eclipse.e4.ui.css.swt.dom.SWTElementProvider;
+import org.eclipse.e4.ui.css.swt.engine.CSSSWTEngineImpl;
+import org.eclipse.e4.ui.css.swt.properties.css2.CSSPropertyBackgroundSWTHandler;
+import org.eclipse.e4.ui.css.swt.properties.css2.CSSPropertyFontSWTHandler;
+import org.eclipse.e4.ui.css.swt.properties.css2.CSSPropertyTextSWTHandler;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Shell;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link CSSEngine#applyStyles(Object, boolean)} on a shell with many
+ * widgets.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CSSEngineBenchmark {
+
+	private static final String STYLE_SHEET = "Shell { background-color: #ffffff; }\n" //$NON-NLS-1$
+			+ "Composite { background-color: #f0f0f0; }\n" //$NON-NLS-1$
+			+ "Composite.group { background-color: #e0e0e0; }\n" //$NON-NLS-1$
+			+ "Label { color: #202020; }\n" //$NON-NLS-1$
+			+ "Label.warning { color: #c00000; font-weight: bold; }\n" //$NON-NLS-1$
+			+ "Composite.group > Button { color: #000080; }\n" //$NON-NLS-1$
+			+ "Button:disabled { color: #808080; }\n" //$NON-NLS-1$
+			+ "#first { font-style: italic; }\n"; //$NON-NLS-1$
+
+	/**
+	 * A CSS engine which registers the SWT element provider and property
+	 * handlers directly, as there is no extension registry outside of OSGi.
+	 */
+	private static class BenchmarkCSSEngine extends CSSSWTEngineImpl {
+		BenchmarkCSSEngine(Display display) {
+			super(display);
+		}
+
+		@Override
+		protected void initializeCSSElementProvider() {
+			setElementProvider(SWTElementProvider.INSTANCE);
+		}
+
+		@Override
+		protected void initializeCSSPropertyHandlers() {
+			registerCSSPropertyHandler(ICSSPropertyBackgroundHandler.class, CSSPropertyBackgroundSWTHandler.INSTANCE);
+			registerCSSPropertyHandler(ICSSPropertyTextHandler.class, CSSPropertyTextSWTHandler.INSTANCE);
+			registerCSSPropertyHandler(ICSSPropertyFontHandler.class, CSSPropertyFontSWTHandler.INSTANCE);
+		}
+	}
+
+	/**
+	 * The number of groups of widgets in the shell. Each group has a label and
+	 * five buttons.
+	 */
+	@Param({ "20", "200" })
+	public int groups;
+
+	private Display display;
+
+	private Shell shell;
+
+	private CSSEngine engine;
+
+	@Setup
+	public void setUp() throws IOException {
+		display = Benchmarks.getDisplay();
+		engine = new BenchmarkCSSEngine(display);
+		engine.parseStyleSheet(new StringReader(STYLE_SHEET));
+		shell = new Shell(display);
+		shell.setLayout(new FillLayout(SWT.VERTICAL));
+		for (int i = 0; i < groups; i++) {
+			Composite group = new Composite(shell, SWT.NONE);
+			group.setLayout(new FillLayout());
+			group.setData(CSSSWTConstants.CSS_CLASS_NAME_KEY, "group"); //$NON-NLS-1$
+			Label label = new Label(group, SWT.NONE);
+			label.setText(Benchmarks.name(i));
+			if (i % 10 == 0) {
+				label.setData(CSSSWTConstants.CSS_CLASS_NAME_KEY, "warning"); //$NON-NLS-1$
+			}
+			for (int j = 0; j < 5; j++) {
+				Button button = new Button(group, SWT.PUSH);
+				button.setText(Benchmarks.name(j));
+				button.setEnabled(j != 4);
+			}
+		}
+		shell.getChildren()[0].setData(CSSSWTConstants.CSS_ID_KEY, "first"); //$NON-NLS-1$
+	}
+
+	@TearDown
+	public void tearDown() {
+		shell.dispose();
+		engine.dispose();
+	}
+
+	@Benchmark
+	public void applyStyles() {
+		engine.applyStyles(shell, true);
+	}
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.tests.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.databinding.observable.Diffs;
+import org.eclipse.core.databinding.observable.list.ListDiff;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Diffs#computeListDiff(List, List)}, which observable lists
+ * use to compute the changes to report when their contents are replaced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ListDiffBenchmark {
+
+	@Param({ "10000", "100000", "1000000" })
+	public int size;
+
+	/**
+	 * How the new list differs from the old one: a few elements inserted,
+	 * a few removed, a few moved, or all elements shuffled.
+	 */
+	@Param({ "insert", "remove", "move", "shuffle" })
+	public String change;
+
+	private List<Object> oldList;
+
+	private List<Object> newList;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		oldList = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			oldList.add(Benchmarks.name(i));
+		}
+		newList = new ArrayList<>(oldList);
+		int edits = Math.max(1, size / 100);
+		switch (change) {
+		case "insert": //$NON-NLS-1$
+			for (int i = 0; i < edits; i++) {
+				newList.add(random.nextInt(newList.size() + 1), Benchmarks.name(size + i));
+			}
+			break;
+		case "remove": //$NON-NLS-1$
+			for (int i = 0; i < edits; i++) {
+				newList.remove(random.nextInt(newList.size()));
+			}
+			break;
+		case "move": //$NON-NLS-1$
+			for (int i = 0; i < edits; i++) {
+				Object element = newList.remove(random.nextInt(newList.size()));
+				newList.add(random.nextInt(newList.size() + 1), element);
+			}
+			break;
+		default:
+			Collections.shuffle(newList, random);
+		}
+	}
+
+	@Benchmark
+	public ListDiff computeListDiff() {
+		return Diffs.computeListDiff(oldList, newList);
+	}
+}
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.tests.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.ui.dialogs.SearchPattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link SearchPattern#matches(String)} over the names shown in a
+ * filtered items selection dialog.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SearchPatternBenchmark {
+
+	private static final int NAME_COUNT = 10000;
+
+	/**
+	 * Prefix, camel case, pattern and exact match patterns.
+	 */
+	@Param({ "abstract", "ATV", "*Provider?", "StyleViewer42" })
+	public String pattern;
+
+	private SearchPattern searchPattern;
+
+	private String[] names;
+
+	@Setup
+	public void setUp() {
+		searchPattern = new SearchPattern();
+		searchPattern.setPattern(pattern);
+		names = new String[NAME_COUNT];
+		for (int i = 0; i < NAME_COUNT; i++) {
+			names[i] = Benchmarks.name(i);
+		}
+	}
+
+	@Benchmark
+	public int matches() {
+		int count = 0;
+		for (String name : names) {
+			if (searchPattern.matches(name)) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
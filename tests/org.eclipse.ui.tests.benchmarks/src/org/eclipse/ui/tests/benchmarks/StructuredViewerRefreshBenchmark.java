@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.tests.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.ViewerComparator;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link org.eclipse.jface.viewers.StructuredViewer#refresh()} of a
+ * sorted table viewer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StructuredViewerRefreshBenchmark {
+
+	@Param({ "1000", "10000" })
+	public int size;
+
+	private Display display;
+
+	private Shell shell;
+
+	private TableViewer viewer;
+
+	@Setup
+	public void setUp() {
+		display = Benchmarks.getDisplay();
+		shell = new Shell(display);
+		viewer = new TableViewer(shell);
+		viewer.setContentProvider(ArrayContentProvider.getInstance());
+		viewer.setLabelProvider(new LabelProvider());
+		viewer.setComparator(new ViewerComparator());
+		List<String> input = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			input.add(Benchmarks.name(i));
+		}
+		viewer.setInput(input);
+	}
+
+	@TearDown
+	public void tearDown() {
+		shell.dispose();
+	}
+
+	@Benchmark
+	public void refresh() {
+		viewer.refresh();
+	}
+
+	@Benchmark
+	public void refreshWithoutLabels() {
+		viewer.refresh(false);
+	}
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.tests.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.ITreeContentProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.StructuredSelection;
+import org.eclipse.jface.viewers.TreeViewer;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link org.eclipse.jface.viewers.AbstractTreeViewer#getSelection()}
+ * when many leaves of a tree are selected.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TreeSelectionBenchmark {
+
+	private static final int PARENT_COUNT = 20;
+
+	@Param({ "1000" })
+	public int childrenPerParent;
+
+	private Display display;
+
+	private Shell shell;
+
+	private TreeViewer viewer;
+
+	@Setup
+	public void setUp() {
+		final Map<Object, Object[]> children = new HashMap<>();
+		Object[] parents = new Object[PARENT_COUNT];
+		Object[] leaves = new Object[PARENT_COUNT * childrenPerParent];
+		for (int i = 0; i < PARENT_COUNT; i++) {
+			parents[i] = "parent" + i; //$NON-NLS-1$
+			Object[] parentChildren = new Object[childrenPerParent];
+			for (int j = 0; j < childrenPerParent; j++) {
+				parentChildren[j] = Benchmarks.name(i * childrenPerParent + j);
+				leaves[i * childrenPerParent + j] = parentChildren[j];
+			}
+			children.put(parents[i], parentChildren);
+		}
+		display = Benchmarks.getDisplay();
+		shell = new Shell(display);
+		viewer = new TreeViewer(shell, SWT.MULTI);
+		viewer.setContentProvider(new ITreeContentProvider() {
+			@Override
+			public Object[] getElements(Object inputElement) {
+				return parents;
+			}
+
+			@Override
+			public Object[] getChildren(Object parentElement) {
+				Object[] result = children.get(parentElement);
+				return result == null ? new Object[0] : result;
+			}
+
+			@Override
+			public Object getParent(Object element) {
+				return null;
+			}
+
+			@Override
+			public boolean hasChildren(Object element) {
+				return children.containsKey(element);
+			}
+		});
+		viewer.setLabelProvider(new LabelProvider());
+		viewer.setUseHashlookup(true);
+		viewer.setInput(this);
+		viewer.expandAll();
+		viewer.setSelection(new StructuredSelection(leaves));
+	}
+
+	@TearDown
+	public void tearDown() {
+		shell.dispose();
+	}
+
+	@Benchmark
+	public ISelection getSelection() {
+		return viewer.getSelection();
+	}
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.tests.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jface.viewers.ITreeContentProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.TreeViewer;
+import org.eclipse.jface.viewers.ViewerComparator;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link org.eclipse.jface.viewers.AbstractTreeViewer#add(Object, Object[])}
+ * into an expanded node of a sorted tree viewer which already has children.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TreeViewerAddBenchmark {
+
+	private static final String ROOT = "root"; //$NON-NLS-1$
+
+	private static final String PARENT = "parent"; //$NON-NLS-1$
+
+	@Param({ "100", "1000" })
+	public int count;
+
+	private Display display;
+
+	private Shell shell;
+
+	private TreeViewer viewer;
+
+	private Object[] existing;
+
+	private Object[] added;
+
+	@Setup
+	public void setUp() {
+		existing = new Object[count];
+		added = new Object[count];
+		for (int i = 0; i < count; i++) {
+			existing[i] = Benchmarks.name(2 * i);
+			added[i] = Benchmarks.name(2 * i + 1);
+		}
+		display = Benchmarks.getDisplay();
+		shell = new Shell(display);
+		viewer = new TreeViewer(shell);
+		viewer.setContentProvider(new ITreeContentProvider() {
+			@Override
+			public Object[] getElements(Object inputElement) {
+				return new Object[] { PARENT };
+			}
+
+			@Override
+			public Object[] getChildren(Object parentElement) {
+				return PARENT.equals(parentElement) ? existing : new Object[0];
+			}
+
+			@Override
+			public Object getParent(Object element) {
+				return PARENT.equals(element) ? ROOT : PARENT;
+			}
+
+			@Override
+			public boolean hasChildren(Object element) {
+				return PARENT.equals(element);
+			}
+		});
+		viewer.setLabelProvider(new LabelProvider());
+		viewer.setComparator(new ViewerComparator());
+		viewer.setUseHashlookup(true);
+		viewer.setInput(ROOT);
+		viewer.expandAll();
+	}
+
+	@TearDown(Level.Invocation)
+	public void removeAdded() {
+		viewer.remove(PARENT, added);
+	}
+
+	@TearDown
+	public void tearDown() {
+		shell.dispose();
+	}
+
+	@Benchmark
+	public void add() {
+		viewer.add(PARENT, added);
+	}
+}
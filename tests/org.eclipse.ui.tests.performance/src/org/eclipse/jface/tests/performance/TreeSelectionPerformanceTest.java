@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.jface.tests.performance;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jface.viewers.ITreeSelection;
+import org.eclipse.jface.viewers.StructuredSelection;
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.ui.tests.performance.TestRunnable;
+
+/**
+ * Measures the cost of computing the selection of a tree viewer with many
+ * selected items.
+ *
+ * @since 3.13
+ */
+public class TreeSelectionPerformanceTest extends TreeTest {
+
+	static int PARENT_COUNT = 20;
+
+	static int CHILD_COUNT = 1000;
+
+	public TreeSelectionPerformanceTest(String testName, int tagging) {
+		super(testName, tagging);
+	}
+
+	public TreeSelectionPerformanceTest(String testName) {
+		super(testName);
+	}
+
+	/**
+	 * Test getting the selection of 20000 items ten times.
+	 */
+	public void testGetSelection() {
+		tagIfNecessary("JFace - Get selection of 20000 items in TreeViewer 10 times",
+				Dimension.ELAPSED_PROCESS);
+
+		openBrowser();
+
+		exercise(new TestRunnable() {
+			@Override
+			public void run() {
+				TestTreeElement input = new TestTreeElement(0, null);
+				input.createChildren(PARENT_COUNT);
+				List<Object> selected = new ArrayList<>();
+				for (TestTreeElement parent : input.children) {
+					parent.createChildren(CHILD_COUNT);
+					for (TestTreeElement child : parent.children) {
+						selected.add(child);
+					}
+				}
+				viewer.setInput(input);
+				viewer.expandAll();
+				viewer.setSelection(new StructuredSelection(selected));
+				processEvents();
+
+				startMeasuring();
+				for (int i = 0; i < 10; i++) {
+					ITreeSelection selection = viewer.getStructuredSelection();
+					assertEquals(selected.size(), selection.size());
+				}
+				stopMeasuring();
+			}
+		}, MIN_ITERATIONS, slowGTKIterations(), JFacePerformanceSuite.MAX_TIME);
+
+		commitMeasurements();
+		assertPerformance();
+	}
+}
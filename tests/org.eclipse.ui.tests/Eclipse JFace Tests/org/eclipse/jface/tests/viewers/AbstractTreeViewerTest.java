@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2006 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,7 +15,15 @@ import java.util.List;
 
 import org.eclipse.jface.viewers.AbstractTreeViewer;
 import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.ITableLabelProvider;
 import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.jface.viewers.ITreeSelection;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.StructuredSelection;
+import org.eclipse.jface.viewers.TreePath;
+import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.jface.viewers.ViewerFilter;
+import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.widgets.Item;
 import org.eclipse.swt.widgets.Widget;
 
@@ -78,7 +86,8 @@ public abstract class AbstractTreeViewerTest extends StructuredItemViewerTest {
     public void testDeleteChildExpanded() {
         TestElement first = fRootElement.getFirstChild();
         TestElement first2 = first.getFirstChild();
-        fTreeViewer.expandToLevel(first2, 0);
+        fTreeViewer.setExpandedState(first, true);
+        fTreeViewer.setExpandedState(first2, true);
 
         assertNotNull("first child is visible", fViewer.testFindItem(first2));
         first.deleteChild(first2);
@@ -94,7 +103,8 @@ public abstract class AbstractTreeViewerTest extends StructuredItemViewerTest {
     public void testDeleteChildrenExpanded() {
         TestElement first = fRootElement.getFirstChild();
         TestElement first2 = first.getFirstChild();
-        fTreeViewer.expandToLevel(first2, 0);
+        fTreeViewer.setExpandedState(first, true);
+        fTreeViewer.setExpandedState(first2, true);
         assertNotNull("first child is visible", fViewer.testFindItem(first2));
 
         first.deleteChildren();
@@ -105,7 +115,8 @@ public abstract class AbstractTreeViewerTest extends StructuredItemViewerTest {
         TestElement first = fRootElement.getFirstChild();
         TestElement first2 = first.getFirstChild();
         assertNull("first child is not visible", fViewer.testFindItem(first2));
-        fTreeViewer.expandToLevel(first2, 0);
+        fTreeViewer.setExpandedState(first, true);
+        fTreeViewer.setExpandedState(first2, true);
         assertNotNull("first child is visible", fViewer.testFindItem(first2));
     }
 
@@ -131,7 +142,8 @@ public abstract class AbstractTreeViewerTest extends StructuredItemViewerTest {
     public void testFilterExpanded() {
         TestElement first = fRootElement.getFirstChild();
         TestElement first2 = first.getFirstChild();
-        fTreeViewer.expandToLevel(first2, 0);
+        fTreeViewer.setExpandedState(first, true);
+        fTreeViewer.setExpandedState(first2, true);
 
         fTreeViewer.addFilter(new TestLabelFilter());
         assertTrue("filtered count", getItemCount() == 5);
@@ -233,7 +245,8 @@ public abstract class AbstractTreeViewerTest extends StructuredItemViewerTest {
     public void testRenameChildElement() {
         TestElement first = fRootElement.getFirstChild();
         TestElement first2 = first.getFirstChild();
-        fTreeViewer.expandToLevel(first2, 0);
+        fTreeViewer.setExpandedState(first, true);
+        fTreeViewer.setExpandedState(first2, true);
         assertNotNull("first child is visible", fViewer.testFindItem(first2));
 
         String newLabel = first2.getLabel() + " changed";
@@ -244,6 +257,185 @@ public abstract class AbstractTreeViewerTest extends StructuredItemViewerTest {
                 ((Item) widget).getText());
     }
 
+    public void testUpdateBatchDefersAdd() {
+        fTreeViewer.beginUpdateBatch();
+        TestElement newElement = fRootElement.addChild(TestModelChange.INSERT);
+        assertTrue(fTreeViewer.isUpdateBatchOpen());
+        assertNull("new sibling is not visible before commit", fViewer.testFindItem(newElement));
+        fTreeViewer.commitUpdateBatch();
+        assertFalse(fTreeViewer.isUpdateBatchOpen());
+        assertNotNull("new sibling is visible after commit", fViewer.testFindItem(newElement));
+    }
+
+    public void testUpdateBatchCancelsAddAndRemove() {
+        TestElement first = fRootElement.getFirstChild();
+        fTreeViewer.beginUpdateBatch();
+        TestElement newElement = fRootElement.addChild(TestModelChange.INSERT);
+        fRootElement.deleteChild(newElement);
+        fRootElement.deleteChild(first);
+        fTreeViewer.commitUpdateBatch();
+        assertNull("added and removed sibling is not visible", fViewer.testFindItem(newElement));
+        assertNull("removed sibling is not visible", fViewer.testFindItem(first));
+    }
+
+    /**
+     * Counts the label updates of an element, in viewers with and without
+     * columns.
+     */
+    private static class CountingLabelProvider extends LabelProvider implements ITableLabelProvider {
+        final Object element;
+        int updates;
+
+        CountingLabelProvider(Object element) {
+            this.element = element;
+        }
+
+        @Override
+        public String getText(Object e) {
+            if (element.equals(e)) {
+                updates++;
+            }
+            return e.toString();
+        }
+
+        @Override
+        public String getColumnText(Object e, int columnIndex) {
+            if (element.equals(e) && columnIndex == 0) {
+                updates++;
+            }
+            return e.toString();
+        }
+
+        @Override
+        public Image getColumnImage(Object e, int columnIndex) {
+            return null;
+        }
+    }
+
+    public void testUpdateBatchMergesUpdates() {
+        TestElement first = fRootElement.getFirstChild();
+        CountingLabelProvider labelProvider = new CountingLabelProvider(first);
+        fViewer.setLabelProvider(labelProvider);
+        labelProvider.updates = 0;
+        fTreeViewer.beginUpdateBatch();
+        first.setLabel("one");
+        fTreeViewer.beginUpdateBatch();
+        first.setLabel("two");
+        fTreeViewer.commitUpdateBatch();
+        assertTrue("nested commit keeps the batch open", fTreeViewer.isUpdateBatchOpen());
+        fTreeViewer.commitUpdateBatch();
+        Widget widget = fViewer.testFindItem(first);
+        assertTrue(widget instanceof Item);
+        assertEquals("changed label", first.getID() + " two", ((Item) widget).getText());
+        assertEquals("label updated once", 1, labelProvider.updates);
+    }
+
+    public void testUpdateBatchRefreshOfNull() {
+        fTreeViewer.beginUpdateBatch();
+        TestElement newElement = fRootElement.addChild(TestModelChange.INSERT);
+        fTreeViewer.refresh(null);
+        fTreeViewer.commitUpdateBatch();
+        assertNotNull("refresh of null refreshes the input", fViewer.testFindItem(newElement));
+    }
+
+    public void testUpdateBatchWithoutInput() {
+        fTreeViewer.setInput(null);
+        fTreeViewer.beginUpdateBatch();
+        fTreeViewer.refresh();
+        fTreeViewer.commitUpdateBatch();
+        assertEquals(0, getItemCount());
+    }
+
+    public void testUpdateBatchRemovesTreePathBelowItsParent() {
+        TestElement first = fRootElement.getFirstChild();
+        TestElement last = fRootElement.getLastChild();
+        fTreeViewer.setExpandedState(first, true);
+        fTreeViewer.setExpandedState(last, true);
+        TestElement shared = new TestElement(first.fModel, first);
+        fTreeViewer.beginUpdateBatch();
+        fTreeViewer.add(first, shared);
+        fTreeViewer.add(last, shared);
+        fTreeViewer.remove(new TreePath(new Object[] { first, shared }));
+        fTreeViewer.commitUpdateBatch();
+        assertEquals("element is only added below the other parent", 1, fViewer.testFindItems(shared).length);
+        fTreeViewer.setSelection(new StructuredSelection(shared));
+        TreePath[] paths = ((ITreeSelection) fTreeViewer.getSelection()).getPaths();
+        assertEquals(1, paths.length);
+        assertEquals(new TreePath(new Object[] { last, shared }), paths[0]);
+    }
+
+    public void testSelectionPathsShareParent() {
+        TestElement first = fRootElement.getFirstChild();
+        fTreeViewer.setExpandedState(first, true);
+        TestElement child1 = first.getChildAt(0);
+        TestElement child2 = first.getChildAt(1);
+        fTreeViewer.setSelection(new StructuredSelection(new Object[] { child1, child2 }));
+        TreePath[] paths = ((ITreeSelection) fTreeViewer.getSelection()).getPaths();
+        assertEquals(2, paths.length);
+        assertEquals(new TreePath(new Object[] { first, child1 }), paths[0]);
+        assertEquals(new TreePath(new Object[] { first, child2 }), paths[1]);
+        assertSame(paths[0].getParentPath(), paths[1].getParentPath());
+    }
+
+    public void testExpandedStateSnapshot() {
+        fTreeViewer.setExpandedStateTracking(true);
+        TestElement first = fRootElement.getFirstChild();
+        TestElement first2 = first.getFirstChild();
+        fTreeViewer.setExpandedState(first, true);
+        fTreeViewer.setExpandedState(first2, true);
+        TreePath[] snapshot = fTreeViewer.getExpandedStateSnapshot();
+        assertEquals(2, snapshot.length);
+        assertEquals(new TreePath(new Object[] { first }), snapshot[0]);
+        assertEquals(new TreePath(new Object[] { first, first2 }), snapshot[1]);
+
+        fTreeViewer.collapseAll();
+        assertEquals(0, fTreeViewer.getExpandedStateSnapshot().length);
+        assertFalse(fTreeViewer.getExpandedState(first));
+
+        fTreeViewer.restoreExpandedStateSnapshot(snapshot);
+        assertTrue(fTreeViewer.getExpandedState(first));
+        assertTrue(fTreeViewer.getExpandedState(first2));
+        assertEquals(2, fTreeViewer.getExpandedTreePaths().length);
+    }
+
+    public void testRefreshRestoresTrackedExpansion() {
+        fTreeViewer.setExpandedStateTracking(true);
+        final TestElement first = fRootElement.getFirstChild();
+        fTreeViewer.setExpandedState(first, true);
+        ViewerFilter hideFirst = new ViewerFilter() {
+            @Override
+            public boolean select(Viewer viewer, Object parentElement, Object element) {
+                return element != first;
+            }
+        };
+        fTreeViewer.addFilter(hideFirst);
+        assertNull("first is filtered", fViewer.testFindItem(first));
+        fTreeViewer.removeFilter(hideFirst);
+        assertTrue("expansion is restored", fTreeViewer.getExpandedState(first));
+    }
+
+    public void testFilteredElementsKeepTrackedExpansion() {
+        fTreeViewer.setExpandedStateTracking(true);
+        final TestElement first = fRootElement.getFirstChild();
+        TestElement first2 = first.getFirstChild();
+        fTreeViewer.setExpandedState(first, true);
+        fTreeViewer.setExpandedState(first2, true);
+        ViewerFilter hideFirst = new ViewerFilter() {
+            @Override
+            public boolean select(Viewer viewer, Object parentElement, Object element) {
+                return element != first;
+            }
+        };
+        fTreeViewer.addFilter(hideFirst);
+        assertEquals("filtered elements stay recorded", 2, fTreeViewer.getExpandedStateSnapshot().length);
+        fTreeViewer.removeFilter(hideFirst);
+        assertTrue(fTreeViewer.getExpandedState(first));
+        assertTrue(fTreeViewer.getExpandedState(first2));
+
+        fRootElement.deleteChild(first);
+        assertEquals("removed elements are forgotten", 0, fTreeViewer.getExpandedStateSnapshot().length);
+    }
+
     /**
      * Regression test for Bug 26698 [Viewers] stack overflow during debug session, causing IDE to crash
      * Problem was:
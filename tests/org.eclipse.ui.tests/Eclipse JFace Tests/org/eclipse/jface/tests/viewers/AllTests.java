@@ -32,6 +32,10 @@ public class AllTests extends TestSuite {
 		addTestSuite(SimpleTreeViewerTest.class);
 		addTestSuite(SimpleTableViewerTest.class);
 		addTestSuite(SimpleVirtualLazyTreeViewerTest.class);
+		addTestSuite(AsyncLazyContentProviderTest.class);
+		addTestSuite(AsyncLazyTreeContentProviderTest.class);
+		addTestSuite(DeferredContentProviderTest.class);
+		addTestSuite(CachingCellLabelProviderTest.class);
 		addTestSuite(VirtualLazyTreeViewerTest.class);
 		addTestSuite(TableViewerTest.class);
 		addTestSuite(TreeViewerColumnTest.class);
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.tests.viewers;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.StructuredViewer;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.deferred.AsyncLazyContentProvider;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Table;
+
+/**
+ * Tests TableViewer's VIRTUAL support with an asynchronous lazy content
+ * provider.
+ *
+ * @since 3.13
+ */
+public class AsyncLazyContentProviderTest extends ViewerTestCase {
+	private static final int NUM_ELEMENTS = 1000;
+	private static final int PAGE_SIZE = 8;
+
+	/**
+	 * Fetches which have been submitted but not run yet.
+	 */
+	private List<Runnable> pendingFetches = new ArrayList<>();
+
+	/**
+	 * The input and offset of each fetched page, in fetch order.
+	 */
+	private List<String> fetchedPages = new ArrayList<>();
+
+	private int elementCount = NUM_ELEMENTS;
+
+	private PagedContentProvider contentProvider;
+
+	private class PagedContentProvider extends AsyncLazyContentProvider {
+
+		PagedContentProvider() {
+			// fetches run when the test calls runFetches()
+			super(pendingFetches::add, PAGE_SIZE, 1);
+		}
+
+		@Override
+		protected int fetchElementCount(Object input) {
+			return elementCount;
+		}
+
+		@Override
+		protected Object[] fetchElements(Object input, int offset, int length) {
+			fetchedPages.add(input + "@" + offset);
+			Object[] elements = new Object[Math.max(0, Math.min(length, elementCount - offset))];
+			for (int i = 0; i < elements.length; i++) {
+				elements[i] = input + "-" + (offset + i);
+			}
+			return elements;
+		}
+	}
+
+	public AsyncLazyContentProviderTest(String name) {
+		super(name);
+	}
+
+	public TableViewer getTableViewer() {
+		return (TableViewer) fViewer;
+	}
+
+	@Override
+	protected void setInput() {
+		getTableViewer().setInput("A");
+	}
+
+	@Override
+	protected StructuredViewer createViewer(Composite parent) {
+		Table table = new Table(fShell, SWT.VIRTUAL | SWT.MULTI);
+		TableViewer tableViewer = new TableViewer(table);
+		contentProvider = new PagedContentProvider();
+		tableViewer.setContentProvider(contentProvider);
+		tableViewer.setLabelProvider(new LabelProvider());
+		return tableViewer;
+	}
+
+	/**
+	 * Runs the submitted fetches and delivers their results.
+	 */
+	private void runFetches() {
+		while (!pendingFetches.isEmpty()) {
+			pendingFetches.remove(0).run();
+		}
+		processEvents();
+	}
+
+	private String getText(int index) {
+		// asks the content provider for the element if it is not known yet
+		return getTableViewer().getTable().getItem(index).getText();
+	}
+
+	public void testPageFetching() {
+		Table table = getTableViewer().getTable();
+		assertEquals("the count should not be known before it is fetched", 0, table.getItemCount());
+		runFetches();
+		assertEquals(NUM_ELEMENTS, table.getItemCount());
+		getText(0);
+		getText(PAGE_SIZE + 1);
+		runFetches();
+		assertEquals("A-0", getText(0));
+		assertEquals("A-" + (PAGE_SIZE - 1), getText(PAGE_SIZE - 1));
+		assertEquals("A-" + (PAGE_SIZE + 1), getText(PAGE_SIZE + 1));
+		assertTrue("the page after the requested one should be fetched ahead",
+				fetchedPages.contains("A@" + 2 * PAGE_SIZE));
+		assertTrue("expected pages to be fetched for the requested items only",
+				fetchedPages.size() < NUM_ELEMENTS / PAGE_SIZE);
+		assertEquals("no page should be fetched twice", new HashSet<>(fetchedPages).size(), fetchedPages.size());
+		// painting may have requested the pages of other visible items
+		int pending = pendingFetches.size();
+		table.clear(1);
+		assertEquals("A-1", getText(1));
+		assertEquals("a fetched page should be reused", pending, pendingFetches.size());
+	}
+
+	public void testInputChangeCancelsPendingFetches() {
+		runFetches();
+		getText(0);
+		assertFalse("the page should not be fetched yet", pendingFetches.isEmpty());
+		elementCount = NUM_ELEMENTS / 2;
+		getTableViewer().setInput("B");
+		// the fetches for the old input run first, their results are dropped
+		runFetches();
+		Table table = getTableViewer().getTable();
+		assertEquals(NUM_ELEMENTS / 2, table.getItemCount());
+		assertEquals("the element of the old input should not be shown", "", getText(0));
+		runFetches();
+		assertEquals("B-0", getText(0));
+		assertEquals("B-1", getText(1));
+		assertEquals("B-0", table.getItem(0).getData());
+	}
+
+	public void testReplaceOfPendingRows() {
+		runFetches();
+		Table table = getTableViewer().getTable();
+		assertEquals("the item should stay blank until its page arrives", "", getText(3));
+		assertNull(table.getItem(3).getData());
+		runFetches();
+		assertEquals("A-3", table.getItem(3).getData());
+		assertEquals("A-3", getText(3));
+
+		// fetched elements are discarded and replaced again
+		contentProvider.invalidate();
+		elementCount = NUM_ELEMENTS + 1;
+		runFetches();
+		assertEquals(NUM_ELEMENTS + 1, table.getItemCount());
+		table.clear(3);
+		assertEquals("", getText(3));
+		runFetches();
+		assertEquals("A-3", getText(3));
+		assertEquals(2, countFetches("A@0"));
+	}
+
+	private int countFetches(String page) {
+		int count = 0;
+		for (String fetched : fetchedPages) {
+			if (fetched.equals(page)) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.tests.viewers;
+
+import org.eclipse.jface.viewers.StructuredViewer;
+import org.eclipse.jface.viewers.TreeViewer;
+import org.eclipse.jface.viewers.deferred.AsyncLazyTreeContentProvider;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Tree;
+
+/**
+ * Tests TreeViewer's VIRTUAL support with an asynchronous lazy content
+ * provider.
+ *
+ * @since 3.13
+ */
+public class AsyncLazyTreeContentProviderTest extends ViewerTestCase {
+	private static final int NUM_ROOTS = 100;
+	private static final int NUM_CHILDREN = 10;
+	private static final int PAGE_SIZE = 8;
+
+	private int fetchedPages = 0;
+
+	private boolean setDataCalled = false;
+
+	private class PagedContentProvider extends AsyncLazyTreeContentProvider {
+
+		PagedContentProvider() {
+			// fetch in the calling thread; results still arrive through asyncExec
+			super(Runnable::run, PAGE_SIZE, 1);
+		}
+
+		@Override
+		protected int fetchChildCount(Object parent) {
+			return "R".equals(parent) ? NUM_ROOTS : NUM_CHILDREN;
+		}
+
+		@Override
+		protected Object[] fetchChildren(Object parent, int offset, int length) {
+			fetchedPages++;
+			int count = fetchChildCount(parent);
+			Object[] children = new Object[Math.max(0, Math.min(length, count - offset))];
+			for (int i = 0; i < children.length; i++) {
+				children[i] = parent + "-" + (offset + i);
+			}
+			return children;
+		}
+
+		@Override
+		public Object getParent(Object element) {
+			return null;
+		}
+	}
+
+	public AsyncLazyTreeContentProviderTest(String name) {
+		super(name);
+	}
+
+	public TreeViewer getTreeViewer() {
+		return (TreeViewer) fViewer;
+	}
+
+	@Override
+	public void setUp() {
+		super.setUp();
+		processEvents();
+	}
+
+	@Override
+	protected void setInput() {
+		getTreeViewer().setInput("R");
+	}
+
+	@Override
+	protected StructuredViewer createViewer(Composite parent) {
+		Tree tree = new Tree(fShell, SWT.VIRTUAL | SWT.MULTI);
+		TreeViewer treeViewer = new TreeViewer(tree);
+		treeViewer.setContentProvider(new PagedContentProvider());
+		tree.addListener(SWT.SetData, new Listener() {
+			@Override
+			public void handleEvent(Event event) {
+				setDataCalled = true;
+			}
+		});
+		return treeViewer;
+	}
+
+	public void testCreation() {
+		if (disableTestsBug347491) {
+			System.out.println(getName() + " disabled due to Bug 347491");
+			return;
+		}
+		assertTrue("SWT.SetData not received", setDataCalled);
+		processEvents();
+		Tree tree = getTreeViewer().getTree();
+		assertEquals(NUM_ROOTS, tree.getItemCount());
+		assertEquals("R-0", tree.getItem(0).getText());
+		assertTrue("expected pages to be fetched for the visible items only",
+				fetchedPages < NUM_ROOTS / PAGE_SIZE);
+	}
+
+	public void testExpand() {
+		processEvents();
+		getTreeViewer().expandToLevel("R-0", 1);
+		processEvents();
+		Tree tree = getTreeViewer().getTree();
+		assertEquals(NUM_CHILDREN, tree.getItem(0).getItemCount());
+	}
+}
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.tests.viewers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.CachingCellLabelProvider;
+import org.eclipse.jface.viewers.ColumnLabelProvider;
+import org.eclipse.jface.viewers.ITreeContentProvider;
+import org.eclipse.jface.viewers.LabelProviderChangedEvent;
+import org.eclipse.jface.viewers.StructuredViewer;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.TreeViewer;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.TreeItem;
+
+/**
+ * Tests CachingCellLabelProvider.
+ *
+ * @since 3.13
+ */
+public class CachingCellLabelProviderTest extends ViewerTestCase {
+	private static final int SIZE = 10;
+
+	private List<String> input;
+
+	private Map<String, String> suffixes = new HashMap<>();
+
+	private int labelCount;
+
+	private CountingLabelProvider labelProvider;
+
+	private CachingCellLabelProvider cachingLabelProvider;
+
+	private class CountingLabelProvider extends ColumnLabelProvider {
+		@Override
+		public String getText(Object element) {
+			labelCount++;
+			String suffix = suffixes.get(element);
+			return suffix == null ? (String) element : element + suffix;
+		}
+
+		void fireChanged(Object element) {
+			fireLabelProviderChanged(new LabelProviderChangedEvent(this, element));
+		}
+	}
+
+	public CachingCellLabelProviderTest(String name) {
+		super(name);
+	}
+
+	@Override
+	protected StructuredViewer createViewer(Composite parent) {
+		TableViewer viewer = new TableViewer(parent);
+		viewer.setContentProvider(ArrayContentProvider.getInstance());
+		labelProvider = new CountingLabelProvider();
+		cachingLabelProvider = new CachingCellLabelProvider(labelProvider, 100);
+		viewer.setLabelProvider(cachingLabelProvider);
+		return viewer;
+	}
+
+	@Override
+	protected void setInput() {
+		input = new ArrayList<>();
+		for (int i = 0; i < SIZE; i++) {
+			input.add("e" + i);
+		}
+		fViewer.setInput(input);
+	}
+
+	private TableViewer getTableViewer() {
+		return (TableViewer) fViewer;
+	}
+
+	private String getText(int index) {
+		return getTableViewer().getTable().getItem(index).getText();
+	}
+
+	public void testShiftedRowsUseCache() {
+		assertEquals(SIZE, labelCount);
+		cachingLabelProvider.resetStatistics();
+		input.add(0, "new");
+		fViewer.refresh(false);
+		assertEquals("only the new element should be labeled", SIZE + 1, labelCount);
+		assertEquals(1, cachingLabelProvider.getMissCount());
+		assertEquals(SIZE, cachingLabelProvider.getHitCount());
+		assertEquals("new", getText(0));
+		assertEquals("e0", getText(1));
+		assertEquals("e9", getText(SIZE));
+	}
+
+	public void testUpdateInvalidates() {
+		suffixes.put("e3", "*");
+		fViewer.update("e3", null);
+		assertEquals(SIZE + 1, labelCount);
+		assertEquals("e3*", getText(3));
+	}
+
+	public void testLabelProviderChangedInvalidates() {
+		suffixes.put("e4", "!");
+		labelProvider.fireChanged("e4");
+		assertEquals(SIZE + 1, labelCount);
+		assertEquals("e4!", getText(4));
+	}
+
+	public void testRefreshWithLabelsInvalidates() {
+		suffixes.put("e5", "+");
+		fViewer.refresh();
+		assertEquals(2 * SIZE, labelCount);
+		assertEquals("e5+", getText(5));
+	}
+
+	public void testRefreshOfElementInvalidatesOnlyElement() {
+		suffixes.put("e5", "+");
+		suffixes.put("e6", "+");
+		cachingLabelProvider.resetStatistics();
+		fViewer.refresh("e5");
+		assertEquals(SIZE + 1, labelCount);
+		assertEquals("e5+", getText(5));
+		assertEquals(1, cachingLabelProvider.getMissCount());
+		fViewer.refresh("e6", false);
+		assertEquals("other elements should keep their cached labels", "e6", getText(6));
+		assertEquals(1, cachingLabelProvider.getHitCount());
+	}
+
+	public void testRefreshOfTreeElementInvalidatesSubtree() {
+		Map<String, String[]> children = new HashMap<>();
+		children.put("a", new String[] { "a1", "a2" });
+		children.put("b", new String[] { "b1" });
+		TreeViewer treeViewer = new TreeViewer(fShell);
+		treeViewer.setContentProvider(new ITreeContentProvider() {
+			@Override
+			public Object[] getElements(Object inputElement) {
+				return new String[] { "a", "b" };
+			}
+
+			@Override
+			public Object[] getChildren(Object parentElement) {
+				String[] result = children.get(parentElement);
+				return result == null ? new String[0] : result;
+			}
+
+			@Override
+			public Object getParent(Object element) {
+				return element.equals("a") || element.equals("b") ? null : ((String) element).substring(0, 1);
+			}
+
+			@Override
+			public boolean hasChildren(Object element) {
+				return children.containsKey(element);
+			}
+		});
+		CachingCellLabelProvider treeLabelProvider = new CachingCellLabelProvider(new CountingLabelProvider(), 100);
+		treeViewer.setLabelProvider(treeLabelProvider);
+		treeViewer.setInput(children);
+		treeViewer.expandAll();
+		for (String element : new String[] { "a", "a1", "a2", "b", "b1" }) {
+			suffixes.put(element, "+");
+		}
+		treeLabelProvider.resetStatistics();
+		treeViewer.refresh("a");
+		assertEquals("a and its children should be labeled again", 3, treeLabelProvider.getMissCount());
+		TreeItem[] items = treeViewer.getTree().getItems();
+		assertEquals("a+", items[0].getText());
+		assertEquals("a1+", items[0].getItem(0).getText());
+		assertEquals("a2+", items[0].getItem(1).getText());
+		assertEquals("b", items[1].getText());
+		// the label of a sibling is still cached when its item is created again
+		treeViewer.remove("b");
+		treeViewer.add(children, "b");
+		assertEquals(1, treeLabelProvider.getHitCount());
+		assertEquals(3, treeLabelProvider.getMissCount());
+		assertEquals("b", treeViewer.getTree().getItem(1).getText());
+	}
+
+	public void testEviction() {
+		CachingCellLabelProvider small = new CachingCellLabelProvider(new CountingLabelProvider(), 3);
+		getTableViewer().setLabelProvider(small);
+		// all elements were labeled, e7, e8 and e9 are cached
+		assertEquals(SIZE, small.getMissCount());
+		assertEquals(0, small.getHitCount());
+		small.resetStatistics();
+		fViewer.refresh("e7", false);
+		assertEquals(1, small.getHitCount());
+		// e8 is the least recently used element now
+		fViewer.refresh("e0", false);
+		assertEquals(1, small.getMissCount());
+		fViewer.refresh("e8", false);
+		assertEquals("e8 should have been evicted", 2, small.getMissCount());
+		// e9 was evicted for e8, e7 was used more recently
+		fViewer.refresh("e7", false);
+		assertEquals("e7 should still be cached", 2, small.getHitCount());
+		fViewer.refresh("e9", false);
+		assertEquals("e9 should have been evicted", 3, small.getMissCount());
+		// e0 was evicted for e9
+		fViewer.refresh("e8", false);
+		fViewer.refresh("e7", false);
+		assertEquals(4, small.getHitCount());
+		fViewer.refresh("e0", false);
+		assertEquals("e0 should have been evicted", 4, small.getMissCount());
+		assertEquals(4, small.getHitCount());
+	}
+}
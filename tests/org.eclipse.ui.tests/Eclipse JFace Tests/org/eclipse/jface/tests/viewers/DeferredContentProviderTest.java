@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.tests.viewers;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.eclipse.jface.viewers.StructuredViewer;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.deferred.AbstractConcurrentModel;
+import org.eclipse.jface.viewers.deferred.DeferredContentProvider;
+import org.eclipse.jface.viewers.deferred.IConcurrentModelListener;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Table;
+
+/**
+ * Tests DeferredContentProvider receiving changes from several threads and
+ * sorting on a client supplied executor.
+ *
+ * @since 3.13
+ */
+public class DeferredContentProviderTest extends ViewerTestCase {
+	private static final int PRODUCERS = 4;
+	private static final int ELEMENTS_PER_PRODUCER = 500;
+
+	private ExecutorService executor;
+
+	private ConcurrentSetModel model;
+
+	/**
+	 * Unlike <code>SetModel</code>, may be changed from several threads.
+	 */
+	private static class ConcurrentSetModel extends AbstractConcurrentModel {
+		private final Set<Object> data = ConcurrentHashMap.newKeySet();
+
+		void addAll(Object[] toAdd) {
+			for (Object element : toAdd) {
+				data.add(element);
+			}
+			fireAdd(toAdd);
+		}
+
+		void removeAll(Object[] toRemove) {
+			for (Object element : toRemove) {
+				data.remove(element);
+			}
+			fireRemove(toRemove);
+		}
+
+		void set(Object[] newContents) {
+			data.clear();
+			for (Object element : newContents) {
+				data.add(element);
+			}
+			for (IConcurrentModelListener listener : getListeners()) {
+				listener.setContents(newContents);
+			}
+		}
+
+		@Override
+		public void requestUpdate(IConcurrentModelListener listener) {
+			listener.setContents(data.toArray());
+		}
+	}
+
+	public DeferredContentProviderTest(String name) {
+		super(name);
+	}
+
+	@Override
+	protected StructuredViewer createViewer(Composite parent) {
+		executor = Executors.newSingleThreadExecutor();
+		TableViewer viewer = new TableViewer(new Table(parent, SWT.VIRTUAL));
+		viewer.setContentProvider(new DeferredContentProvider(Comparator.naturalOrder(), executor));
+		return viewer;
+	}
+
+	@Override
+	protected void setInput() {
+		model = new ConcurrentSetModel();
+		fViewer.setInput(model);
+	}
+
+	@Override
+	public void tearDown() {
+		super.tearDown();
+		executor.shutdownNow();
+	}
+
+	private Table getTable() {
+		return ((TableViewer) fViewer).getTable();
+	}
+
+	private void waitForItemCount(int expected) {
+		long start = System.currentTimeMillis();
+		while (getTable().getItemCount() != expected && System.currentTimeMillis() - start < 10000) {
+			processEvents();
+			sleep(10);
+		}
+		assertEquals(expected, getTable().getItemCount());
+	}
+
+	private Set<Object> waitForContents(Set<Object> expected) {
+		Set<Object> contents = new HashSet<>();
+		long start = System.currentTimeMillis();
+		while (System.currentTimeMillis() - start < 10000) {
+			contents.clear();
+			for (int i = 0; i < getTable().getItemCount(); i++) {
+				// asks the content provider for the element of a virtual item
+				getTable().getItem(i).getText();
+				contents.add(getTable().getItem(i).getData());
+			}
+			if (contents.equals(expected)) {
+				break;
+			}
+			processEvents();
+			sleep(10);
+		}
+		return contents;
+	}
+
+	private static String element(int producer, int index) {
+		return producer + "-" + index;
+	}
+
+	public void testConcurrentProducers() throws InterruptedException {
+		Thread[] producers = new Thread[PRODUCERS];
+		for (int p = 0; p < PRODUCERS; p++) {
+			final int producer = p;
+			producers[p] = new Thread(() -> {
+				for (int i = 0; i < ELEMENTS_PER_PRODUCER; i++) {
+					model.addAll(new Object[] { element(producer, i) });
+				}
+			});
+			producers[p].start();
+		}
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		waitForItemCount(PRODUCERS * ELEMENTS_PER_PRODUCER);
+
+		Object[] toRemove = new Object[ELEMENTS_PER_PRODUCER];
+		for (int i = 0; i < ELEMENTS_PER_PRODUCER; i++) {
+			toRemove[i] = element(0, i);
+		}
+		model.removeAll(toRemove);
+		waitForItemCount((PRODUCERS - 1) * ELEMENTS_PER_PRODUCER);
+	}
+
+	/**
+	 * Each element is added by one thread and removed by another right after,
+	 * so the removal is only correct if it is applied after the addition.
+	 */
+	public void testChangesOfSeveralThreadsKeepTheirOrder() throws InterruptedException {
+		Thread[] producers = new Thread[PRODUCERS * 2];
+		Set<Object> expected = new HashSet<>();
+		for (int p = 0; p < PRODUCERS; p++) {
+			final int producer = p;
+			final BlockingQueue<Object> added = new LinkedBlockingQueue<>();
+			producers[2 * p] = new Thread(() -> {
+				for (int i = 0; i < ELEMENTS_PER_PRODUCER; i++) {
+					Object element = element(producer, i);
+					model.addAll(new Object[] { element });
+					added.add(element);
+				}
+				model.addAll(new Object[] { element(producer, ELEMENTS_PER_PRODUCER) });
+			});
+			producers[2 * p + 1] = new Thread(() -> {
+				try {
+					for (int i = 0; i < ELEMENTS_PER_PRODUCER; i++) {
+						model.removeAll(new Object[] { added.take() });
+					}
+				} catch (InterruptedException e) {
+					// the test fails on the contents
+				}
+			});
+			expected.add(element(producer, ELEMENTS_PER_PRODUCER));
+		}
+		for (Thread producer : producers) {
+			producer.start();
+		}
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		waitForItemCount(PRODUCERS);
+		assertEquals(expected, waitForContents(expected));
+	}
+
+	public void testSetReplacesContents() {
+		model.addAll(new Object[] { "a", "b", "c" });
+		model.set(new Object[] { "d", "e" });
+		waitForItemCount(2);
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -162,6 +162,28 @@ public abstract class StructuredViewerTest extends ViewerTestCase {
         assertNull("first child is not visible", fViewer.testFindItem(first));
     }
 
+    public void testDeleteAndInsertManySiblings() {
+        TestElement[] children = fRootElement.getChildren();
+        for (int i = 0; i < children.length; i += 2) {
+            fRootElement.deleteChild(children[i]);
+        }
+        TestElement[] newElements = new TestElement[20];
+        for (int i = 0; i < newElements.length; i++) {
+            newElements[i] = fRootElement.addChild(TestModelChange.INSERT);
+        }
+        processEvents();
+        for (int i = 0; i < children.length; i++) {
+            if (i % 2 == 0) {
+                assertNull("deleted child is not visible", fViewer.testFindItem(children[i]));
+            } else {
+                assertNotNull("remaining child is visible", fViewer.testFindItem(children[i]));
+            }
+        }
+        for (TestElement newElement : newElements) {
+            assertNotNull("new sibling is visible", fViewer.testFindItem(newElement));
+        }
+    }
+
     /**
      * Tests to ensure that the viewer is properly diposed.  Includes:
      *     removal of filters
@@ -189,6 +211,22 @@ public abstract class StructuredViewerTest extends ViewerTestCase {
 
     }
 
+    public void testParallelFilter() {
+        fViewer.setParallelFilterAndSortThreshold(0);
+        fViewer.addFilter(new TestLabelFilter());
+        assertEquals("filtered count", 5, getItemCount());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("filtered in order", fRootElement.getChildAt(2 * i).toString(), getItemText(i));
+        }
+
+        fViewer.setSorter(new TestLabelSorter());
+        assertEquals("filtered count", 5, getItemCount());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("filtered in reverse order", fRootElement.getChildAt(8 - 2 * i).toString(),
+                    getItemText(i));
+        }
+    }
+
     public void testSetFilters() {
     	ViewerFilter filter = new TestLabelFilter();
 		fViewer.setFilters(filter, new TestLabelFilter2());
@@ -86,6 +86,25 @@ public class TableViewerComparatorTest extends ViewerComparatorTest {
 		assertSortedResult(TEAM1_SORTED_WITH_INSERT);
 	}
 
+	public void testParallelViewerSorter(){
+		fViewer.setParallelFilterAndSortThreshold(0);
+		fViewer.setSorter(new ViewerSorter());
+		assertSortedResult(TEAM1_SORTED);
+	}
+
+	public void testParallelViewerComparator(){
+		fViewer.setParallelFilterAndSortThreshold(0);
+		fViewer.setComparator(new ViewerComparator());
+		assertSortedResult(TEAM1_SORTED);
+	}
+
+	public void testParallelViewerComparatorInsertElement(){
+		fViewer.setParallelFilterAndSortThreshold(0);
+		fViewer.setComparator(new ViewerComparator());
+		team1.addMember("Duong");
+		assertSortedResult(TEAM1_SORTED_WITH_INSERT);
+	}
+
 	private void assertSortedResult(String[] expected){
 		TableItem[] items = getTableViewer().getTable().getItems();
 		for (int i = 0; i < items.length; i++){
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006 IBM Corporation and others.
+ * Copyright (c) 2006, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -43,4 +43,39 @@ public class TreeSelectionTest extends TestCase {
 		assertFalse(treeSelection1.equals(treeSelection2));
 	}
 
+	public void testChildPathsSharePrefix() {
+		Object one = new Object();
+		Object two = new Object();
+		Object three = new Object();
+		TreePath parent = new TreePath(new Object[] { one });
+		TreePath child1 = parent.createChildPath(two);
+		TreePath child2 = parent.createChildPath(three);
+		assertSame(parent, child1.getParentPath());
+		assertSame(parent, child2.getParentPath());
+		assertEquals(new TreePath(new Object[] { one, two }), child1);
+		assertEquals(child1, new TreePath(new Object[] { one, two }));
+		assertEquals(new TreePath(new Object[] { one, two }).hashCode(), child1.hashCode());
+		assertFalse(child1.equals(child2));
+
+		TreePath grandChild = child1.createChildPath(three);
+		assertEquals(3, grandChild.getSegmentCount());
+		assertSame(one, grandChild.getFirstSegment());
+		assertSame(two, grandChild.getSegment(1));
+		assertSame(three, grandChild.getLastSegment());
+		assertTrue(grandChild.startsWith(parent, null));
+		assertTrue(grandChild.startsWith(new TreePath(new Object[] { one, two }), null));
+		assertFalse(grandChild.startsWith(child2, null));
+	}
+
+	public void testSelectionOfChildPaths() {
+		Object one = new Object();
+		Object two = new Object();
+		TreePath parent = TreePath.EMPTY.createChildPath(one);
+		TreeSelection selection = new TreeSelection(new TreePath[] { parent.createChildPath(two),
+				new TreePath(new Object[] { two, two }) });
+		assertEquals(1, selection.size());
+		assertEquals(2, selection.getPathsFor(two).length);
+		assertEquals(selection, new TreeSelection(new TreePath[] { new TreePath(new Object[] { one, two }),
+				TreePath.EMPTY.createChildPath(two).createChildPath(two) }));
+	}
 }
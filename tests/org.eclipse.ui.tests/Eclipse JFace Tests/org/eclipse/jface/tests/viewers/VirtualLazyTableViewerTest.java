@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2014 IBM Corporation and others.
+ * Copyright (c) 2005, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -161,6 +161,13 @@ public class VirtualLazyTableViewerTest extends VirtualTableViewerTest {
 		// are created.
 	}
 
+	@Override
+	public void testParallelFilter() {
+		// This test is no use here as it is
+		// based on the assumption that all items
+		// are created.
+	}
+
 	@Override
 	public void testRenameWithFilter() {
 		// This test is no use here as it is
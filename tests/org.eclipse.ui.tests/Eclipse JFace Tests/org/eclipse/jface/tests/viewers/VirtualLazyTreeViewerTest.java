@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2016 IBM Corporation and others.
+ * Copyright (c) 2005, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -103,6 +103,11 @@ public class VirtualLazyTreeViewerTest extends TreeViewerTest {
     	// no need to test since virtual trees do not support filtering
     }
 
+    @Override
+	public void testParallelFilter() {
+    	// no need to test since virtual trees do not support filtering
+    }
+
     @Override
 	public void testInsertSiblingWithFilterFiltered() {
     	// no need to test since virtual trees do not support filtering
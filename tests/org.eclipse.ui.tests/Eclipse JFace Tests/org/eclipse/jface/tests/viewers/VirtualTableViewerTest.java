@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -139,6 +139,23 @@ public class VirtualTableViewerTest extends TableViewerTest {
 		assertEquals("unfiltered count", 10, getItemCount());
 	}
 
+	@Override
+	public void testParallelFilter() {
+		fViewer.setParallelFilterAndSortThreshold(0);
+		visibleItems = new HashSet();
+		fViewer.addFilter(new TestLabelFilter());
+		if (!updateTable()) {
+			return;
+		}
+		assertEquals("filtered count", 5, getItemCount());
+		((TableViewer) fViewer).getControl().update();
+		assertEquals("filtered in order", fRootElement.getChildAt(0).toString(), getItemText(0));
+
+		fViewer.setSorter(new TestLabelSorter());
+		((TableViewer) fViewer).getControl().update();
+		assertEquals("filtered in reverse order", fRootElement.getChildAt(8).toString(), getItemText(0));
+	}
+
 	@Override
 	public void testSetFilters() {
 		ViewerFilter filter = new TestLabelFilter();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2014 IBM Corporation and others.
+ * Copyright (c) 2005, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -759,6 +759,89 @@ public final class BindingManagerTest extends UITestCase {
 
 	}
 
+	/**
+	 * Verifies that activating and deactivating contexts updates the active
+	 * bindings, the partial matches and the conflicts, and that listeners are
+	 * only notified when the active bindings change.
+	 *
+	 * @throws NotDefinedException
+	 *             If this test doesn't properly define a scheme.
+	 * @throws ParseException
+	 *             If the key sequences cannot be parsed.
+	 */
+	public void testContextActivationUpdatesActiveBindings()
+			throws NotDefinedException, ParseException {
+		contextManager.getContext("window").define("window", null, null);
+		contextManager.getContext("editor").define("editor", null, "window");
+		contextManager.getContext("view").define("view", null, "window");
+		final Scheme scheme = bindingManager.getScheme("na");
+		scheme.define("name", "description", null);
+		bindingManager.setActiveScheme(scheme);
+
+		final ParameterizedCommand save = new ParameterizedCommand(
+				commandManager.getCommand("save"), null);
+		final ParameterizedCommand format = new ParameterizedCommand(
+				commandManager.getCommand("format"), null);
+		final ParameterizedCommand copy = new ParameterizedCommand(
+				commandManager.getCommand("copy"), null);
+		final ParameterizedCommand copyPath = new ParameterizedCommand(
+				commandManager.getCommand("copyPath"), null);
+		final KeySequence ctrlS = KeySequence.getInstance("CTRL+S");
+		final KeySequence ctrlK = KeySequence.getInstance("CTRL+K");
+		final KeySequence ctrlKF = KeySequence.getInstance("CTRL+K F");
+		final KeySequence ctrlC = KeySequence.getInstance("CTRL+C");
+		final Binding saveBinding = new KeyBinding(ctrlS, save, "na", "window",
+				null, null, null, Binding.SYSTEM);
+		final Binding formatBinding = new KeyBinding(ctrlKF, format, "na",
+				"editor", null, null, null, Binding.SYSTEM);
+		final Binding copyBinding = new KeyBinding(ctrlC, copy, "na", "view",
+				null, null, null, Binding.SYSTEM);
+		final Binding copyPathBinding = new KeyBinding(ctrlC, copyPath, "na",
+				"view", null, null, null, Binding.SYSTEM);
+		bindingManager.setBindings(new Binding[] { saveBinding, formatBinding,
+				copyBinding, copyPathBinding });
+
+		final Set activeContextIds = new HashSet();
+		activeContextIds.add("window");
+		contextManager.setActiveContextIds(activeContextIds);
+		assertSame(saveBinding, bindingManager.getPerfectMatch(ctrlS));
+		assertFalse(bindingManager.isPartialMatch(ctrlK));
+
+		final int[] events = new int[1];
+		bindingManager.addBindingManagerListener(event -> events[0]++);
+
+		// activate the editor
+		activeContextIds.add("editor");
+		contextManager.setActiveContextIds(new HashSet(activeContextIds));
+		assertEquals(1, events[0]);
+		assertSame(saveBinding, bindingManager.getPerfectMatch(ctrlS));
+		assertSame(formatBinding, bindingManager.getPerfectMatch(ctrlKF));
+		assertTrue(bindingManager.isPartialMatch(ctrlK));
+		assertEquals(ctrlKF, bindingManager.getBestActiveBindingFor(format));
+
+		// activate the view, whose bindings conflict
+		activeContextIds.add("view");
+		contextManager.setActiveContextIds(new HashSet(activeContextIds));
+		assertNull(bindingManager.getPerfectMatch(ctrlC));
+		assertEquals(2, bindingManager.getConflictsFor(ctrlC).size());
+
+		// deactivate the editor
+		activeContextIds.remove("editor");
+		contextManager.setActiveContextIds(new HashSet(activeContextIds));
+		assertNull(bindingManager.getPerfectMatch(ctrlKF));
+		assertFalse(bindingManager.isPartialMatch(ctrlK));
+		assertNull(bindingManager.getBestActiveBindingFor(format));
+		assertEquals(2, bindingManager.getConflictsFor(ctrlC).size());
+
+		// a context without bindings does not change the active bindings
+		contextManager.getContext("other").define("other", null, null);
+		events[0] = 0;
+		activeContextIds.add("other");
+		contextManager.setActiveContextIds(new HashSet(activeContextIds));
+		assertEquals(0, events[0]);
+		assertSame(saveBinding, bindingManager.getPerfectMatch(ctrlS));
+	}
+
 	/**
 	 * Verifies that you can set the bindings to null. Verifies that setting the
 	 * bindings clears the cache.
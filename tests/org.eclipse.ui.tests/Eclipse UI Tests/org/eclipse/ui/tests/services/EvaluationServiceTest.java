@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2014 IBM Corporation and others.
+ * Copyright (c) 2007, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,6 +18,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.expressions.EvaluationResult;
 import org.eclipse.core.expressions.Expression;
@@ -29,6 +30,7 @@ import org.eclipse.core.internal.expressions.WithExpression;
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IExtensionRegistry;
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.jface.text.TextSelection;
 import org.eclipse.jface.util.IPropertyChangeListener;
 import org.eclipse.jface.util.PropertyChangeEvent;
@@ -50,6 +52,7 @@ import org.eclipse.ui.handlers.IHandlerActivation;
 import org.eclipse.ui.handlers.IHandlerService;
 import org.eclipse.ui.internal.WorkbenchWindow;
 import org.eclipse.ui.internal.handlers.HandlerPersistence;
+import org.eclipse.ui.internal.services.EvaluationService;
 import org.eclipse.ui.services.IEvaluationReference;
 import org.eclipse.ui.services.IEvaluationService;
 import org.eclipse.ui.services.ISourceProviderService;
@@ -451,6 +454,110 @@ public class EvaluationServiceTest extends UITestCase {
 		assertEquals(3, listener.count);
 	}
 
+	private static class CountingUserExpression extends UserExpression {
+		private final AtomicInteger evaluations;
+
+		public CountingUserExpression(String lookFor, AtomicInteger evaluations) {
+			super(lookFor);
+			this.evaluations = evaluations;
+		}
+
+		@Override
+		public EvaluationResult evaluate(IEvaluationContext context) {
+			evaluations.incrementAndGet();
+			return super.evaluate(context);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof CountingUserExpression && lookFor.equals(((CountingUserExpression) obj).lookFor);
+		}
+
+		@Override
+		public int hashCode() {
+			return lookFor.hashCode();
+		}
+	}
+
+	public void testSharedExpression() throws Exception {
+		IWorkbenchWindow window = openTestWindow();
+		IEvaluationService service = window
+				.getService(IEvaluationService.class);
+		assertNotNull(service);
+
+		AtomicInteger evaluations = new AtomicInteger();
+		MyEval listener1 = new MyEval();
+		MyEval listener2 = new MyEval();
+		IEvaluationReference ref1 = service.addEvaluationListener(new CountingUserExpression("Paul", evaluations),
+				listener1, IEvaluationService.RESULT);
+		IEvaluationReference ref2 = service.addEvaluationListener(new CountingUserExpression("Paul", evaluations),
+				listener2, IEvaluationService.RESULT);
+		try {
+			assertEquals(1, evaluations.get());
+			assertFalse(listener1.currentValue);
+			assertEquals(1, listener1.count);
+			assertFalse(listener2.currentValue);
+			assertEquals(1, listener2.count);
+
+			ISourceProviderService sps = window
+					.getService(ISourceProviderService.class);
+			ActiveUserSourceProvider userProvider = (ActiveUserSourceProvider) sps
+					.getSourceProvider("username");
+
+			userProvider.setUsername("Paul");
+			assertEquals(2, evaluations.get());
+			assertTrue(listener1.currentValue);
+			assertEquals(2, listener1.count);
+			assertTrue(listener2.currentValue);
+			assertEquals(2, listener2.count);
+
+			service.removeEvaluationListener(ref1);
+			userProvider.setUsername("guest");
+			assertFalse(listener2.currentValue);
+			assertEquals(3, listener2.count);
+		} finally {
+			service.removeEvaluationListener(ref2);
+		}
+	}
+
+	private static class CountingVariableExpression extends Expression {
+		static final String VARIABLE = "org.eclipse.ui.tests.services.countingVariable";
+
+		final AtomicInteger evaluations = new AtomicInteger();
+
+		@Override
+		public EvaluationResult evaluate(IEvaluationContext context) {
+			evaluations.incrementAndGet();
+			return EvaluationResult.valueOf(context.getVariable(VARIABLE) != null);
+		}
+
+		@Override
+		public void collectExpressionInfo(ExpressionInfo info) {
+			info.addVariableNameAccess(VARIABLE);
+		}
+	}
+
+	public void testDisposedServiceStopsEvaluating() throws Exception {
+		IEclipseContext workbenchContext = getWorkbench().getService(IEclipseContext.class);
+		EvaluationService service = new EvaluationService(workbenchContext.createChild());
+		CountingVariableExpression expression = new CountingVariableExpression();
+		MyEval listener = new MyEval();
+		service.addEvaluationListener(expression, listener, IEvaluationService.RESULT);
+		try {
+			assertEquals(1, expression.evaluations.get());
+			workbenchContext.set(CountingVariableExpression.VARIABLE, "set");
+			assertTrue(listener.currentValue);
+			assertEquals(2, expression.evaluations.get());
+
+			service.dispose();
+			int evaluations = expression.evaluations.get();
+			workbenchContext.remove(CountingVariableExpression.VARIABLE);
+			assertEquals(evaluations, expression.evaluations.get());
+		} finally {
+			workbenchContext.remove(CountingVariableExpression.VARIABLE);
+		}
+	}
+
 	public void testSourceProviderPriority() throws Exception {
 		IHandlerService hs = getWorkbench().getService(IHandlerService.class);
 